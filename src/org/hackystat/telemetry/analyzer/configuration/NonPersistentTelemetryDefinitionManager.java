@@ -147,6 +147,7 @@ class NonPersistentTelemetryDefinitionManager extends TelemetryDefinitionManager
       }
       //add
       repository.add(defInfo);
+      this.incrementVersion();
     }  
   }
 
@@ -166,6 +167,7 @@ class NonPersistentTelemetryDefinitionManager extends TelemetryDefinitionManager
     }
     else {
       repository.remove(owner, name);  
+      this.incrementVersion();
     } 
   }
 
@@ -231,6 +231,7 @@ class PersistentTelemetryDefinitionManager extends TelemetryDefinitionManager {
       }
       //add
       repository.add(defInfo);
+      this.incrementVersion();
       //this.write(defInfo.getOwner());
     }  
   }
@@ -266,6 +267,7 @@ class PersistentTelemetryDefinitionManager extends TelemetryDefinitionManager {
     }
     else {
       repository.remove(owner, name);  
+      this.incrementVersion();
       //this.write(owner);
     } 
   }
@@ -1,5 +1,7 @@
 package org.hackystat.telemetry.analyzer.configuration;
 
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluationException;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryChartPlan;
 import org.hackystat.telemetry.analyzer.language.TelemetryLanguageException;
 import org.hackystat.telemetry.analyzer.language.ast.TelemetryChartDefinition;
 import org.hackystat.telemetry.analyzer.language.parser.TelemetryLanguageParser;
@@ -13,6 +15,10 @@ import org.hackystat.sensorbase.resource.users.jaxb.User;
 public class TelemetryChartDefinitionInfo extends TelemetryDefinitionInfo {
 
   private TelemetryChartDefinition chartDefinition;
+  /** The compiled definition, or null if it cannot be compiled. */
+  private TelemetryChartPlan chartPlan;
+  /** The reason the definition cannot be compiled. */
+  private TelemetryEvaluationException compileException;
 
   /**
    * Constructs this instance.
@@ -35,6 +41,7 @@ public class TelemetryChartDefinitionInfo extends TelemetryDefinitionInfo {
     catch (TelemetryLanguageException ex) {
       throw new TelemetryConfigurationException(ex);
     }
+    this.compile();
   }
   
   /**
@@ -50,6 +57,7 @@ public class TelemetryChartDefinitionInfo extends TelemetryDefinitionInfo {
       ShareScope shareScope) throws TelemetryConfigurationException {
     super(chartDefinition.getDefinitionString(), owner, shareScope);
     this.chartDefinition = chartDefinition;
+    this.compile();
   }
   
   /**
@@ -80,4 +88,35 @@ public class TelemetryChartDefinitionInfo extends TelemetryDefinitionInfo {
   public TelemetryChartDefinition getChartDefinitionObject() {
     return this.chartDefinition;
   }
+
+  /**
+   * Compiles the definition. A definition that cannot be compiled, for example because it
+   * passes a variable it does not have to another definition, is still loaded, and the
+   * error is reported when it is used.
+   */
+  private void compile() {
+    try {
+      this.chartPlan = TelemetryChartPlan.compile(this.chartDefinition);
+    }
+    catch (TelemetryEvaluationException ex) {
+      this.compileException = ex;
+    }
+  }
+
+  /**
+   * Gets the compiled form of this telemetry chart, which is compiled once when this
+   * instance is constructed.
+   * 
+   * @return The compiled definition.
+   * @throws TelemetryEvaluationException If the definition cannot be compiled, wrapping the
+   *         exception raised when it was compiled.
+   */
+  public TelemetryChartPlan getChartPlan() throws TelemetryEvaluationException {
+    if (this.chartPlan == null) {
+      // A new exception per call, so that callers do not share one stack trace.
+      throw new TelemetryEvaluationException(this.compileException.getMessage(),
+          this.compileException);
+    }
+    return this.chartPlan;
+  }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package org.hackystat.telemetry.analyzer.configuration;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hackystat.sensorbase.resource.users.jaxb.User;
 import org.hackystat.telemetry.analyzer.configuration.jaxb.TelemetryDefinition;
@@ -14,6 +15,27 @@ import org.hackystat.telemetry.analyzer.configuration.jaxb.TelemetryDefinition;
  */
 public abstract class TelemetryDefinitionManager {
   
+  /** Incremented each time a definition is added or removed. */
+  private final AtomicLong version = new AtomicLong();
+  
+  /**
+   * Gets the version of the definitions, which changes each time a definition is added or
+   * removed. Anything computed from the definitions, such as an evaluated chart, is only
+   * valid for the version from which it was computed.
+   * 
+   * @return The version.
+   */
+  public long getVersion() {
+    return this.version.get();
+  }
+  
+  /**
+   * Records that a definition has been added or removed.
+   */
+  protected void incrementVersion() {
+    this.version.incrementAndGet();
+  }
+  
   /**
    * Gets the telemetry definition information by name.
    * 
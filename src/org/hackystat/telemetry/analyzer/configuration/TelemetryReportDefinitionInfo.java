@@ -1,5 +1,7 @@
 package org.hackystat.telemetry.analyzer.configuration;
 
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluationException;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryReportPlan;
 import org.hackystat.telemetry.analyzer.language.TelemetryLanguageException;
 import org.hackystat.telemetry.analyzer.language.ast.TelemetryReportDefinition;
 import org.hackystat.telemetry.analyzer.language.parser.TelemetryLanguageParser;
@@ -14,6 +16,10 @@ import org.hackystat.sensorbase.resource.users.jaxb.User;
 public class TelemetryReportDefinitionInfo extends TelemetryDefinitionInfo {
 
   private TelemetryReportDefinition reportDefinition;
+  /** The compiled definition, or null if it cannot be compiled. */
+  private TelemetryReportPlan reportPlan;
+  /** The reason the definition cannot be compiled. */
+  private TelemetryEvaluationException compileException;
 
   /**
    * Constructs this instance.
@@ -33,6 +39,7 @@ public class TelemetryReportDefinitionInfo extends TelemetryDefinitionInfo {
     catch (TelemetryLanguageException ex) {
       throw new TelemetryConfigurationException(ex);
     }
+    this.compile();
     //TODO: though the definition is syntatically correct, need to perform semantic validation!
   }
 
@@ -49,6 +56,7 @@ public class TelemetryReportDefinitionInfo extends TelemetryDefinitionInfo {
       ShareScope shareScope) throws TelemetryConfigurationException {
     super(reportDefinition.getDefinitionString(), owner, shareScope);
     this.reportDefinition = reportDefinition;
+    this.compile();
   }
   
   /**
@@ -79,4 +87,35 @@ public class TelemetryReportDefinitionInfo extends TelemetryDefinitionInfo {
   public TelemetryReportDefinition getReportDefinitionObject() {
     return this.reportDefinition;
   }
+
+  /**
+   * Compiles the definition. A definition that cannot be compiled, for example because it
+   * passes a variable it does not have to another definition, is still loaded, and the
+   * error is reported when it is used.
+   */
+  private void compile() {
+    try {
+      this.reportPlan = TelemetryReportPlan.compile(this.reportDefinition);
+    }
+    catch (TelemetryEvaluationException ex) {
+      this.compileException = ex;
+    }
+  }
+
+  /**
+   * Gets the compiled form of this telemetry report, which is compiled once when this
+   * instance is constructed.
+   * 
+   * @return The compiled definition.
+   * @throws TelemetryEvaluationException If the definition cannot be compiled, wrapping the
+   *         exception raised when it was compiled.
+   */
+  public TelemetryReportPlan getReportPlan() throws TelemetryEvaluationException {
+    if (this.reportPlan == null) {
+      // A new exception per call, so that callers do not share one stack trace.
+      throw new TelemetryEvaluationException(this.compileException.getMessage(),
+          this.compileException);
+    }
+    return this.reportPlan;
+  }
 }
\ No newline at end of file
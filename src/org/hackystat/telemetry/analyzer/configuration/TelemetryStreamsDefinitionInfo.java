@@ -1,5 +1,7 @@
 package org.hackystat.telemetry.analyzer.configuration;
 
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluationException;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryStreamsPlan;
 import org.hackystat.telemetry.analyzer.language.TelemetryLanguageException;
 import org.hackystat.telemetry.analyzer.language.ast.TelemetryStreamsDefinition;
 import org.hackystat.telemetry.analyzer.language.parser.TelemetryLanguageParser;
@@ -14,6 +16,10 @@ import org.hackystat.sensorbase.resource.users.jaxb.User;
 public class TelemetryStreamsDefinitionInfo extends TelemetryDefinitionInfo {
 
   private TelemetryStreamsDefinition streamsDefinition;
+  /** The compiled definition, or null if it cannot be compiled. */
+  private TelemetryStreamsPlan streamsPlan;
+  /** The reason the definition cannot be compiled. */
+  private TelemetryEvaluationException compileException;
 
   /**
    * Constructs this instance.
@@ -33,6 +39,7 @@ public class TelemetryStreamsDefinitionInfo extends TelemetryDefinitionInfo {
     catch (TelemetryLanguageException ex) {
       throw new TelemetryConfigurationException(ex);
     }
+    this.compile();
   }
   
   /**
@@ -48,6 +55,7 @@ public class TelemetryStreamsDefinitionInfo extends TelemetryDefinitionInfo {
       ShareScope shareScope) throws TelemetryConfigurationException {
     super(streamsDef.getDefinitionString(), owner, shareScope);
     this.streamsDefinition = streamsDef;
+    this.compile();
   }
   
   /**
@@ -78,4 +86,34 @@ public class TelemetryStreamsDefinitionInfo extends TelemetryDefinitionInfo {
   public TelemetryStreamsDefinition getStreamsDefinitionObject() {
     return this.streamsDefinition;
   }
+
+  /**
+   * Compiles the definition. A definition that cannot be compiled, for example because it
+   * calls an undefined reducer, is still loaded, and the error is reported when it is used.
+   */
+  private void compile() {
+    try {
+      this.streamsPlan = TelemetryStreamsPlan.compile(this.streamsDefinition);
+    }
+    catch (TelemetryEvaluationException ex) {
+      this.compileException = ex;
+    }
+  }
+
+  /**
+   * Gets the compiled form of this telemetry streams, which is compiled once when this
+   * instance is constructed.
+   * 
+   * @return The compiled definition.
+   * @throws TelemetryEvaluationException If the definition cannot be compiled, wrapping the
+   *         exception raised when it was compiled.
+   */
+  public TelemetryStreamsPlan getStreamsPlan() throws TelemetryEvaluationException {
+    if (this.streamsPlan == null) {
+      // A new exception per call, so that callers do not share one stack trace.
+      throw new TelemetryEvaluationException(this.compileException.getMessage(),
+          this.compileException);
+    }
+    return this.streamsPlan;
+  }
 }
\ No newline at end of file
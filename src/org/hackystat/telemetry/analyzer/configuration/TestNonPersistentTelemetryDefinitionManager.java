@@ -59,7 +59,9 @@ public class TestNonPersistentTelemetryDefinitionManager extends TestCase {
     assertSame(null, manager.get(this.user, chartDefInfo.getName(), false, 
         TelemetryDefinitionType.CHART));
     int chartDefSize = 0; //may not be 0 if the manager is liked to global singleton.
+    long version = manager.getVersion();
     manager.add(chartDefInfo);
+    assertEquals(version + 1, manager.getVersion());
     assertSame(chartDefInfo, manager.get(this.user, chartDefInfo.getName(), false, 
         TelemetryDefinitionType.CHART));
     assertEquals(chartDefSize + 1, manager.getAll(this.user, false, 
@@ -68,6 +70,7 @@ public class TestNonPersistentTelemetryDefinitionManager extends TestCase {
         TelemetryDefinitionType.CHART);
     assertEquals(chartDefSize, manager.getAll(this.user, false, 
         TelemetryDefinitionType.CHART).size());
+    assertEquals(version + 2, manager.getVersion());
 
     // report definition
     TelemetryReportDefinitionInfo reportDefInfo = new TelemetryReportDefinitionInfo(
@@ -2,6 +2,10 @@ package org.hackystat.telemetry.analyzer.configuration;
 
 import junit.framework.TestCase;
 
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluationException;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryReportPlan;
+import org.hackystat.telemetry.analyzer.language.ast.Constant;
+import org.hackystat.telemetry.analyzer.language.ast.StringConstant;
 import org.hackystat.telemetry.analyzer.language.ast.TelemetryReportDefinition;
 import org.hackystat.telemetry.analyzer.language.parser.TelemetryLanguageParser;
 import org.hackystat.sensorbase.resource.users.jaxb.User;
@@ -64,4 +68,53 @@ public class TestTelemetryReportDefinitionInfo extends TestCase {
     assertEquals(name, def.getName());
     assertEquals("title", def.getTitle());
   }
+
+  /**
+   * Tests that the report plan passes the values of the report's variables to its charts.
+   * 
+   * @throws Exception If test fails.
+   */
+  public void testReportPlan() throws Exception {
+    String defString = "report name(t) = {\"title\", MyChart(t, \"c\"), MyChart2()};";
+    TelemetryReportDefinitionInfo defInfo = new TelemetryReportDefinitionInfo(defString, null, 
+        ShareScope.getPrivateShareScope());
+    TelemetryReportPlan plan = defInfo.getReportPlan();
+    assertEquals(2, plan.getChartCount());
+    assertEquals("MyChart", plan.getChartName(0));
+    assertEquals("MyChart2", plan.getChartName(1));
+    Constant[] values = plan.getChartValues(0, new Constant[] {new StringConstant("v")});
+    assertEquals(2, values.length);
+    assertEquals("v", values[0].getValueString());
+    assertEquals("c", values[1].getValueString());
+    assertEquals(0, plan.getChartValues(1, new Constant[] {new StringConstant("v")}).length);
+  }
+
+  /**
+   * Tests that each request for the plan of a definition that cannot be compiled throws a new
+   * exception, which wraps the one raised when the definition was compiled.
+   * 
+   * @throws Exception If test fails.
+   */
+  public void testCompileError() throws Exception {
+    String defString = "report name(t, t) = {\"title\", MyChart(t)};";
+    TelemetryReportDefinitionInfo defInfo = new TelemetryReportDefinitionInfo(defString, null, 
+        ShareScope.getPrivateShareScope());
+    TelemetryEvaluationException first = null;
+    try {
+      defInfo.getReportPlan();
+      fail("Duplicated variables should throw an exception.");
+    }
+    catch (TelemetryEvaluationException e) {
+      first = e;
+    }
+    try {
+      defInfo.getReportPlan();
+      fail("Duplicated variables should throw an exception.");
+    }
+    catch (TelemetryEvaluationException e) {
+      assertNotSame("Checking a new exception per call", first, e);
+      assertSame("Checking the cause", first.getCause(), e.getCause());
+      assertEquals("Checking the message", first.getMessage(), e.getMessage());
+    }
+  }
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package org.hackystat.telemetry.analyzer.evaluator;
+
+import org.hackystat.telemetry.analyzer.language.ast.Constant;
+import org.hackystat.telemetry.analyzer.language.ast.Expression;
+import org.hackystat.telemetry.analyzer.language.ast.Variable;
+
+/**
+ * The compiled parameters of a reference from one definition to another, such as a streams
+ * reference in a chart. Each parameter is either a constant or the position of one of the
+ * referring definition's variables, so binding the parameters is a matter of array lookups.
+ *
+ * @author (Cedric) Qin ZHANG
+ */
+class ParameterBinding {
+
+  /** The constant parameters, with null for each variable parameter. */
+  private final Constant[] constants;
+  /** The position of each variable parameter among the variables, or -1 for a constant. */
+  private final int[] slots;
+  /** The variables of the referring definition. */
+  private final Variable[] variables;
+
+  /**
+   * Compiles the parameters of a reference.
+   *
+   * @param parameters The parameters, each a <code>Constant</code> or <code>Variable</code>.
+   * @param variables The variables of the referring definition.
+   * @throws TelemetryEvaluationException If a parameter is a variable the referring definition
+   *         does not have, or is neither a constant nor a variable.
+   */
+  ParameterBinding(Expression[] parameters, Variable[] variables)
+      throws TelemetryEvaluationException {
+    this.variables = variables;
+    this.constants = new Constant[parameters.length];
+    this.slots = new int[parameters.length];
+    for (int i = 0; i < parameters.length; i++) {
+      this.slots[i] = -1;
+      if (parameters[i] instanceof Constant) {
+        this.constants[i] = (Constant) parameters[i];
+      }
+      else if (parameters[i] instanceof Variable) {
+        this.slots[i] = getSlot((Variable) parameters[i]);
+      }
+      else {
+        throw new TelemetryEvaluationException("Unknown parameter type "
+            + parameters[i].getClass().getName());
+      }
+    }
+  }
+
+  /**
+   * Returns the position of a variable among the variables of the referring definition.
+   *
+   * @param variable The variable.
+   * @return The position.
+   * @throws TelemetryEvaluationException If there is no such variable.
+   */
+  private int getSlot(Variable variable) throws TelemetryEvaluationException {
+    for (int i = 0; i < this.variables.length; i++) {
+      if (this.variables[i].getName().equals(variable.getName())) {
+        return i;
+      }
+    }
+    throw new TelemetryEvaluationException("Variable " + variable.getName() + " not found.");
+  }
+
+  /**
+   * Gets the number of parameters.
+   *
+   * @return The number of parameters.
+   */
+  int size() {
+    return this.slots.length;
+  }
+
+  /**
+   * Binds the parameters to the values of the referring definition's variables.
+   *
+   * @param values The value of each variable of the referring definition.
+   * @return The value of each parameter.
+   * @throws TelemetryEvaluationException If a variable used as a parameter has no value.
+   */
+  Constant[] bind(Constant[] values) throws TelemetryEvaluationException {
+    Constant[] result = new Constant[this.slots.length];
+    for (int i = 0; i < result.length; i++) {
+      int slot = this.slots[i];
+      if (slot < 0) {
+        result[i] = this.constants[i];
+      }
+      else if (values[slot] == null) {
+        throw new TelemetryEvaluationException("Variable " + this.variables[slot].getName()
+            + " not found.");
+      }
+      else {
+        result[i] = values[slot];
+      }
+    }
+    return result;
+  }
+}
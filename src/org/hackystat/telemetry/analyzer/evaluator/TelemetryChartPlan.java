@@ -0,0 +1,148 @@
+package org.hackystat.telemetry.analyzer.evaluator;
+
+import java.util.List;
+
+import org.hackystat.telemetry.analyzer.language.ast.Constant;
+import org.hackystat.telemetry.analyzer.language.ast.TelemetryChartDefinition;
+
+/**
+ * The compiled form of a telemetry chart definition. For each sub-chart, it holds the names of
+ * the streams and y-axis definitions the sub-chart refers to, and the compiled parameters
+ * passed to each of them. The referenced definitions are looked up by name at evaluation, so
+ * that a chart always uses their current versions. Plans are immutable and may be shared by
+ * any number of concurrent evaluations.
+ *
+ * @author (Cedric) Qin ZHANG
+ */
+public class TelemetryChartPlan {
+
+  /** The chart definition. */
+  private final TelemetryChartDefinition definition;
+  /** The sub-charts, in declared order. */
+  private final SubChart[] subCharts;
+
+  /**
+   * Compiles a chart definition.
+   *
+   * @param definition The chart definition.
+   * @throws TelemetryEvaluationException If the definition is not valid.
+   */
+  private TelemetryChartPlan(TelemetryChartDefinition definition)
+      throws TelemetryEvaluationException {
+    this.definition = definition;
+    List<TelemetryChartDefinition.SubChartDefinition> subChartDefs = definition.getSubCharts();
+    this.subCharts = new SubChart[subChartDefs.size()];
+    for (int i = 0; i < this.subCharts.length; i++) {
+      this.subCharts[i] = new SubChart(subChartDefs.get(i), definition);
+    }
+  }
+
+  /**
+   * Compiles a telemetry chart definition.
+   *
+   * @param definition The telemetry chart definition.
+   * @return The plan.
+   * @throws TelemetryEvaluationException If the definition is not valid, for example because
+   *         it passes a variable it does not have to a streams definition.
+   */
+  public static TelemetryChartPlan compile(TelemetryChartDefinition definition)
+      throws TelemetryEvaluationException {
+    TelemetryStreamsPlan.checkVariables(definition.getVariables());
+    return new TelemetryChartPlan(definition);
+  }
+
+  /**
+   * Gets the telemetry chart definition from which this plan was compiled.
+   *
+   * @return The definition.
+   */
+  public TelemetryChartDefinition getDefinition() {
+    return this.definition;
+  }
+
+  /**
+   * Returns the values of the chart's variables from a resolver, in declared order.
+   *
+   * @param variableResolver The variable resolver.
+   * @return The values, with null for each variable the resolver does not have.
+   */
+  Constant[] bind(VariableResolver variableResolver) {
+    return TelemetryStreamsPlan.bind(this.definition.getVariables(), variableResolver);
+  }
+
+  /**
+   * Gets the sub-charts, in declared order.
+   *
+   * @return The sub-charts.
+   */
+  SubChart[] getSubCharts() {
+    return this.subCharts;
+  }
+
+  /**
+   * The compiled form of a sub-chart.
+   */
+  static class SubChart {
+    /** The name of the streams definition. */
+    private final String streamsName;
+    /** The parameters passed to the streams definition. */
+    private final ParameterBinding streamsParameters;
+    /** The name of the y-axis definition. */
+    private final String yAxisName;
+    /** The parameters passed to the y-axis definition. */
+    private final ParameterBinding yAxisParameters;
+
+    /**
+     * Compiles a sub-chart.
+     *
+     * @param subChart The sub-chart definition.
+     * @param chartDefinition The chart definition.
+     * @throws TelemetryEvaluationException If the sub-chart is not valid.
+     */
+    SubChart(TelemetryChartDefinition.SubChartDefinition subChart,
+        TelemetryChartDefinition chartDefinition) throws TelemetryEvaluationException {
+      this.streamsName = subChart.getStreamsReference().getName();
+      this.streamsParameters = new ParameterBinding(
+          subChart.getStreamsReference().getParameters(), chartDefinition.getVariables());
+      this.yAxisName = subChart.getYAxisReference().getName();
+      this.yAxisParameters = new ParameterBinding(
+          subChart.getYAxisReference().getParameters(), chartDefinition.getVariables());
+    }
+
+    /**
+     * Gets the name of the streams definition.
+     *
+     * @return The name.
+     */
+    String getStreamsName() {
+      return this.streamsName;
+    }
+
+    /**
+     * Gets the parameters passed to the streams definition.
+     *
+     * @return The parameters.
+     */
+    ParameterBinding getStreamsParameters() {
+      return this.streamsParameters;
+    }
+
+    /**
+     * Gets the name of the y-axis definition.
+     *
+     * @return The name.
+     */
+    String getYAxisName() {
+      return this.yAxisName;
+    }
+
+    /**
+     * Gets the parameters passed to the y-axis definition.
+     *
+     * @return The parameters.
+     */
+    ParameterBinding getYAxisParameters() {
+      return this.yAxisParameters;
+    }
+  }
+}
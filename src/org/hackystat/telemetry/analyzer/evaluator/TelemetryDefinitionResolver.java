@@ -73,6 +73,48 @@ public class TelemetryDefinitionResolver {
     }
   }  
 
+  /**
+   * Resolves compiled telemetry streams definition by name.
+   * 
+   * @param name Telemetry streams definition name.
+   * @return The compiled telemetry streams object.
+   * @throws TelemetryEvaluationException If the telemetry streams object does not exist, or
+   *         cannot be compiled.
+   */
+  public TelemetryStreamsPlan resolveStreamsPlan(String name)
+      throws TelemetryEvaluationException {
+    TelemetryDefinitionInfo defInfo = this.manager.get(this.user, name, true,
+        TelemetryDefinitionType.STREAMS);
+    if (defInfo == null) {
+      throw new TelemetryEvaluationException("Unable to find definition for telemetry streams '"
+          + name + "'.");
+    }
+    else {
+      return ((TelemetryStreamsDefinitionInfo) defInfo).getStreamsPlan();
+    }
+  }
+  
+  /**
+   * Resolves compiled telemetry chart definition by name.
+   * 
+   * @param name Telemetry chart definition name.
+   * @return The compiled telemetry chart object.
+   * @throws TelemetryEvaluationException If the telemetry chart object does not exist, or 
+   *         cannot be compiled.
+   */
+  public TelemetryChartPlan resolveChartPlan(String name)
+      throws TelemetryEvaluationException {
+    TelemetryDefinitionInfo defInfo = this.manager.get(this.user, name, true,
+        TelemetryDefinitionType.CHART);
+    if (defInfo == null) {
+      throw new TelemetryEvaluationException("Unable to find definition for telemetry chart '"
+          + name + "'.");
+    }
+    else {
+      return ((TelemetryChartDefinitionInfo) defInfo).getChartPlan();
+    }
+  }  
+
   /**
    * Resolves telemetry chart y-axis definition by name.
    * 
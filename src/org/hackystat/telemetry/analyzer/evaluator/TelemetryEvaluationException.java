@@ -29,4 +29,14 @@ public class TelemetryEvaluationException extends Exception {
   public TelemetryEvaluationException(Throwable throwable) {
     super(throwable);
   }
+
+  /**
+   * Constructs this instance with an exception message and a wrapped exception.
+   * 
+   * @param message The exception message.
+   * @param throwable The wrapped exception.
+   */
+  public TelemetryEvaluationException(String message, Throwable throwable) {
+    super(message, throwable);
+  }
 }
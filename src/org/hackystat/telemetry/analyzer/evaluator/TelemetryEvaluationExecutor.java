@@ -0,0 +1,210 @@
+package org.hackystat.telemetry.analyzer.evaluator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.hackystat.telemetry.service.server.DaemonThreadFactory;
+import org.hackystat.telemetry.service.server.ServerProperties;
+
+/**
+ * Provides a singleton thread pool on which <code>TelemetryEvaluator</code> evaluates the
+ * independent parts of a definition, such as the sub-charts of a chart, concurrently.
+ * <p>
+ * The thread that calls <code>invokeAll</code> takes part in the work: it waits for the tasks
+ * in order, and runs any task that no pool thread has started yet itself. Thus a task may
+ * safely call <code>invokeAll</code> in turn (as a report's charts do for their sub-charts)
+ * without risk of every pool thread waiting on tasks that cannot be run.
+ * <p>
+ * <code>invokeEach</code> instead hands each result to a listener as soon as its task
+ * finishes. Its calling thread only waits and delivers results, and the tasks it runs may 
+ * call <code>invokeAll</code>, whose callers make progress on their own.
+ * <p>
+ * The pool size is taken from the ServerProperties EVALUATOR_THREADS system property, and the
+ * number of charts of a single report or batch request evaluated at once from the 
+ * REPORT_CONCURRENCY system property, when the pool is first used.
+ * 
+ * @author Philip Johnson
+ */
+class TelemetryEvaluationExecutor {
+
+  /** The singleton. */
+  private static TelemetryEvaluationExecutor theInstance = new TelemetryEvaluationExecutor();
+
+  /** The pool of threads shared by all evaluations. */
+  private final ExecutorService executor;
+  /** The maximum number of charts of a single report evaluated at once. */
+  private final int reportConcurrency;
+
+  /**
+   * Gets the singleton instance of this class.
+   *
+   * @return An instance of this class.
+   */
+  static TelemetryEvaluationExecutor getInstance() {
+    return theInstance;
+  }
+
+  /**
+   * Creates the thread pool using the sizes found in the system properties.
+   */
+  private TelemetryEvaluationExecutor() {
+    int threads = ServerProperties.getPositiveInt(
+        ServerProperties.EVALUATOR_THREADS, ServerProperties.DEFAULT_EVALUATOR_THREADS);
+    this.reportConcurrency = ServerProperties.getPositiveInt(
+        ServerProperties.REPORT_CONCURRENCY, ServerProperties.DEFAULT_REPORT_CONCURRENCY);
+    this.executor = Executors.newFixedThreadPool(threads, 
+        new DaemonThreadFactory("telemetry-evaluator"));
+  }
+
+  /**
+   * Returns the maximum number of charts of a single report or batch request to evaluate at 
+   * once.
+   * 
+   * @return The report concurrency limit.
+   */
+  int getReportConcurrency() {
+    return this.reportConcurrency;
+  }
+
+  /**
+   * Runs the given tasks concurrently and returns their results in the same order as the
+   * tasks. At most maxConcurrent tasks, including the one run by the calling thread, are 
+   * in progress at any time. If any task fails, then the tasks not yet started are cancelled,
+   * and the failure of the earliest failing task in the list is thrown, regardless of the 
+   * order in which the tasks actually finished.
+   * 
+   * @param <T> The type of the task results.
+   * @param tasks The tasks.
+   * @param maxConcurrent The maximum number of tasks in progress at once.
+   * @return The results, one per task.
+   * @throws TelemetryEvaluationException If any task fails.
+   */
+  <T> List<T> invokeAll(List<Callable<T>> tasks, int maxConcurrent) 
+      throws TelemetryEvaluationException {
+    List<FutureTask<T>> futures = new ArrayList<FutureTask<T>>(tasks.size());
+    for (Callable<T> task : tasks) {
+      futures.add(new FutureTask<T>(task));
+    }
+    // The calling thread accounts for one of the tasks in progress.
+    int window = Math.max(maxConcurrent, 1);
+    for (int i = 1; (i < window) && (i < futures.size()); i++) {
+      this.executor.execute(futures.get(i));
+    }
+    List<T> results = new ArrayList<T>(futures.size());
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        FutureTask<T> future = futures.get(i);
+        // Does nothing if a pool thread has already started this task.
+        future.run();
+        results.add(future.get());
+        if (window < futures.size() - i) {
+          this.executor.execute(futures.get(i + window));
+        }
+      }
+      return results;
+    }
+    catch (ExecutionException e) {
+      for (FutureTask<T> future : futures) {
+        future.cancel(false);
+      }
+      Throwable cause = e.getCause();
+      if (cause instanceof TelemetryEvaluationException) {
+        throw (TelemetryEvaluationException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new TelemetryEvaluationException(cause);
+    }
+    catch (InterruptedException e) {
+      for (FutureTask<T> future : futures) {
+        future.cancel(false);
+      }
+      Thread.currentThread().interrupt();
+      throw new TelemetryEvaluationException(e);
+    }
+  }
+
+  /**
+   * Runs the given tasks concurrently and passes each result to the listener as soon as its
+   * task finishes, in the order in which the tasks finish. At most maxConcurrent tasks are in
+   * progress at any time. Unlike <code>invokeAll</code>, a failing task does not affect the
+   * others: its failure is passed to the listener, and the remaining tasks go on. 
+   * <p>
+   * The calling thread runs no task itself, so that no result waits for an unrelated task to
+   * finish before it is delivered. It makes all of the calls to the listener. If the listener
+   * throws an exception, the tasks not yet started are cancelled and the exception is thrown.
+   * 
+   * @param <T> The type of the task results.
+   * @param tasks The tasks.
+   * @param maxConcurrent The maximum number of tasks in progress at once.
+   * @param listener The listener that receives the results.
+   * @throws TelemetryEvaluationException If the calling thread is interrupted.
+   * @throws IOException If the listener cannot deliver a result.
+   */
+  <T> void invokeEach(List<Callable<T>> tasks, int maxConcurrent, 
+      TelemetryEvaluationListener<T> listener) throws TelemetryEvaluationException, IOException {
+    // Each task adds its index to the queue when it finishes.
+    final BlockingQueue<Integer> finished = new LinkedBlockingQueue<Integer>();
+    List<FutureTask<T>> futures = new ArrayList<FutureTask<T>>(tasks.size());
+    for (int i = 0; i < tasks.size(); i++) {
+      final Integer index = Integer.valueOf(i);
+      futures.add(new FutureTask<T>(tasks.get(i)) {
+        @Override
+        protected void done() {
+          finished.add(index);
+        }
+      });
+    }
+    int started = Math.min(Math.max(maxConcurrent, 1), futures.size());
+    for (int i = 0; i < started; i++) {
+      this.executor.execute(futures.get(i));
+    }
+    boolean delivered = false;
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        int index = finished.take().intValue();
+        if (started < futures.size()) {
+          this.executor.execute(futures.get(started++));
+        }
+        T result;
+        try {
+          result = futures.get(index).get();
+        }
+        catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          listener.failed(index, (cause instanceof Exception) ? (Exception) cause 
+              : new TelemetryEvaluationException(cause));
+          continue;
+        }
+        listener.evaluated(index, result);
+      }
+      delivered = true;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TelemetryEvaluationException(e);
+    }
+    finally {
+      if (!delivered) {
+        for (FutureTask<T> future : futures) {
+          future.cancel(false);
+        }
+      }
+    }
+  }
+}
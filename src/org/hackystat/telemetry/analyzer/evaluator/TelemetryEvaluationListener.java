@@ -0,0 +1,39 @@
+package org.hackystat.telemetry.analyzer.evaluator;
+
+import java.io.IOException;
+
+/**
+ * Receives the results of independent evaluations, such as the charts of a batch request or
+ * of a report, one at a time and in the order in which they finish. The evaluations are
+ * identified by their position in the list of evaluations that was started.
+ * <p>
+ * All of the methods are called by the thread that started the evaluations, so
+ * implementations need not be thread-safe. They typically write each result to a client as
+ * soon as it is available.
+ *
+ * @param <T> The type of the evaluation results.
+ *
+ * @author Philip Johnson
+ */
+public interface TelemetryEvaluationListener<T> {
+
+  /**
+   * Called when an evaluation has succeeded.
+   *
+   * @param index The position of the evaluation in the list.
+   * @param result The result of the evaluation.
+   * @throws IOException If the result cannot be delivered, in which case the evaluations not
+   * yet started are cancelled.
+   */
+  void evaluated(int index, T result) throws IOException;
+
+  /**
+   * Called when an evaluation has failed. The other evaluations go on.
+   *
+   * @param index The position of the evaluation in the list.
+   * @param cause The reason for the failure.
+   * @throws IOException If the failure cannot be delivered, in which case the evaluations not
+   * yet started are cancelled.
+   */
+  void failed(int index, Exception cause) throws IOException;
+}
@@ -1,23 +1,21 @@
 package org.hackystat.telemetry.analyzer.evaluator;
 
-import org.hackystat.telemetry.analyzer.function.TelemetryFunctionManager;
-import org.hackystat.telemetry.analyzer.language.ast.ChartReference;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 import org.hackystat.telemetry.analyzer.language.ast.Constant;
 import org.hackystat.telemetry.analyzer.language.ast.Expression;
-import org.hackystat.telemetry.analyzer.language.ast.FunctionCall;
-import org.hackystat.telemetry.analyzer.language.ast.NumberConstant;
-import org.hackystat.telemetry.analyzer.language.ast.ReducerCall;
-import org.hackystat.telemetry.analyzer.language.ast.StreamsReference;
 import org.hackystat.telemetry.analyzer.language.ast.StringConstant;
 import org.hackystat.telemetry.analyzer.language.ast.TelemetryChartDefinition;
 import org.hackystat.telemetry.analyzer.language.ast.TelemetryChartYAxisDefinition;
 import org.hackystat.telemetry.analyzer.language.ast.TelemetryReportDefinition;
 import org.hackystat.telemetry.analyzer.language.ast.TelemetryStreamsDefinition;
 import org.hackystat.telemetry.analyzer.language.ast.Variable;
-import org.hackystat.telemetry.analyzer.language.ast.YAxisReference;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerManager;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
 import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.utilities.time.interval.Interval;
@@ -25,6 +23,34 @@ import org.hackystat.utilities.time.interval.Interval;
 /**
  * Provides an evaluation function for Telemetry, in which a definition is evaluated with 
  * respect to a set of variables and their values, a Project, and an Interval. 
+ * <p>
+ * Each evaluation shares a single <code>TelemetryReducerContext</code> among all of the reducers
+ * it invokes, so that DailyProjectData needed by more than one stream, sub-chart, or chart is
+ * only retrieved once. Callers that evaluate several related definitions may supply their own
+ * context in order to extend this sharing across evaluations.
+ * <p>
+ * Every reducer call in an expression is started before any function in the expression is
+ * computed, so that the reducers run concurrently and an expression such as
+ * <code>Add(DevTime(...), Div(Commit(...), Build(...)))</code> takes about as long as its
+ * slowest reducer. The functions then combine the reducer results as they become available.
+ * Likewise, the sub-charts of a chart are evaluated concurrently on the threads of
+ * <code>TelemetryEvaluationExecutor</code>. The chart object always lists its sub-charts in
+ * the order in which they are declared, and if several sub-charts fail, the error reported is
+ * that of the first one declared. The charts of a report are evaluated in the same way, up to
+ * the report concurrency limit, and all of them share the report's reducer context. Unrelated
+ * chart evaluations, such as those of a batch request, may be run in the same way with
+ * <code>evaluateEach</code>, which delivers each chart as soon as it is ready.
+ * <p>
+ * Each reducer call and function call is identified by its name and the values of its
+ * parameters once all variables are bound. Its value is memoized in the reducer context, so
+ * an identical call reached through several streams, sub-charts, or charts of the same
+ * evaluation is computed only once, and its result is shared by all of them.
+ * <p>
+ * Definitions are evaluated through their compiled plans: <code>TelemetryStreamsPlan</code>,
+ * <code>TelemetryChartPlan</code> and <code>TelemetryReportPlan</code>. The definition manager
+ * compiles each definition once when it is loaded, and the resolver returns the compiled
+ * plans, so an evaluation only binds the variable values and runs the plans. Evaluating a
+ * definition object directly compiles it first.
  * 
  * @author (Cedric) Qin ZHANG
  */
@@ -54,9 +80,75 @@ public class TelemetryEvaluator {
       VariableResolver variableResolver, Project project, DailyProjectDataClient dpdClient,
       Interval interval)
       throws TelemetryEvaluationException {
+    return evaluate(streamsDefinition, variableResolver, project, dpdClient, interval, 
+        new TelemetryReducerContext());
+  }
+
+  /**
+   * Evaluates a telemetry streams definition to produce a 
+   * <code>TelemetryStreamsObject</code> object, using the given reducer context.
+   * 
+   * @param streamsDefinition The telemetry streams definition.
+   * @param variableResolver The variable resolver.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * @param context The reducer context shared by this evaluation.
+   * 
+   * @return An instance of a <code>TelemetryStreamsObject</code> object.  
+   * 
+   * @throws TelemetryEvaluationException If there is any error during the evaluation process.
+   */
+  public static TelemetryStreamsObject evaluate(TelemetryStreamsDefinition streamsDefinition, 
+      VariableResolver variableResolver, Project project, DailyProjectDataClient dpdClient,
+      Interval interval, TelemetryReducerContext context)
+      throws TelemetryEvaluationException {
+    TelemetryStreamsPlan plan = TelemetryStreamsPlan.compile(streamsDefinition);
+    return evaluate(plan, plan.bind(variableResolver), project, dpdClient, interval, context);
+  }
+
+  /**
+   * Evaluates a compiled telemetry streams definition to produce a 
+   * <code>TelemetryStreamsObject</code> object.
+   * 
+   * @param streamsPlan The compiled telemetry streams definition.
+   * @param values The value of each variable of the definition, in declared order.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * 
+   * @return An instance of a <code>TelemetryStreamsObject</code> object.  
+   * 
+   * @throws TelemetryEvaluationException If there is any error during the evaluation process.
+   */
+  public static TelemetryStreamsObject evaluate(TelemetryStreamsPlan streamsPlan, 
+      Constant[] values, Project project, DailyProjectDataClient dpdClient, Interval interval)
+      throws TelemetryEvaluationException {
+    return evaluate(streamsPlan, values, project, dpdClient, interval, 
+        new TelemetryReducerContext());
+  }
+
+  /**
+   * Evaluates a compiled telemetry streams definition to produce a 
+   * <code>TelemetryStreamsObject</code> object, using the given reducer context.
+   * 
+   * @param streamsPlan The compiled telemetry streams definition.
+   * @param values The value of each variable of the definition, in declared order.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * @param context The reducer context shared by this evaluation.
+   * 
+   * @return An instance of a <code>TelemetryStreamsObject</code> object.  
+   * 
+   * @throws TelemetryEvaluationException If there is any error during the evaluation process.
+   */
+  public static TelemetryStreamsObject evaluate(TelemetryStreamsPlan streamsPlan, 
+      Constant[] values, Project project, DailyProjectDataClient dpdClient, Interval interval,
+      TelemetryReducerContext context) throws TelemetryEvaluationException {
     
-    Object result = resolveExpression(streamsDefinition.getExpression(), 
-                                      variableResolver, project, dpdClient, interval);
+    TelemetryStreamsDefinition streamsDefinition = streamsPlan.getDefinition();
+    Object result = streamsPlan.evaluate(values, project, dpdClient, interval, context);
     if (! (result instanceof TelemetryStreamCollection)) {
       throw new TelemetryEvaluationException("Telemetry streams " + streamsDefinition.getName()
           + " does not evaluate to a TelemetryStreamCollection. "
@@ -68,10 +160,13 @@ public class TelemetryEvaluator {
     Variable[] variables = streamsDefinition.getVariables();
     if (variables.length > 0) {
       categorySeriesNamePrefix.append('<');
-      categorySeriesNamePrefix.append(variableResolver.resolve(variables[0]).getValueString());
-      for (int i = 1; i < variables.length; i++) {
-        categorySeriesNamePrefix.append(", ");
-        categorySeriesNamePrefix.append(variableResolver.resolve(variables[i]).getValueString());
+      for (int i = 0; i < variables.length; i++) {
+        if (values[i] == null) {
+          throw new TelemetryEvaluationException("Variable " + variables[i].getName() 
+              + " not found.");
+        }
+        categorySeriesNamePrefix.append((i > 0) ? ", " : "");
+        categorySeriesNamePrefix.append(values[i].getValueString());
       }
       categorySeriesNamePrefix.append('>');
     }
@@ -104,108 +199,189 @@ public class TelemetryEvaluator {
       TelemetryDefinitionResolver telemetryDefinitionResolver, VariableResolver variableResolver, 
       Project project, DailyProjectDataClient dpdClient, Interval interval) 
   throws TelemetryEvaluationException {
+    return evaluate(chartDefinition, telemetryDefinitionResolver, variableResolver, project,
+        dpdClient, interval, new TelemetryReducerContext());
+  }
+
+  /**
+   * Evaluates a telemetry chart definition to <code>TeemetryChartObject</code> object, using 
+   * the given reducer context for all of its sub-charts.
+   * 
+   * @param chartDefinition The telemetry chart definition.
+   * @param telemetryDefinitionResolver The telemetry definition resolver.
+   * @param variableResolver The variable resolver.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * @param context The reducer context shared by this evaluation.
+   * 
+   * @return An instance of <code>TelemetryChartObject</code> object.  
+   * 
+   * @throws TelemetryEvaluationException If there is any error during the evaluation process.
+   */
+  public static TelemetryChartObject evaluate(TelemetryChartDefinition chartDefinition, 
+      TelemetryDefinitionResolver telemetryDefinitionResolver, VariableResolver variableResolver,
+      Project project, DailyProjectDataClient dpdClient, Interval interval, 
+      TelemetryReducerContext context) throws TelemetryEvaluationException {
+    TelemetryChartPlan plan = TelemetryChartPlan.compile(chartDefinition);
+    return evaluate(plan, telemetryDefinitionResolver, plan.bind(variableResolver), project,
+        dpdClient, interval, context);
+  }
+
+  /**
+   * Evaluates a compiled telemetry chart definition to <code>TeemetryChartObject</code> object.
+   * 
+   * @param chartPlan The compiled telemetry chart definition.
+   * @param telemetryDefinitionResolver The telemetry definition resolver.
+   * @param values The value of each variable of the chart, in declared order.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * 
+   * @return An instance of <code>TelemetryChartObject</code> object.  
+   * 
+   * @throws TelemetryEvaluationException If there is any error during the evaluation process.
+   */
+  public static TelemetryChartObject evaluate(TelemetryChartPlan chartPlan, 
+      TelemetryDefinitionResolver telemetryDefinitionResolver, Constant[] values, 
+      Project project, DailyProjectDataClient dpdClient, Interval interval) 
+  throws TelemetryEvaluationException {
+    return evaluate(chartPlan, telemetryDefinitionResolver, values, project, dpdClient, 
+        interval, new TelemetryReducerContext());
+  }
+
+  /**
+   * Evaluates a compiled telemetry chart definition to <code>TeemetryChartObject</code> object, 
+   * using the given reducer context for all of its sub-charts.
+   * 
+   * @param chartPlan The compiled telemetry chart definition.
+   * @param telemetryDefinitionResolver The telemetry definition resolver.
+   * @param values The value of each variable of the chart, in declared order.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * @param context The reducer context shared by this evaluation.
+   * 
+   * @return An instance of <code>TelemetryChartObject</code> object.  
+   * 
+   * @throws TelemetryEvaluationException If there is any error during the evaluation process.
+   */
+  public static TelemetryChartObject evaluate(TelemetryChartPlan chartPlan, 
+      final TelemetryDefinitionResolver telemetryDefinitionResolver, final Constant[] values, 
+      final Project project, final DailyProjectDataClient dpdClient, final Interval interval, 
+      final TelemetryReducerContext context) throws TelemetryEvaluationException {
     
-    TelemetryChartObject telemetryChartObject = new TelemetryChartObject(chartDefinition);
-    
-    for (TelemetryChartDefinition.SubChartDefinition subChart : chartDefinition.getSubCharts()) {
-      
-      //find the TelmetryStreamsDefinition object
-      StreamsReference streamsRef = subChart.getStreamsReference();
-      TelemetryStreamsDefinition streamsDef 
-          = telemetryDefinitionResolver.resolveStreamsDefinition(streamsRef.getName());     
-      //prepares a variable resolver for the TelemetryStreamsDefinition object
-      Expression[] streamsRefParameters = streamsRef.getParameters();
-      Variable[] streamsVariables = streamsDef.getVariables();
-      if (streamsVariables.length != streamsRefParameters.length) {
-        throw new TelemetryEvaluationException("Error in chart definition detected. The streams '"
-          + streamsDef.getName() + "' the chart relies on has " + streamsVariables.length
-          + " parameter(s), but the chart has only supplied " + streamsRefParameters.length 
-          + " parameter value(s).");
-      }
-      VariableResolver streamsVariableResolver = new VariableResolver();
-      for (int j = 0; j < streamsVariables.length; j++) {
-        Expression streamsRefParameter = streamsRefParameters[j];
-        if (streamsRefParameter instanceof Constant) {
-          streamsVariableResolver.add(streamsVariables[j], (Constant) streamsRefParameter);
-        }
-        else if (streamsRefParameter instanceof Variable) {
-          Constant constant = variableResolver.resolve((Variable) streamsRefParameter);
-          streamsVariableResolver.add(streamsVariables[j], constant);          
-        }
-        else {
-          throw new RuntimeException("Unknow parameter type.");          
+    // Evaluate the sub-charts concurrently, but keep them in their declared order.
+    List<Callable<TelemetryChartObject.SubChart>> tasks = 
+      new ArrayList<Callable<TelemetryChartObject.SubChart>>();
+    for (final TelemetryChartPlan.SubChart subChart : chartPlan.getSubCharts()) {
+      tasks.add(new Callable<TelemetryChartObject.SubChart>() {
+        public TelemetryChartObject.SubChart call() throws TelemetryEvaluationException {
+          return evaluateSubChart(subChart, telemetryDefinitionResolver, values, project, 
+              dpdClient, interval, context);
         }
-      }
-      //get TelemetryStreamsObject
-      TelemetryStreamsObject streamsObject 
-          = TelemetryEvaluator.evaluate(streamsDef, streamsVariableResolver, project, dpdClient, 
-              interval);
+      });
+    }
+    TelemetryChartObject telemetryChartObject = 
+      new TelemetryChartObject(chartPlan.getDefinition());
+    for (TelemetryChartObject.SubChart subChart 
+        : TelemetryEvaluationExecutor.getInstance().invokeAll(tasks, Integer.MAX_VALUE)) {
+      telemetryChartObject.addSubChart(subChart);
+    }
+    return telemetryChartObject;
+  }
+
+  /**
+   * Evaluates a single sub-chart of a compiled telemetry chart definition.
+   * 
+   * @param subChart The compiled sub-chart.
+   * @param telemetryDefinitionResolver The telemetry definition resolver.
+   * @param values The value of each variable of the chart.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * @param context The reducer context shared by this evaluation.
+   * 
+   * @return The sub-chart.  
+   * 
+   * @throws TelemetryEvaluationException If there is any error during the evaluation process.
+   */
+  private static TelemetryChartObject.SubChart evaluateSubChart(
+      TelemetryChartPlan.SubChart subChart, TelemetryDefinitionResolver telemetryDefinitionResolver,
+      Constant[] values, Project project, DailyProjectDataClient dpdClient, Interval interval, 
+      TelemetryReducerContext context) throws TelemetryEvaluationException {
+
+    //find the compiled TelmetryStreamsDefinition object
+    TelemetryStreamsPlan streamsPlan 
+        = telemetryDefinitionResolver.resolveStreamsPlan(subChart.getStreamsName());     
+    TelemetryStreamsDefinition streamsDef = streamsPlan.getDefinition();
+    //binds the variables of the TelemetryStreamsDefinition object
+    ParameterBinding streamsParameters = subChart.getStreamsParameters();
+    Variable[] streamsVariables = streamsDef.getVariables();
+    if (streamsVariables.length != streamsParameters.size()) {
+      throw new TelemetryEvaluationException("Error in chart definition detected. The streams '"
+        + streamsDef.getName() + "' the chart relies on has " + streamsVariables.length
+        + " parameter(s), but the chart has only supplied " + streamsParameters.size() 
+        + " parameter value(s).");
+    }
+    //get TelemetryStreamsObject
+    TelemetryStreamsObject streamsObject = TelemetryEvaluator.evaluate(streamsPlan, 
+        streamsParameters.bind(values), project, dpdClient, interval, context);
     
-      
-      //find the YAxisDefinition object
-      YAxisReference yAxisRef = subChart.getYAxisReference();
-      TelemetryChartYAxisDefinition yAxisDef
-          = telemetryDefinitionResolver.resolveYAxisDefinition(yAxisRef.getName());
-      //prepares a variable resolver for the YAxisDefinition object
-      Expression[] yAxisRefParameters = yAxisRef.getParameters();
-      Variable[] yAxisVariables = yAxisDef.getVariables();
-      if (yAxisVariables.length != yAxisRefParameters.length) {
-        throw new TelemetryEvaluationException("Error in chart definition detected. The y-axis '"
-          + yAxisDef.getName() + "' the chart relies on has " + yAxisVariables.length
-          + " parameter(s), but the chart has only supplied " + yAxisRefParameters.length 
-          + " parameter value(s).");
-      }
-      VariableResolver yAxisVariableResolver = new VariableResolver();
-      for (int j = 0; j < yAxisVariables.length; j++) {
-        Expression yAxisRefParameter = yAxisRefParameters[j];
-        if (yAxisRefParameter instanceof Constant) {
-          yAxisVariableResolver.add(yAxisVariables[j], (Constant) yAxisRefParameter);
-        }
-        else if (yAxisRefParameter instanceof Variable) {
-          Constant constant = variableResolver.resolve((Variable) yAxisRefParameter);
-          yAxisVariableResolver.add(yAxisVariables[j], constant);          
-        }
-        else {
-          throw new RuntimeException("Unsupported parameter type in y-axis " + yAxisDef.getName());
+    //find the YAxisDefinition object
+    TelemetryChartYAxisDefinition yAxisDef
+        = telemetryDefinitionResolver.resolveYAxisDefinition(subChart.getYAxisName());
+    //binds the variables of the YAxisDefinition object
+    ParameterBinding yAxisParameters = subChart.getYAxisParameters();
+    Variable[] yAxisVariables = yAxisDef.getVariables();
+    if (yAxisVariables.length != yAxisParameters.size()) {
+      throw new TelemetryEvaluationException("Error in chart definition detected. The y-axis '"
+        + yAxisDef.getName() + "' the chart relies on has " + yAxisVariables.length
+        + " parameter(s), but the chart has only supplied " + yAxisParameters.size() 
+        + " parameter value(s).");
+    }
+    Constant[] yAxisValues = yAxisParameters.bind(values);
+    //get y-axis label value
+    String yAxisLabelValue = null;
+    Expression yAxisDefLabelParam = yAxisDef.getLabelParameter();
+    if (yAxisDefLabelParam instanceof StringConstant) {
+      yAxisLabelValue = ((StringConstant) yAxisDefLabelParam).getValue();
+    }
+    else if (yAxisDefLabelParam instanceof Variable) {
+      String name = ((Variable) yAxisDefLabelParam).getName();
+      Constant constant = null;
+      for (int i = 0; i < yAxisVariables.length; i++) {
+        if (yAxisVariables[i].getName().equals(name)) {
+          constant = yAxisValues[i];
         }
       }
-      //get y-axis label value
-      String yAxisLabelValue = null;
-      Expression yAxisDefLabelParam = yAxisDef.getLabelParameter();
-      if (yAxisDefLabelParam instanceof StringConstant) {
-        yAxisLabelValue = ((StringConstant) yAxisDefLabelParam).getValue();
+      if (constant == null) {
+        throw new TelemetryEvaluationException("Variable " + name + " not found.");
       }
-      else if (yAxisDefLabelParam instanceof Variable) {
-        Constant constant = yAxisVariableResolver.resolve((Variable) yAxisDefLabelParam);
-        if (constant instanceof StringConstant) {
-          yAxisLabelValue = ((StringConstant) constant).getValue();
-        }
-        else {
-          throw new TelemetryEvaluationException("Y-axis '" + yAxisDef.getName()
-              + "' variable '" + ((Variable) yAxisDefLabelParam).getName() 
-              + "' does not resolve to a string.");
-        }
+      if (constant instanceof StringConstant) {
+        yAxisLabelValue = ((StringConstant) constant).getValue();
       }
       else {
-        throw new RuntimeException("Unsupported parameter type in y-axis " + yAxisDef.getName());
+        throw new TelemetryEvaluationException("Y-axis '" + yAxisDef.getName()
+            + "' variable '" + name + "' does not resolve to a string.");
       }
+    }
+    else {
+      throw new RuntimeException("Unsupported parameter type in y-axis " + yAxisDef.getName());
+    }
 
-      //add the sub-chart
-      boolean isYAxisInteger = TelemetryChartYAxisDefinition.NUMBER_TYPE_INTEGER.equals(
-          yAxisDef.getNumberType());
-      Number lowerBound = null;
-      Number upperBound = null;
-      if (! yAxisDef.isAutoScale()) {
-        lowerBound = yAxisDef.getLowerBound();
-        upperBound = yAxisDef.getUpperBound();
-      }
-      TelemetryChartObject.YAxis yAxisObject = new TelemetryChartObject.YAxis(yAxisLabelValue,
-          isYAxisInteger, lowerBound, upperBound);
-      telemetryChartObject.addSubChart(new TelemetryChartObject.SubChart(
-          streamsObject, yAxisObject));
+    //create the sub-chart
+    boolean isYAxisInteger = TelemetryChartYAxisDefinition.NUMBER_TYPE_INTEGER.equals(
+        yAxisDef.getNumberType());
+    Number lowerBound = null;
+    Number upperBound = null;
+    if (! yAxisDef.isAutoScale()) {
+      lowerBound = yAxisDef.getLowerBound();
+      upperBound = yAxisDef.getUpperBound();
     }
-    
-    return telemetryChartObject;
+    TelemetryChartObject.YAxis yAxisObject = new TelemetryChartObject.YAxis(yAxisLabelValue,
+        isYAxisInteger, lowerBound, upperBound);
+    return new TelemetryChartObject.SubChart(streamsObject, yAxisObject);
   }
   
   /**
@@ -226,45 +402,190 @@ public class TelemetryEvaluator {
       TelemetryDefinitionResolver telemetryDefinitionResolver, VariableResolver variableResolver, 
       Project project, DailyProjectDataClient dpdClient, Interval interval) 
   throws TelemetryEvaluationException {
+    return evaluate(reportDefinition, telemetryDefinitionResolver, variableResolver, project,
+        dpdClient, interval, new TelemetryReducerContext());
+  }
+
+  /**
+   * Evaluates a telemetry report definition to <code>TelemetryReportObject</code> object, using 
+   * the given reducer context for all of its charts.
+   * 
+   * @param reportDefinition The telemetry report definition.
+   * @param telemetryDefinitionResolver The telemetry definition resolver.
+   * @param variableResolver The variable resolver.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * @param context The reducer context shared by this evaluation.
+   * 
+   * @return An instance of <code>TelemetryReportObject</code> object.  
+   * 
+   * @throws TelemetryEvaluationException If there is any error during the evaluation process.
+   */
+  public static TelemetryReportObject evaluate(TelemetryReportDefinition reportDefinition, 
+      TelemetryDefinitionResolver telemetryDefinitionResolver, VariableResolver variableResolver,
+      Project project, DailyProjectDataClient dpdClient, Interval interval, 
+      TelemetryReducerContext context) throws TelemetryEvaluationException {
+    TelemetryReportPlan plan = TelemetryReportPlan.compile(reportDefinition);
+    return evaluate(plan, telemetryDefinitionResolver, plan.bind(variableResolver), project,
+        dpdClient, interval, context);
+  }
+
+  /**
+   * Evaluates a compiled telemetry report definition to <code>TelemetryReportObject</code> 
+   * object, using the given reducer context for all of its charts.
+   * 
+   * @param reportPlan The compiled telemetry report definition.
+   * @param telemetryDefinitionResolver The telemetry definition resolver.
+   * @param values The value of each variable of the report, in declared order.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * @param context The reducer context shared by this evaluation.
+   * 
+   * @return An instance of <code>TelemetryReportObject</code> object.  
+   * 
+   * @throws TelemetryEvaluationException If there is any error during the evaluation process.
+   */
+  public static TelemetryReportObject evaluate(TelemetryReportPlan reportPlan, 
+      final TelemetryDefinitionResolver telemetryDefinitionResolver, final Constant[] values, 
+      final Project project, final DailyProjectDataClient dpdClient, final Interval interval, 
+      final TelemetryReducerContext context) throws TelemetryEvaluationException {
     
-    TelemetryReportObject telemetryReportObject = new TelemetryReportObject(reportDefinition);
-    for (ChartReference chartRef : reportDefinition.getChartReferences()) {
-      //find the TelmetryChartDefinition object
-      TelemetryChartDefinition chartDef 
-          = telemetryDefinitionResolver.resolveChartDefinition(chartRef.getName());
-      
-      //prepares a variable resolver for the TelemetryChartDefinition object
-      Expression[] chartRefParameters = chartRef.getParameters();
-      Variable[] chartVariables = chartDef.getVariables();
-      if (chartVariables.length != chartRefParameters.length) {
-        throw new TelemetryEvaluationException("Error in report definition detected. The chart '"
-          + chartDef.getName() + "' the chart relies on has " + chartVariables.length
-          + " parameter(s), but the chart has only supplied " + chartRefParameters.length 
-          + " parameter value(s).");
-      }
-      VariableResolver chartVariableResolver = new VariableResolver();
-      for (int j = 0; j < chartVariables.length; j++) {
-        Expression chartRefParameter = chartRefParameters[j];
-        if (chartRefParameter instanceof Constant) {
-          chartVariableResolver.add(chartVariables[j], (Constant) chartRefParameter);
-        }
-        else if (chartRefParameter instanceof Variable) {
-          Constant constant = variableResolver.resolve((Variable) chartRefParameter);
-          chartVariableResolver.add(chartVariables[j], constant);          
-        }
-        else {
-          throw new RuntimeException("Unknow parameter type.");          
-        }
-      }
-    
-      //generate telemetry chart object
-      TelemetryChartObject chartObject = TelemetryEvaluator.evaluate(chartDef, 
-          telemetryDefinitionResolver, chartVariableResolver, project, dpdClient, interval);  
+    // Evaluate the charts concurrently, up to the report concurrency limit, sharing the
+    // DailyProjectData retrieved through the context. Keep them in their declared order.
+    List<Callable<TelemetryChartObject>> tasks = makeChartReferenceTasks(reportPlan, 
+        telemetryDefinitionResolver, values, project, dpdClient, interval, context);
+    TelemetryEvaluationExecutor executor = TelemetryEvaluationExecutor.getInstance();
+    TelemetryReportObject telemetryReportObject = 
+      new TelemetryReportObject(reportPlan.getDefinition());
+    for (TelemetryChartObject chartObject 
+        : executor.invokeAll(tasks, executor.getReportConcurrency())) {
       telemetryReportObject.addChartObject(chartObject);
     }
-    
     return telemetryReportObject;
   }
+
+  /**
+   * Evaluates a compiled telemetry report definition, using the given reducer context for all
+   * of its charts, and passes each chart to the listener as soon as it has been evaluated.
+   * The charts are evaluated as by the other report evaluation methods, but are delivered in
+   * the order in which they finish, identified by their position in the report, so that none
+   * waits for a slower chart. A chart that fails is passed to the listener as a failure, and 
+   * the other charts are still evaluated.
+   * 
+   * @param reportPlan The compiled telemetry report definition.
+   * @param telemetryDefinitionResolver The telemetry definition resolver.
+   * @param values The value of each variable of the report, in declared order.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * @param context The reducer context shared by this evaluation.
+   * @param listener The listener, which is called by the calling thread only.
+   * 
+   * @throws TelemetryEvaluationException If the calling thread is interrupted.
+   * @throws IOException If the listener cannot deliver a chart.
+   */
+  public static void evaluate(TelemetryReportPlan reportPlan, 
+      TelemetryDefinitionResolver telemetryDefinitionResolver, Constant[] values, 
+      Project project, DailyProjectDataClient dpdClient, Interval interval, 
+      TelemetryReducerContext context, TelemetryEvaluationListener<TelemetryChartObject> listener)
+  throws TelemetryEvaluationException, IOException {
+    evaluateEach(makeChartReferenceTasks(reportPlan, telemetryDefinitionResolver, values, 
+        project, dpdClient, interval, context), listener);
+  }
+
+  /**
+   * Returns one task per chart of a compiled telemetry report definition, in declared order,
+   * which evaluates the chart.
+   * 
+   * @param reportPlan The compiled telemetry report definition.
+   * @param telemetryDefinitionResolver The telemetry definition resolver.
+   * @param values The value of each variable of the report, in declared order.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * @param context The reducer context shared by this evaluation.
+   * 
+   * @return The tasks.
+   */
+  private static List<Callable<TelemetryChartObject>> makeChartReferenceTasks(
+      TelemetryReportPlan reportPlan, 
+      final TelemetryDefinitionResolver telemetryDefinitionResolver, final Constant[] values, 
+      final Project project, final DailyProjectDataClient dpdClient, final Interval interval, 
+      final TelemetryReducerContext context) {
+    List<Callable<TelemetryChartObject>> tasks = new ArrayList<Callable<TelemetryChartObject>>();
+    for (int i = 0; i < reportPlan.getChartCount(); i++) {
+      final String chartName = reportPlan.getChartName(i);
+      final ParameterBinding chartParameters = reportPlan.getChartParameters(i);
+      tasks.add(new Callable<TelemetryChartObject>() {
+        public TelemetryChartObject call() throws TelemetryEvaluationException {
+          return evaluateChartReference(chartName, chartParameters, telemetryDefinitionResolver,
+              values, project, dpdClient, interval, context);
+        }
+      });
+    }
+    return tasks;
+  }
+
+  /**
+   * Runs independent chart evaluations concurrently, up to the report concurrency limit, and
+   * passes each chart to the listener as soon as it has been evaluated. The charts are
+   * delivered in the order in which they finish, and a failed evaluation is passed to the
+   * listener without affecting the others. Evaluations that may share DailyProjectData should
+   * share a reducer context, provided they have the same project, interval and DPD client.
+   * 
+   * @param evaluations The chart evaluations, typically calls to <code>evaluate</code>.
+   * @param listener The listener, which is called by the calling thread only.
+   * 
+   * @throws TelemetryEvaluationException If the calling thread is interrupted.
+   * @throws IOException If the listener cannot deliver a chart.
+   */
+  public static void evaluateEach(List<Callable<TelemetryChartObject>> evaluations, 
+      TelemetryEvaluationListener<TelemetryChartObject> listener) 
+  throws TelemetryEvaluationException, IOException {
+    TelemetryEvaluationExecutor executor = TelemetryEvaluationExecutor.getInstance();
+    executor.invokeEach(evaluations, executor.getReportConcurrency(), listener);
+  }
+
+  /**
+   * Evaluates a single chart of a compiled telemetry report definition.
+   * 
+   * @param chartName The name of the chart.
+   * @param chartParameters The parameters the report passes to the chart.
+   * @param telemetryDefinitionResolver The telemetry definition resolver.
+   * @param values The value of each variable of the report.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * @param context The reducer context shared by this evaluation.
+   * 
+   * @return The chart object.  
+   * 
+   * @throws TelemetryEvaluationException If there is any error during the evaluation process.
+   */
+  private static TelemetryChartObject evaluateChartReference(String chartName, 
+      ParameterBinding chartParameters, TelemetryDefinitionResolver telemetryDefinitionResolver,
+      Constant[] values, Project project, DailyProjectDataClient dpdClient, Interval interval, 
+      TelemetryReducerContext context) throws TelemetryEvaluationException {
+
+    //find the compiled TelmetryChartDefinition object
+    TelemetryChartPlan chartPlan = telemetryDefinitionResolver.resolveChartPlan(chartName);
+    TelemetryChartDefinition chartDef = chartPlan.getDefinition();
+    
+    //binds the variables of the TelemetryChartDefinition object
+    Variable[] chartVariables = chartDef.getVariables();
+    if (chartVariables.length != chartParameters.size()) {
+      throw new TelemetryEvaluationException("Error in report definition detected. The chart '"
+        + chartDef.getName() + "' the chart relies on has " + chartVariables.length
+        + " parameter(s), but the chart has only supplied " + chartParameters.size() 
+        + " parameter value(s).");
+    }
+
+    //generate telemetry chart object
+    return TelemetryEvaluator.evaluate(chartPlan, telemetryDefinitionResolver, 
+        chartParameters.bind(values), project, dpdClient, interval, context);
+  }
   
   /**
    * Resolves an expression to an instance of <code>TelemetryStreamCollection</code>
@@ -284,110 +605,47 @@ public class TelemetryEvaluator {
   static Object resolveExpression(Expression expression, VariableResolver variableResolver,
       Project project, DailyProjectDataClient dpdClient, Interval interval) 
   throws TelemetryEvaluationException {
-    try {
-      FunctionCall idempotent = new FunctionCall("idempotent", new Expression[]{expression});
-      return resolveFunctionCall(idempotent, variableResolver, project, dpdClient, interval);
-    }
-    catch (Exception ex) {
-      throw new TelemetryEvaluationException(ex);
-    }
+    return resolveExpression(expression, variableResolver, project, dpdClient, interval, 
+        new TelemetryReducerContext());
   }
- 
+
   /**
-   * Resolves a function call to an instance of <code>TelemetryStreamCollection</code>
-   * or <code>Number</code>.
+   * Resolves an expression to an instance of <code>TelemetryStreamCollection</code>
+   * or <code>Number</code>, using the given reducer context.
    * 
-   * @param functionCall The <code>FunctionCall</code> instance.
+   * @param expression The telemetry expression.
    * @param variableResolver The variable resolver.
    * @param project The project.
    * @param dpdClient The DPD Client.
    * @param interval The interval.
+   * @param context The reducer context.
    * 
-   * @return The result. It's an instance of type either <code>TelemetryStreamCollection</code>
+   * @return The resulting instance of type either <code>TelemetryStreamCollection</code>
    *         or <code>Number</code>.
    * 
-   * @throws Exception If the function call cannot be resolved.
+   * @throws TelemetryEvaluationException If the expression call cannot be resolved.
    */
-  private static Object resolveFunctionCall(FunctionCall functionCall, 
-      VariableResolver variableResolver, Project project, DailyProjectDataClient dpdClient, 
-      Interval interval) throws Exception {
-    
-    Expression[] parameters = functionCall.getParameters();
-    
-    //Only 3 types of objects are valid: String, Number, TelemetryStreamCollection.
-    Object[] parameterValues = new Object[parameters.length];
-    
-    for (int i = 0; i < parameters.length; i++) {
-      Expression param = parameters[i];
-      //resolve variable first
-      if (param instanceof Variable) {
-        param = variableResolver.resolve((Variable) param);
-      }
-      //fill parameterValues next
-      if (param instanceof ReducerCall) {
-        parameterValues[i] 
-            = resolveReducerCall((ReducerCall) param, variableResolver, project, dpdClient, 
-                interval);
-      }
-      else if (param instanceof FunctionCall) {
-        parameterValues[i] 
-            = resolveFunctionCall((FunctionCall) param, variableResolver, project, dpdClient, 
-                interval);
-      }
-      else if (param instanceof NumberConstant) {
-        parameterValues[i] = ((NumberConstant) param).getValue();
-      }
-      else if (param instanceof StringConstant) {
-        parameterValues[i] = ((StringConstant) param).getValue();
-      }
-      else {
-        throw new TelemetryEvaluationException("Function " + functionCall.getFunctionName() 
-            + " does not accept parameter of type " + param.getClass().getName());
-      }  
-    }  
-    return TelemetryFunctionManager.getInstance().compute(functionCall.getFunctionName(),
-        parameterValues);
+  static Object resolveExpression(Expression expression, VariableResolver variableResolver,
+      Project project, DailyProjectDataClient dpdClient, Interval interval, 
+      TelemetryReducerContext context) throws TelemetryEvaluationException {
+    return TelemetryStreamsPlan.compile(expression, variableResolver).evaluate(new Constant[0],
+        project, dpdClient, interval, context);
   }
-  
-  
+
   /**
-   * Resolves a reducer call to an instance of <code>TelemetryStreamCollection</code>.
+   * Returns the canonical form of an expression, in which all variables are replaced by their
+   * values. Two reducer or function calls with the same canonical form have the same value
+   * within an evaluation. Reducer names are case-sensitive and function names are not, and 
+   * reducer parameters are compared as the strings the reducer will receive.
    * 
-   * @param reducerCall The <code>ReducerCall</code> instance.
+   * @param expression The expression.
    * @param variableResolver The variable resolver.
-   * @param project The project.
-   * @param dpdClient The DPD Client.
-   * @param interval The interval.
-   * 
-   * @return The resulting instance of <code>TelemetryStreamCollection</code>.
-   * 
-   * @throws Exception If the reducer call cannot be resolved.
+   * @return The canonical form.
+   * @throws TelemetryEvaluationException If the expression is not valid or a variable cannot 
+   *         be resolved.
    */
-  private static TelemetryStreamCollection resolveReducerCall(ReducerCall reducerCall, 
-      VariableResolver variableResolver, Project project, DailyProjectDataClient dpdClient, 
-      Interval interval) throws Exception {
-    
-    Expression[] parameters = reducerCall.getParameters();
-    
-    //Only objects of type String is valid.
-    String[] parameterValues = new String[parameters.length];
-    
-    for (int i = 0; i < parameters.length; i++) {
-      Expression param = parameters[i];
-      //resolve variable first
-      if (param instanceof Variable) {
-        param = variableResolver.resolve((Variable) param); 
-      }
-      //fill parameterValues next
-      if (param instanceof Constant) {
-        parameterValues[i] = ((Constant) param).getValueString();
-      }
-      else {
-        throw new TelemetryEvaluationException("Reducer " + reducerCall.getReducerName() 
-            + " does not accept parameter of type " + param.getClass().getName());
-      }
-    }
-    return TelemetryReducerManager.getInstance().compute(reducerCall.getReducerName(),
-        dpdClient, project, interval, parameterValues);
+  static String getExpressionKey(Expression expression, VariableResolver variableResolver) 
+      throws TelemetryEvaluationException {
+    return TelemetryStreamsPlan.compile(expression, variableResolver).getKey(new Constant[0]);
   }
 }
@@ -0,0 +1,119 @@
+package org.hackystat.telemetry.analyzer.evaluator;
+
+import java.util.List;
+
+import org.hackystat.telemetry.analyzer.language.ast.ChartReference;
+import org.hackystat.telemetry.analyzer.language.ast.Constant;
+import org.hackystat.telemetry.analyzer.language.ast.TelemetryReportDefinition;
+
+/**
+ * The compiled form of a telemetry report definition. For each chart of the report, it holds
+ * the name of the chart definition and the compiled parameters passed to it. The charts are
+ * looked up by name at evaluation. Plans are immutable and may be shared by any number of
+ * concurrent evaluations.
+ *
+ * @author (Cedric) Qin ZHANG
+ */
+public class TelemetryReportPlan {
+
+  /** The report definition. */
+  private final TelemetryReportDefinition definition;
+  /** The name of each chart, in declared order. */
+  private final String[] chartNames;
+  /** The parameters passed to each chart. */
+  private final ParameterBinding[] chartParameters;
+
+  /**
+   * Compiles a report definition.
+   *
+   * @param definition The report definition.
+   * @throws TelemetryEvaluationException If the definition is not valid.
+   */
+  private TelemetryReportPlan(TelemetryReportDefinition definition)
+      throws TelemetryEvaluationException {
+    this.definition = definition;
+    List<ChartReference> chartRefs = definition.getChartReferences();
+    this.chartNames = new String[chartRefs.size()];
+    this.chartParameters = new ParameterBinding[chartRefs.size()];
+    for (int i = 0; i < this.chartNames.length; i++) {
+      this.chartNames[i] = chartRefs.get(i).getName();
+      this.chartParameters[i] = new ParameterBinding(chartRefs.get(i).getParameters(),
+          definition.getVariables());
+    }
+  }
+
+  /**
+   * Compiles a telemetry report definition.
+   *
+   * @param definition The telemetry report definition.
+   * @return The plan.
+   * @throws TelemetryEvaluationException If the definition is not valid, for example because
+   *         it passes a variable it does not have to a chart.
+   */
+  public static TelemetryReportPlan compile(TelemetryReportDefinition definition)
+      throws TelemetryEvaluationException {
+    TelemetryStreamsPlan.checkVariables(definition.getVariables());
+    return new TelemetryReportPlan(definition);
+  }
+
+  /**
+   * Gets the telemetry report definition from which this plan was compiled.
+   *
+   * @return The definition.
+   */
+  public TelemetryReportDefinition getDefinition() {
+    return this.definition;
+  }
+
+  /**
+   * Returns the values of the report's variables from a resolver, in declared order.
+   *
+   * @param variableResolver The variable resolver.
+   * @return The values, with null for each variable the resolver does not have.
+   */
+  Constant[] bind(VariableResolver variableResolver) {
+    return TelemetryStreamsPlan.bind(this.definition.getVariables(), variableResolver);
+  }
+
+  /**
+   * Gets the number of charts.
+   *
+   * @return The number of charts.
+   */
+  public int getChartCount() {
+    return this.chartNames.length;
+  }
+
+  /**
+   * Gets the name of a chart.
+   *
+   * @param index The position of the chart in the report.
+   * @return The name.
+   */
+  public String getChartName(int index) {
+    return this.chartNames[index];
+  }
+
+  /**
+   * Gets the parameters passed to a chart.
+   *
+   * @param index The position of the chart in the report.
+   * @return The parameters.
+   */
+  ParameterBinding getChartParameters(int index) {
+    return this.chartParameters[index];
+  }
+
+  /**
+   * Returns the values of the variables of a chart, given the values of the report's.
+   *
+   * @param index The position of the chart in the report.
+   * @param values The value of each variable of the report, in declared order.
+   * @return The value of each variable of the chart, in declared order.
+   * @throws TelemetryEvaluationException If a variable passed to the chart has no value.
+   */
+  public Constant[] getChartValues(int index, Constant[] values) 
+      throws TelemetryEvaluationException {
+    return this.chartParameters[index].bind(values);
+  }
+}
@@ -0,0 +1,696 @@
+package org.hackystat.telemetry.analyzer.evaluator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.telemetry.analyzer.function.TelemetryFunction;
+import org.hackystat.telemetry.analyzer.function.TelemetryFunctionException;
+import org.hackystat.telemetry.analyzer.function.TelemetryFunctionInfo;
+import org.hackystat.telemetry.analyzer.function.TelemetryFunctionManager;
+import org.hackystat.telemetry.analyzer.function.impl.ArithmeticTree;
+import org.hackystat.telemetry.analyzer.language.ast.Constant;
+import org.hackystat.telemetry.analyzer.language.ast.Expression;
+import org.hackystat.telemetry.analyzer.language.ast.FunctionCall;
+import org.hackystat.telemetry.analyzer.language.ast.NumberConstant;
+import org.hackystat.telemetry.analyzer.language.ast.ReducerCall;
+import org.hackystat.telemetry.analyzer.language.ast.StringConstant;
+import org.hackystat.telemetry.analyzer.language.ast.TelemetryStreamsDefinition;
+import org.hackystat.telemetry.analyzer.language.ast.Variable;
+import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerInfo;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerManager;
+import org.hackystat.utilities.time.interval.Interval;
+
+/**
+ * The compiled form of a telemetry streams definition. Compilation looks up every reducer and
+ * function named in the expression, assigns each variable its position among the definition's
+ * variables, and checks that each reducer parameter is a constant or variable, so that
+ * evaluating the plan only binds the variable values and runs the calls. Functions declare no
+ * parameter types, so the parameters of a function call are checked by the function itself
+ * when it is computed. Plans are immutable and may be shared by any number of concurrent
+ * evaluations.
+ * <p>
+ * As in <code>TelemetryEvaluator</code>, every reducer call is started before any function is
+ * computed, arithmetic function calls are computed together with the arithmetic calls nested
+ * in them, and reducer and function call values are memoized in the reducer context under the
+ * same keys as <code>TelemetryEvaluator.getExpressionKey</code> returns. If the evaluation
+ * fails, the reducer calls it started that are still queued, and that no other evaluation
+ * sharing the context is waiting on, are cancelled.
+ *
+ * @author (Cedric) Qin ZHANG
+ */
+public class TelemetryStreamsPlan {
+
+  /** The streams definition, or null if the plan is for a bare expression. */
+  private final TelemetryStreamsDefinition definition;
+  /** The variables of the definition, in the order in which their values are bound. */
+  private final Variable[] variables;
+  /** The root of the expression. */
+  private final Node root;
+  /** Every reducer call in the expression. */
+  private final ReducerNode[] reducers;
+  /** The number of nodes in the expression. */
+  private final int nodeCount;
+
+  /**
+   * Compiles an expression.
+   *
+   * @param definition The streams definition, or null.
+   * @param expression The expression.
+   * @param variables The variables that may appear in the expression.
+   * @param variableResolver If not null, variables are replaced by their values from this
+   *        resolver rather than being bound at evaluation.
+   * @throws TelemetryEvaluationException If the expression is not valid.
+   */
+  private TelemetryStreamsPlan(TelemetryStreamsDefinition definition, Expression expression,
+      Variable[] variables, VariableResolver variableResolver)
+      throws TelemetryEvaluationException {
+    this.definition = definition;
+    this.variables = variables;
+    List<ReducerNode> reducerList = new ArrayList<ReducerNode>();
+    int[] count = new int[1];
+    this.root = compile(expression, variableResolver, reducerList, count);
+    this.reducers = reducerList.toArray(new ReducerNode[reducerList.size()]);
+    this.nodeCount = count[0];
+  }
+
+  /**
+   * Compiles a telemetry streams definition.
+   *
+   * @param definition The telemetry streams definition.
+   * @return The plan.
+   * @throws TelemetryEvaluationException If the definition is not valid, for example because
+   *         it calls a reducer or function that does not exist.
+   */
+  public static TelemetryStreamsPlan compile(TelemetryStreamsDefinition definition)
+      throws TelemetryEvaluationException {
+    checkVariables(definition.getVariables());
+    return new TelemetryStreamsPlan(definition, definition.getExpression(),
+        definition.getVariables(), null);
+  }
+
+  /**
+   * Compiles an expression in which variables are replaced by their values from a resolver.
+   *
+   * @param expression The expression.
+   * @param variableResolver The variable resolver, which may be null if the expression has no
+   *        variables.
+   * @return The plan, which has no variables.
+   * @throws TelemetryEvaluationException If the expression is not valid.
+   */
+  static TelemetryStreamsPlan compile(Expression expression, VariableResolver variableResolver)
+      throws TelemetryEvaluationException {
+    return new TelemetryStreamsPlan(null, expression, new Variable[0], variableResolver);
+  }
+
+  /**
+   * Throws an exception if two variables have the same name.
+   *
+   * @param variables The variables.
+   * @throws TelemetryEvaluationException If two variables have the same name.
+   */
+  static void checkVariables(Variable[] variables) throws TelemetryEvaluationException {
+    for (int i = 0; i < variables.length; i++) {
+      for (int j = 0; j < i; j++) {
+        if (variables[i].getName().equals(variables[j].getName())) {
+          throw new TelemetryEvaluationException("Variable " + variables[i].getName()
+              + " already added.");
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the values of the variables from a resolver, in the order of the variables. The
+   * value of a variable the resolver does not have is null.
+   *
+   * @param variables The variables.
+   * @param variableResolver The resolver.
+   * @return The values.
+   */
+  static Constant[] bind(Variable[] variables, VariableResolver variableResolver) {
+    Constant[] values = new Constant[variables.length];
+    for (int i = 0; i < variables.length; i++) {
+      try {
+        values[i] = variableResolver.resolve(variables[i]);
+      }
+      catch (TelemetryEvaluationException e) { //NOPMD
+        //reported if the variable is used
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Returns the values of the definition's variables from a resolver, in declared order.
+   *
+   * @param variableResolver The variable resolver.
+   * @return The values, with null for each variable the resolver does not have.
+   */
+  Constant[] bind(VariableResolver variableResolver) {
+    return bind(this.variables, variableResolver);
+  }
+
+  /**
+   * Gets the telemetry streams definition from which this plan was compiled.
+   *
+   * @return The definition.
+   */
+  public TelemetryStreamsDefinition getDefinition() {
+    return this.definition;
+  }
+
+  /**
+   * Evaluates this plan to an instance of <code>TelemetryStreamCollection</code> or
+   * <code>Number</code>.
+   *
+   * @param values The value of each variable of the definition, in declared order.
+   * @param project The project.
+   * @param dpdClient The DPD Client.
+   * @param interval The interval.
+   * @param context The reducer context.
+   * @return The result.
+   * @throws TelemetryEvaluationException If the evaluation fails.
+   */
+  Object evaluate(Constant[] values, Project project, DailyProjectDataClient dpdClient,
+      Interval interval, TelemetryReducerContext context) throws TelemetryEvaluationException {
+    if (values.length != this.variables.length) {
+      throw new TelemetryEvaluationException("Telemetry streams " + this.definition.getName()
+          + " needs " + this.variables.length + " variables; got: " + values.length);
+    }
+    Evaluation evaluation = new Evaluation(values, project, dpdClient, interval, context);
+    try {
+      for (ReducerNode reducer : this.reducers) {
+        reducer.start(evaluation);
+      }
+      Object result = this.root.getValue(evaluation);
+      return (result instanceof Future)
+          ? TelemetryFunctionManager.getParameterValues(new Object[] {result})[0] : result;
+    }
+    catch (Exception ex) {
+      // Don't leave queued reducer calls to run after the evaluation has failed, unless
+      // another evaluation sharing the context is waiting on them.
+      evaluation.release();
+      throw new TelemetryEvaluationException(ex);
+    }
+  }
+
+  /**
+   * Returns the memoization key of the expression once the variables are bound.
+   *
+   * @param values The value of each variable.
+   * @return The key.
+   * @throws TelemetryEvaluationException If a variable has no value.
+   */
+  String getKey(Constant[] values) throws TelemetryEvaluationException {
+    return new Evaluation(values, null, null, null, null).getKey(this.root);
+  }
+
+  /**
+   * Compiles an expression into a node.
+   *
+   * @param expression The expression.
+   * @param variableResolver If not null, the resolver from which variables take their values.
+   * @param reducerList Receives each reducer node.
+   * @param count The number of nodes compiled so far.
+   * @return The node.
+   * @throws TelemetryEvaluationException If the expression is not valid.
+   */
+  private Node compile(Expression expression, VariableResolver variableResolver,
+      List<ReducerNode> reducerList, int[] count) throws TelemetryEvaluationException {
+    Node node;
+    if (expression instanceof Variable) {
+      if (variableResolver != null) {
+        node = new ConstantNode(variableResolver.resolve((Variable) expression));
+      }
+      else {
+        node = new VariableNode(getSlot((Variable) expression));
+      }
+    }
+    else if (expression instanceof Constant) {
+      node = new ConstantNode((Constant) expression);
+    }
+    else if (expression instanceof ReducerCall) {
+      ReducerCall reducerCall = (ReducerCall) expression;
+      TelemetryReducerInfo reducerInfo =
+        TelemetryReducerManager.getInstance().getReducerInfo(reducerCall.getReducerName());
+      if (reducerInfo == null) {
+        throw new TelemetryEvaluationException("Telemetry reducer "
+            + reducerCall.getReducerName() + " not defined.");
+      }
+      Expression[] parameters = reducerCall.getParameters();
+      Node[] nodes = new Node[parameters.length];
+      for (int i = 0; i < parameters.length; i++) {
+        nodes[i] = compile(parameters[i], variableResolver, reducerList, count);
+        if (!(nodes[i] instanceof ConstantNode || nodes[i] instanceof VariableNode)) {
+          throw new TelemetryEvaluationException("Reducer " + reducerCall.getReducerName()
+              + " does not accept parameter of type " + parameters[i].getClass().getName());
+        }
+      }
+      ReducerNode reducerNode = new ReducerNode(reducerInfo, reducerList.size(), nodes);
+      reducerList.add(reducerNode);
+      node = reducerNode;
+    }
+    else if (expression instanceof FunctionCall) {
+      FunctionCall functionCall = (FunctionCall) expression;
+      TelemetryFunctionInfo functionInfo =
+        TelemetryFunctionManager.getInstance().getFunctionInfo(functionCall.getFunctionName());
+      if (functionInfo == null) {
+        throw new TelemetryEvaluationException("Telemetry function "
+            + functionCall.getFunctionName() + " does not exist.");
+      }
+      Expression[] parameters = functionCall.getParameters();
+      Node[] nodes = new Node[parameters.length];
+      for (int i = 0; i < parameters.length; i++) {
+        nodes[i] = compile(parameters[i], variableResolver, reducerList, count);
+      }
+      node = new FunctionNode(functionCall.getFunctionName(), functionInfo.getFunction(), nodes);
+    }
+    else {
+      throw new TelemetryEvaluationException("Expression of type "
+          + expression.getClass().getName() + " is not supported.");
+    }
+    node.id = count[0]++;
+    return node;
+  }
+
+  /**
+   * Returns the position of a variable among the variables of the definition.
+   *
+   * @param variable The variable.
+   * @return The position.
+   * @throws TelemetryEvaluationException If the definition has no such variable.
+   */
+  private int getSlot(Variable variable) throws TelemetryEvaluationException {
+    for (int i = 0; i < this.variables.length; i++) {
+      if (this.variables[i].getName().equals(variable.getName())) {
+        return i;
+      }
+    }
+    throw new TelemetryEvaluationException("Variable " + variable.getName() + " not found.");
+  }
+
+  /**
+   * Appends a string to a key in double quotes, escaping any quotes and backslashes, as
+   * <code>TelemetryEvaluator.getExpressionKey</code> does.
+   *
+   * @param key The key being built.
+   * @param value The string.
+   */
+  private static void appendQuoted(StringBuffer key, String value) {
+    key.append('"').append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+  }
+
+  /**
+   * The state of a single evaluation of the plan.
+   */
+  private final class Evaluation {
+    /** The value of each variable. */
+    private final Constant[] values;
+    /** The project. */
+    private final Project project;
+    /** The DPD client. */
+    private final DailyProjectDataClient dpdClient;
+    /** The interval. */
+    private final Interval interval;
+    /** The reducer context. */
+    private final TelemetryReducerContext context;
+    /** The key of each node, computed when first needed. */
+    private final String[] keys = new String[nodeCount];
+    /** The future result of each reducer call. */
+    private final Future<?>[] reducerResults = new Future<?>[reducers.length];
+
+    /**
+     * Creates an evaluation.
+     *
+     * @param values The value of each variable.
+     * @param project The project.
+     * @param dpdClient The DPD client.
+     * @param interval The interval.
+     * @param context The reducer context.
+     */
+    private Evaluation(Constant[] values, Project project, DailyProjectDataClient dpdClient,
+        Interval interval, TelemetryReducerContext context) {
+      this.values = values;
+      this.project = project;
+      this.dpdClient = dpdClient;
+      this.interval = interval;
+      this.context = context;
+    }
+
+    /**
+     * Returns the value of a variable.
+     *
+     * @param slot The position of the variable.
+     * @return The value.
+     * @throws TelemetryEvaluationException If the variable has no value.
+     */
+    private Constant getValue(int slot) throws TelemetryEvaluationException {
+      Constant value = this.values[slot];
+      if (value == null) {
+        throw new TelemetryEvaluationException("Variable " + variables[slot].getName()
+            + " not found.");
+      }
+      return value;
+    }
+
+    /**
+     * Returns the key of a node.
+     *
+     * @param node The node.
+     * @return The key.
+     * @throws TelemetryEvaluationException If a variable has no value.
+     */
+    private String getKey(Node node) throws TelemetryEvaluationException {
+      String key = this.keys[node.id];
+      if (key == null) {
+        StringBuffer buffer = new StringBuffer();
+        node.appendKey(buffer, this);
+        key = buffer.toString();
+        this.keys[node.id] = key;
+      }
+      return key;
+    }
+
+    /**
+     * Releases the claim of this evaluation on each reducer call it has started, so that the
+     * calls no other evaluation is waiting on are cancelled.
+     */
+    private void release() {
+      for (ReducerNode reducer : reducers) {
+        Future<?> result = this.reducerResults[reducer.index];
+        if (result != null) {
+          this.context.releaseExpressionFuture(this.keys[((Node) reducer).id], result);
+        }
+      }
+    }
+  }
+
+  /**
+   * A node of the compiled expression.
+   */
+  private abstract static class Node {
+    /** The position of the node in the expression. */
+    private int id;
+
+    /**
+     * Appends the key of this node.
+     *
+     * @param key The key being built.
+     * @param evaluation The evaluation.
+     * @throws TelemetryEvaluationException If a variable has no value.
+     */
+    abstract void appendKey(StringBuffer key, Evaluation evaluation)
+        throws TelemetryEvaluationException;
+
+    /**
+     * Returns the value of this node: a <code>Number</code>, <code>String</code>,
+     * <code>TelemetryStreamCollection</code>, or <code>Future</code> reducer result.
+     *
+     * @param evaluation The evaluation.
+     * @return The value.
+     * @throws Exception If the value cannot be computed.
+     */
+    abstract Object getValue(Evaluation evaluation) throws Exception;
+  }
+
+  /**
+   * A number or string constant.
+   */
+  private static class ConstantNode extends Node {
+    /** The constant. */
+    private final Constant constant;
+    /** The value. */
+    private final Object value;
+    /** The key. */
+    private final String key;
+
+    /**
+     * Creates a node.
+     *
+     * @param constant The constant.
+     */
+    ConstantNode(Constant constant) {
+      this.constant = constant;
+      StringBuffer buffer = new StringBuffer();
+      appendConstantKey(buffer, constant);
+      this.key = buffer.toString();
+      this.value = (constant instanceof NumberConstant)
+          ? (Object) ((NumberConstant) constant).getValue()
+          : (Object) ((StringConstant) constant).getValue();
+    }
+
+    /**
+     * Appends the key of a constant.
+     *
+     * @param key The key being built.
+     * @param constant The constant.
+     */
+    static void appendConstantKey(StringBuffer key, Constant constant) {
+      if (constant instanceof NumberConstant) {
+        key.append(constant.getValueString());
+      }
+      else {
+        appendQuoted(key, ((StringConstant) constant).getValue());
+      }
+    }
+
+    /**
+     * Returns the constant.
+     *
+     * @param evaluation The evaluation.
+     * @return The constant.
+     */
+    Constant getConstant(Evaluation evaluation) {
+      return this.constant;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void appendKey(StringBuffer key, Evaluation evaluation) {
+      key.append(this.key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Object getValue(Evaluation evaluation) {
+      return this.value;
+    }
+  }
+
+  /**
+   * A variable, whose value is bound at evaluation.
+   */
+  private static class VariableNode extends Node {
+    /** The position of the variable. */
+    private final int slot;
+
+    /**
+     * Creates a node.
+     *
+     * @param slot The position of the variable.
+     */
+    VariableNode(int slot) {
+      this.slot = slot;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void appendKey(StringBuffer key, Evaluation evaluation)
+        throws TelemetryEvaluationException {
+      ConstantNode.appendConstantKey(key, evaluation.getValue(this.slot));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Object getValue(Evaluation evaluation) throws TelemetryEvaluationException {
+      Constant constant = evaluation.getValue(this.slot);
+      return (constant instanceof NumberConstant) ? (Object) ((NumberConstant) constant).getValue()
+          : (Object) ((StringConstant) constant).getValue();
+    }
+  }
+
+  /**
+   * A reducer call.
+   */
+  private static class ReducerNode extends Node {
+    /** The reducer. */
+    private final TelemetryReducerInfo reducerInfo;
+    /** The position of this call among the reducer calls of the expression. */
+    private final int index;
+    /** The parameters, each a constant or variable. */
+    private final Node[] parameters;
+
+    /**
+     * Creates a node.
+     *
+     * @param reducerInfo The reducer.
+     * @param index The position of this call among the reducer calls.
+     * @param parameters The parameters.
+     */
+    ReducerNode(TelemetryReducerInfo reducerInfo, int index, Node[] parameters) {
+      this.reducerInfo = reducerInfo;
+      this.index = index;
+      this.parameters = parameters;
+    }
+
+    /**
+     * Returns the string value of each parameter.
+     *
+     * @param evaluation The evaluation.
+     * @return The parameter values.
+     * @throws TelemetryEvaluationException If a variable has no value.
+     */
+    private String[] getParameterValues(Evaluation evaluation)
+        throws TelemetryEvaluationException {
+      String[] values = new String[this.parameters.length];
+      for (int i = 0; i < values.length; i++) {
+        Node parameter = this.parameters[i];
+        values[i] = (parameter instanceof VariableNode)
+            ? evaluation.getValue(((VariableNode) parameter).slot).getValueString()
+            : ((ConstantNode) parameter).getConstant(evaluation).getValueString();
+      }
+      return values;
+    }
+
+    /**
+     * Starts this reducer call, or finds the identical call already started in the context,
+     * and claims it for the evaluation.
+     *
+     * @param evaluation The evaluation.
+     * @throws Exception If the call cannot be started.
+     */
+    void start(final Evaluation evaluation) throws Exception {
+      final String[] values = getParameterValues(evaluation);
+      evaluation.reducerResults[this.index] = evaluation.context.claimExpressionFuture(
+          evaluation.getKey(this), new Callable<Future<TelemetryStreamCollection>>() {
+            public Future<TelemetryStreamCollection> call() throws Exception {
+              return reducerInfo.getAsyncReducer().computeAsync(evaluation.project,
+                  evaluation.dpdClient, evaluation.interval, values, evaluation.context);
+            }
+          });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void appendKey(StringBuffer key, Evaluation evaluation)
+        throws TelemetryEvaluationException {
+      key.append("reducer:").append(this.reducerInfo.getName()).append('(');
+      String[] values = getParameterValues(evaluation);
+      for (int i = 0; i < values.length; i++) {
+        key.append((i > 0) ? "," : "");
+        appendQuoted(key, values[i]);
+      }
+      key.append(')');
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Object getValue(Evaluation evaluation) {
+      return evaluation.reducerResults[this.index];
+    }
+  }
+
+  /**
+   * A function call.
+   */
+  private static class FunctionNode extends Node {
+    /** The name of the function, as called. */
+    private final String name;
+    /** The function. */
+    private final TelemetryFunction function;
+    /** True if the function can be computed as part of an <code>ArithmeticTree</code>. */
+    private final boolean arithmetic;
+    /** The parameters. */
+    private final Node[] parameters;
+
+    /**
+     * Creates a node.
+     *
+     * @param name The name of the function, as called.
+     * @param function The function.
+     * @param parameters The parameters.
+     */
+    FunctionNode(String name, TelemetryFunction function, Node[] parameters) {
+      this.name = name;
+      this.function = function;
+      this.arithmetic = ArithmeticTree.isArithmeticFunction(function);
+      this.parameters = parameters;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void appendKey(StringBuffer key, Evaluation evaluation)
+        throws TelemetryEvaluationException {
+      key.append("function:").append(this.name.toLowerCase()).append('(');
+      for (int i = 0; i < this.parameters.length; i++) {
+        key.append((i > 0) ? "," : "").append(evaluation.getKey(this.parameters[i]));
+      }
+      key.append(')');
+    }
+
+    /**
+     * Returns the value of this call, or the value already memoized in the context for an
+     * identical call.
+     *
+     * @param evaluation The evaluation.
+     * @return The value.
+     * @throws Exception If the value cannot be computed.
+     */
+    @Override
+    Object getValue(final Evaluation evaluation) throws Exception {
+      return evaluation.context.getExpressionValue(evaluation.getKey(this),
+          new Callable<Object>() {
+            public Object call() throws Exception {
+              return compute(evaluation);
+            }
+          });
+    }
+
+    /**
+     * Computes this call.
+     *
+     * @param evaluation The evaluation.
+     * @return The value.
+     * @throws Exception If the value cannot be computed.
+     */
+    private Object compute(Evaluation evaluation) throws Exception {
+      if (this.arithmetic) {
+        return getArithmeticTree(evaluation).compute();
+      }
+      Object[] values = new Object[this.parameters.length];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = this.parameters[i].getValue(evaluation);
+      }
+      Object result = this.function.compute(TelemetryFunctionManager.getParameterValues(values));
+      if (! (result instanceof Number || result instanceof TelemetryStreamCollection)) {
+        throw new TelemetryFunctionException("Telemetry function " + this.name
+            + " implementation error. It returns a result of unexpected type.");
+      }
+      return result;
+    }
+
+    /**
+     * Returns the arithmetic tree for this call, with nested arithmetic calls as subtrees.
+     *
+     * @param evaluation The evaluation.
+     * @return The tree.
+     * @throws Exception If a parameter cannot be computed.
+     */
+    private ArithmeticTree getArithmeticTree(Evaluation evaluation) throws Exception {
+      Object[] operands = new Object[this.parameters.length];
+      for (int i = 0; i < operands.length; i++) {
+        Node parameter = this.parameters[i];
+        operands[i] = (parameter instanceof FunctionNode && ((FunctionNode) parameter).arithmetic)
+            ? ((FunctionNode) parameter).getArithmeticTree(evaluation)
+            : parameter.getValue(evaluation);
+      }
+      return new ArithmeticTree(this.function, operands);
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package org.hackystat.telemetry.analyzer.evaluator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test suite for <code>TelemetryEvaluationExecutor</code>.
+ *
+ * @author Philip Johnson
+ */
+public class TestTelemetryEvaluationExecutor {
+
+  /**
+   * Tests that results are returned in task order even when later tasks finish first.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testOrder() throws Exception {
+    final CountDownLatch lastDone = new CountDownLatch(1);
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    tasks.add(new Callable<Integer>() {
+      public Integer call() throws Exception {
+        lastDone.await();
+        return 0;
+      }
+    });
+    tasks.add(new Callable<Integer>() {
+      public Integer call() {
+        lastDone.countDown();
+        return 1;
+      }
+    });
+    List<Integer> results = TelemetryEvaluationExecutor.getInstance().invokeAll(tasks, 2);
+    assertEquals("Checking first", Integer.valueOf(0), results.get(0));
+    assertEquals("Checking second", Integer.valueOf(1), results.get(1));
+  }
+
+  /**
+   * Tests that no more than the maximum number of tasks are in progress at once.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testMaxConcurrent() throws Exception {
+    final AtomicInteger running = new AtomicInteger(0);
+    final AtomicInteger maxRunning = new AtomicInteger(0);
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    for (int i = 0; i < 10; i++) {
+      tasks.add(new Callable<Integer>() {
+        public Integer call() throws Exception {
+          int now = running.incrementAndGet();
+          synchronized (maxRunning) {
+            maxRunning.set(Math.max(maxRunning.get(), now));
+          }
+          Thread.sleep(5);
+          running.decrementAndGet();
+          return now;
+        }
+      });
+    }
+    assertEquals("Checking results", 10, 
+        TelemetryEvaluationExecutor.getInstance().invokeAll(tasks, 2).size());
+    assertTrue("Checking limit", maxRunning.get() <= 2);
+  }
+
+  /**
+   * Tests that the failure of the earliest failing task is reported, even if a later task
+   * fails first.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testFirstFailure() throws Exception {
+    final CountDownLatch lastFailed = new CountDownLatch(1);
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    tasks.add(new Callable<Integer>() {
+      public Integer call() throws Exception {
+        lastFailed.await();
+        throw new TelemetryEvaluationException("first");
+      }
+    });
+    tasks.add(new Callable<Integer>() {
+      public Integer call() throws Exception {
+        lastFailed.countDown();
+        throw new TelemetryEvaluationException("second");
+      }
+    });
+    try {
+      TelemetryEvaluationExecutor.getInstance().invokeAll(tasks, 2);
+      fail("Failing tasks should throw an exception.");
+    }
+    catch (TelemetryEvaluationException e) {
+      assertEquals("Checking failure", "first", e.getMessage());
+    }
+  }
+
+  /**
+   * Tests that tasks which themselves invoke many tasks complete, even when there are more
+   * of them than pool threads.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testNested() throws Exception {
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    for (int i = 0; i < 20; i++) {
+      tasks.add(new Callable<Integer>() {
+        public Integer call() throws Exception {
+          List<Callable<Integer>> subTasks = new ArrayList<Callable<Integer>>();
+          for (int j = 0; j < 20; j++) {
+            subTasks.add(new Callable<Integer>() {
+              public Integer call() throws Exception {
+                Thread.sleep(1);
+                return 1;
+              }
+            });
+          }
+          int total = 0;
+          for (Integer value 
+              : TelemetryEvaluationExecutor.getInstance().invokeAll(subTasks, 
+                  Integer.MAX_VALUE)) {
+            total += value;
+          }
+          return total;
+        }
+      });
+    }
+    int total = 0;
+    for (Integer value 
+        : TelemetryEvaluationExecutor.getInstance().invokeAll(tasks, Integer.MAX_VALUE)) {
+      total += value;
+    }
+    assertEquals("Checking total", 400, total);
+  }
+
+  /**
+   * Tests that invokeEach delivers results as their tasks finish, and that a failing task
+   * does not prevent the delivery of the others.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testInvokeEach() throws Exception {
+    // Each task waits until the result of the task before it has been delivered.
+    final CountDownLatch failureDelivered = new CountDownLatch(1);
+    final CountDownLatch lastDelivered = new CountDownLatch(1);
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    tasks.add(new Callable<Integer>() {
+      public Integer call() throws Exception {
+        lastDelivered.await();
+        return 0;
+      }
+    });
+    tasks.add(new Callable<Integer>() {
+      public Integer call() throws Exception {
+        throw new TelemetryEvaluationException("failed");
+      }
+    });
+    tasks.add(new Callable<Integer>() {
+      public Integer call() throws Exception {
+        failureDelivered.await();
+        return 2;
+      }
+    });
+    final List<String> delivered = new ArrayList<String>();
+    TelemetryEvaluationExecutor.getInstance().invokeEach(tasks, 3, 
+        new TelemetryEvaluationListener<Integer>() {
+          public void evaluated(int index, Integer result) throws IOException {
+            delivered.add(index + "=" + result);
+            lastDelivered.countDown();
+          }
+          public void failed(int index, Exception cause) throws IOException {
+            delivered.add(index + ":" + cause.getMessage());
+            failureDelivered.countDown();
+          }
+        });
+    assertEquals("Checking count", 3, delivered.size());
+    assertEquals("Checking failure first", "1:failed", delivered.get(0));
+    assertEquals("Checking last task second", "2=2", delivered.get(1));
+    assertEquals("Checking first task last", "0=0", delivered.get(2));
+  }
+}
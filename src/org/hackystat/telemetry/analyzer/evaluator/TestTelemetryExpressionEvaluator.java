@@ -3,8 +3,14 @@ package org.hackystat.telemetry.analyzer.evaluator;
 import junit.framework.TestCase;
 
 import org.hackystat.telemetry.analyzer.language.ast.Expression;
+import org.hackystat.telemetry.analyzer.language.ast.FunctionCall;
+import org.hackystat.telemetry.analyzer.language.ast.NumberConstant;
+import org.hackystat.telemetry.analyzer.language.ast.ReducerCall;
+import org.hackystat.telemetry.analyzer.language.ast.StringConstant;
 import org.hackystat.telemetry.analyzer.language.ast.TelemetryStreamsDefinition;
+import org.hackystat.telemetry.analyzer.language.ast.Variable;
 import org.hackystat.telemetry.analyzer.language.parser.TelemetryLanguageParser;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 
 /**
  * Test suite for <code>TelemetryExpressionEvaluator</code>.
@@ -50,4 +56,50 @@ public class TestTelemetryExpressionEvaluator extends TestCase {
       assertEquals(expected.doubleValue(), ((Number) result).doubleValue(), 0.00001);
     }
   }
+
+  /**
+   * Tests that reducer and function calls have the same key once their variables are bound,
+   * and different keys otherwise.
+   * 
+   * @throws Exception If test fails.
+   */
+  public void testExpressionKey() throws Exception {
+    VariableResolver resolver = new VariableResolver();
+    resolver.add(new Variable("tool"), new StringConstant("PMD"));
+    Expression bound = new ReducerCall("CodeIssue", 
+        new Expression[] {new StringConstant("*"), new Variable("tool")});
+    Expression literal = new ReducerCall("CodeIssue", 
+        new Expression[] {new StringConstant("*"), new StringConstant("PMD")});
+    Expression other = new ReducerCall("CodeIssue", 
+        new Expression[] {new StringConstant("*,PMD")});
+    assertEquals(TelemetryEvaluator.getExpressionKey(bound, resolver), 
+        TelemetryEvaluator.getExpressionKey(literal, resolver));
+    assertFalse(TelemetryEvaluator.getExpressionKey(literal, resolver).equals(
+        TelemetryEvaluator.getExpressionKey(other, resolver)));
+    
+    Expression add = new FunctionCall("Add", 
+        new Expression[] {bound, new NumberConstant(Integer.valueOf(1))});
+    Expression lowerAdd = new FunctionCall("add", 
+        new Expression[] {literal, new NumberConstant(Integer.valueOf(1))});
+    assertEquals(TelemetryEvaluator.getExpressionKey(add, resolver), 
+        TelemetryEvaluator.getExpressionKey(lowerAdd, resolver));
+  }
+
+  /**
+   * Tests that an expression evaluated twice in the same context is only computed once.
+   * 
+   * @throws Exception If test fails.
+   */
+  public void testSharedExpression() throws Exception {
+    Expression expression = TelemetryLanguageParser.parseStreamsDef(
+        "streams StreamForUnitTest() = { \"desc\", 1.5 + 2.25 };").getExpression();
+    TelemetryReducerContext context = new TelemetryReducerContext();
+    Object first = TelemetryEvaluator.resolveExpression(expression, null, null, null, null, 
+        context);
+    Object second = TelemetryEvaluator.resolveExpression(expression, null, null, null, null,
+        context);
+    assertSame(first, second);
+    assertNotSame(first, TelemetryEvaluator.resolveExpression(expression, null, null, null, 
+        null));
+  }
 }
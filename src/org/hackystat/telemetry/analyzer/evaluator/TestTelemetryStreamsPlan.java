@@ -0,0 +1,90 @@
+package org.hackystat.telemetry.analyzer.evaluator;
+
+import junit.framework.TestCase;
+
+import org.hackystat.telemetry.analyzer.language.ast.Constant;
+import org.hackystat.telemetry.analyzer.language.ast.Expression;
+import org.hackystat.telemetry.analyzer.language.ast.FunctionCall;
+import org.hackystat.telemetry.analyzer.language.ast.NumberConstant;
+import org.hackystat.telemetry.analyzer.language.ast.TelemetryStreamsDefinition;
+import org.hackystat.telemetry.analyzer.language.ast.Variable;
+import org.hackystat.telemetry.analyzer.language.parser.TelemetryLanguageParser;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
+
+/**
+ * Test suite for <code>TelemetryStreamsPlan</code>.
+ * 
+ * @author (Cedric) Qin Zhang
+ */
+public class TestTelemetryStreamsPlan extends TestCase {
+
+  /**
+   * Tests that a single plan can be evaluated with different variable values, and that its
+   * keys are those of the expression with the values in place of the variables.
+   * 
+   * @throws Exception If test fails.
+   */
+  public void testBinding() throws Exception {
+    Variable x = new Variable("x");
+    Variable y = new Variable("y");
+    Expression expression = new FunctionCall("Add", new Expression[] {
+        new FunctionCall("Mul", new Expression[] {x, new NumberConstant(Integer.valueOf(2))}), 
+        y});
+    TelemetryStreamsPlan plan = TelemetryStreamsPlan.compile(new TelemetryStreamsDefinition(
+        "StreamForUnitTest", expression, new Variable[] {x, y}, null));
+    Constant[] values = {new NumberConstant(Integer.valueOf(3)), 
+        new NumberConstant(Integer.valueOf(1))};
+    assertEquals(Integer.valueOf(7), 
+        plan.evaluate(values, null, null, null, new TelemetryReducerContext()));
+    Constant[] otherValues = {new NumberConstant(Double.valueOf(2.5)), 
+        new NumberConstant(Integer.valueOf(0))};
+    assertEquals(Double.valueOf(5), 
+        plan.evaluate(otherValues, null, null, null, new TelemetryReducerContext()));
+    
+    String key = TelemetryEvaluator.getExpressionKey(TelemetryLanguageParser.parseStreamsDef(
+        "streams StreamForUnitTest() = { \"desc\", 3 * 2 + 1 };").getExpression(), null);
+    assertEquals(key, plan.getKey(values));
+    
+    try {
+      plan.evaluate(new Constant[] {values[0], null}, null, null, null, 
+          new TelemetryReducerContext());
+      fail("An unbound variable should throw an exception.");
+    }
+    catch (TelemetryEvaluationException e) { //NOPMD
+      //expected
+    }
+  }
+
+  /**
+   * Tests that invalid definitions are rejected when they are compiled.
+   * 
+   * @throws Exception If test fails.
+   */
+  public void testCompileErrors() throws Exception {
+    assertCompileError("streams S() = { \"desc\", NoSuchFunction(CodeIssue(\"*\")) };", 
+        "Telemetry function NoSuchFunction does not exist.");
+    assertCompileError("streams S() = { \"desc\", NoSuchReducer(\"*\") };", 
+        "Telemetry reducer NoSuchReducer not defined.");
+    assertCompileError("streams S(x) = { \"desc\", CodeIssue(y) };", "Variable y not found.");
+    assertCompileError("streams S(x, x) = { \"desc\", CodeIssue(x) };", 
+        "Variable x already added.");
+  }
+
+  /**
+   * Asserts that a streams definition fails to compile with the given message.
+   * 
+   * @param definition The streams definition.
+   * @param message The expected message.
+   * @throws Exception If the definition cannot be parsed.
+   */
+  private void assertCompileError(String definition, String message) throws Exception {
+    TelemetryStreamsDefinition streamsDef = TelemetryLanguageParser.parseStreamsDef(definition);
+    try {
+      TelemetryStreamsPlan.compile(streamsDef);
+      fail("Compiling " + definition + " should throw an exception.");
+    }
+    catch (TelemetryEvaluationException e) {
+      assertEquals(message, e.getMessage());
+    }
+  }
+}
@@ -2,6 +2,8 @@ package org.hackystat.telemetry.analyzer.function;
 
 import java.io.InputStream;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import javax.xml.bind.JAXBContext;
@@ -106,11 +108,14 @@ public class TelemetryFunctionManager {
   }
   
   /**
-   * Invokes telemetry function to perform computation.
+   * Invokes telemetry function to perform computation. Any parameter may instead be a
+   * <code>Future</code> whose result is one of the permitted types, such as a reducer call
+   * started by the evaluator; the function is invoked once all of them have completed. 
    * 
    * @param functionName The name of the telemetry function.
    * @param parameters An array of objects of type either <code>String</code>,
-   *        <code>Number</code>, and/or <code>TelemetryStreamCollection</code>. 
+   *        <code>Number</code>, <code>TelemetryStreamCollection</code>, and/or 
+   *        <code>Future</code>. 
    * 
    * @return Either an instance of <code>Number</code> or <code>TelemetryStreamCollection</code>. 
    * 
@@ -125,6 +130,8 @@ public class TelemetryFunctionManager {
           "Telemetry function " + functionName + " does not exist.");
     }
     
+    //wait for future inputs
+    parameters = getParameterValues(parameters);
     //check input types
     for (int i = 0; i < parameters.length; i++) {
       Object object = parameters[i];
@@ -143,4 +150,39 @@ public class TelemetryFunctionManager {
     }
     return result;
   }
+
+  /**
+   * Returns the parameters with each <code>Future</code> replaced by its result. The futures
+   * are waited on in order, and the first one to fail stops the wait.
+   * 
+   * @param parameters The parameters, some of which may be futures.
+   * @return The parameter values, or the parameters themselves if none are futures.
+   * @throws TelemetryFunctionException If any future fails or the wait is interrupted.
+   */
+  public static Object[] getParameterValues(Object[] parameters) 
+      throws TelemetryFunctionException {
+    Object[] values = parameters;
+    for (int i = 0; i < parameters.length; i++) {
+      if (parameters[i] instanceof Future) {
+        if (values == parameters) {
+          values = parameters.clone();
+        }
+        try {
+          values[i] = ((Future<?>) parameters[i]).get();
+        }
+        catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof TelemetryFunctionException) {
+            throw (TelemetryFunctionException) cause;
+          }
+          throw new TelemetryFunctionException(cause.getMessage(), cause);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new TelemetryFunctionException("Interrupted while waiting for parameter.", e);
+        }
+      }
+    }
+    return values;
+  }
 }
@@ -1,5 +1,8 @@
 package org.hackystat.telemetry.analyzer.function;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
 import junit.framework.TestCase;
 
 /**
@@ -25,4 +28,36 @@ public class TestTelemetryFunctionManager extends TestCase {
       assertTrue(manager.isFunction(name));
     }
   }
+
+  /**
+   * Tests that future parameters are replaced by their results, and that the failure of a
+   * future parameter is reported as a function exception.
+   * 
+   * @throws Exception If test fails.
+   */
+  public void testFutureParameters() throws Exception {
+    TelemetryFunctionManager manager = TelemetryFunctionManager.getInstance();
+    FutureTask<Object> ten = new FutureTask<Object>(new Callable<Object>() {
+      public Object call() {
+        return Integer.valueOf(10);
+      }
+    });
+    ten.run();
+    Object result = manager.compute("add", new Object[] {ten, Integer.valueOf(5)});
+    assertEquals(15, ((Number) result).intValue());
+
+    FutureTask<Object> failed = new FutureTask<Object>(new Callable<Object>() {
+      public Object call() throws Exception {
+        throw new Exception("No data.");
+      }
+    });
+    failed.run();
+    try {
+      manager.compute("add", new Object[] {ten, failed});
+      fail("Failed future should throw an exception.");
+    }
+    catch (TelemetryFunctionException e) {
+      assertEquals("No data.", e.getMessage());
+    }
+  }
 }
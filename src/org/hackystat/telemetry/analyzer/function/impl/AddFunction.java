@@ -11,9 +11,6 @@ import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
  * @author (Cedric) Qin ZHANG, Philip Johnson
  */
 public class AddFunction extends TelemetryFunction {
-  
-  /** Thread-safe add operator. */
-  private AddOperator addOperator = new AddOperator();
 
   /**
    * Constructs this instance.
@@ -42,39 +39,7 @@ public class AddFunction extends TelemetryFunction {
           + " takes 2 parameters of type 'Number' and/or 'TelemetryStreamCollection'.");
     }
     
-    if (parameters[0] instanceof Number && parameters[1] instanceof Number) {
-      return this.addOperator.computes((Number) parameters[0], (Number) parameters[1]);
-    }
-    else {
-      TelemetryStreamCollection tsc0 = (parameters[0] instanceof Number)
-        ? Utility.expandNumber((Number) parameters[0], (TelemetryStreamCollection) parameters[1])
-        : (TelemetryStreamCollection) parameters[0];
-      TelemetryStreamCollection tsc1 = (parameters[1] instanceof Number)
-        ? Utility.expandNumber((Number) parameters[1], (TelemetryStreamCollection) parameters[0])
-        : (TelemetryStreamCollection) parameters[1];
-      return BinaryOperationUtility.computes(this.addOperator, tsc0, tsc1);
-    }
-  }
-
-  /**
-   * Binary operator used by the enclosing class.
-   * 
-   * @author (Cedric) Qin ZHANG
-   */
-  private static class AddOperator implements BinaryOperationUtility.BinaryOperator {
-    /**
-     * Performs binary operation. 
-     * @param a Number 1.
-     * @param b Number 2.
-     * @return The result.
-     */
-    public Number computes(Number a, Number b) {
-      if (a instanceof Integer && b instanceof Integer) {
-        return Integer.valueOf(a.intValue() + b.intValue());
-      }
-      else {
-        return Double.valueOf(a.doubleValue() + b.doubleValue());
-      }      
-    }
+    //numbers are broadcast to every data point, without creating streams for them
+    return new ArithmeticTree(this, parameters).compute();
   }
 }
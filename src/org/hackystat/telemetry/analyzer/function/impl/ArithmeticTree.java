@@ -0,0 +1,327 @@
+package org.hackystat.telemetry.analyzer.function.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hackystat.telemetry.analyzer.function.TelemetryFunction;
+import org.hackystat.telemetry.analyzer.function.TelemetryFunctionException;
+import org.hackystat.telemetry.analyzer.function.TelemetryFunctionManager;
+import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
+import org.hackystat.telemetry.analyzer.model.TelemetryStream;
+import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
+import org.hackystat.utilities.time.period.TimePeriod;
+
+/**
+ * A tree of nested calls to the add, sub, mul and div functions, such as
+ * <code>Div(Add(a, b), Mul(c, 100))</code>, that is computed in a single pass. Computing the
+ * calls one at a time would create a new <code>TelemetryStreamCollection</code>, holding boxed
+ * values, for each of them. This tree instead computes each data point of the result directly
+ * from the primitive values of its operands, so that no intermediate streams are created.
+ * Number operands are broadcast to every data point rather than expanded into streams. Each 
+ * of the four functions computes itself as a tree of a single call.
+ * <p>
+ * A data point is null if any of the values it is computed from is null; add, sub and mul 
+ * return an Integer if both of their operands are Integers, and a Double otherwise; and div 
+ * always returns a Double. Two collection operands must be for the same project and interval,
+ * and must contain streams with the same tags and time periods.
+ *
+ * @author (Cedric) Qin ZHANG, Philip Johnson
+ */
+public class ArithmeticTree {
+
+  /** The add operator. */
+  private static final int ADD = 0;
+  /** The sub operator. */
+  private static final int SUB = 1;
+  /** The mul operator. */
+  private static final int MUL = 2;
+  /** The div operator. */
+  private static final int DIV = 3;
+
+  /** Indicates a null value. */
+  private static final int NULL_VALUE = 0;
+  /** Indicates an Integer value. */
+  private static final int INTEGER_VALUE = 1;
+  /** Indicates a Double value. */
+  private static final int DOUBLE_VALUE = 2;
+
+  /** The name of the function. */
+  private String functionName;
+  /** The operator of the function. */
+  private int operator;
+  /**
+   * The operands, each of type either <code>Number</code>,
+   * <code>TelemetryStreamCollection</code>, <code>Future</code> or <code>ArithmeticTree</code>.
+   */
+  private Object[] operands;
+  /** The index of each collection operand among the collections of the whole tree. */
+  private int[] slots;
+
+  /**
+   * Constructs this instance.
+   *
+   * @param function The add, sub, mul or div function.
+   * @param operands The operands of the function, each of type either <code>Number</code>,
+   *        <code>TelemetryStreamCollection</code>, <code>ArithmeticTree</code> or
+   *        <code>Future</code> whose result is a <code>Number</code> or
+   *        <code>TelemetryStreamCollection</code>.
+   */
+  public ArithmeticTree(TelemetryFunction function, Object[] operands) {
+    this.functionName = function.getName();
+    this.operator = getOperator(function);
+    this.operands = operands.clone();
+  }
+
+  /**
+   * Returns true if the function is one of the add, sub, mul and div functions, which can be
+   * computed by this class.
+   *
+   * @param function The function.
+   * @return True if the function is arithmetic.
+   */
+  public static boolean isArithmeticFunction(TelemetryFunction function) {
+    return getOperator(function) >= 0;
+  }
+
+  /**
+   * Returns the operator of a function.
+   *
+   * @param function The function.
+   * @return The operator, or -1 if the function is not arithmetic.
+   */
+  private static int getOperator(TelemetryFunction function) {
+    if (function instanceof AddFunction) {
+      return ADD;
+    }
+    if (function instanceof SubFunction) {
+      return SUB;
+    }
+    if (function instanceof MulFunction) {
+      return MUL;
+    }
+    if (function instanceof DivFunction) {
+      return DIV;
+    }
+    return -1;
+  }
+
+  /**
+   * Computes this tree, waiting for any <code>Future</code> operands.
+   *
+   * @return Either an instance of <code>Number</code> or <code>TelemetryStreamCollection</code>.
+   * @throws TelemetryFunctionException If an operand is invalid or fails.
+   */
+  public Object compute() throws TelemetryFunctionException {
+    List<TelemetryStreamCollection> collections = new ArrayList<TelemetryStreamCollection>();
+    resolve(collections);
+    double[] result = new double[1];
+    if (collections.isEmpty()) {
+      int kind = evaluate(null, 0, result);
+      return (kind == INTEGER_VALUE) ? (Number) Integer.valueOf((int) result[0])
+          : (Number) Double.valueOf(result[0]);
+    }
+
+    TelemetryStreamCollection first = collections.get(0);
+    TelemetryStreamCollection last = collections.get(collections.size() - 1);
+    TelemetryStreamCollection resultStreams = new TelemetryStreamCollection(null,
+        first.getProject(), last.getInterval());
+    TelemetryStream[] streams = new TelemetryStream[collections.size()];
+    try {
+      for (TelemetryStream stream : first) {
+        for (int i = 0; i < streams.length; i++) {
+          streams[i] = collections.get(i).get(stream.getTag());
+          checkStreams(stream, streams[i]);
+        }
+        TelemetryStream resultStream = new TelemetryStream(stream.getTag());
+        int size = stream.size();
+        for (int point = 0; point < size; point++) {
+          TimePeriod period = stream.getPeriod(point);
+          switch (evaluate(streams, point, result)) {
+          case INTEGER_VALUE:
+            resultStream.addDataPoint(period, (int) result[0]);
+            break;
+          case DOUBLE_VALUE:
+            resultStream.addDataPoint(period, result[0]);
+            break;
+          default:
+            resultStream.addDataPoint(new TelemetryDataPoint(period, null));
+          }
+        }
+        resultStreams.add(resultStream);
+      }
+    }
+    catch (TelemetryFunctionException ex) {
+      throw ex;
+    }
+    catch (Exception ex) {
+      throw new TelemetryFunctionException(ex.getMessage(), ex);
+    }
+    return resultStreams;
+  }
+
+  /**
+   * Waits for the <code>Future</code> operands of this tree and its subtrees, checks the
+   * operands, and assigns each collection operand its slot, from left to right.
+   *
+   * @param collections Receives the collection operands of the whole tree.
+   * @return The leftmost collection operand of this tree, or null if there is none.
+   * @throws TelemetryFunctionException If an operand is invalid or fails.
+   */
+  private TelemetryStreamCollection resolve(List<TelemetryStreamCollection> collections)
+      throws TelemetryFunctionException {
+    this.operands = TelemetryFunctionManager.getParameterValues(this.operands);
+    if (this.operands.length != 2) {
+      throw new TelemetryFunctionException("Telemetry function " + this.functionName
+          + " takes 2 parameters of type 'Number' and/or 'TelemetryStreamCollection'.");
+    }
+    this.slots = new int[2];
+    TelemetryStreamCollection[] leftmost = new TelemetryStreamCollection[2];
+    for (int i = 0; i < 2; i++) {
+      Object operand = this.operands[i];
+      this.slots[i] = -1;
+      if (operand instanceof ArithmeticTree) {
+        leftmost[i] = ((ArithmeticTree) operand).resolve(collections);
+      }
+      else if (operand instanceof TelemetryStreamCollection) {
+        leftmost[i] = (TelemetryStreamCollection) operand;
+        this.slots[i] = collections.size();
+        collections.add(leftmost[i]);
+      }
+      else if (!(operand instanceof Number)) {
+        throw new TelemetryFunctionException("Telemetry function " + this.functionName
+            + " takes 2 parameters of type 'Number' and/or 'TelemetryStreamCollection'.");
+      }
+    }
+    if (leftmost[0] != null && leftmost[1] != null) {
+      checkCollections(leftmost[0], leftmost[1]);
+    }
+    return (leftmost[0] == null) ? leftmost[1] : leftmost[0];
+  }
+
+  /**
+   * Checks whether the streams in two collections can be matched.
+   *
+   * @param streamCollection1 The first collection.
+   * @param streamCollection2 The second collection.
+   * @throws TelemetryFunctionException If they cannot be matched.
+   */
+  private static void checkCollections(TelemetryStreamCollection streamCollection1,
+      TelemetryStreamCollection streamCollection2) throws TelemetryFunctionException {
+    if (!streamCollection1.getProject().equals(streamCollection2.getProject())) {
+      throw new TelemetryFunctionException("Two stream collections are for different projects.");
+    }
+    if (!streamCollection1.getInterval().equals(streamCollection2.getInterval())) {
+      throw new TelemetryFunctionException("Two stream collections are for different intervals.");
+    }
+    if (streamCollection1.getTelemetryStreams().size()
+        != streamCollection2.getTelemetryStreams().size()) {
+      throw new TelemetryFunctionException(
+          "Two stream collections have different number of streams.");
+    }
+    for (TelemetryStream stream1 : streamCollection1) {
+      if (streamCollection2.get(stream1.getTag()) == null) {
+        throw new TelemetryFunctionException("Two stream collections do not match.");
+      }
+    }
+  }
+
+  /**
+   * Checks whether two streams have the same time periods.
+   *
+   * @param stream1 The first stream.
+   * @param stream2 The second stream.
+   * @throws TelemetryFunctionException If their time periods differ.
+   */
+  private static void checkStreams(TelemetryStream stream1, TelemetryStream stream2)
+      throws TelemetryFunctionException {
+    if (stream1 == stream2) {
+      return;
+    }
+    int size = stream1.size();
+    if (size != stream2.size()) {
+      throw new TelemetryFunctionException("Two telemetry streams are of different size.");
+    }
+    for (int i = 0; i < size; i++) {
+      TimePeriod period1 = stream1.getPeriod(i);
+      TimePeriod period2 = stream2.getPeriod(i);
+      if (period1 != period2 && !period1.equals(period2)) {
+        throw new TelemetryFunctionException(
+            "Different time periods detected in the two streams.");
+      }
+    }
+  }
+
+  /**
+   * Computes the value of this tree at a data point.
+   *
+   * @param streams The stream of each collection operand of the whole tree, by slot.
+   * @param point The index of the data point.
+   * @param result Receives the value, unless it is null.
+   * @return The kind of value: NULL_VALUE, INTEGER_VALUE or DOUBLE_VALUE.
+   */
+  private int evaluate(TelemetryStream[] streams, int point, double[] result) {
+    double a = 0;
+    int kindA = NULL_VALUE;
+    for (int i = 0; i < 2; i++) {
+      Object operand = this.operands[i];
+      int kind;
+      double value;
+      if (this.slots[i] >= 0) {
+        TelemetryStream stream = streams[this.slots[i]];
+        if (!stream.hasValue(point)) {
+          return NULL_VALUE;
+        }
+        kind = stream.isIntegerValue(point) ? INTEGER_VALUE : DOUBLE_VALUE;
+        value = stream.getDoubleValue(point);
+      }
+      else if (operand instanceof ArithmeticTree) {
+        kind = ((ArithmeticTree) operand).evaluate(streams, point, result);
+        if (kind == NULL_VALUE) {
+          return NULL_VALUE;
+        }
+        value = result[0];
+      }
+      else {
+        kind = (operand instanceof Integer) ? INTEGER_VALUE : DOUBLE_VALUE;
+        value = ((Number) operand).doubleValue();
+      }
+      if (i == 0) {
+        a = value;
+        kindA = kind;
+      }
+      else {
+        return combine(a, kindA, value, kind, result);
+      }
+    }
+    return NULL_VALUE;
+  }
+
+  /**
+   * Applies the operator to two non-null values.
+   *
+   * @param a The first value.
+   * @param kindA The kind of the first value.
+   * @param b The second value.
+   * @param kindB The kind of the second value.
+   * @param result Receives the value.
+   * @return The kind of the value: INTEGER_VALUE or DOUBLE_VALUE.
+   */
+  private int combine(double a, int kindA, double b, int kindB, double[] result) {
+    boolean integers = (kindA == INTEGER_VALUE) && (kindB == INTEGER_VALUE);
+    switch (this.operator) {
+    case ADD:
+      result[0] = integers ? (double) ((int) a + (int) b) : a + b;
+      break;
+    case SUB:
+      result[0] = integers ? (double) ((int) a - (int) b) : a - b;
+      break;
+    case MUL:
+      result[0] = integers ? (double) ((int) a * (int) b) : a * b;
+      break;
+    default:
+      result[0] = a / b;
+      return DOUBLE_VALUE;
+    }
+    return integers ? INTEGER_VALUE : DOUBLE_VALUE;
+  }
+}
@@ -12,9 +12,6 @@ import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
  */
 public class DivFunction extends TelemetryFunction {
 
-  /** Thread-safe div operator. */
-  private DivOperator divOperator = new DivOperator();
-  
   /**
    * Constructs this instance.
    * 
@@ -41,34 +38,7 @@ public class DivFunction extends TelemetryFunction {
           + " takes 2 parameters of type 'Number' and/or 'TelemetryStreamCollection'.");
     }
     
-    if (parameters[0] instanceof Number && parameters[1] instanceof Number) {
-      return this.divOperator.computes((Number) parameters[0], (Number) parameters[1]);
-    }
-    else {
-      TelemetryStreamCollection tsc0 = (parameters[0] instanceof Number)
-        ? Utility.expandNumber((Number) parameters[0], (TelemetryStreamCollection) parameters[1])
-        : (TelemetryStreamCollection) parameters[0];
-      TelemetryStreamCollection tsc1 = (parameters[1] instanceof Number)
-        ? Utility.expandNumber((Number) parameters[1], (TelemetryStreamCollection) parameters[0])
-        : (TelemetryStreamCollection) parameters[1];
-      return BinaryOperationUtility.computes(this.divOperator, tsc0, tsc1);
-    }
-  }
-  
-  /**
-   * Binary operator used by the enclosing class.
-   * 
-   * @author (Cedric) Qin ZHANG
-   */
-  private static class DivOperator implements BinaryOperationUtility.BinaryOperator {
-    /**
-     * Performs binary operation. 
-     * @param a Number 1.
-     * @param b Number 2.
-     * @return The result.
-     */
-    public Number computes(Number a, Number b) {
-      return Double.valueOf(a.doubleValue() / b.doubleValue());     
-    }
+    //numbers are broadcast to every data point, without creating streams for them
+    return new ArithmeticTree(this, parameters).compute();
   }
 }
@@ -1,15 +1,24 @@
 package org.hackystat.telemetry.analyzer.function.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.hackystat.telemetry.analyzer.function.TelemetryFunction;
 import org.hackystat.telemetry.analyzer.function.TelemetryFunctionException;
-import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
+import org.hackystat.telemetry.service.server.DaemonThreadFactory;
+import org.hackystat.telemetry.service.server.ServerProperties;
 
 /**
  * Filters telemetry streams in a <code>TelemetryStreamCollection</code> object by applying a 
@@ -21,6 +30,18 @@ public class FilterFunction extends TelemetryFunction {
 
   private static Map<String, RankFunction> RANK_FUNCTIONS = new TreeMap<String, RankFunction>();
   
+  /** The number of data points for which the ranks are computed by each thread. */
+  private static final int PARALLEL_RANK_POINTS = 50000;
+  /**
+   * The maximum number of threads computing the ranks of a collection, taken from the
+   * ServerProperties FILTER_THREADS system property.
+   */
+  private static final int RANK_THREADS = ServerProperties.getPositiveInt(
+      ServerProperties.FILTER_THREADS, ServerProperties.DEFAULT_FILTER_THREADS);
+  /** The pool of threads computing the ranks of large collections. */
+  private static final ExecutorService rankExecutor = 
+    Executors.newFixedThreadPool(RANK_THREADS, new DaemonThreadFactory("telemetry-filter"));
+  
   /**
    * Constructs this instance.
    * 
@@ -124,17 +145,21 @@ public class FilterFunction extends TelemetryFunction {
     
     TelemetryStreamCollection target = new TelemetryStreamCollection(
         streams.getName(), streams.getProject(), streams.getInterval());   
-    for (TelemetryStream stream : streams) {
-      double rank = rankFunction.getRank(stream);
+    TelemetryStream[] streamArray = getStreams(streams);
+    double[] ranks = getRanks(rankFunction, streamArray);
+    for (int i = 0; i < streamArray.length; i++) {
+      double rank = ranks[i];
       if ((isAbove && rank > cutoff) || (! isAbove && rank < cutoff)) {
-        target.add(stream);
+        target.add(streamArray[i]);
       }
     }
     return target;
   }
   
   /**
-   * Applies filter and returns the telemetry streams at the top or bottom.
+   * Applies filter and returns the telemetry streams at the top or bottom. Only the number
+   * of streams to be returned are kept in a heap as the ranks are scanned, so that the 
+   * remaining streams are never sorted.
    * 
    * @param streams Telemetry stream collection.
    * @param rankFunction The rank function.
@@ -144,90 +169,156 @@ public class FilterFunction extends TelemetryFunction {
    * @return A new <code>TelemetryStreamCollection</code> instance after filtering. 
    * @throws Exception If there is anything wrong.
    */
-  @SuppressWarnings("cast")
   private TelemetryStreamCollection applyRelativeCutoff(TelemetryStreamCollection streams, 
       RankFunction rankFunction, String opMode, int cutoff) throws Exception {
     
     TelemetryStreamCollection target = new TelemetryStreamCollection(
         streams.getName(), streams.getProject(), streams.getInterval());
-    ArrayList<TelemetryStream> orderedList = this.sort(rankFunction, streams);
+    int size = streams.getTelemetryStreams().size();
+    int count;
+    boolean isTop;
     
     if ("TopPercent".equalsIgnoreCase(opMode)) {
       if (cutoff < 0 || cutoff > 100) {
         throw new TelemetryFunctionException("You must supply a cutoff value from 0 to 100 for " +
             "'TopPercent' operation mode.");
       }
-      int start = (int) Math.floor(
-          (double) orderedList.size() - (double) orderedList.size() * cutoff / 100);
-      if (start < 0) {
-        start = 0;
-      }
-      for (int i = start; i < orderedList.size(); i++) {
-        target.add(orderedList.get(i));
-      }
+      int start = (int) Math.floor((double) size - (double) size * cutoff / 100);
+      count = size - Math.max(start, 0);
+      isTop = true;
     }
     else if ("BottomPercent".equalsIgnoreCase(opMode)) {
       if (cutoff < 0 || cutoff > 100) {
         throw new TelemetryFunctionException("You must supply a cutoff value from 0 to 100 for " +
             "'BottomPercent' operation mode.");
       }
-      int count = (int) Math.ceil((double) orderedList.size() * cutoff / 100);
-      for (int i = 0; i < count && i < orderedList.size(); i++) {
-        target.add(orderedList.get(i));
-      }
+      count = (int) Math.ceil((double) size * cutoff / 100);
+      isTop = false;
     }
     else if ("Top".equalsIgnoreCase(opMode)) {
-      int start = orderedList.size() - cutoff;
-      if (start < 0) {
-        start = 0;
-      }
-      for (int i = start; i < orderedList.size(); i++) {
-        target.add(orderedList.get(i));
-      }
+      count = cutoff;
+      isTop = true;
     }
     else if ("Bottom".equalsIgnoreCase(opMode)) {
-      for (int i = 0; i < cutoff && i < orderedList.size(); i++) {
-        target.add(orderedList.get(i));
-      }
+      count = cutoff;
+      isTop = false;
     }
     else {
       throw new TelemetryFunctionException("Unsupported op mode '" + opMode + "'.");
     }
     
+    count = Math.min(count, size);
+    if (count > 0) {
+      TelemetryStream[] streamArray = getStreams(streams);
+      for (int index : select(getRanks(rankFunction, streamArray), count, isTop)) {
+        target.add(streamArray[index]);
+      }
+    }
     return target;
   }
   
   /**
-   * Sorts the telemetry streams according to a rank function.
+   * Returns the streams of a collection, in the order of its iteration.
    * 
-   * @param rankFunction The rank function.
    * @param streams Telemetry stream collection.
+   * @return The streams.
+   */
+  private static TelemetryStream[] getStreams(TelemetryStreamCollection streams) {
+    Collection<TelemetryStream> collection = streams.getTelemetryStreams();
+    return collection.toArray(new TelemetryStream[collection.size()]);
+  }
+  
+  /**
+   * Selects the streams with the highest or lowest ranks. Streams are ordered by rank, and
+   * streams with equal ranks by their index, so that the selected streams are the last or 
+   * first count streams of the list sorted in this order. A bounded heap holds the selected
+   * streams during the scan, so selection takes O(n log count) time.
    * 
-   * @return A sorted list of telemetry streams, from the smallest rank value to the largest.
+   * @param ranks The rank of each stream.
+   * @param count The number of streams to select, from 1 to the number of streams.
+   * @param isTop True to select the highest ranks, false to select the lowest.
+   * @return The indexes of the selected streams, from the lowest rank to the highest.
+   */
+  static int[] select(final double[] ranks, int count, boolean isTop) {
+    final Comparator<Integer> ascending = new Comparator<Integer>() {
+      public int compare(Integer index1, Integer index2) {
+        int result = Double.compare(ranks[index1], ranks[index2]);
+        return (result == 0) ? index1.compareTo(index2) : result;
+      }
+    };
+    // The head of the heap is the selected stream that would be the next to be dropped.
+    Comparator<Integer> heapOrder = isTop ? ascending : Collections.reverseOrder(ascending);
+    PriorityQueue<Integer> heap = new PriorityQueue<Integer>(count, heapOrder);
+    for (int i = 0; i < ranks.length; i++) {
+      if (heap.size() < count) {
+        heap.add(i);
+      }
+      else if (heapOrder.compare(i, heap.peek()) > 0) {
+        heap.poll();
+        heap.add(i);
+      }
+    }
+    int[] indexes = new int[heap.size()];
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[isTop ? i : indexes.length - 1 - i] = heap.poll();
+    }
+    return indexes;
+  }
+  
+  /**
+   * Computes the rank of each stream. The ranks of large collections are computed in 
+   * parallel, with the calling thread computing the first part.
    * 
-   * @throws TelemetryFunctionException If the rank function does not exist.
+   * @param rankFunction The rank function.
+   * @param streams The streams.
+   * @return The rank of each stream.
+   * @throws Exception If the ranks cannot be computed.
    */
-  private ArrayList<TelemetryStream> sort(RankFunction rankFunction, 
-      TelemetryStreamCollection streams) 
-      throws TelemetryFunctionException {
-
-    TreeMap<Double, List<TelemetryStream>> map = new TreeMap<Double, List<TelemetryStream>>();
-    for (TelemetryStream stream : streams.getTelemetryStreams()) {
-      Double rank = new Double(rankFunction.getRank(stream));
-      List<TelemetryStream> list = map.get(rank);
-      if (list == null) {
-        list = new ArrayList<TelemetryStream>(1);
-        map.put(rank, list);
+  static double[] getRanks(final RankFunction rankFunction, final TelemetryStream[] streams) 
+      throws Exception {
+    final double[] ranks = new double[streams.length];
+    long points = 0;
+    for (TelemetryStream stream : streams) {
+      points += stream.size();
+    }
+    int parts = (int) Math.min(RANK_THREADS, 
+        Math.min(streams.length, points / PARALLEL_RANK_POINTS + 1));
+    List<Future<?>> futures = new ArrayList<Future<?>>(parts);
+    for (int part = 1; part < parts; part++) {
+      final int start = streams.length * part / parts;
+      final int end = streams.length * (part + 1) / parts;
+      futures.add(rankExecutor.submit(new Runnable() {
+        public void run() {
+          computeRanks(rankFunction, streams, ranks, start, end);
+        }
+      }));
+    }
+    computeRanks(rankFunction, streams, ranks, 0, streams.length / Math.max(parts, 1));
+    try {
+      for (Future<?> future : futures) {
+        future.get();
       }
-      list.add(stream);
     }
-    
-    ArrayList<TelemetryStream> sortedList = 
-      new ArrayList<TelemetryStream>(streams.getTelemetryStreams().size());
-    for (List<TelemetryStream> list : map.values()) {
-      sortedList.addAll(list);
+    catch (ExecutionException e) {
+      throw new TelemetryFunctionException(e.getCause());
+    }
+    return ranks;
+  }
+  
+  /**
+   * Computes the ranks of a range of streams.
+   * 
+   * @param rankFunction The rank function.
+   * @param streams The streams.
+   * @param ranks Receives the rank of each stream.
+   * @param start The index of the first stream.
+   * @param end The index after the last stream.
+   */
+  private static void computeRanks(RankFunction rankFunction, TelemetryStream[] streams, 
+      double[] ranks, int start, int end) {
+    for (int i = start; i < end; i++) {
+      ranks[i] = rankFunction.getRank(streams[i]);
     }
-    return sortedList;
   }
   
   //===================== Rank Function ==============================
@@ -297,10 +388,9 @@ public class FilterFunction extends TelemetryFunction {
     public double getRank(TelemetryStream stream) {
       int count = 0;
       double sum = 0;
-      for (TelemetryDataPoint dp : stream.getDataPoints()) {
-        Number number = dp.getValue();
-        if (number != null) {
-          double numberValue = number.doubleValue();
+      for (int i = 0; i < stream.size(); i++) {
+        if (stream.hasValue(i)) {
+          double numberValue = stream.getDoubleValue(i);
           if (! Double.isInfinite(numberValue) && ! Double.isNaN(numberValue)) {
             //Cannot use infinity, because Positive infinity + negative infinity = NaN
             count ++;
@@ -326,10 +416,9 @@ public class FilterFunction extends TelemetryFunction {
      */
     public double getRank(TelemetryStream stream) {
       double max = Double.MIN_VALUE;
-      for (TelemetryDataPoint dp : stream.getDataPoints()) {
-        Number number = dp.getValue();
-        if (number != null) {
-          double numberValue = number.doubleValue();
+      for (int i = 0; i < stream.size(); i++) {
+        if (stream.hasValue(i)) {
+          double numberValue = stream.getDoubleValue(i);
           if (! Double.isInfinite(numberValue) && ! Double.isNaN(numberValue)) {
             if (max < numberValue) { //NOPMD
               max = numberValue;
@@ -355,10 +444,9 @@ public class FilterFunction extends TelemetryFunction {
      */
     public double getRank(TelemetryStream stream) {
       double min = Double.MAX_VALUE;
-      for (TelemetryDataPoint dp : stream.getDataPoints()) {
-        Number number = dp.getValue();
-        if (number != null) {
-          double numberValue = number.doubleValue();
+      for (int i = 0; i < stream.size(); i++) {
+        if (stream.hasValue(i)) {
+          double numberValue = stream.getDoubleValue(i);
           if (! Double.isInfinite(numberValue) && ! Double.isNaN(numberValue)) {
             if (min > numberValue) { //NOPMD
               min = numberValue;
@@ -383,12 +471,9 @@ public class FilterFunction extends TelemetryFunction {
      * @return The last value.
      */
     public double getRank(TelemetryStream stream) {
-      List<TelemetryDataPoint> list = stream.getDataPoints();
-      for (int i = list.size() - 1; i >= 0; i--) {
-        TelemetryDataPoint dp = list.get(i);
-        Number number = dp.getValue();
-        if (number != null) {
-          double numberValue = number.doubleValue();
+      for (int i = stream.size() - 1; i >= 0; i--) {
+        if (stream.hasValue(i)) {
+          double numberValue = stream.getDoubleValue(i);
           if (! Double.isInfinite(numberValue) && ! Double.isNaN(numberValue)) {
             return numberValue;
           }
@@ -413,10 +498,9 @@ public class FilterFunction extends TelemetryFunction {
     public double getRank(TelemetryStream stream) {
       double sum = 0;
       double lastValue = Double.NaN;
-      for (TelemetryDataPoint dp : stream.getDataPoints()) {
-        Number number = dp.getValue();
-        if (number != null) {
-          double numberValue = number.doubleValue();
+      for (int i = 0; i < stream.size(); i++) {
+        if (stream.hasValue(i)) {
+          double numberValue = stream.getDoubleValue(i);
           if (! Double.isInfinite(numberValue) && ! Double.isNaN(numberValue)) {
             if (! Double.isNaN(lastValue)) {
               sum += Math.abs(numberValue - lastValue);
@@ -445,10 +529,9 @@ public class FilterFunction extends TelemetryFunction {
     public double getRank(TelemetryStream stream) {
       double firstValue = Double.NaN;
       double lastValue = Double.NaN;
-      for (TelemetryDataPoint dp : stream.getDataPoints()) {
-        Number number = dp.getValue();
-        if (number != null) {
-          double numberValue = number.doubleValue();
+      for (int i = 0; i < stream.size(); i++) {
+        if (stream.hasValue(i)) {
+          double numberValue = stream.getDoubleValue(i);
           if (! Double.isInfinite(numberValue) && ! Double.isNaN(numberValue)) {
             if (Double.isNaN(firstValue)) {
               firstValue = numberValue;
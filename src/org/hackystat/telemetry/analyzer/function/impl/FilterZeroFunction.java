@@ -3,7 +3,6 @@ package org.hackystat.telemetry.analyzer.function.impl;
 import org.hackystat.telemetry.analyzer.function.TelemetryFunction;
 import org.hackystat.telemetry.analyzer.function.TelemetryFunctionException;
 import org.hackystat.telemetry.analyzer.model.TelemetryDataModelException;
-import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
 
@@ -59,8 +58,8 @@ public class FilterZeroFunction extends TelemetryFunction {
    * @return True if it contains all zero or no value.
    */
   private boolean isAllZero(TelemetryStream stream) {
-    for (TelemetryDataPoint dp : stream.getDataPoints()) {
-      Number value = dp.getValue();
+    for (int i = 0; i < stream.size(); i++) {
+      Number value = stream.getValue(i);
       if (value != null) {
         if ((value instanceof Double || value instanceof Float)
             && value.doubleValue() != 0.0) {
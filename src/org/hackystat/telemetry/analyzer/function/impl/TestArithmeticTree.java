@@ -0,0 +1,153 @@
+package org.hackystat.telemetry.analyzer.function.impl;
+
+import junit.framework.TestCase;
+
+import org.hackystat.telemetry.analyzer.function.TelemetryFunction;
+import org.hackystat.telemetry.analyzer.function.TelemetryFunctionException;
+import org.hackystat.telemetry.analyzer.function.TelemetryFunctionManager;
+import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
+import org.hackystat.telemetry.analyzer.model.TelemetryStream;
+import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
+import org.hackystat.telemetry.analyzer.model.TestTelemetryStreamCollection;
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.utilities.time.interval.DayInterval;
+import org.hackystat.utilities.time.period.Day;
+
+/**
+ * Test suite for <code>ArithmeticTree</code>.
+ *
+ * @author (Cedric) Qin ZHANG
+ */
+public class TestArithmeticTree extends TestCase {
+
+  private TelemetryFunctionManager manager = TelemetryFunctionManager.getInstance();
+  private Project project;
+  private Day startDay;
+  private DayInterval interval;
+  private String test = "test";
+
+  /**
+   * Sets up this test case.
+   * @throws Exception If test case cannot be set up.
+   */
+  @Override
+  protected void setUp() throws Exception {
+    this.project = new Project();
+    this.project.setName("TestArithmeticTree");
+    this.startDay = Day.getInstance("01-Jan-2004");
+    this.interval = new DayInterval(this.startDay, this.startDay.inc(2));
+  }
+
+  /**
+   * Creates a collection with a single stream holding the given values.
+   *
+   * @param values The values, possibly null.
+   * @return The collection.
+   * @throws Exception If the collection cannot be created.
+   */
+  private TelemetryStreamCollection createCollection(Number... values) throws Exception {
+    TelemetryStreamCollection collection
+        = new TelemetryStreamCollection(test, this.project, this.interval);
+    TelemetryStream stream = new TelemetryStream(test);
+    for (int i = 0; i < values.length; i++) {
+      stream.addDataPoint(new TelemetryDataPoint(this.startDay.inc(i), values[i]));
+    }
+    collection.add(stream);
+    return collection;
+  }
+
+  /**
+   * Returns the function with the given name.
+   *
+   * @param name The name.
+   * @return The function.
+   */
+  private TelemetryFunction getFunction(String name) {
+    return this.manager.getFunctionInfo(name).getFunction();
+  }
+
+  /**
+   * Tests that a tree computes the same values as calling the functions one at a time.
+   * @throws Exception If test fails.
+   */
+  public void testNestedFunctions() throws Exception {
+    TelemetryStreamCollection a = createCollection(1, null, 3);
+    TelemetryStreamCollection b = createCollection(2.5, 4, 6);
+    TelemetryStreamCollection c = createCollection(2, 5, 0);
+
+    ArithmeticTree tree = new ArithmeticTree(getFunction("div"), new Object[] {
+        new ArithmeticTree(getFunction("add"), new Object[] {a, b}),
+        new ArithmeticTree(getFunction("mul"), new Object[] {c, 100})});
+    TelemetryStreamCollection output = (TelemetryStreamCollection) tree.compute();
+
+    Object sum = this.manager.compute("add", new Object[] {a, b});
+    Object product = this.manager.compute("mul", new Object[] {c, 100});
+    TelemetryStreamCollection expected = (TelemetryStreamCollection)
+        this.manager.compute("div", new Object[] {sum, product});
+    TestTelemetryStreamCollection.assertEqualsIgnoreName(expected, output);
+    TelemetryStream stream = output.get(test);
+    assertEquals(Double.valueOf(3.5 / 200), stream.getValue(0));
+    assertNull(stream.getValue(1));
+    assertTrue(((Double) stream.getValue(2)).isInfinite());
+  }
+
+  /**
+   * Tests that add, sub and mul return Integers when both of their operands are Integers.
+   * @throws Exception If test fails.
+   */
+  public void testValueTypes() throws Exception {
+    TelemetryStreamCollection a = createCollection(1, 2.5);
+    ArithmeticTree tree = new ArithmeticTree(getFunction("sub"), new Object[] {
+        new ArithmeticTree(getFunction("mul"), new Object[] {a, 3}), 1});
+    TelemetryStream stream = ((TelemetryStreamCollection) tree.compute()).get(test);
+    assertEquals(Integer.valueOf(2), stream.getValue(0));
+    assertEquals(Double.valueOf(6.5), stream.getValue(1));
+
+    tree = new ArithmeticTree(getFunction("add"), new Object[] {1, 2});
+    assertEquals(Integer.valueOf(3), tree.compute());
+  }
+
+  /**
+   * Tests that the functions broadcast a number operand to every data point.
+   * @throws Exception If test fails.
+   */
+  public void testBroadcast() throws Exception {
+    TelemetryStreamCollection a = createCollection(1, null, 3);
+    TelemetryStreamCollection output = (TelemetryStreamCollection)
+        this.manager.compute("sub", new Object[] {10, a});
+    assertNull(output.getName());
+    assertEquals(this.project, output.getProject());
+    TelemetryStream stream = output.get(test);
+    assertEquals(3, stream.size());
+    assertEquals(Integer.valueOf(9), stream.getValue(0));
+    assertNull(stream.getValue(1));
+    assertEquals(Integer.valueOf(7), stream.getValue(2));
+  }
+
+  /**
+   * Tests that mismatched operands are reported as each function would report them.
+   * @throws Exception If test fails.
+   */
+  public void testMismatch() throws Exception {
+    TelemetryStreamCollection a = createCollection(1, 2);
+    TelemetryStreamCollection b = createCollection(1, 2, 3);
+    ArithmeticTree tree = new ArithmeticTree(getFunction("add"), new Object[] {
+        new ArithmeticTree(getFunction("mul"), new Object[] {a, 3}), b});
+    try {
+      tree.compute();
+      fail("Streams of different size should throw an exception.");
+    }
+    catch (TelemetryFunctionException e) {
+      assertEquals("Two telemetry streams are of different size.", e.getMessage());
+    }
+
+    tree = new ArithmeticTree(getFunction("add"), new Object[] {a, "a"});
+    try {
+      tree.compute();
+      fail("A string operand should throw an exception.");
+    }
+    catch (TelemetryFunctionException e) { //NOPMD
+      //expected
+    }
+  }
+}
@@ -290,4 +290,42 @@ public class TestFilterFunction extends TestCase {
     assertEquals(1, output.getTelemetryStreams().size());
     assertSame(inputStream2, output.get(test2));
   }
-}
\ No newline at end of file
+
+  /**
+   * Tests that the selected streams are the last or first streams of the list sorted by rank,
+   * with equal ranks kept in index order.
+   */
+  public void testSelect() {
+    double[] ranks = {3, 1, 2, 1, 3, 0};
+    int[] top = FilterFunction.select(ranks, 3, true);
+    assertEquals(2, top[0]);
+    assertEquals(0, top[1]);
+    assertEquals(4, top[2]);
+    int[] bottom = FilterFunction.select(ranks, 3, false);
+    assertEquals(5, bottom[0]);
+    assertEquals(1, bottom[1]);
+    assertEquals(3, bottom[2]);
+    assertEquals(6, FilterFunction.select(ranks, 6, true).length);
+  }
+
+  /**
+   * Tests that the ranks of a large collection, computed in parallel, are those of each 
+   * stream.
+   * 
+   * @throws Exception If test fails.
+   */
+  public void testParallelRanks() throws Exception {
+    TelemetryStream[] streams = new TelemetryStream[200];
+    for (int i = 0; i < streams.length; i++) {
+      streams[i] = new TelemetryStream("stream" + i);
+      for (int j = 0; j < 1000; j++) {
+        streams[i].addDataPoint(new TelemetryDataPoint(this.startDay.inc(j), 
+            Integer.valueOf(i + j)));
+      }
+    }
+    double[] ranks = FilterFunction.getRanks(new FilterFunction.LastRankFunction(), streams);
+    for (int i = 0; i < streams.length; i++) {
+      assertEquals(i + 999.0, ranks[i], 0.0);
+    }
+  }
+}
@@ -1,33 +1,72 @@
 package org.hackystat.telemetry.analyzer.model;
 
-import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.BitSet;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.RandomAccess;
 
 import org.hackystat.utilities.time.period.TimePeriod;
 
 /**
  * Represents a single telemetry stream, which contains an ordered series of TelemetryDataPoint
  * instances.
- * 
+ * <p>
+ * The data points are stored in columns rather than as individual objects: an array of time
+ * periods in ascending order, a <code>double[]</code> of values, and a bitmap recording which
+ * values are present (non-null). The period array is shared with the other streams of a
+ * <code>TelemetryStreamCollection</code> that cover the same periods, and is copied before
+ * this stream modifies it. Values are returned as the same Number type with which they were
+ * added, as long as all of the values in the stream are Integers, Longs, or Doubles;
+ * otherwise, the stream falls back to keeping each value's Number instance as well. It also
+ * does so for a Long whose magnitude exceeds 2^53, which a double cannot represent exactly.
+ * <code>TelemetryDataPoint</code> instances are created on demand as a compatibility view.
+ * <p>
+ * Code that traverses a stream should use the indexed accessors (<code>size</code>,
+ * <code>getPeriod</code>, <code>hasValue</code>, <code>getDoubleValue</code> and
+ * <code>getValue</code>) or <code>getDataPointView</code>, none of which copy the stream.
+ *
  * @author (Cedric) Qin Zhang
  */
 public class TelemetryStream {
 
-  private static final TelemetryDataPointTimePeriodComparator DATAPOINT_TIMEPERIOD_COMPARATOR 
-      = new TelemetryDataPointTimePeriodComparator();
+  /** Indicates that no non-null value has been added yet. */
+  private static final byte NO_TYPE = 0;
+  /** Indicates that all non-null values are Integers. */
+  private static final byte INTEGER_TYPE = 1;
+  /** Indicates that all non-null values are Longs. */
+  private static final byte LONG_TYPE = 2;
+  /** Indicates that all non-null values are Doubles. */
+  private static final byte DOUBLE_TYPE = 3;
+  /** Indicates that the values are of mixed or other types, and are kept in boxed form. */
+  private static final byte BOXED_TYPE = 4;
+  /** The largest magnitude of a Long value that a double represents exactly. */
+  private static final long MAX_EXACT_LONG = 1L << 53;
+  /** The initial capacity of the columns. */
+  private static final int INITIAL_CAPACITY = 16;
 
   private Object tag;
 
-  private TreeMap<TimePeriod, TelemetryDataPoint> dataPoints = 
-    new TreeMap<TimePeriod, TelemetryDataPoint>();
+  /** The time periods, in ascending order. Only the first size entries are used. */
+  private TimePeriod[] periods = new TimePeriod[INITIAL_CAPACITY];
+  /** True if the periods array is shared with other streams, and must be copied on write. */
+  private boolean periodsShared = false;
+  /** The number of data points. */
+  private int size = 0;
+  /** The value of each data point, or 0 if the value is null. */
+  private double[] values = new double[INITIAL_CAPACITY];
+  /** The data points whose values are present (non-null). */
+  private BitSet present = new BitSet();
+  /** The Number type of the non-null values. */
+  private byte valueType = NO_TYPE;
+  /** The value of each data point, only kept when valueType is BOXED_TYPE. */
+  private Number[] boxed = null;
+  /** The read-only view of the data points, created when first requested. */
+  private List<TelemetryDataPoint> dataPointView = null;
 
   /**
    * Constructs this instance.
-   * 
+   *
    * @param tag An object that helps to recognize this telemetry stream. Null is
    *        a valid value.
    */
@@ -37,7 +76,7 @@ public class TelemetryStream {
 
   /**
    * Gets the tag associated with this telemetry stream.
-   * 
+   *
    * @return The tag object.
    */
   public Object getTag() {
@@ -46,7 +85,7 @@ public class TelemetryStream {
 
   /**
    * Sets the tag associated with this telemetry stream.
-   * 
+   *
    * @param tag The new tag value
    */
   public void setTag(final Object tag) {
@@ -57,24 +96,74 @@ public class TelemetryStream {
    * Adds a data point to this telemetry stream. Note that the time period in
    * all data points must be of the same type (either day, week, or month).
    * Otherwise, an exception will be raised.
-   * 
+   *
    * @param dataPoint The data point to be added.
-   * 
+   *
    * @throws TelemetryDataModelException If the data for the time period already exists.
    */
   public void addDataPoint(TelemetryDataPoint dataPoint) throws TelemetryDataModelException {
+    int index = insertPeriod(dataPoint.getPeriod());
+    Number value = dataPoint.getValue();
+    if (value != null) {
+      setValue(index, value.doubleValue(), getType(value), value);
+    }
+  }
+
+  /**
+   * Adds a data point with an Integer value to this telemetry stream, without creating a 
+   * <code>TelemetryDataPoint</code> or boxing the value.
+   *
+   * @param period The time period.
+   * @param value The value.
+   *
+   * @throws TelemetryDataModelException If the data for the time period already exists.
+   */
+  public void addDataPoint(TimePeriod period, int value) throws TelemetryDataModelException {
+    setValue(insertPeriod(period), value, INTEGER_TYPE, null);
+  }
+
+  /**
+   * Adds a data point with a Double value to this telemetry stream, without creating a 
+   * <code>TelemetryDataPoint</code> or boxing the value.
+   *
+   * @param period The time period.
+   * @param value The value.
+   *
+   * @throws TelemetryDataModelException If the data for the time period already exists.
+   */
+  public void addDataPoint(TimePeriod period, double value) throws TelemetryDataModelException {
+    setValue(insertPeriod(period), value, DOUBLE_TYPE, null);
+  }
+
+  /**
+   * Inserts a new time period, whose value is null, at its place in this stream.
+   *
+   * @param period The time period.
+   * @return The index of the new time period.
+   *
+   * @throws TelemetryDataModelException If the time period already exists, or is of a 
+   *         different type.
+   */
+  private int insertPeriod(TimePeriod period) throws TelemetryDataModelException {
+    int index;
     try {
-      TimePeriod period = dataPoint.getPeriod();
-      if (this.dataPoints.containsKey(period)) {
-        throw new TelemetryDataModelException("Duplicated period: " + period.toString());
-      }
-      this.dataPoints.put(period, dataPoint);
+      // Data points are almost always added in order.
+      index = ((this.size == 0) || (period.compareTo(this.periods[this.size - 1]) > 0))
+          ? this.size : indexOf(period);
     }
     catch (ClassCastException ex) {
       // this exception is raised when the types of time period in data points are different.
-      throw new 
+      throw new
       TelemetryDataModelException("All data points must have the same time period type.", ex);
     }
+    if (index >= 0 && index < this.size) {
+      throw new TelemetryDataModelException("Duplicated period: " + period.toString());
+    }
+    if (index < 0) {
+      index = -(index + 1);
+    }
+    insert(index, period);
+    return index;
   }
 
   /**
@@ -82,59 +171,339 @@ public class TelemetryStream {
    * telemetry stream does not contain the data point associated the time
    * period, an exception is raised. If a null is return, it means that this
    * streams contains the data point, but the value in that data point is null.
-   * 
+   *
    * @param timePeriod The time period.
    * @return The value.
-   * 
+   *
    * @throws TelemetryDataModelException If there is no value associated with the
    *         time period.
    */
   public Number getDataPointValue(TimePeriod timePeriod) throws TelemetryDataModelException {
-    TelemetryDataPoint dataPoint = this.dataPoints.get(timePeriod);
-    if (dataPoint == null) {
+    int index;
+    try {
+      index = indexOf(timePeriod);
+    }
+    catch (ClassCastException ex) {
+      index = -1;
+    }
+    if (index < 0) {
       throw new TelemetryDataModelException("No data for the period " + timePeriod.toString());
     }
-    return dataPoint.getValue();
+    return getNumber(index);
   }
 
   /**
-   * Gets a list of data points in this telemetry stream, ordered by time
-   * period.
-   * 
+   * Gets a new list of data points in this telemetry stream, ordered by time
+   * period. Callers that only read the data points should use 
+   * <code>getDataPointView</code> or the indexed accessors instead.
+   *
    * @return A collection of <code>TelemetryDataPoint</code> objects.
    */
   public List<TelemetryDataPoint> getDataPoints() {
-    ArrayList<TelemetryDataPoint> list = 
-      new ArrayList<TelemetryDataPoint>(this.dataPoints.values());
-    Collections.sort(list, DATAPOINT_TIMEPERIOD_COMPARATOR);
+    List<TelemetryDataPoint> list = new ArrayList<TelemetryDataPoint>(this.size);
+    for (int i = 0; i < this.size; i++) {
+      list.add(new TelemetryDataPoint(this.periods[i], getNumber(i)));
+    }
     return list;
   }
 
   /**
-   * Comparator for <code>TelemetryDataPoint</code> instances based on their
-   * time period property.
-   * 
-   * @author (Cedric) Qin Zhang
+   * Gets a read-only view of the data points in this telemetry stream, ordered by time
+   * period. The view is backed by the stream, so it is neither copied nor sorted, and it 
+   * reflects any data points added later. Each <code>TelemetryDataPoint</code> is created 
+   * when it is retrieved from the view.
+   *
+   * @return A read-only list of <code>TelemetryDataPoint</code> objects.
    */
-  private static class TelemetryDataPointTimePeriodComparator 
-  implements Serializable, Comparator<TelemetryDataPoint> {
+  public List<TelemetryDataPoint> getDataPointView() {
+    if (this.dataPointView == null) {
+      this.dataPointView = new DataPointView();
+    }
+    return this.dataPointView;
+  }
+
+  /**
+   * Returns the number of data points in this stream.
+   *
+   * @return The number of data points.
+   */
+  public int size() {
+    return this.size;
+  }
 
-    private static final long serialVersionUID = 1L;
+  /**
+   * Returns the time period of the data point at the given index. Data points are indexed
+   * in ascending order of their time periods.
+   *
+   * @param index The index, from 0 to size() - 1.
+   * @return The time period.
+   */
+  public TimePeriod getPeriod(int index) {
+    checkIndex(index);
+    return this.periods[index];
+  }
+
+  /**
+   * Returns true if the data point at the given index has a (non-null) value.
+   *
+   * @param index The index, from 0 to size() - 1.
+   * @return True if the value is not null.
+   */
+  public boolean hasValue(int index) {
+    checkIndex(index);
+    return this.present.get(index);
+  }
+
+  /**
+   * Returns the value of the data point at the given index as a double, without boxing it.
+   * Returns 0 if the value is null, which callers can determine with <code>hasValue</code>.
+   * A Long value whose magnitude exceeds 2^53 is rounded to the nearest double; 
+   * <code>getValue</code> returns it exactly.
+   *
+   * @param index The index, from 0 to size() - 1.
+   * @return The value.
+   */
+  public double getDoubleValue(int index) {
+    checkIndex(index);
+    return this.values[index];
+  }
+
+  /**
+   * Returns true if the value of the data point at the given index is an Integer.
+   *
+   * @param index The index, from 0 to size() - 1.
+   * @return True if the value is an Integer, false if it is another type or null.
+   */
+  public boolean isIntegerValue(int index) {
+    checkIndex(index);
+    if (this.boxed != null) {
+      return this.boxed[index] instanceof Integer;
+    }
+    return (this.valueType == INTEGER_TYPE) && this.present.get(index);
+  }
+
+  /**
+   * Returns the value of the data point at the given index, as the Number type with which
+   * it was added.
+   *
+   * @param index The index, from 0 to size() - 1.
+   * @return The value, possibly null.
+   */
+  public Number getValue(int index) {
+    checkIndex(index);
+    return getNumber(index);
+  }
+
+  /**
+   * Returns the time periods of this stream in ascending order. Only the first size entries
+   * are used, and the array must not be modified.
+   *
+   * @return The time periods.
+   */
+  TimePeriod[] getPeriods() {
+    return this.periods;
+  }
+
+  /**
+   * Throws an exception if the index is not that of a data point.
+   *
+   * @param index The index.
+   */
+  private void checkIndex(int index) {
+    if (index < 0 || index >= this.size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+    }
+  }
+
+  /**
+   * Replaces the time periods of this stream with an identical array shared with other
+   * streams. This stream will copy the array before it next modifies it.
+   *
+   * @param sharedPeriods The shared time periods, whose first size entries equal this
+   * stream's time periods.
+   */
+  void sharePeriods(TimePeriod[] sharedPeriods) {
+    this.periods = sharedPeriods;
+    this.periodsShared = true;
+  }
+
+  /**
+   * Returns the index of the given time period, or (-(insertion point) - 1) if the time period
+   * is not in this stream.
+   *
+   * @param period The time period.
+   * @return The index of the period.
+   * @throws ClassCastException If the period is of a different type than those in the stream.
+   */
+  private int indexOf(TimePeriod period) {
+    int low = 0;
+    int high = this.size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int comparison = this.periods[mid].compareTo(period);
+      if (comparison < 0) {
+        low = mid + 1;
+      }
+      else if (comparison > 0) {
+        high = mid - 1;
+      }
+      else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  /**
+   * Inserts a time period with a null value at the given index, growing and shifting the
+   * columns as needed.
+   *
+   * @param index The index.
+   * @param period The time period.
+   */
+  private void insert(int index, TimePeriod period) {
+    int capacity = Math.max(this.size * 2, INITIAL_CAPACITY);
+    if (this.periodsShared || this.size == this.periods.length) {
+      TimePeriod[] newPeriods = new TimePeriod[capacity];
+      System.arraycopy(this.periods, 0, newPeriods, 0, this.size);
+      this.periods = newPeriods;
+      this.periodsShared = false;
+    }
+    if (this.size == this.values.length) {
+      double[] newValues = new double[capacity];
+      System.arraycopy(this.values, 0, newValues, 0, this.size);
+      this.values = newValues;
+      if (this.boxed != null) {
+        Number[] newBoxed = new Number[capacity];
+        System.arraycopy(this.boxed, 0, newBoxed, 0, this.size);
+        this.boxed = newBoxed;
+      }
+    }
+    if (index < this.size) {
+      System.arraycopy(this.periods, index, this.periods, index + 1, this.size - index);
+      System.arraycopy(this.values, index, this.values, index + 1, this.size - index);
+      if (this.boxed != null) {
+        System.arraycopy(this.boxed, index, this.boxed, index + 1, this.size - index);
+      }
+      for (int i = this.size; i > index; i--) {
+        this.present.set(i, this.present.get(i - 1));
+      }
+    }
+    this.periods[index] = period;
+    this.values[index] = 0;
+    this.present.clear(index);
+    if (this.boxed != null) {
+      this.boxed[index] = null;
+    }
+    this.size++;
+  }
+
+  /**
+   * Sets the value at the given index, switching to boxed storage if the value's type
+   * differs from the type of the values already present.
+   *
+   * @param index The index, whose value is currently null.
+   * @param value The value.
+   * @param type The type code of the value.
+   * @param number The value as a Number, or null if it is an Integer or Double that has not
+   *        been boxed.
+   */
+  private void setValue(int index, double value, byte type, Number number) {
+    if (this.valueType == NO_TYPE) {
+      this.valueType = type;
+    }
+    else if ((type != this.valueType) && (this.valueType != BOXED_TYPE)) {
+      // Keep each value's own Number instance from now on.
+      Number[] newBoxed = new Number[this.values.length];
+      for (int i = 0; i < this.size; i++) {
+        newBoxed[i] = getNumber(i);
+      }
+      this.boxed = newBoxed;
+      this.valueType = BOXED_TYPE;
+    }
+    if ((this.valueType == BOXED_TYPE) && (this.boxed == null)) {
+      this.boxed = new Number[this.values.length];
+    }
+    this.values[index] = value;
+    this.present.set(index);
+    if (this.boxed != null) {
+      if (number == null) {
+        number = (type == INTEGER_TYPE) ? (Number) Integer.valueOf((int) value) 
+            : (Number) Double.valueOf(value);
+      }
+      this.boxed[index] = number;
+    }
+  }
+
+  /**
+   * Returns the value at the given index.
+   *
+   * @param index The index.
+   * @return The value, possibly null.
+   */
+  private Number getNumber(int index) {
+    if (!this.present.get(index)) {
+      return null;
+    }
+    if (this.boxed != null) {
+      return this.boxed[index];
+    }
+    switch (this.valueType) {
+    case INTEGER_TYPE:
+      return Integer.valueOf((int) this.values[index]);
+    case LONG_TYPE:
+      return Long.valueOf((long) this.values[index]);
+    default:
+      return Double.valueOf(this.values[index]);
+    }
+  }
+
+  /**
+   * Returns the type code of a non-null value. A Long that the values column cannot hold
+   * exactly is kept in boxed form.
+   *
+   * @param value The value.
+   * @return The type code.
+   */
+  private static byte getType(Number value) {
+    if (value instanceof Integer) {
+      return INTEGER_TYPE;
+    }
+    if (value instanceof Long) {
+      long longValue = value.longValue();
+      return (longValue >= -MAX_EXACT_LONG && longValue <= MAX_EXACT_LONG) 
+          ? LONG_TYPE : BOXED_TYPE;
+    }
+    if (value instanceof Double) {
+      return DOUBLE_TYPE;
+    }
+    return BOXED_TYPE;
+  }
+
+  /**
+   * Provides the read-only view returned by <code>getDataPointView</code>.
+   */
+  private class DataPointView extends AbstractList<TelemetryDataPoint> implements RandomAccess {
+
+    /**
+     * Returns the data point at the given index.
+     *
+     * @param index The index.
+     * @return The data point.
+     */
+    @Override
+    public TelemetryDataPoint get(int index) {
+      return new TelemetryDataPoint(getPeriod(index), getValue(index));
+    }
 
     /**
-     * Compares two instances.
-     * 
-     * @param o1 Data point 1.
-     * @param o2 Data point 2.
-     * 
-     * @return 0 indicates they are equal, positive value indicates data point 1
-     *         has later time stamp than data point 2, negative value indicates
-     *         data point 1 has earlier time stamp than data point 2.
+     * Returns the number of data points.
+     *
+     * @return The number of data points.
      */
-    public int compare(TelemetryDataPoint o1, TelemetryDataPoint o2) {
-      TimePeriod t1 = o1.getPeriod();
-      TimePeriod t2 = o2.getPeriod();
-      return t1.compareTo(t2);
+    @Override
+    public int size() {
+      return TelemetryStream.this.size;
     }
   }
 }
@@ -7,12 +7,16 @@ import java.util.Map;
 
 import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.utilities.time.interval.Interval;
+import org.hackystat.utilities.time.period.TimePeriod;
 
 /**
  * Provides a collection of telemetry streams. Note that this class does not constrain
  * what kind of telemetry streams are present in a collection. Typically, you want to add only
  * related streams, and each stream should contain points over the same interval.
  * <p>
+ * Streams that cover the same time periods as the first non-empty stream added to this
+ * collection share its array of time periods, so that the period axis is stored only once.
+ * <p>
  * Thread Safety: methods in this class are not synchronized.
  * 
  * @author (Cedric) Qin Zhang
@@ -29,6 +33,12 @@ public class TelemetryStreamCollection implements Iterable<TelemetryStream> {
   // Must use HashMap, since key could be null. TreeMap throws null pointer exception.
   private Map<Object, TelemetryStream> streamMap = new HashMap<Object, TelemetryStream>();
 
+  /** The time periods shared by the streams in this collection, or null if none yet. */
+  private TimePeriod[] periods = null;
+  
+  /** The number of entries of periods that are in use. */
+  private int periodsSize = 0;
+
   /**
    * Constructs this instance. The project and the interval are just tags, they
    * are not used to constrain the kind of streams that can be added. (Maybe I
@@ -91,6 +101,36 @@ public class TelemetryStreamCollection implements Iterable<TelemetryStream> {
       throw new TelemetryDataModelException("Duplicated stream tag detected.: " + stream.getTag());
     }
     this.streamMap.put(stream.getTag(), stream);
+    sharePeriods(stream);
+  }
+
+  /**
+   * Makes the stream share this collection's time periods if it covers the same periods.
+   * The first non-empty stream added provides the periods for the collection.
+   * 
+   * @param stream The telemetry stream.
+   */
+  private void sharePeriods(TelemetryStream stream) {
+    int size = stream.size();
+    TimePeriod[] streamPeriods = stream.getPeriods();
+    if (size == 0 || streamPeriods == this.periods) {
+      return;
+    }
+    if (this.periods == null) {
+      this.periods = streamPeriods;
+      this.periodsSize = size;
+    }
+    else if (size == this.periodsSize) {
+      for (int i = 0; i < size; i++) {
+        if (streamPeriods[i] != this.periods[i] && !streamPeriods[i].equals(this.periods[i])) {
+          return;
+        }
+      }
+    }
+    else {
+      return;
+    }
+    stream.sharePeriods(this.periods);
   }
 
   /**
@@ -40,6 +40,114 @@ public class TestTelemetryStream extends TestCase {
     assertEquals(Integer.valueOf(2), list.get(2).getValue());
   }
   
+  /**
+   * Tests that values keep their Number types, including when types are mixed, and that
+   * nulls are preserved.
+   * 
+   * @throws Exception If test fails.
+   */
+  public void testValueTypes() throws Exception {
+    Day day = Day.getInstance(2003, 1, 1);
+    TelemetryStream longStream = new TelemetryStream("Long");
+    longStream.addDataPoint(new TelemetryDataPoint(day, Long.valueOf(3)));
+    longStream.addDataPoint(new TelemetryDataPoint(day.inc(1), null));
+    assertEquals(Long.valueOf(3), longStream.getDataPointValue(day));
+    assertNull(longStream.getDataPointValue(day.inc(1)));
+
+    long large = (1L << 53) + 1;
+    TelemetryStream largeStream = new TelemetryStream("LargeLong");
+    largeStream.addDataPoint(new TelemetryDataPoint(day, Long.valueOf(3)));
+    largeStream.addDataPoint(new TelemetryDataPoint(day.inc(1), Long.valueOf(large)));
+    largeStream.addDataPoint(new TelemetryDataPoint(day.inc(2), Long.valueOf(-large)));
+    assertEquals("Checking small long", Long.valueOf(3), largeStream.getValue(0));
+    assertEquals("Checking large long", Long.valueOf(large), largeStream.getValue(1));
+    assertEquals("Checking large negative long", Long.valueOf(-large), 
+        largeStream.getDataPointValue(day.inc(2)));
+
+    TelemetryStream mixedStream = new TelemetryStream("Mixed");
+    mixedStream.addDataPoint(new TelemetryDataPoint(day, Integer.valueOf(1)));
+    mixedStream.addDataPoint(new TelemetryDataPoint(day.inc(1), null));
+    mixedStream.addDataPoint(new TelemetryDataPoint(day.inc(2), Double.valueOf(2.5)));
+    List<TelemetryDataPoint> list = mixedStream.getDataPoints();
+    assertEquals(Integer.valueOf(1), list.get(0).getValue());
+    assertNull(list.get(1).getValue());
+    assertEquals(Double.valueOf(2.5), list.get(2).getValue());
+
+    try {
+      mixedStream.addDataPoint(new TelemetryDataPoint(day.inc(1), Integer.valueOf(0)));
+      fail("Duplicated period should throw an exception.");
+    }
+    catch (TelemetryDataModelException e) { //NOPMD
+      //expected
+    }
+  }
+
+  /**
+   * Tests that streams in a collection share their time periods, and that a stream modified
+   * after being added does not affect the others.
+   * 
+   * @throws Exception If test fails.
+   */
+  public void testSharedPeriods() throws Exception {
+    Day day = Day.getInstance(2003, 1, 1);
+    TelemetryStreamCollection collection = new TelemetryStreamCollection("Test", null, null);
+    TelemetryStream stream1 = new TelemetryStream("1");
+    TelemetryStream stream2 = new TelemetryStream("2");
+    for (int i = 0; i < 3; i++) {
+      stream1.addDataPoint(new TelemetryDataPoint(day.inc(i), Integer.valueOf(i)));
+      stream2.addDataPoint(new TelemetryDataPoint(day.inc(i), Integer.valueOf(i * 10)));
+    }
+    collection.add(stream1);
+    collection.add(stream2);
+    assertSame(stream1.getPeriods(), stream2.getPeriods());
+
+    stream1.addDataPoint(new TelemetryDataPoint(day.inc(-1), Integer.valueOf(-1)));
+    assertEquals(4, stream1.getDataPoints().size());
+    assertEquals(day.inc(-1), stream1.getDataPoints().get(0).getPeriod());
+    assertEquals(3, stream2.getDataPoints().size());
+    assertEquals(day, stream2.getDataPoints().get(0).getPeriod());
+  }
+
+  /**
+   * Tests the indexed accessors and the read-only data point view.
+   * 
+   * @throws Exception If test fails.
+   */
+  public void testIndexedAccess() throws Exception {
+    Day day = Day.getInstance(2003, 1, 1);
+    TelemetryStream stream = new TelemetryStream("Indexed");
+    stream.addDataPoint(new TelemetryDataPoint(day.inc(1), null));
+    stream.addDataPoint(new TelemetryDataPoint(day, Integer.valueOf(4)));
+    List<TelemetryDataPoint> view = stream.getDataPointView();
+    assertEquals(2, stream.size());
+    assertEquals(day, stream.getPeriod(0));
+    assertTrue(stream.hasValue(0));
+    assertEquals(4.0, stream.getDoubleValue(0), 0.0);
+    assertEquals(Integer.valueOf(4), stream.getValue(0));
+    assertFalse(stream.hasValue(1));
+    assertNull(stream.getValue(1));
+
+    stream.addDataPoint(new TelemetryDataPoint(day.inc(2), Integer.valueOf(5)));
+    assertEquals(3, view.size());
+    assertEquals(day.inc(2), view.get(2).getPeriod());
+    assertEquals(Integer.valueOf(5), view.get(2).getValue());
+    assertSame(view, stream.getDataPointView());
+    try {
+      view.clear();
+      fail("The view should be read-only.");
+    }
+    catch (UnsupportedOperationException e) { //NOPMD
+      //expected
+    }
+    try {
+      stream.getPeriod(3);
+      fail("Index out of range should throw an exception.");
+    }
+    catch (IndexOutOfBoundsException e) { //NOPMD
+      //expected
+    }
+  }
+
   /**
    * Asserts equality for two telemetry stream objects.
    * 
@@ -0,0 +1,31 @@
+package org.hackystat.telemetry.analyzer.reducer;
+
+import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
+import org.hackystat.utilities.time.interval.Interval;
+
+/**
+ * Provides an abstract base class for reducers that implement
+ * <code>ContextTelemetryReducer</code>. Subclasses implement only the <code>compute</code>
+ * method that takes a context.
+ *
+ * @author Philip Johnson
+ */
+public abstract class AbstractContextTelemetryReducer implements ContextTelemetryReducer {
+
+  /**
+   * Computes telemetry streams in a context of their own.
+   * 
+   * @param project The project which defines the scope of metrics to be used in the computation.
+   * @param dpdClient The DPD Client.
+   * @param interval The time interval.
+   * @param parameters Parameters passed to reducer implementation.
+   * @throws TelemetryReducerException If there is any error during metrics computation.
+   * @return The resulting telemetry stream collection.
+   */
+  public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
+      Interval interval, String[] parameters) throws TelemetryReducerException {
+    return compute(project, dpdClient, interval, parameters, new TelemetryReducerContext());
+  }
+}
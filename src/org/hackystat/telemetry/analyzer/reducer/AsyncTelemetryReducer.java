@@ -0,0 +1,42 @@
+package org.hackystat.telemetry.analyzer.reducer;
+
+import java.util.concurrent.Future;
+
+import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
+import org.hackystat.utilities.time.interval.Interval;
+
+/**
+ * Provides the asynchronous Telemetry reducer interface. The evaluator starts every reducer
+ * call in an expression through this interface before it combines any of their results, so
+ * that an expression takes as long as its slowest reducer rather than the sum of all of them.
+ * <p>
+ * Reducers that only implement <code>TelemetryReducer</code> are run asynchronously by an
+ * <code>AsyncTelemetryReducerAdapter</code>. A reducer that can do better, for example by
+ * issuing all of its own requests without occupying a thread while it waits, may implement
+ * this interface directly. It must still implement the synchronous <code>compute</code>
+ * methods, and the notes to implementers in <code>TelemetryReducer</code> apply equally here.
+ * 
+ * @author Philip Johnson
+ */
+public interface AsyncTelemetryReducer extends ContextTelemetryReducer {
+
+  /**
+   * Starts computing telemetry streams and returns immediately. The result of the returned
+   * future is the same as the result of <code>compute</code> with the same arguments. If the
+   * computation fails, then the future throws an <code>ExecutionException</code> whose cause
+   * is the <code>TelemetryReducerException</code> or other exception that occurred.
+   * 
+   * @param project The project which defines the scope of metrics to be used in the computation.
+   * @param dpdClient The DPD Client.
+   * @param interval The time interval.
+   * @param parameters Parameters passed to reducer implementation. In case a reducer does not
+   *        need any parameters, either null or an empty array may be passed.
+   * @param context The reducer context shared by all reducers invoked during this evaluation.
+   * @return The future telemetry stream collection.
+   */
+  Future<TelemetryStreamCollection> computeAsync(Project project, 
+      DailyProjectDataClient dpdClient, Interval interval, String[] parameters, 
+      TelemetryReducerContext context);
+}
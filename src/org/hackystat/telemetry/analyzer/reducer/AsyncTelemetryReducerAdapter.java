@@ -0,0 +1,104 @@
+package org.hackystat.telemetry.analyzer.reducer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
+import org.hackystat.telemetry.service.server.DaemonThreadFactory;
+import org.hackystat.telemetry.service.server.ServerProperties;
+import org.hackystat.utilities.time.interval.Interval;
+
+/**
+ * Adapts a synchronous <code>TelemetryReducer</code> to the <code>AsyncTelemetryReducer</code>
+ * interface by running its <code>compute</code> method on a thread pool shared by all adapted
+ * reducers.
+ * <p>
+ * The pool is separate from the one used by <code>DailyProjectDataFetcher</code>, since adapted
+ * reducers spend most of their time waiting on DPD requests made through the fetcher. Its size
+ * is taken from the ServerProperties REDUCER_THREADS system property when the first adapter
+ * is created. When all of its threads are busy, further reducer calls wait in a queue.
+ * 
+ * @author Philip Johnson
+ */
+public class AsyncTelemetryReducerAdapter implements AsyncTelemetryReducer {
+
+  /** The pool of threads shared by all adapted reducers. */
+  private static final ExecutorService executor = 
+    Executors.newFixedThreadPool(ServerProperties.getPositiveInt(
+        ServerProperties.REDUCER_THREADS, ServerProperties.DEFAULT_REDUCER_THREADS), 
+        new DaemonThreadFactory("telemetry-reducer"));
+
+  /** The adapted reducer. */
+  private final TelemetryReducer reducer;
+
+  /**
+   * Creates an adapter for the given reducer.
+   * 
+   * @param reducer The synchronous reducer.
+   */
+  public AsyncTelemetryReducerAdapter(TelemetryReducer reducer) {
+    this.reducer = reducer;
+  }
+
+  /**
+   * Computes telemetry streams by calling the adapted reducer directly, in a context of its
+   * own.
+   * 
+   * @param project The project which defines the scope of metrics to be used in the computation.
+   * @param dpdClient The DPD Client.
+   * @param interval The time interval.
+   * @param parameters Parameters passed to reducer implementation.
+   * @throws TelemetryReducerException If there is any error during metrics computation.
+   * @return The resulting telemetry stream collection.
+   */
+  public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient,
+      Interval interval, String[] parameters) throws TelemetryReducerException {
+    return compute(project, dpdClient, interval, parameters, new TelemetryReducerContext());
+  }
+
+  /**
+   * Computes telemetry streams by calling the adapted reducer directly. The context is only
+   * passed on if the reducer implements <code>ContextTelemetryReducer</code>.
+   * 
+   * @param project The project which defines the scope of metrics to be used in the computation.
+   * @param dpdClient The DPD Client.
+   * @param interval The time interval.
+   * @param parameters Parameters passed to reducer implementation.
+   * @param context The reducer context shared by all reducers invoked during this evaluation.
+   * @throws TelemetryReducerException If there is any error during metrics computation.
+   * @return The resulting telemetry stream collection.
+   */
+  public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient,
+      Interval interval, String[] parameters, TelemetryReducerContext context)
+      throws TelemetryReducerException {
+    if (this.reducer instanceof ContextTelemetryReducer) {
+      return ((ContextTelemetryReducer) this.reducer).compute(project, dpdClient, interval,
+          parameters, context);
+    }
+    return this.reducer.compute(project, dpdClient, interval, parameters);
+  }
+
+  /**
+   * Starts computing telemetry streams on the shared thread pool.
+   * 
+   * @param project The project which defines the scope of metrics to be used in the computation.
+   * @param dpdClient The DPD Client.
+   * @param interval The time interval.
+   * @param parameters Parameters passed to reducer implementation.
+   * @param context The reducer context shared by all reducers invoked during this evaluation.
+   * @return The future telemetry stream collection.
+   */
+  public Future<TelemetryStreamCollection> computeAsync(final Project project,
+      final DailyProjectDataClient dpdClient, final Interval interval, 
+      final String[] parameters, final TelemetryReducerContext context) {
+    return executor.submit(new Callable<TelemetryStreamCollection>() {
+      public TelemetryStreamCollection call() throws TelemetryReducerException {
+        return compute(project, dpdClient, interval, parameters, context);
+      }
+    });
+  }
+}
@@ -0,0 +1,41 @@
+package org.hackystat.telemetry.analyzer.reducer;
+
+import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
+import org.hackystat.utilities.time.interval.Interval;
+
+/**
+ * Marks a reducer that retrieves its DailyProjectData through a
+ * <code>TelemetryReducerContext</code>, so that instances needed by several reducers in the
+ * same evaluation are only retrieved once. The evaluator calls the <code>compute</code> method
+ * declared here, with the context of the evaluation, for every reducer that implements this
+ * interface, and the <code>compute</code> method of <code>TelemetryReducer</code> for any other
+ * reducer.
+ * <p>
+ * The <code>compute</code> method of <code>TelemetryReducer</code> must return the same result
+ * as this one called with a new context, which is what the one provided by
+ * <code>AbstractContextTelemetryReducer</code> does.
+ *
+ * @author Philip Johnson
+ */
+public interface ContextTelemetryReducer extends TelemetryReducer {
+
+  /**
+   * Computes telemetry streams, retrieving DailyProjectData through the given context. Note
+   * that if there is no data for any particular time period, null should be used as the value
+   * for that time period.
+   * 
+   * @param project The project which defines the scope of metrics to be used in the computation.
+   * @param dpdClient The DPD Client.
+   * @param interval The time interval.
+   * @param parameters Parameters passed to reducer implementation. In case a reducer does not
+   *        need any parameters, either null or an empty array may be passed.
+   * @param context The reducer context shared by all reducers invoked during this evaluation.
+   * @throws TelemetryReducerException If there is any error during metrics computation.
+   * @return The resulting telemetry stream collection.
+   */
+  TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
+      Interval interval, String[] parameters, TelemetryReducerContext context) 
+      throws TelemetryReducerException;
+}
@@ -15,6 +15,9 @@ import org.hackystat.utilities.time.interval.Interval;
  *        must be derived from the 'interval' parameter.  
  *   <li> Reducer implementation class must have a public constructor which takes no parameters.
  *   <li> Reducer implementation must be thread-safe.
+ *   <li> Reducers that retrieve DailyProjectData should implement
+ *        <code>ContextTelemetryReducer</code>, so that instances needed by several reducers
+ *        in the same evaluation are only retrieved once.
  * </ul>
  * 
  * @author Qin ZHANG
@@ -0,0 +1,191 @@
+package org.hackystat.telemetry.analyzer.reducer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Holds the state shared by all of the reducer invocations made while evaluating a single
+ * telemetry chart, report, or streams definition. A new context is created by the
+ * <code>TelemetryEvaluator</code> for each evaluation and passed down to each reducer.
+ * <p>
+ * The context memoizes DailyProjectData responses, keyed by the DPD method, owner, project,
+ * day, and any additional arguments. Thus a DPD instance needed by several streams in the
+ * same chart (for example, Commit data used by both the Commit and Churn reducers) is retrieved
+ * and unmarshalled only once. Concurrent requests for the same key wait for the first one to
+ * complete rather than issuing a second request.
+ * <p>
+ * The context also memoizes the value of each distinct telemetry expression, such as a fully
+ * bound reducer or function call, so that an expression reached through several streams, 
+ * sub-charts or charts is computed only once. Since expressions are keyed without regard to
+ * the project and interval, a context must only be shared by evaluations for the same project,
+ * interval, and DPD client. Memoized values are shared by all of their consumers, which must
+ * treat them as read-only. Asynchronous expressions, such as reducer calls, are memoized as
+ * futures that are claimed by each evaluation that waits on them; a future whose claims have
+ * all been released by failed evaluations is cancelled and forgotten.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @author Philip Johnson
+ */
+public class TelemetryReducerContext {
+
+  /** Maps DPD request keys to the (possibly still running) task that retrieves them. */
+  private final ConcurrentMap<String, FutureTask<Object>> dpdMemo =
+    new ConcurrentHashMap<String, FutureTask<Object>>();
+  /** Maps expression keys to the (possibly still running) task that computes them. */
+  private final ConcurrentMap<String, FutureTask<Object>> expressionMemo =
+    new ConcurrentHashMap<String, FutureTask<Object>>();
+  /** Maps each claimed expression future to the number of evaluations waiting on it. */
+  private final Map<Future<?>, Integer> claims = new HashMap<Future<?>, Integer>();
+
+  /**
+   * Returns the value associated with key, calling retriever to obtain it if this is the
+   * first request for key in this context. If the retriever fails, the failure is thrown to
+   * all callers waiting on this key, and the key is forgotten so that a later request will
+   * try again.
+   *
+   * @param <T> The type of the value.
+   * @param key The key identifying the DPD request.
+   * @param retriever Retrieves the value if it has not already been retrieved.
+   * @return The value.
+   * @throws Exception If the retriever throws an exception.
+   */
+  public <T> T getDailyProjectData(String key, Callable<T> retriever) throws Exception {
+    return getMemoized(this.dpdMemo, key, retriever);
+  }
+
+  /**
+   * Returns the value of the expression identified by key, calling computer to obtain it if
+   * this is the first request for key in this context. Failures are handled as for
+   * <code>getDailyProjectData</code>.
+   *
+   * @param <T> The type of the value.
+   * @param key The canonical form of the expression.
+   * @param computer Computes the value if it has not already been computed.
+   * @return The value.
+   * @throws Exception If the computer throws an exception.
+   */
+  public <T> T getExpressionValue(String key, Callable<T> computer) throws Exception {
+    return getMemoized(this.expressionMemo, key, computer);
+  }
+
+  /**
+   * Returns the future value of the asynchronous expression identified by key, calling
+   * starter to start it if this is the first request for key in this context, and claims it
+   * for the caller. A caller that fails before the future completes must release its claim
+   * with <code>releaseExpressionFuture</code>.
+   *
+   * @param <T> The type of the value.
+   * @param key The canonical form of the expression.
+   * @param starter Starts computing the value if it has not already been started.
+   * @return The future value.
+   * @throws Exception If the starter throws an exception.
+   */
+  public <T> Future<T> claimExpressionFuture(String key, Callable<Future<T>> starter)
+      throws Exception {
+    while (true) {
+      Future<T> future = getExpressionValue(key, starter);
+      synchronized (this.claims) {
+        // A future cancelled since it was looked up has already been forgotten, so the next
+        // lookup starts a new one.
+        if (!future.isCancelled()) {
+          Integer count = this.claims.get(future);
+          this.claims.put(future, (count == null) ? 1 : count + 1);
+          return future;
+        }
+      }
+    }
+  }
+
+  /**
+   * Releases a claim made by <code>claimExpressionFuture</code>. Once no evaluation is waiting
+   * on a future that has not completed, it is cancelled so that it does not run if it is still
+   * queued, and forgotten so that a later request starts it again.
+   *
+   * @param key The canonical form of the expression.
+   * @param future The future value.
+   */
+  public void releaseExpressionFuture(String key, Future<?> future) {
+    synchronized (this.claims) {
+      Integer count = this.claims.get(future);
+      if (count == null) {
+        return;
+      }
+      if (count > 1) {
+        this.claims.put(future, count - 1);
+        return;
+      }
+      this.claims.remove(future);
+      if (!future.isDone()) {
+        future.cancel(false);
+        FutureTask<Object> task = this.expressionMemo.get(key);
+        try {
+          if ((task != null) && task.isDone() && (task.get() == future)) {
+            this.expressionMemo.remove(key, task);
+          }
+        }
+        catch (Exception e) { // NOPMD
+          // The task failed, so it has already been forgotten.
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the value associated with key in the given memo, calling callable to obtain it if
+   * this is the first request for key.
+   *
+   * @param <T> The type of the value.
+   * @param memo The memo.
+   * @param key The key.
+   * @param callable Obtains the value if it is not already in the memo.
+   * @return The value.
+   * @throws Exception If the callable throws an exception.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T getMemoized(ConcurrentMap<String, FutureTask<Object>> memo, String key,
+      final Callable<T> callable) throws Exception {
+    FutureTask<Object> task = memo.get(key);
+    if (task == null) {
+      FutureTask<Object> newTask = new FutureTask<Object>(new Callable<Object>() {
+        public Object call() throws Exception {
+          return callable.call();
+        }
+      });
+      task = memo.putIfAbsent(key, newTask);
+      if (task == null) {
+        task = newTask;
+        task.run();
+      }
+    }
+    try {
+      return (T) task.get();
+    }
+    catch (ExecutionException e) {
+      memo.remove(key, task);
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the number of distinct DPD requests memoized in this context.
+   *
+   * @return The number of memoized DPD requests.
+   */
+  public int getDailyProjectDataCount() {
+    return this.dpdMemo.size();
+  }
+}
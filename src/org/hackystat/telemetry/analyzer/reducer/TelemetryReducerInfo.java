@@ -12,6 +12,8 @@ public class TelemetryReducerInfo {
 
   /** The instance. */
   private TelemetryReducer reducer;
+  /** The asynchronous form of the reducer. */
+  private AsyncTelemetryReducer asyncReducer;
   /** The ReducerDefinition instance obtained from the XML. */
   private ReducerDefinition definition;
 
@@ -24,6 +26,8 @@ public class TelemetryReducerInfo {
   TelemetryReducerInfo(TelemetryReducer reducer, ReducerDefinition definition) {
     this.reducer = reducer;
     this.definition = definition;
+    this.asyncReducer = (reducer instanceof AsyncTelemetryReducer) 
+        ? (AsyncTelemetryReducer) reducer : new AsyncTelemetryReducerAdapter(reducer);
   }
 
   /**
@@ -44,6 +48,16 @@ public class TelemetryReducerInfo {
     return this.reducer;
   }
 
+  /**
+   * Gets the asynchronous form of the telemetry reducer. This is the reducer itself if it
+   * implements <code>AsyncTelemetryReducer</code>, and an adapter for it otherwise.
+   * 
+   * @return The asynchronous reducer.
+   */
+  public AsyncTelemetryReducer getAsyncReducer() {
+    return this.asyncReducer;
+  }
+
   /**
    * Gets the description of this reducer.
    * 
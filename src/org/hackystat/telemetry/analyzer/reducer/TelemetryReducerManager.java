@@ -4,6 +4,7 @@ import java.io.InputStream;
 import java.util.Collection;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import javax.xml.bind.JAXBContext;
@@ -97,11 +98,60 @@ public class TelemetryReducerManager {
    */
   public TelemetryStreamCollection compute(String reducerName, DailyProjectDataClient dpdClient,
       Project project, Interval interval, String[] parameters) throws TelemetryReducerException {
+    return compute(reducerName, dpdClient, project, interval, parameters, 
+        new TelemetryReducerContext());
+  }
+
+  /**
+   * Invokes the telemetry reducer to generate a TelemetryStreamCollection. A reducer that
+   * implements <code>ContextTelemetryReducer</code> shares DailyProjectData instances with any
+   * other reducers invoked with the same context.
+   * 
+   * @param reducerName The name of the reducer to be invoked.
+   * @param project The project which defines the scope of metrics to be used in the computation.
+   * @param dpdClient The DPD Client.
+   * @param interval The time interval.
+   * @param parameters Parameters passed to reducer implementation. In case a reducer does not
+   *        need any parameter, either null or an empty array may be passed.
+   * @param context The reducer context shared by this evaluation.
+   * @return The resulting instance of <code>TelemetryStreamCollection</code>. 
+   * @throws TelemetryReducerException If anything is wrong.
+   */
+  public TelemetryStreamCollection compute(String reducerName, DailyProjectDataClient dpdClient,
+      Project project, Interval interval, String[] parameters, TelemetryReducerContext context) 
+      throws TelemetryReducerException {
+    TelemetryReducerInfo reducerInfo = this.reducerMap.get(reducerName);
+    if (reducerInfo == null) {
+      throw new TelemetryReducerException("Telemetry reducer " + reducerName + " not defined.");
+    }
+    return reducerInfo.getAsyncReducer().compute(project, dpdClient, interval, parameters,
+        context);
+  }
+
+  /**
+   * Starts the telemetry reducer generating a TelemetryStreamCollection, and returns without
+   * waiting for it to finish. Reducers that are not themselves asynchronous are run on the
+   * thread pool of <code>AsyncTelemetryReducerAdapter</code>.
+   * 
+   * @param reducerName The name of the reducer to be invoked.
+   * @param project The project which defines the scope of metrics to be used in the computation.
+   * @param dpdClient The DPD Client.
+   * @param interval The time interval.
+   * @param parameters Parameters passed to reducer implementation. In case a reducer does not
+   *        need any parameter, either null or an empty array may be passed.
+   * @param context The reducer context shared by this evaluation.
+   * @return The future <code>TelemetryStreamCollection</code>. 
+   * @throws TelemetryReducerException If the reducer is not defined.
+   */
+  public Future<TelemetryStreamCollection> computeAsync(String reducerName, 
+      DailyProjectDataClient dpdClient, Project project, Interval interval, String[] parameters, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     TelemetryReducerInfo reducerInfo = this.reducerMap.get(reducerName);
     if (reducerInfo == null) {
       throw new TelemetryReducerException("Telemetry reducer " + reducerName + " not defined.");
     }
-    return reducerInfo.getReducer().compute(project, dpdClient, interval, parameters);
+    return reducerInfo.getAsyncReducer().computeAsync(project, dpdClient, interval, parameters, 
+        context);
   }
 
   /**
@@ -0,0 +1,75 @@
+package org.hackystat.telemetry.analyzer.reducer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test suite for <code>TelemetryReducerContext</code>.
+ *
+ * @author Philip Johnson
+ */
+public class TestTelemetryReducerContext {
+
+  /** The number of futures started. */
+  private AtomicInteger count = new AtomicInteger(0);
+
+  /** Starts a future that is never run, as if it were still queued. */
+  private Callable<Future<String>> starter = new Callable<Future<String>>() {
+    public Future<String> call() {
+      count.incrementAndGet();
+      return new FutureTask<String>(new Callable<String>() {
+        public String call() {
+          return "value";
+        }
+      });
+    }
+  };
+
+  /**
+   * Tests that a claimed future is only cancelled once every claim on it has been released,
+   * and that it is then started again by the next claim.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testRelease() throws Exception {
+    TelemetryReducerContext context = new TelemetryReducerContext();
+    Future<String> first = context.claimExpressionFuture("key", starter);
+    assertSame("Checking shared future", first, context.claimExpressionFuture("key", starter));
+    assertEquals("Checking started once", 1, count.get());
+
+    context.releaseExpressionFuture("key", first);
+    assertFalse("Checking claimed future kept", first.isCancelled());
+    context.releaseExpressionFuture("key", first);
+    assertTrue("Checking unclaimed future cancelled", first.isCancelled());
+
+    Future<String> second = context.claimExpressionFuture("key", starter);
+    assertNotSame("Checking future started again", first, second);
+    assertEquals("Checking started twice", 2, count.get());
+  }
+
+  /**
+   * Tests that a completed future is never cancelled.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testReleaseDone() throws Exception {
+    TelemetryReducerContext context = new TelemetryReducerContext();
+    Future<String> future = context.claimExpressionFuture("key", starter);
+    ((FutureTask<String>) future).run();
+    context.releaseExpressionFuture("key", future);
+    assertEquals("Checking value", "value", future.get());
+    assertSame("Checking future kept", future, context.claimExpressionFuture("key", starter));
+  }
+}
@@ -1,10 +1,17 @@
 package org.hackystat.telemetry.analyzer.reducer;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Collection;
 
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.telemetry.analyzer.model.TelemetryStream;
+import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
+import org.hackystat.utilities.time.interval.DayInterval;
+import org.hackystat.utilities.time.period.Day;
 import org.junit.Test;
 
 /**
@@ -33,4 +40,24 @@ public class TestTelemetryReducerManager {
       assertTrue("Checking that manager exists", manager.isReducer(theReducer.getName()));
     }
   }
+
+  /**
+   * Tests that a reducer implementing only <code>TelemetryReducer</code>, rather than
+   * <code>ContextTelemetryReducer</code>, can still be invoked with a context.
+   * 
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testPlainReducer() throws Exception {
+    TelemetryReducerManager manager = TelemetryReducerManager.getInstance();
+    assertFalse("Checking plain reducer", manager.getReducerInfo("StraightLine").getReducer()
+        instanceof ContextTelemetryReducer);
+    Day startDay = Day.getInstance("01-Jan-2004");
+    TelemetryStreamCollection streams = manager.compute("StraightLine", null, new Project(),
+        new DayInterval(startDay, startDay.inc(1)), new String[] {"1", "2"},
+        new TelemetryReducerContext());
+    TelemetryStream stream = streams.getTelemetryStreams().iterator().next();
+    assertEquals("Checking value", 3.0, stream.getDataPoints().get(0).getValue().doubleValue(),
+        0.0);
+  }
 }
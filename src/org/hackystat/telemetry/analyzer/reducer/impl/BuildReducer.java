@@ -1,5 +1,7 @@
 package org.hackystat.telemetry.analyzer.reducer.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
@@ -9,9 +11,13 @@ import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyProjectDataFetcher;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyValueStore;
 import org.hackystat.telemetry.analyzer.reducer.util.IntervalUtility;
+import org.hackystat.telemetry.analyzer.reducer.util.MemberIndex;
 import org.hackystat.telemetry.analyzer.reducer.util.ReducerOptionUtility;
 import org.hackystat.telemetry.service.server.ServerProperties;
 import org.hackystat.utilities.time.interval.Interval;
@@ -36,7 +42,7 @@ import org.hackystat.utilities.tstamp.Tstamp;
  * 
  * @author Philip Johnson
  */
-public class BuildReducer implements TelemetryReducer {
+public class BuildReducer extends AbstractContextTelemetryReducer {
  
   /**
    * Computes and returns the required telemetry streams object.
@@ -45,12 +51,14 @@ public class BuildReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    *
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     // weird. for some reason we want 'null' as default rather than '*' etc.
     String member = null;
     String result = null;
@@ -85,7 +93,7 @@ public class BuildReducer implements TelemetryReducer {
 
     // now compute the single telemetry stream. 
     try {
-      TelemetryStream telemetryStream = this.getStream(dpdClient, project, interval,  
+      TelemetryStream telemetryStream = this.getStream(context, dpdClient, project, interval,  
           member, result, type, isCumulative, null);
       TelemetryStreamCollection streams = new TelemetryStreamCollection(null, project, interval);
       streams.add(telemetryStream);
@@ -99,6 +107,7 @@ public class BuildReducer implements TelemetryReducer {
   /**
    * Gets the telemetry stream.
    * 
+   * @param context The reducer context, used to share DPD instances across reducers.
    * @param dpdClient The DailyProjectData client we will contact for the data. 
    * @param project The project.
    * @param interval The interval.
@@ -111,82 +120,123 @@ public class BuildReducer implements TelemetryReducer {
    * @return The telemetry stream as required.
    * @throws Exception If there is any error.
    */
-  TelemetryStream getStream(DailyProjectDataClient dpdClient, 
+  TelemetryStream getStream(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, 
       Project project, Interval interval, String member, String result, 
       String type, boolean isCumulative, Object streamTagValue) 
         throws Exception {
-    TelemetryStream telemetryStream = new TelemetryStream(streamTagValue);
+    TelemetryStream telemetryStream = this.getStreams(context, dpdClient, project, interval, 
+        Collections.singletonList(member), result, type, isCumulative).get(0);
+    telemetryStream.setTag(streamTagValue);
+    return telemetryStream;
+  }
+
+  /**
+   * Gets one telemetry stream per member, each tagged with the member's email. Each member's
+   * daily Build counts are taken from the <code>DailyValueStore</code> where possible. The DPD
+   * for any other day is retrieved once, and its member data is distributed to all of the
+   * streams in a single pass.
+   * 
+   * @param context The reducer context, used to share DPD instances across reducers.
+   * @param dpdClient The DailyProjectData client we will contact for the data. 
+   * @param project The project.
+   * @param interval The interval.
+   * @param members The member emails. A null entry matches all members. 
+   * @param result The build result, either FAILURE, SUCCESS, or null to match both.
+   * @param type The value of the build 'Type' property, a string or null to match anything.
+   * @param isCumulative True for cumulative measure.
+   * 
+   * @return The telemetry streams, in the same order as the members.
+   * @throws Exception If there is any error.
+   */
+  List<TelemetryStream> getStreams(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, Project project, Interval interval, 
+      List<String> members, final String result, String type, boolean isCumulative) 
+        throws Exception {
     List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
-    long cumulativeBuilds = 0;
+    final MemberIndex memberIndex = new MemberIndex(members);
+    List<TelemetryStream> telemetryStreams = new ArrayList<TelemetryStream>(members.size());
+    List<String> series = new ArrayList<String>(members.size());
+    for (String member : members) {
+      telemetryStreams.add(new TelemetryStream(member));
+      series.add(result + '/' + member);
+    }
+    long[] cumulativeBuilds = new long[members.size()];
 
+    // Obtain the totals for every period at once, rolled up from the daily counts.
+    final String typeString = (type == null) ? "*" : type;
+    Double[][] totals = DailyValueStore.getInstance().getTotals(context, dpdClient, project, 
+        periods, 
+        new DailyProjectDataFetcher.DailyQuery<BuildDailyProjectData>("getBuild", typeString) {
+          public BuildDailyProjectData fetch(DailyProjectDataClient client, Project project, 
+              Day day) throws Exception {
+            // Get the DPD for the required 'Type' property.
+            return client.getBuild(project.getOwner(), project.getName(), 
+                Tstamp.makeTimestamp(day), typeString);
+          }
+        }, "Build", series, 
+        new DailyValueStore.DayFunction<BuildDailyProjectData>() {
+          public Double[] getValues(BuildDailyProjectData data) {
+            return getDayData(data, memberIndex, result);
+          }
+        });
+    int index = 0;
+    
     for (IntervalUtility.Period period : periods) {
-      Long value = this.getData(dpdClient, project, period.getStartDay(), period.getEndDay(),
-          member, result, type);
-      
-      if (value != null) {
-        cumulativeBuilds += value;
-      }
-      
-      if (isCumulative) {
-        telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), 
-            cumulativeBuilds));        
-      }
-      else {
-        telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), value));
+      for (int i = 0; i < members.size(); i++) {
+        Double total = totals[index][i];
+        Long value = (total == null) ? null : Long.valueOf(total.longValue());
+        if (value != null) {
+          cumulativeBuilds[i] += value;
+        }
+        
+        if (isCumulative) {
+          telemetryStreams.get(i).addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), 
+              cumulativeBuilds[i]));        
+        }
+        else {
+          telemetryStreams.get(i).addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), 
+              value));
+        }
       }
+      index++;
     }
-    return telemetryStream;
+    return telemetryStreams;
   }
   
   /**
-   * Returns a Build count for the specified time interval, or null if no SensorData. 
+   * Returns the Build count of each member for a single DPD instance. 
    *
-   * @param dpdClient The DailyProjectData client we will use to get this data. 
-   * @param project The project.
-   * @param startDay The start day (inclusive).
-   * @param endDay The end day (inclusive).
-   * @param member The project member email, or null to match all members. 
+   * @param data The Build DPD instance for one day. 
+   * @param memberIndex The members whose values are required.
    * @param result The result, either SUCCESS, FAILURE, or null for both.
-   * @param type The 'Type' property, or null to match anything.
-   * @throws TelemetryReducerException If anything goes wrong.
    *
-   * @return The Build count, or null if there is no Build SensorData for that time period. 
+   * @return The Build counts, one per member, with null for any member who has no Build 
+   * SensorData for that day. 
    */
-  Long getData(DailyProjectDataClient dpdClient, Project project, Day startDay, Day endDay, 
-      String member, String result, String type) throws TelemetryReducerException {
-    long buildCount = 0;
-    String typeString = (type == null) ? "*" : type;
-    try {
-      // For each day in the interval... 
-      for (Day day = startDay; day.compareTo(endDay) <= 0; day = day.inc(1) ) {
-        // Get the DPD for the required 'Type' property.
-        BuildDailyProjectData data = 
-          dpdClient.getBuild(project.getOwner(), project.getName(), Tstamp.makeTimestamp(day), 
-              typeString);
-        // Go through the DPD per-member data...
-        for (MemberData memberData : data.getMemberData()) {
-          // Check to see if this data is for the given member and of the appropriate type.
-          if ((member == null) || "*".equals(member) || 
-              (memberData.getMemberUri().endsWith(member))) {
-            if ((result == null) || "*".equals(result)) {
-              buildCount += memberData.getFailure() + memberData.getSuccess();
-            }
-            else if ("Success".equals(result)) {
-              buildCount += memberData.getSuccess();
-            }
-            else if ("Failure".equals(result)) {
-              buildCount += memberData.getFailure();
-            }
-          }
+  Double[] getDayData(BuildDailyProjectData data, MemberIndex memberIndex, String result) {
+    long[] buildCount = new long[memberIndex.size()];
+    // Go through the DPD per-member data, crediting every member it matches...
+    for (MemberData memberData : data.getMemberData()) {
+      for (int i : memberIndex.getIndexes(memberData.getMemberUri())) {
+        if ((result == null) || "*".equals(result)) {
+          buildCount[i] += memberData.getFailure() + memberData.getSuccess();
+        }
+        else if ("Success".equals(result)) {
+          buildCount[i] += memberData.getSuccess();
+        }
+        else if ("Failure".equals(result)) {
+          buildCount[i] += memberData.getFailure();
         }
       }
     }
-    catch (Exception ex) {
-      throw new TelemetryReducerException(ex);
-    }
 
-    //Return null if no data, the Build count data otherwise. 
-    return (buildCount > 0) ? Long.valueOf(buildCount) : null; 
+    //Return null for members with no data, the Build count data otherwise. 
+    Double[] values = new Double[buildCount.length];
+    for (int i = 0; i < buildCount.length; i++) {
+      values[i] = (buildCount[i] > 0) ? Double.valueOf(buildCount[i]) : null;
+    }
+    return values;
   }
 
 }
@@ -1,5 +1,7 @@
 package org.hackystat.telemetry.analyzer.reducer.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
@@ -9,9 +11,13 @@ import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyProjectDataFetcher;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyValueStore;
 import org.hackystat.telemetry.analyzer.reducer.util.IntervalUtility;
+import org.hackystat.telemetry.analyzer.reducer.util.MemberIndex;
 import org.hackystat.telemetry.service.server.ServerProperties;
 import org.hackystat.utilities.time.interval.Interval;
 import org.hackystat.utilities.time.period.Day;
@@ -30,7 +36,17 @@ import org.hackystat.utilities.tstamp.Tstamp;
  * 
  * @author Philip Johnson
  */
-public class ChurnReducer implements TelemetryReducer { 
+public class ChurnReducer extends AbstractContextTelemetryReducer {
+
+  /** Retrieves the Commit DPD for a single day. */
+  private static final DailyProjectDataFetcher.DailyQuery<CommitDailyProjectData> COMMIT_QUERY =
+    new DailyProjectDataFetcher.DailyQuery<CommitDailyProjectData>("getCommit") {
+      public CommitDailyProjectData fetch(DailyProjectDataClient dpdClient, Project project, 
+          Day day) throws Exception {
+        return dpdClient.getCommit(project.getOwner(), project.getName(), 
+            Tstamp.makeTimestamp(day));
+      }
+    };
  
   /**
    * Computes and returns the required telemetry streams object.
@@ -39,12 +55,14 @@ public class ChurnReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    *
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     String member = null;
     boolean isCumulative = false;
     //process options
@@ -72,7 +90,7 @@ public class ChurnReducer implements TelemetryReducer {
 
     // now get the telemetry stream. 
     try {
-      TelemetryStream telemetryStream = this.getStream(dpdClient, project, interval,  
+      TelemetryStream telemetryStream = this.getStream(context, dpdClient, project, interval,  
           member, isCumulative, null);
       TelemetryStreamCollection streams = new TelemetryStreamCollection(null, project, interval);
       streams.add(telemetryStream);
@@ -86,6 +104,7 @@ public class ChurnReducer implements TelemetryReducer {
   /**
    * Gets the telemetry stream.
    * 
+   * @param context The reducer context, used to share DPD instances across reducers.
    * @param dpdClient The DailyProjectData client we will contact for the data. 
    * @param project The project.
    * @param interval The interval.
@@ -97,72 +116,104 @@ public class ChurnReducer implements TelemetryReducer {
    * 
    * @throws Exception If there is any error.
    */
-  TelemetryStream getStream(DailyProjectDataClient dpdClient, 
+  TelemetryStream getStream(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, 
       Project project, Interval interval,
       String member, boolean isCumulative, Object streamTagValue) 
         throws Exception {
-    TelemetryStream telemetryStream = new TelemetryStream(streamTagValue);
+    TelemetryStream telemetryStream = this.getStreams(context, dpdClient, project, interval, 
+        Collections.singletonList(member), isCumulative).get(0);
+    telemetryStream.setTag(streamTagValue);
+    return telemetryStream;
+  }
+
+  /**
+   * Gets one telemetry stream per member, each tagged with the member's email. Each member's
+   * daily Churn counts are taken from the <code>DailyValueStore</code> where possible. The DPD
+   * for any other day is retrieved once, and its member data is distributed to all of the
+   * streams in a single pass.
+   * 
+   * @param context The reducer context, used to share DPD instances across reducers.
+   * @param dpdClient The DailyProjectData client we will contact for the data. 
+   * @param project The project.
+   * @param interval The interval.
+   * @param members The member emails. An entry of "*" matches all members.
+   * @param isCumulative True for cumulative measure.
+   * 
+   * @return The telemetry streams, in the same order as the members.
+   * 
+   * @throws Exception If there is any error.
+   */
+  List<TelemetryStream> getStreams(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, Project project, Interval interval,
+      List<String> members, boolean isCumulative) throws Exception {
     List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
-    long cumulativeCount = 0;
+    final MemberIndex memberIndex = new MemberIndex(members);
+    List<TelemetryStream> telemetryStreams = new ArrayList<TelemetryStream>(members.size());
+    for (String member : members) {
+      telemetryStreams.add(new TelemetryStream(member));
+    }
+    long[] cumulativeCount = new long[members.size()];
+    
+    // Obtain the totals for every period at once, rolled up from the daily counts.
+    Double[][] totals = DailyValueStore.getInstance().getTotals(context, dpdClient, project, 
+        periods, COMMIT_QUERY, "Churn", members, 
+        new DailyValueStore.DayFunction<CommitDailyProjectData>() {
+          public Double[] getValues(CommitDailyProjectData data) {
+            return getDayData(data, memberIndex);
+          }
+        });
+    int index = 0;
     
     for (IntervalUtility.Period period : periods) {
-      Long value = this.getData(dpdClient, project, period.getStartDay(), period.getEndDay(),
-          member);
-      
-      if (value != null) {
-        cumulativeCount += value;
-      }
-      
-      if (isCumulative) {
-        telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), 
-            cumulativeCount));        
-      }
-      else {
-        telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), value));
+      for (int i = 0; i < members.size(); i++) {
+        Double total = totals[index][i];
+        Long value = (total == null) ? null : Long.valueOf(total.longValue());
+        if (value != null) {
+          cumulativeCount[i] += value;
+        }
+        
+        if (isCumulative) {
+          telemetryStreams.get(i).addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), 
+              cumulativeCount[i]));        
+        }
+        else {
+          telemetryStreams.get(i).addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), 
+              value));
+        }
       }
+      index++;
     }
-    return telemetryStream;
+    return telemetryStreams;
   }
   
   /**
-   * Returns a Churn value for the specified time interval, or null if no Churn SensorData. 
+   * Returns the Churn count of each member for a single DPD instance. 
    * 
-   * @param dpdClient The DailyProjectData client we will use to get this data. 
-   * @param project The project.
-   * @param startDay The start day (inclusive).
-   * @param endDay The end day (inclusive).
-   * @param member The member email, or "*" for all members.
-   * @throws TelemetryReducerException If anything goes wrong.
+   * @param data The Commit DPD instance for one day. 
+   * @param memberIndex The members whose values are required.
    *
-   * @return The Churn count, or null if there is no Commit SensorData for that time period. 
+   * @return The Churn counts, one per member, with null for any member who has no Commit 
+   * SensorData for that day. 
    */
-  Long getData(DailyProjectDataClient dpdClient, Project project, Day startDay, Day endDay, 
-      String member) throws TelemetryReducerException {
-    long count = 0;
-    boolean hasData = false;
-    try {
-      // For each day in the interval... 
-      for (Day day = startDay; day.compareTo(endDay) <= 0; day = day.inc(1) ) {
-        // Get the DPD...
-        CommitDailyProjectData data = 
-          dpdClient.getCommit(project.getOwner(), project.getName(), Tstamp.makeTimestamp(day));
-        // Go through the DPD per-member data...
-        for (MemberData memberData : data.getMemberData()) {
-          if ((member == null) || "*".equals(member) || 
-              (memberData.getMemberUri().endsWith(member))) {
-            hasData = true;
-            count += memberData.getLinesAdded() + memberData.getLinesDeleted() +
-            memberData.getLinesModified();
-          }
-        }
+  Double[] getDayData(CommitDailyProjectData data, MemberIndex memberIndex) {
+    long[] counts = new long[memberIndex.size()];
+    boolean[] hasData = new boolean[memberIndex.size()];
+    // Go through the DPD per-member data, crediting every member it matches...
+    for (MemberData memberData : data.getMemberData()) {
+      for (int i : memberIndex.getIndexes(memberData.getMemberUri())) {
+        hasData[i] = true;
+        counts[i] += memberData.getLinesAdded() + memberData.getLinesDeleted() +
+        memberData.getLinesModified();
       }
     }
-    catch (Exception ex) {
-      throw new TelemetryReducerException(ex);
-    }
 
-    //Return null if no data, the Churn counts otherwise. 
-    return (hasData) ? Long.valueOf(count) : null; 
+    //Return null for members with no data, the Churn counts otherwise. 
+    Double[] values = new Double[counts.length];
+    for (int i = 0; i < counts.length; i++) {
+      values[i] = (hasData[i]) ? Double.valueOf(counts[i]) : null;
+    }
+    return values;
   }
 
 }
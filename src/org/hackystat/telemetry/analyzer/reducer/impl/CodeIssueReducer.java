@@ -1,5 +1,6 @@
 package org.hackystat.telemetry.analyzer.reducer.impl;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
@@ -9,8 +10,11 @@ import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyProjectDataFetcher;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyValueStore;
 import org.hackystat.telemetry.analyzer.reducer.util.IntervalUtility;
 import org.hackystat.telemetry.service.server.ServerProperties;
 import org.hackystat.utilities.time.interval.Interval;
@@ -32,7 +36,7 @@ import org.hackystat.utilities.tstamp.Tstamp;
  * 
  * @author Philip Johnson
  */
-public class CodeIssueReducer implements TelemetryReducer {
+public class CodeIssueReducer extends AbstractContextTelemetryReducer {
  
   /**
    * Computes and returns the required telemetry streams object.
@@ -41,12 +45,14 @@ public class CodeIssueReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    *
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     String tool = null;
     String type = null;
     //process options
@@ -70,7 +76,7 @@ public class CodeIssueReducer implements TelemetryReducer {
 
     // now compute the single telemetry stream. 
     try {
-      TelemetryStream telemetryStream = this.getStream(dpdClient, project, interval,  
+      TelemetryStream telemetryStream = this.getStream(context, dpdClient, project, interval,  
           tool, type, null);
       TelemetryStreamCollection streams = new TelemetryStreamCollection(null, project, interval);
       streams.add(telemetryStream);
@@ -84,6 +90,7 @@ public class CodeIssueReducer implements TelemetryReducer {
   /**
    * Gets the telemetry stream.
    * 
+   * @param context The reducer context, used to share DPD instances across reducers.
    * @param dpdClient The DailyProjectData client we will contact for the data. 
    * @param project The project.
    * @param interval The interval.
@@ -94,55 +101,61 @@ public class CodeIssueReducer implements TelemetryReducer {
    * @return The telemetry stream as required.
    * @throws Exception If there is any error.
    */
-  TelemetryStream getStream(DailyProjectDataClient dpdClient, 
+  TelemetryStream getStream(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, 
       Project project, Interval interval, String tool, String type, 
       Object streamTagValue) throws Exception {
     TelemetryStream telemetryStream = new TelemetryStream(streamTagValue);
     List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
 
+    // Take the value of each settled period from the store, and find the latest day with
+    // data in each remaining period, searching all of those periods at once.
+    final String toolString = tool;
+    final String typeString = type;
+    Double[][] latestValues = DailyValueStore.getInstance().getLatestValues(context, 
+        dpdClient, project, periods, 
+        new DailyProjectDataFetcher.DailyQuery<CodeIssueDailyProjectData>("getCodeIssue", 
+            toolString, typeString) {
+          public CodeIssueDailyProjectData fetch(DailyProjectDataClient client, Project project, 
+              Day day) throws Exception {
+            return client.getCodeIssue(project.getOwner(), 
+                project.getName(), Tstamp.makeTimestamp(day), toolString, typeString);
+          }
+          // Keep going back in time if we don't have anything for this day.
+          public boolean hasData(CodeIssueDailyProjectData dpdData) {
+            return (dpdData.getCodeIssueData() != null) && !dpdData.getCodeIssueData().isEmpty();
+          }
+        }, "CodeIssue", Collections.singletonList("total"), 
+        new DailyValueStore.DayFunction<CodeIssueDailyProjectData>() {
+          public Double[] getValues(CodeIssueDailyProjectData data) {
+            return new Double[] { Double.valueOf(getData(data)) };
+          }
+        });
+    int index = 0;
+    
     for (IntervalUtility.Period period : periods) {
-      Long value = this.getData(dpdClient, project, period.getStartDay(), period.getEndDay(),
-          tool, type);
+      Double latest = latestValues[index++][0];
+      Long value = (latest == null) ? null : Long.valueOf(latest.longValue());
       telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), value));
     }
     return telemetryStream;
   }
   
   /**
-   * Returns a CodeIssue count for the specified time interval, or null if no SensorData. 
+   * Returns a CodeIssue count for the specified time period, or null if no SensorData. 
    *
-   * @param dpdClient The DailyProjectData client we will use to get this data. 
-   * @param project The project.
-   * @param startDay The start day (inclusive).
-   * @param endDay The end day (inclusive).
-   * @param tool The tool whose CodeIssue data is to be counted, or null for all tools.
-   * @param type The type of CodeIssue data to count, or null for all CodeIssue types.
-   * @throws TelemetryReducerException If anything goes wrong.
+   * @param dpdData The latest CodeIssue DPD with data in the time period, or null if none.
    *
    * @return The CodeIssue count, or null if there is no CodeIssue SensorData for that time period. 
    */
-  Long getData(DailyProjectDataClient dpdClient, Project project, Day startDay, Day endDay, 
-      String tool, String type) throws TelemetryReducerException {
-    try {
-      // Work backward through the interval, and return as soon as we get matching CodeIssue info.
-      for (Day day = endDay; day.compareTo(startDay) >= 0; day = day.inc(-1) ) {
-        // Get the DPD...
-        CodeIssueDailyProjectData dpdData = 
-          dpdClient.getCodeIssue(project.getOwner(), project.getName(), Tstamp.makeTimestamp(day),
-              tool, type);
-        // Keep going if there's no data.
-        if ((dpdData.getCodeIssueData() == null) || dpdData.getCodeIssueData().isEmpty()) {
-          continue;
-        }
-        // Otherwise we have CodeIssue data, so return the total field.
-        return getTotalIssues(dpdData);
-      }
+  Long getData(CodeIssueDailyProjectData dpdData) {
+    // Never found appropriate data in this time period, so return null.
+    if (dpdData == null) {
+      return null;
     }
-    catch (Exception ex) {
-      throw new TelemetryReducerException(ex);
-    }
-    // Never found appropriate CodeIssue data in this interval, so return null.
-    return null;
+    
+    // Otherwise we have CodeIssue data, so return the total field.
+    return getTotalIssues(dpdData);
   }
   
   /**
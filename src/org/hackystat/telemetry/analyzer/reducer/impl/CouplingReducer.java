@@ -1,5 +1,6 @@
 package org.hackystat.telemetry.analyzer.reducer.impl;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
@@ -9,8 +10,11 @@ import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyProjectDataFetcher;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyValueStore;
 import org.hackystat.telemetry.analyzer.reducer.util.IntervalUtility;
 import org.hackystat.telemetry.service.server.ServerProperties;
 import org.hackystat.utilities.time.interval.Interval;
@@ -37,7 +41,7 @@ import org.hackystat.utilities.tstamp.Tstamp;
  * 
  * @author Philip Johnson
  */
-public class CouplingReducer implements TelemetryReducer { 
+public class CouplingReducer extends AbstractContextTelemetryReducer {
   
   /** Possible mode values. */
   public enum Coupling {
@@ -64,12 +68,14 @@ public class CouplingReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    * 
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     Coupling coupling = Coupling.ALL;
     Mode mode = Mode.AVERAGE;
     String type = "class";
@@ -129,7 +135,7 @@ public class CouplingReducer implements TelemetryReducer {
 
     // Now get the telemetry stream.
     try {
-      TelemetryStream telemetryStream = this.getStream(dpdClient, project, interval,  
+      TelemetryStream telemetryStream = this.getStream(context, dpdClient, project, interval,  
           coupling, mode, type, threshold, tool, null);
       TelemetryStreamCollection streams = new TelemetryStreamCollection(null, project, interval);
       streams.add(telemetryStream);
@@ -143,6 +149,7 @@ public class CouplingReducer implements TelemetryReducer {
   /**
    * Gets the telemetry stream.
    * 
+   * @param context The reducer context, used to share DPD instances across reducers.
    * @param dpdClient The DailyProjectData client we will contact for the data.
    * @param project The project.
    * @param interval The interval.
@@ -157,116 +164,125 @@ public class CouplingReducer implements TelemetryReducer {
    * 
    * @throws Exception If there is any error.
    */
-  TelemetryStream getStream(DailyProjectDataClient dpdClient, 
+  TelemetryStream getStream(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, 
       Project project, Interval interval, Coupling coupling, Mode mode, String type,
       int threshold, String tool, Object streamTagValue) 
         throws Exception {
     TelemetryStream telemetryStream = new TelemetryStream(streamTagValue);
     List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
 
+    // Take the value of each settled period from the store, and find the latest day with
+    // data in each remaining period, searching all of those periods at once.
+    final String typeString = type;
+    final String toolString = tool;
+    final Coupling couplingValue = coupling;
+    final Mode modeValue = mode;
+    final int thresholdValue = threshold;
+    Double[][] latestValues = DailyValueStore.getInstance().getLatestValues(context, 
+        dpdClient, project, periods, 
+        new DailyProjectDataFetcher.DailyQuery<CouplingDailyProjectData>("getCoupling", 
+            typeString, toolString) {
+          public CouplingDailyProjectData fetch(DailyProjectDataClient client, Project project, 
+              Day day) throws Exception {
+            return client.getCoupling(project.getOwner(), 
+                project.getName(), Tstamp.makeTimestamp(day), typeString, toolString);
+          }
+          // Keep going back in time if we don't have anything for this day.
+          public boolean hasData(CouplingDailyProjectData dpdData) {
+            return (dpdData.getCouplingData() != null) && !dpdData.getCouplingData().isEmpty();
+          }
+        }, "Coupling", Collections.singletonList(coupling + "/" + mode + "/" + threshold), 
+        new DailyValueStore.DayFunction<CouplingDailyProjectData>() {
+          public Double[] getValues(CouplingDailyProjectData data) 
+              throws TelemetryReducerException {
+            return new Double[] { getData(data, couplingValue, modeValue, thresholdValue) };
+          }
+        });
+    int index = 0;
+    
     for (IntervalUtility.Period period : periods) {
-      Double value = this.getData(dpdClient, project, period.getStartDay(), period.getEndDay(),
-          coupling, mode, type, threshold, tool);
+      Double value = latestValues[index++][0];
       telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), value));
     }
     return telemetryStream;
   }
   
   /**
-   * Returns a Coupling value for the specified time interval, or null if no SensorData. 
+   * Returns a Coupling value for the specified time period, or null if no SensorData. 
    * 
-   * We work backward through the time interval, and return a Coupling value for the first day in
-   * the interval for which Coupling data exists.
+   * The value is computed from the DPD for the last day in the time period for which Coupling
+   * data exists.
    * 
-   * @param dpdClient The DailyProjectData client we will use to get this data.
-   * @param project The project.
-   * @param startDay The start day (inclusive).
-   * @param endDay The end day (inclusive).
+   * @param dpdData The latest Coupling DPD with data in the time period, or null if none.
    * @param coupling The coupling.
    * @param mode The mode.
-   * @param type The type.
    * @param threshold The threshold, if mode is TOTALINSTANCESABOVETHRESHOLD.
-   * @param tool The tool whose sensor data will be used. 
    * @throws TelemetryReducerException If anything goes wrong.
    * 
    * @return The coupling value, or null if there is no coupling SensorData in that period.
    */
-  Double getData(DailyProjectDataClient dpdClient, Project project, Day startDay, Day endDay, 
-      Coupling coupling, Mode mode, String type, int threshold, String tool) 
-  throws TelemetryReducerException {
-    try {
-      // Work backward through the interval, and return as soon as we get Complexity info.
-      for (Day day = endDay; day.compareTo(startDay) >= 0; day = day.inc(-1) ) {
-        // Get the DPD...
-        CouplingDailyProjectData dpdData = 
-          dpdClient.getCoupling(project.getOwner(), project.getName(), Tstamp.makeTimestamp(day),
-              type, tool);
-        // Go to the next day in the interval if we don't have anything for this day.
-        if ((dpdData.getCouplingData() == null) || dpdData.getCouplingData().isEmpty()) {
-          continue;
-        }
-        
-        // Otherwise we have complexity data, so calculate the desired values.
-        double totalAfferent = 0;
-        double totalEfferent = 0;
-        double totalUnits = 0;
-        double totalAboveThreshold = 0;
-        for (CouplingData data : dpdData.getCouplingData()) {
-          totalUnits++;
-          totalAfferent += data.getAfferent().intValue();
-          totalEfferent += data.getEfferent().intValue();
-          if ((mode.equals(Mode.TOTALINSTANCESABOVETHRESHOLD)) &&
-              (coupling.equals(Coupling.AFFERENT)) &&
-              (data.getAfferent().intValue() > threshold)) {
-            totalAboveThreshold++;
-          }
-          if ((mode.equals(Mode.TOTALINSTANCESABOVETHRESHOLD)) &&
-              (coupling.equals(Coupling.EFFERENT)) &&
-              (data.getEfferent().intValue() > threshold)) {
-            totalAboveThreshold++;
-          }
-          if ((mode.equals(Mode.TOTALINSTANCESABOVETHRESHOLD)) &&
-              (coupling.equals(Coupling.ALL)) &&
-              (data.getAfferent().intValue() + data.getEfferent().intValue() > threshold)) {
-            totalAboveThreshold++;
-          }
-        }
-
-        // Now return the value based upon mode and coupling.
-        switch (mode) { //NOPMD
-        case TOTAL:
-          switch (coupling) {
-          case AFFERENT: 
-            return Double.valueOf(totalAfferent);
-          case EFFERENT:
-            return Double.valueOf(totalEfferent);
-          case ALL:
-            return Double.valueOf((totalEfferent + totalAfferent));
-          default: 
-            throw new TelemetryReducerException("Unknown coupling: " + coupling);
-          }
-        case AVERAGE:
-          switch (coupling) {
-          case AFFERENT: 
-            return Double.valueOf(totalAfferent / totalUnits);
-          case EFFERENT:
-            return Double.valueOf(totalEfferent / totalUnits);
-          case ALL:
-            return Double.valueOf((totalEfferent + totalAfferent) / totalUnits);
-          default: 
-            throw new TelemetryReducerException("Unknown coupling: " + coupling);
-          }
-        case TOTALINSTANCESABOVETHRESHOLD:
-          return Double.valueOf(totalAboveThreshold);
-        default: 
-          throw new TelemetryReducerException("Unknown mode: " + mode);
-        }
+  Double getData(CouplingDailyProjectData dpdData, Coupling coupling, Mode mode, int threshold) 
+      throws TelemetryReducerException {
+    // Never found appropriate data in this time period, so return null.
+    if (dpdData == null) {
+      return null;
+    }
+    
+    // Otherwise we have complexity data, so calculate the desired values.
+    double totalAfferent = 0;
+    double totalEfferent = 0;
+    double totalUnits = 0;
+    double totalAboveThreshold = 0;
+    for (CouplingData data : dpdData.getCouplingData()) {
+      totalUnits++;
+      totalAfferent += data.getAfferent().intValue();
+      totalEfferent += data.getEfferent().intValue();
+      if ((mode.equals(Mode.TOTALINSTANCESABOVETHRESHOLD)) &&
+          (coupling.equals(Coupling.AFFERENT)) &&
+          (data.getAfferent().intValue() > threshold)) {
+        totalAboveThreshold++;
+      }
+      if ((mode.equals(Mode.TOTALINSTANCESABOVETHRESHOLD)) &&
+          (coupling.equals(Coupling.EFFERENT)) &&
+          (data.getEfferent().intValue() > threshold)) {
+        totalAboveThreshold++;
+      }
+      if ((mode.equals(Mode.TOTALINSTANCESABOVETHRESHOLD)) &&
+          (coupling.equals(Coupling.ALL)) &&
+          (data.getAfferent().intValue() + data.getEfferent().intValue() > threshold)) {
+        totalAboveThreshold++;
       }
     }
-    catch (Exception ex) {
-      throw new TelemetryReducerException(ex);
+
+    // Now return the value based upon mode and coupling.
+    switch (mode) { //NOPMD
+    case TOTAL:
+      switch (coupling) {
+      case AFFERENT: 
+        return Double.valueOf(totalAfferent);
+      case EFFERENT:
+        return Double.valueOf(totalEfferent);
+      case ALL:
+        return Double.valueOf((totalEfferent + totalAfferent));
+      default: 
+        throw new TelemetryReducerException("Unknown coupling: " + coupling);
+      }
+    case AVERAGE:
+      switch (coupling) {
+      case AFFERENT: 
+        return Double.valueOf(totalAfferent / totalUnits);
+      case EFFERENT:
+        return Double.valueOf(totalEfferent / totalUnits);
+      case ALL:
+        return Double.valueOf((totalEfferent + totalAfferent) / totalUnits);
+      default: 
+        throw new TelemetryReducerException("Unknown coupling: " + coupling);
+      }
+    case TOTALINSTANCESABOVETHRESHOLD:
+      return Double.valueOf(totalAboveThreshold);
+    default: 
+      throw new TelemetryReducerException("Unknown mode: " + mode);
     }
-    // Never found appropriate coupling data in this interval, so return null.
-    return null;
   }
 }
@@ -1,5 +1,6 @@
 package org.hackystat.telemetry.analyzer.reducer.impl;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
@@ -9,8 +10,11 @@ import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyProjectDataFetcher;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyValueStore;
 import org.hackystat.telemetry.analyzer.reducer.util.IntervalUtility;
 import org.hackystat.telemetry.service.server.ServerProperties;
 import org.hackystat.utilities.time.interval.Interval;
@@ -30,7 +34,7 @@ import org.hackystat.utilities.tstamp.Tstamp;
  * 
  * @author Philip Johnson, Cedric Zhang
  */
-public class CoverageReducer implements TelemetryReducer { 
+public class CoverageReducer extends AbstractContextTelemetryReducer {
  
   /** Possible mode values. */
   public enum Mode { PERCENTAGE, NUMCOVERED, NUMUNCOVERED }
@@ -42,12 +46,14 @@ public class CoverageReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    * 
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     Mode mode = Mode.PERCENTAGE;
     String granularity = null;
     // process options
@@ -75,7 +81,7 @@ public class CoverageReducer implements TelemetryReducer {
 
     // now get the telemetry stream.
     try {
-      TelemetryStream telemetryStream = this.getStream(dpdClient, project, interval,  
+      TelemetryStream telemetryStream = this.getStream(context, dpdClient, project, interval,  
           mode, granularity, null);
       TelemetryStreamCollection streams = new TelemetryStreamCollection(null, project, interval);
       streams.add(telemetryStream);
@@ -89,6 +95,7 @@ public class CoverageReducer implements TelemetryReducer {
   /**
    * Gets the telemetry stream.
    * 
+   * @param context The reducer context, used to share DPD instances across reducers.
    * @param dpdClient The DailyProjectData client we will contact for the data.
    * @param project The project.
    * @param interval The interval.
@@ -100,16 +107,43 @@ public class CoverageReducer implements TelemetryReducer {
    * 
    * @throws Exception If there is any error.
    */
-  TelemetryStream getStream(DailyProjectDataClient dpdClient, 
+  TelemetryStream getStream(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, 
       Project project, Interval interval, Mode mode, 
       String granularity, Object streamTagValue) 
         throws Exception {
     TelemetryStream telemetryStream = new TelemetryStream(streamTagValue);
     List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
 
+    // Take the value of each settled period from the store, and find the latest day with
+    // data in each remaining period, searching all of those periods at once.
+    final String granularityString = granularity;
+    final Mode modeValue = mode;
+    Double[][] latestValues = DailyValueStore.getInstance().getLatestValues(context, 
+        dpdClient, project, periods, 
+        new DailyProjectDataFetcher.DailyQuery<CoverageDailyProjectData>("getCoverage", 
+            granularityString) {
+          public CoverageDailyProjectData fetch(DailyProjectDataClient client, Project project, 
+              Day day) throws Exception {
+            return client.getCoverage(project.getOwner(), 
+                project.getName(), Tstamp.makeTimestamp(day), granularityString);
+          }
+          // Keep going back in time if we don't have anything for this day.
+          public boolean hasData(CoverageDailyProjectData dpdData) {
+            return (dpdData.getConstructData() != null) && !dpdData.getConstructData().isEmpty();
+          }
+        }, "Coverage", Collections.singletonList(mode.toString()), 
+        new DailyValueStore.DayFunction<CoverageDailyProjectData>() {
+          public Double[] getValues(CoverageDailyProjectData data) 
+              throws TelemetryReducerException {
+            return new Double[] { Double.valueOf(getData(data, modeValue)) };
+          }
+        });
+    int index = 0;
+    
     for (IntervalUtility.Period period : periods) {
-      Long value = this.getData(dpdClient, project, period.getStartDay(), period.getEndDay(),
-          mode, granularity);
+      Double latest = latestValues[index++][0];
+      Long value = (latest == null) ? null : Long.valueOf(latest.longValue());
       telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), value));
     }
 
@@ -117,65 +151,46 @@ public class CoverageReducer implements TelemetryReducer {
   }
   
   /**
-   * Returns a Coverage value for the specified time interval, or null if no SensorData. Note that
+   * Returns a Coverage value for the specified time period, or null if no SensorData. Note that
    * we return a Long, so percentage is a Long ranging from 0 to 100. (There is no fractional
    * coverage percentage.)
    * 
-   * We work backward through the time interval, and return the Coverage value for the first day in
-   * the interval for which Coverage data exists.
+   * The value is computed from the DPD for the last day in the time period for which Coverage data
+   * exists.
    * 
-   * @param dpdClient The DailyProjectData client we will use to get this data.
-   * @param project The project.
-   * @param startDay The start day (inclusive).
-   * @param endDay The end day (inclusive).
+   * @param dpdData The latest Coverage DPD with data in the time period, or null if none.
    * @param mode The mode: PERCENTAGE, NUMCOVERED, or NUMUNCOVERED.
-   * @param granularity The type of coverage, such as 'line' or 'method'.
    * @throws TelemetryReducerException If anything goes wrong.
    * 
    * @return The Coverage value, or null if there is no Coverage SensorData for that time period.
    */
-  Long getData(DailyProjectDataClient dpdClient, Project project, Day startDay, Day endDay, 
-      Mode mode, String granularity) throws TelemetryReducerException {
-    try {
-      // Work backward through the interval, and return as soon as we get Coverage info.
-      for (Day day = endDay; day.compareTo(startDay) >= 0; day = day.inc(-1) ) {
-        // Get the DPD...
-        CoverageDailyProjectData dpdData = 
-          dpdClient.getCoverage(project.getOwner(), project.getName(), Tstamp.makeTimestamp(day),
-              granularity);
-        // Go to the next day in the interval if we don't have anything for this day.
-        if ((dpdData.getConstructData() == null) || dpdData.getConstructData().isEmpty()) {
-          continue;
-        }
-        
-        // Otherwise we have coverage data, so get the total covered and uncovered values.
-        int totalCovered = 0;
-        int totalUncovered = 0;
-        for (ConstructData data : dpdData.getConstructData()) {
-          totalCovered += data.getNumCovered();
-          totalUncovered += data.getNumUncovered();
-        }
-        
-        // Now return the value based upon mode.
-        switch (mode) {
-        case NUMCOVERED:
-          return Long.valueOf(totalCovered);
-        case NUMUNCOVERED:
-          return Long.valueOf(totalUncovered);
-        case PERCENTAGE:
-          double total = totalCovered + totalUncovered;
-          int percent = (int)((totalCovered / total) * 100.0);
-          return Long.valueOf(percent);
-        default: 
-          throw new TelemetryReducerException("Unknown mode: " + mode);
-        }
-      }
+  Long getData(CoverageDailyProjectData dpdData, Mode mode) throws TelemetryReducerException {
+    // Never found appropriate data in this time period, so return null.
+    if (dpdData == null) {
+      return null;
     }
-    catch (Exception ex) {
-      throw new TelemetryReducerException(ex);
+    
+    // Otherwise we have coverage data, so get the total covered and uncovered values.
+    int totalCovered = 0;
+    int totalUncovered = 0;
+    for (ConstructData data : dpdData.getConstructData()) {
+      totalCovered += data.getNumCovered();
+      totalUncovered += data.getNumUncovered();
+    }
+    
+    // Now return the value based upon mode.
+    switch (mode) {
+    case NUMCOVERED:
+      return Long.valueOf(totalCovered);
+    case NUMUNCOVERED:
+      return Long.valueOf(totalUncovered);
+    case PERCENTAGE:
+      double total = totalCovered + totalUncovered;
+      int percent = (int)((totalCovered / total) * 100.0);
+      return Long.valueOf(percent);
+    default: 
+      throw new TelemetryReducerException("Unknown mode: " + mode);
     }
-    // Never found appropriate coverage data in this interval, so return null.
-    return null;
   }
 
 }
@@ -1,6 +1,7 @@
 package org.hackystat.telemetry.analyzer.reducer.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
@@ -10,8 +11,11 @@ import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyProjectDataFetcher;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyValueStore;
 import org.hackystat.telemetry.analyzer.reducer.util.IntervalUtility;
 import org.hackystat.telemetry.service.server.ServerProperties;
 import org.hackystat.utilities.time.interval.Interval;
@@ -35,7 +39,7 @@ import org.hackystat.utilities.tstamp.Tstamp;
  * 
  * @author Philip Johnson
  */
-public class CyclomaticComplexityReducer implements TelemetryReducer { 
+public class CyclomaticComplexityReducer extends AbstractContextTelemetryReducer {
  
   /** Possible mode values. */
   public enum Mode {
@@ -57,12 +61,14 @@ public class CyclomaticComplexityReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    * 
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     Mode mode = Mode.AVERAGECOMPLEXITYPERMETHOD;
     String thresholdString = null;
     String tool = "JavaNCSS";
@@ -107,7 +113,7 @@ public class CyclomaticComplexityReducer implements TelemetryReducer {
 
     // Now get the telemetry stream.
     try {
-      TelemetryStream telemetryStream = this.getStream(dpdClient, project, interval,  
+      TelemetryStream telemetryStream = this.getStream(context, dpdClient, project, interval,  
           mode, threshold, tool, null);
       TelemetryStreamCollection streams = new TelemetryStreamCollection(null, project, interval);
       streams.add(telemetryStream);
@@ -121,6 +127,7 @@ public class CyclomaticComplexityReducer implements TelemetryReducer {
   /**
    * Gets the telemetry stream.
    * 
+   * @param context The reducer context, used to share DPD instances across reducers.
    * @param dpdClient The DailyProjectData client we will contact for the data.
    * @param project The project.
    * @param interval The interval.
@@ -133,91 +140,100 @@ public class CyclomaticComplexityReducer implements TelemetryReducer {
    * 
    * @throws Exception If there is any error.
    */
-  TelemetryStream getStream(DailyProjectDataClient dpdClient, 
+  TelemetryStream getStream(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, 
       Project project, Interval interval, Mode mode, 
       int threshold, String tool, Object streamTagValue) 
         throws Exception {
     TelemetryStream telemetryStream = new TelemetryStream(streamTagValue);
     List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
 
+    // Take the value of each settled period from the store, and find the latest day with
+    // data in each remaining period, searching all of those periods at once.
+    final String toolString = tool;
+    final Mode modeValue = mode;
+    final int thresholdValue = threshold;
+    Double[][] latestValues = DailyValueStore.getInstance().getLatestValues(context, 
+        dpdClient, project, periods, 
+        new DailyProjectDataFetcher.DailyQuery<ComplexityDailyProjectData>("getComplexity", 
+            "Cyclomatic", toolString) {
+          public ComplexityDailyProjectData fetch(DailyProjectDataClient client, Project project, 
+              Day day) throws Exception {
+            return client.getComplexity(project.getOwner(), 
+                project.getName(), Tstamp.makeTimestamp(day), "Cyclomatic", toolString);
+          }
+          // Keep going back in time if we don't have anything for this day.
+          public boolean hasData(ComplexityDailyProjectData dpdData) {
+            return (dpdData.getFileData() != null) && !dpdData.getFileData().isEmpty();
+          }
+        }, "CyclomaticComplexity", Collections.singletonList(mode + "/" + threshold), 
+        new DailyValueStore.DayFunction<ComplexityDailyProjectData>() {
+          public Double[] getValues(ComplexityDailyProjectData data) 
+              throws TelemetryReducerException {
+            return new Double[] { getData(data, modeValue, thresholdValue) };
+          }
+        });
+    int index = 0;
+    
     for (IntervalUtility.Period period : periods) {
-      Double value = this.getData(dpdClient, project, period.getStartDay(), period.getEndDay(),
-          mode, threshold, tool);
+      Double value = latestValues[index++][0];
       telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), value));
     }
     return telemetryStream;
   }
   
   /**
-   * Returns a Complexity value for the specified time interval, or null if no SensorData. 
+   * Returns a Complexity value for the specified time period, or null if no SensorData. 
    * 
-   * We work backward through the time interval, and return a Complexity value for the first day in
-   * the interval for which Cyclomatic Complexity data exists.
+   * The value is computed from the DPD for the last day in the time period for which Cyclomatic
+   * Complexity data exists.
    * 
-   * @param dpdClient The DailyProjectData client we will use to get this data.
-   * @param project The project.
-   * @param startDay The start day (inclusive).
-   * @param endDay The end day (inclusive).
+   * @param dpdData The latest Complexity DPD with data in the time period, or null if none.
    * @param mode The mode.
    * @param threshold The threshold, if mode is TOTALMETHODSABOVECOMPLEXITYTHRESHOLD.
-   * @param tool The tool whose sensor data will be used. 
    * @throws TelemetryReducerException If anything goes wrong.
    * 
    * @return The Complexity value, or null if there is no Complexity SensorData in that period.
    */
-  Double getData(DailyProjectDataClient dpdClient, Project project, Day startDay, Day endDay, 
-      Mode mode, int threshold, String tool) throws TelemetryReducerException {
-    try {
-      // Work backward through the interval, and return as soon as we get Complexity info.
-      for (Day day = endDay; day.compareTo(startDay) >= 0; day = day.inc(-1) ) {
-        // Get the DPD...
-        ComplexityDailyProjectData dpdData = 
-          dpdClient.getComplexity(project.getOwner(), project.getName(), Tstamp.makeTimestamp(day),
-              "Cyclomatic", tool);
-        // Go to the next day in the interval if we don't have anything for this day.
-        if ((dpdData.getFileData() == null) || dpdData.getFileData().isEmpty()) {
-          continue;
-        }
-        
-        // Otherwise we have complexity data, so calculate the desired values.
-        int numMethods = 0;
-        double totalComplexity = 0;
-        long totalLines = 0;
-        int totalAboveThreshold = 0;
-        for (FileData data : dpdData.getFileData()) {
-          totalLines += parseTotalLines(data.getTotalLines());
-          List<Integer> complexities = parseList(data.getComplexityValues());
-          for (Integer complexity : complexities) {
-            numMethods++;
-            totalComplexity += complexity;
-            if (complexity >= threshold) {
-              totalAboveThreshold++;
-            }
-          }
-        }
-        
-        // Now return the value based upon mode.
-        switch (mode) {
-        case TOTALMETHODS:
-          return Double.valueOf(numMethods);
-        case TOTALCOMPLEXITY:
-          return Double.valueOf(totalComplexity);
-        case TOTALLINES:
-          return Double.valueOf(totalLines);
-        case AVERAGECOMPLEXITYPERMETHOD:
-          return Double.valueOf(totalComplexity / numMethods);
-        case TOTALMETHODSABOVECOMPLEXITYTHRESHOLD:
-          return Double.valueOf(totalAboveThreshold);
-        default: 
-          throw new TelemetryReducerException("Unknown mode: " + mode);
+  Double getData(ComplexityDailyProjectData dpdData, Mode mode, int threshold) 
+      throws TelemetryReducerException {
+    // Never found appropriate data in this time period, so return null.
+    if (dpdData == null) {
+      return null;
+    }
+    
+    // Otherwise we have complexity data, so calculate the desired values.
+    int numMethods = 0;
+    double totalComplexity = 0;
+    long totalLines = 0;
+    int totalAboveThreshold = 0;
+    for (FileData data : dpdData.getFileData()) {
+      totalLines += parseTotalLines(data.getTotalLines());
+      List<Integer> complexities = parseList(data.getComplexityValues());
+      for (Integer complexity : complexities) {
+        numMethods++;
+        totalComplexity += complexity;
+        if (complexity >= threshold) {
+          totalAboveThreshold++;
         }
       }
     }
-    catch (Exception ex) {
-      throw new TelemetryReducerException(ex);
+    
+    // Now return the value based upon mode.
+    switch (mode) {
+    case TOTALMETHODS:
+      return Double.valueOf(numMethods);
+    case TOTALCOMPLEXITY:
+      return Double.valueOf(totalComplexity);
+    case TOTALLINES:
+      return Double.valueOf(totalLines);
+    case AVERAGECOMPLEXITYPERMETHOD:
+      return Double.valueOf(totalComplexity / numMethods);
+    case TOTALMETHODSABOVECOMPLEXITYTHRESHOLD:
+      return Double.valueOf(totalAboveThreshold);
+    default: 
+      throw new TelemetryReducerException("Unknown mode: " + mode);
     }
-    // Never found appropriate complexity data in this interval, so return null.
-    return null;
   }
 
   /**
@@ -1,5 +1,7 @@
 package org.hackystat.telemetry.analyzer.reducer.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
@@ -10,9 +12,13 @@ import org.hackystat.sensorbase.uripattern.UriPattern;
 import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyProjectDataFetcher;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyValueStore;
 import org.hackystat.telemetry.analyzer.reducer.util.IntervalUtility;
+import org.hackystat.telemetry.analyzer.reducer.util.MemberIndex;
 import org.hackystat.telemetry.analyzer.reducer.util.ReducerOptionUtility;
 import org.hackystat.telemetry.service.server.ServerProperties;
 import org.hackystat.utilities.time.interval.Interval;
@@ -39,8 +45,17 @@ import org.hackystat.utilities.tstamp.Tstamp;
  * 
  * @author Hongbing Kou, Philip Johnson
  */
-public class DevTimeReducer implements TelemetryReducer {
- 
+public class DevTimeReducer extends AbstractContextTelemetryReducer {
+  
+  /** Retrieves the DevTime DPD for a single day. */
+  private static final DailyProjectDataFetcher.DailyQuery<DevTimeDailyProjectData> DEVTIME_QUERY =
+    new DailyProjectDataFetcher.DailyQuery<DevTimeDailyProjectData>("getDevTime") {
+      public DevTimeDailyProjectData fetch(DailyProjectDataClient dpdClient, Project project, 
+          Day day) throws Exception {
+        return dpdClient.getDevTime(project.getOwner(), project.getName(), 
+            Tstamp.makeTimestamp(day));
+      }
+    };
 
   /**
    * Computes and returns the required telemetry streams object.
@@ -49,12 +64,14 @@ public class DevTimeReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    *
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     // weird. for some reason we want 'null' as default rather than '*' etc.
     String eventType = null;
     String member = null;
@@ -90,7 +107,7 @@ public class DevTimeReducer implements TelemetryReducer {
 
     // now compute the single telemetry stream. Remember, we only process member and Cumulative.
     try {
-      TelemetryStream telemetryStream = this.getStream(dpdClient, project, interval,  
+      TelemetryStream telemetryStream = this.getStream(context, dpdClient, project, interval,  
           eventType, member, resourcePattern, isCumulative, null);
       TelemetryStreamCollection streams = new TelemetryStreamCollection(null, project, interval);
       streams.add(telemetryStream);
@@ -104,6 +121,7 @@ public class DevTimeReducer implements TelemetryReducer {
   /**
    * Gets the telemetry stream.
    * 
+   * @param context The reducer context, used to share DPD instances across reducers.
    * @param dpdClient The DailyProjectData client we will contact for the data. 
    * @param project The project.
    * @param interval The interval.
@@ -116,78 +134,103 @@ public class DevTimeReducer implements TelemetryReducer {
    * @return The telemetry stream as required.
    * @throws Exception If there is any error.
    */
-  TelemetryStream getStream(DailyProjectDataClient dpdClient, 
+  TelemetryStream getStream(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, 
       Project project, Interval interval, String eventType, String member, 
       UriPattern filePattern, boolean isCumulative, Object streamTagValue) 
         throws Exception {
-    TelemetryStream telemetryStream = new TelemetryStream(streamTagValue);
+    TelemetryStream telemetryStream = this.getStreams(context, dpdClient, project, interval, 
+        eventType, Collections.singletonList(member), filePattern, isCumulative).get(0);
+    telemetryStream.setTag(streamTagValue);
+    return telemetryStream;
+  }
+
+  /**
+   * Gets one telemetry stream per member, each tagged with the member's email. Each member's
+   * daily DevTime is taken from the <code>DailyValueStore</code> where possible. The DPD for
+   * any other day is retrieved once, and its member data is distributed to all of the streams
+   * in a single pass.
+   * 
+   * @param context The reducer context, used to share DPD instances across reducers.
+   * @param dpdClient The DailyProjectData client we will contact for the data. 
+   * @param project The project.
+   * @param interval The interval.
+   * @param eventType The event type, or null to match all event types. (ignored)
+   * @param members The member emails. A null entry matches all members. 
+   * @param filePattern File filter pattern, or null to match all files. (ignored)
+   * @param isCumulative True for cumulative measure.
+   * 
+   * @return The telemetry streams, in the same order as the members.
+   * @throws Exception If there is any error.
+   */
+  List<TelemetryStream> getStreams(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, Project project, Interval interval, String eventType, 
+      List<String> members, UriPattern filePattern, boolean isCumulative) throws Exception {
     List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
-    double cumulativeDevTime = 0;
+    final MemberIndex memberIndex = new MemberIndex(members);
+    List<TelemetryStream> telemetryStreams = new ArrayList<TelemetryStream>(members.size());
+    for (String member : members) {
+      telemetryStreams.add(new TelemetryStream(member));
+    }
+    double[] cumulativeDevTime = new double[members.size()];
+
+    // Obtain the totals for every period at once, rolled up from the daily DevTime.
+    // Since eventType and filePattern are ignored, they do not distinguish the stored values.
+    Double[][] totals = DailyValueStore.getInstance().getTotals(context, dpdClient, project, 
+        periods, DEVTIME_QUERY, "DevTime", members, 
+        new DailyValueStore.DayFunction<DevTimeDailyProjectData>() {
+          public Double[] getValues(DevTimeDailyProjectData data) {
+            return getDayData(data, memberIndex);
+          }
+        });
+    int index = 0;
 
     for (IntervalUtility.Period period : periods) {
-      Double value = this.getData(dpdClient, project, period.getStartDay(), period.getEndDay(),
-          eventType, member, filePattern);
-      
-      if (value != null) {
-        cumulativeDevTime += value;
-      }
-      
-      if (isCumulative) {
-        telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), 
-            cumulativeDevTime));        
-      }
-      else {
-        telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), value));
+      for (int i = 0; i < members.size(); i++) {
+        // The DPD returns DevTime in minutes, but hours make more sense for telemetry.
+        Double total = totals[index][i];
+        Double value = ((total != null) && (total > 0)) ? new Double((total / 60)) : null;
+        if (value != null) {
+          cumulativeDevTime[i] += value;
+        }
+        
+        if (isCumulative) {
+          telemetryStreams.get(i).addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), 
+              cumulativeDevTime[i]));        
+        }
+        else {
+          telemetryStreams.get(i).addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), 
+              value));
+        }
       }
+      index++;
     }
-    return telemetryStream;
+    return telemetryStreams;
   }
   
   /**
-   * Returns a DevTime value for the specified time interval, or null if no SensorData. 
-   * Note that the DPD returns DevTime in minutes, but we are going to convert it to hours
-   * since that makes more sense for telemetry.
+   * Returns the DevTime of each member, in minutes, for a single DPD instance. 
    * 
    * NOTE: This function currently ignores the filePattern and eventType constraints and simply
-   * returns either total aggregate devTime (if member is null), or the devTime for a single
+   * returns either total aggregate devTime (for a null member), or the devTime for a single
    * member (if the memberEmail is supplied).
    *
-   * @param dpdClient The DailyProjectData client we will use to get this data. 
-   * @param project The project.
-   * @param startDay The start day (inclusive).
-   * @param endDay The end day (inclusive).
-   * @param eventType The event type, or null to match all file types. (ignored)
-   * @param member The project member email, or null to match all members. 
-   * @param filePattern File filter pattern, or null to match all files. (ignored)
-   * @throws TelemetryReducerException If anything goes wrong.
+   * @param data The DevTime DPD instance for one day. 
+   * @param memberIndex The members whose values are required.
    *
-   * @return The DevTime, or null if there is no DevEvent SensorData for that time period. 
+   * @return The DevTime in minutes, one per member, with null for any member who has no 
+   * DevEvent SensorData for that day. 
    */
-  Double getData(DailyProjectDataClient dpdClient, Project project, Day startDay, Day endDay, 
-      String eventType, String member, UriPattern filePattern) throws TelemetryReducerException {
-    double devTime = 0;
-    try {
-      // For each day in the interval... 
-      for (Day day = startDay; day.compareTo(endDay) <= 0; day = day.inc(1) ) {
-        // Get the DPD...
-        DevTimeDailyProjectData data = 
-          dpdClient.getDevTime(project.getOwner(), project.getName(), Tstamp.makeTimestamp(day));
-        // Go through the DPD per-member data...
-        for (MemberData memberData : data.getMemberData()) {
-          // If this DPD memberdata's owner matches who we want
-          if ((member == null) || "*".equals(member) || 
-              (memberData.getMemberUri().endsWith(member))) {
-            devTime += memberData.getDevTime().doubleValue();
-          }
-        }
+  Double[] getDayData(DevTimeDailyProjectData data, MemberIndex memberIndex) {
+    Double[] devTime = new Double[memberIndex.size()];
+    // Go through the DPD per-member data, crediting every member it matches...
+    for (MemberData memberData : data.getMemberData()) {
+      for (int i : memberIndex.getIndexes(memberData.getMemberUri())) {
+        double minutes = (devTime[i] == null) ? 0 : devTime[i];
+        devTime[i] = new Double(minutes + memberData.getDevTime().doubleValue());
       }
     }
-    catch (Exception ex) {
-      throw new TelemetryReducerException(ex);
-    }
-
-    //Return null if no data, the DevTime data otherwise. 
-    return (devTime > 0) ? new Double((devTime / 60)) : null; 
+    return devTime;
   }
 
 }
@@ -1,5 +1,6 @@
 package org.hackystat.telemetry.analyzer.reducer.impl;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
@@ -8,8 +9,11 @@ import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyProjectDataFetcher;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyValueStore;
 import org.hackystat.telemetry.analyzer.reducer.util.IntervalUtility;
 import org.hackystat.telemetry.service.server.ServerProperties;
 import org.hackystat.utilities.time.interval.Interval;
@@ -30,7 +34,7 @@ import org.hackystat.utilities.tstamp.Tstamp;
  * 
  * @author Philip Johnson, Cedric Zhang
  */
-public class FileMetricReducer implements TelemetryReducer { 
+public class FileMetricReducer extends AbstractContextTelemetryReducer {
  
   /**
    * Computes and returns the required telemetry streams object.
@@ -39,12 +43,14 @@ public class FileMetricReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    * 
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     String sizeMetric = null;
     String tool = "*";
     // process options
@@ -66,7 +72,7 @@ public class FileMetricReducer implements TelemetryReducer {
 
     // now get the telemetry stream.
     try {
-      TelemetryStream telemetryStream = this.getStream(dpdClient, project, interval,   
+      TelemetryStream telemetryStream = this.getStream(context, dpdClient, project, interval,   
           sizeMetric, tool, null);
       TelemetryStreamCollection streams = new TelemetryStreamCollection(null, project, interval);
       streams.add(telemetryStream);
@@ -80,6 +86,7 @@ public class FileMetricReducer implements TelemetryReducer {
   /**
    * Gets the telemetry stream.
    * 
+   * @param context The reducer context, used to share DPD instances across reducers.
    * @param dpdClient The DailyProjectData client we will contact for the data.
    * @param project The project.
    * @param interval The interval.
@@ -91,63 +98,67 @@ public class FileMetricReducer implements TelemetryReducer {
    * 
    * @throws Exception If there is any error.
    */
-  TelemetryStream getStream(DailyProjectDataClient dpdClient, 
+  TelemetryStream getStream(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, 
       Project project, Interval interval, String sizeMetric, String tool, 
       Object streamTagValue) 
         throws Exception {
     TelemetryStream telemetryStream = new TelemetryStream(streamTagValue);
     List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
 
+    // Take the value of each settled period from the store, and find the latest day with
+    // data in each remaining period, searching all of those periods at once.
+    final String sizeMetricString = sizeMetric;
+    final String toolString = ("*".equals(tool) ? null : tool);
+    Double[][] latestValues = DailyValueStore.getInstance().getLatestValues(context, 
+        dpdClient, project, periods, 
+        new DailyProjectDataFetcher.DailyQuery<FileMetricDailyProjectData>("getFileMetric", 
+            sizeMetricString, toolString) {
+          public FileMetricDailyProjectData fetch(DailyProjectDataClient client, Project project, 
+              Day day) throws Exception {
+            return client.getFileMetric(project.getOwner(), 
+                project.getName(), Tstamp.makeTimestamp(day), sizeMetricString, toolString);
+          }
+          // Keep going back in time if we don't have anything for this day.
+          public boolean hasData(FileMetricDailyProjectData dpdData) {
+            return (dpdData.getFileData() != null) && !dpdData.getFileData().isEmpty();
+          }
+        }, "FileMetric", Collections.singletonList("total"), 
+        new DailyValueStore.DayFunction<FileMetricDailyProjectData>() {
+          public Double[] getValues(FileMetricDailyProjectData data) {
+            return new Double[] { getData(data) };
+          }
+        });
+    int index = 0;
+    
     for (IntervalUtility.Period period : periods) {
-      Double value = this.getData(dpdClient, project, period.getStartDay(), period.getEndDay(),
-          sizeMetric, tool);
+      Double value = latestValues[index++][0];
       telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), value));
     }
     return telemetryStream;
   }
   
   /**
-   * Returns a FileMetric value for the specified time interval and sizeMetric, or null 
+   * Returns a FileMetric value for the specified time period, or null 
    * if no SensorData. 
    * 
-   * We work backward through the time interval, and return the FileMetric value for the first day 
-   * in the interval for which FileMetric data exists.
+   * The value is taken from the DPD for the last day in the time period for which FileMetric data
+   * exists. We might want to make this smarter, and keep searching if we find FileMetric data but
+   * not containing the given sizeMetric.
    * 
-   * @param dpdClient The DailyProjectData client we will use to get this data.
-   * @param project The project.
-   * @param startDay The start day (inclusive).
-   * @param endDay The end day (inclusive).
-   * @param sizeMetric The size metric.
-   * @param tool The tool name, or "*" if any tool will do. 
-   * @throws TelemetryReducerException If anything goes wrong.
+   * @param dpdData The latest FileMetric DPD with data in the time period, or null if none.
    * 
    * @return The FileMetric value, or null if there is no SensorData for that time period.
    */
-  Double getData(DailyProjectDataClient dpdClient, Project project, Day startDay, Day endDay, 
-      String sizeMetric, String tool) throws TelemetryReducerException {
-    try {
-      // Work backward through the interval, and return as soon as we get matching FileMetric info.
-      // We might want to make this smarter, and keep searching if we find FileMetric data but
-      // not containing the given sizeMetric.
-      for (Day day = endDay; day.compareTo(startDay) >= 0; day = day.inc(-1) ) {
-        // Get the DPD...
-        FileMetricDailyProjectData dpdData = 
-          dpdClient.getFileMetric(project.getOwner(), project.getName(), Tstamp.makeTimestamp(day),
-              sizeMetric, ("*".equals(tool) ? null : tool));
-        // Return null right away if DPD is empty.
-        if ((dpdData.getFileData() == null) || dpdData.getFileData().isEmpty()) {
-          continue;
-        }
-        // Otherwise we have FileMetric data, so return the total field.
-        // Note that it can be null.
-        return dpdData.getTotal();
-      }
-    }
-    catch (Exception ex) {
-      throw new TelemetryReducerException(ex);
+  Double getData(FileMetricDailyProjectData dpdData) {
+    // Never found appropriate data in this time period, so return null.
+    if (dpdData == null) {
+      return null;
     }
-    // Never found appropriate FileMetric data in this interval, so return null.
-    return null;
+    
+    // Otherwise we have FileMetric data, so return the total field.
+    // Note that it can be null.
+    return dpdData.getTotal();
   }
 
 }
@@ -1,5 +1,6 @@
 package org.hackystat.telemetry.analyzer.reducer.impl;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
@@ -9,8 +10,10 @@ import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyProjectDataFetcher;
 import org.hackystat.telemetry.analyzer.reducer.util.IntervalUtility;
 import org.hackystat.telemetry.service.server.ServerProperties;
 import org.hackystat.utilities.time.interval.Interval;
@@ -28,7 +31,7 @@ import org.hackystat.utilities.tstamp.Tstamp;
  * 
  * @author Shaoxuan Zhang, Philip Johnson
  */
-public class IssueReducer implements TelemetryReducer { 
+public class IssueReducer extends AbstractContextTelemetryReducer { 
  
   /**
    * Computes and returns the required telemetry streams object.
@@ -37,12 +40,14 @@ public class IssueReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    *
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     String member = null;
     String issueStatus = null;
     //process options
@@ -65,7 +70,7 @@ public class IssueReducer implements TelemetryReducer {
 
     // now get the telemetry stream. 
     try {
-      TelemetryStream telemetryStream = this.getIssueStream(dpdClient, project, interval,  
+      TelemetryStream telemetryStream = this.getIssueStream(context, dpdClient, project, interval,  
           member, issueStatus, null);
       TelemetryStreamCollection streams = new TelemetryStreamCollection(null, project, interval);
       streams.add(telemetryStream);
@@ -79,6 +84,7 @@ public class IssueReducer implements TelemetryReducer {
   /**
    * Gets the issue telemetry stream.
    * 
+   * @param context The reducer context, used to share DPD instances across reducers.
    * @param dpdClient The DailyProjectData client we will contact for the data. 
    * @param project The project.
    * @param interval The interval.
@@ -90,56 +96,58 @@ public class IssueReducer implements TelemetryReducer {
    * 
    * @throws Exception If there is any error.
    */
-  TelemetryStream getIssueStream(DailyProjectDataClient dpdClient, 
+  TelemetryStream getIssueStream(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, 
       Project project, Interval interval, String member, String issueStatus, Object streamTagValue) 
         throws Exception {
     TelemetryStream telemetryStream = new TelemetryStream(streamTagValue);
     List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
     
+    // Retrieve the DPD for the last day of every period at once.
+    List<Day> endDays = new ArrayList<Day>(periods.size());
     for (IntervalUtility.Period period : periods) {
-      Long value = this.getIssuesData(dpdClient, project, period.getStartDay(), period.getEndDay(),
-          member, issueStatus);
+      endDays.add(period.getEndDay());
+    }
+    final String status = issueStatus;
+    List<IssueDailyProjectData> dailyData = DailyProjectDataFetcher.getInstance().fetch(context,
+        dpdClient, project, endDays, 
+        new DailyProjectDataFetcher.DailyQuery<IssueDailyProjectData>("getIssue", status) {
+          public IssueDailyProjectData fetch(DailyProjectDataClient client, Project project, 
+              Day day) throws Exception {
+            return client.getIssue(project.getOwner(), project.getName(), 
+                Tstamp.makeTimestamp(day), status);
+          }
+        });
+    int index = 0;
+    
+    for (IntervalUtility.Period period : periods) {
+      Long value = this.getIssuesData(dailyData.get(index++), member);
       telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), value));
     }
     return telemetryStream;
   }
   
   /**
-   * Returns a Issue value for the specified time interval, or null if no SensorData. 
+   * Returns a Issue value for the specified time period. 
    * 
-   * @param dpdClient The DailyProjectData client we will use to get this data. 
-   * @param project The project.
-   * @param startDay The start day (inclusive).
-   * @param endDay The end day (inclusive).
+   * @param data The Issue DPD for the last day of the time period.
    * @param member The member email, or "*" for all members.
-   * @param issueStatus The status of the issue, open or closed.
-   * @throws TelemetryReducerException If anything goes wrong.
    *
-   * @return The UnitTest count, or null if there is no UnitTest SensorData for that time period. 
+   * @return The Issue count. 
    */
-  Long getIssuesData(DailyProjectDataClient dpdClient, Project project, Day startDay, Day endDay, 
-      String member, String issueStatus) throws TelemetryReducerException {
-    try {
-      IssueDailyProjectData data = 
-        dpdClient.getIssue(project.getOwner(), project.getName(), 
-            Tstamp.makeTimestamp(endDay), issueStatus);
-      if (member == null || "*".equals(member)) {
-        return Long.valueOf(data.getIssueData().size());
-      }
-      else {
-        Long count = 0L;
-        for (IssueData issueData : data.getIssueData()) {
-          if (member.equals(issueData.getOwner())) {
-            count++;
-          }
+  Long getIssuesData(IssueDailyProjectData data, String member) {
+    if (member == null || "*".equals(member)) {
+      return Long.valueOf(data.getIssueData().size());
+    }
+    else {
+      Long count = 0L;
+      for (IssueData issueData : data.getIssueData()) {
+        if (member.equals(issueData.getOwner())) {
+          count++;
         }
-        return count;
       }
+      return count;
     }
-    catch (Exception ex) {
-      throw new TelemetryReducerException(ex);
-    }
-
   }
 
 }
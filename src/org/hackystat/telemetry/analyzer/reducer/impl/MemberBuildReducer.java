@@ -6,8 +6,10 @@ import java.util.List;
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
 import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.sensorbase.resource.projects.jaxb.Property;
+import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
 import org.hackystat.telemetry.analyzer.reducer.util.ReducerOptionUtility;
 import org.hackystat.telemetry.service.server.ServerProperties;
@@ -28,7 +30,7 @@ import org.hackystat.utilities.time.interval.Interval;
  * 
  * @author Philip Johnson
  */
-public class MemberBuildReducer implements TelemetryReducer {
+public class MemberBuildReducer extends AbstractContextTelemetryReducer {
   private static BuildReducer genericBuildReducer = new BuildReducer();
 
   /**
@@ -38,12 +40,14 @@ public class MemberBuildReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    *
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     // weird. for some reason we want 'null' as default rather than '*' etc.
     String result = null;
     String type = null;
@@ -85,9 +89,10 @@ public class MemberBuildReducer implements TelemetryReducer {
         }
       }
       // Now build streams for the remaining emails. 
-      for (String email : emails) {
-        streams.add(genericBuildReducer.getStream(dpdClient, project, interval, email, result, 
-            type, isCumulative, email));
+      // Build all of the member streams from a single pass over the DPD instances.
+      for (TelemetryStream stream : genericBuildReducer.getStreams(context, dpdClient, project, 
+          interval, emails, result, type, isCumulative)) {
+        streams.add(stream);
       }
       return streams;
     } 
@@ -6,8 +6,10 @@ import java.util.List;
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
 import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.sensorbase.resource.projects.jaxb.Property;
+import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
 import org.hackystat.telemetry.service.server.ServerProperties;
 import org.hackystat.utilities.time.interval.Interval;
@@ -22,7 +24,7 @@ import org.hackystat.utilities.time.interval.Interval;
  * 
  * @author Philip Johnson
  */
-public class MemberCommitReducer implements TelemetryReducer { 
+public class MemberCommitReducer extends AbstractContextTelemetryReducer {
   private static CommitReducer genericCommitReducer = new CommitReducer();
   
   /**
@@ -32,12 +34,14 @@ public class MemberCommitReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    *
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     boolean isCumulative = false;
     //process options
     if (options.length > 1) {
@@ -71,9 +75,10 @@ public class MemberCommitReducer implements TelemetryReducer {
           emails.remove(property.getValue());
         }
       }
-      for (String email : emails) {
-        streams.add(genericCommitReducer.getStream(dpdClient, project, interval, email, 
-            isCumulative, email));
+      // Build all of the member streams from a single pass over the DPD instances.
+      for (TelemetryStream stream : genericCommitReducer.getStreams(context, dpdClient, project, 
+          interval, emails, isCumulative)) {
+        streams.add(stream);
       }
       return streams;
     } 
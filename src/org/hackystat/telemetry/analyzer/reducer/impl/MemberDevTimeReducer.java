@@ -7,8 +7,10 @@ import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
 import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.sensorbase.resource.projects.jaxb.Property;
 import org.hackystat.sensorbase.uripattern.UriPattern;
+import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
 import org.hackystat.telemetry.analyzer.reducer.util.ReducerOptionUtility;
 import org.hackystat.telemetry.service.server.ServerProperties;
@@ -31,7 +33,7 @@ import org.hackystat.utilities.time.interval.Interval;
  * 
  * @author Hongbing Kou, Philip Johnson
  */
-public class MemberDevTimeReducer implements TelemetryReducer {
+public class MemberDevTimeReducer extends AbstractContextTelemetryReducer {
   
   private static DevTimeReducer genericDevTimeReducer = new DevTimeReducer();
  
@@ -43,12 +45,14 @@ public class MemberDevTimeReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    *
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     // weird. for some reason we want 'null' as default rather than '*' etc.
     String eventType = null;
     UriPattern resourcePattern = null;
@@ -91,9 +95,10 @@ public class MemberDevTimeReducer implements TelemetryReducer {
           emails.remove(property.getValue());
         }
       }
-      for (String email : emails) {
-        streams.add(genericDevTimeReducer.getStream(dpdClient, project, interval, eventType, 
-            email, resourcePattern, isCumulative, email));
+      // Build all of the member streams from a single pass over the DPD instances.
+      for (TelemetryStream stream : genericDevTimeReducer.getStreams(context, dpdClient, project, 
+          interval, eventType, emails, resourcePattern, isCumulative)) {
+        streams.add(stream);
       }
       return streams;
     } 
@@ -6,8 +6,10 @@ import java.util.List;
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
 import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.sensorbase.resource.projects.jaxb.Property;
+import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
 import org.hackystat.telemetry.analyzer.reducer.impl.UnitTestReducer.Mode;
 import org.hackystat.telemetry.service.server.ServerProperties;
@@ -24,7 +26,7 @@ import org.hackystat.utilities.time.interval.Interval;
  * 
  * @author Hongbing Kou, Philip Johnson
  */
-public class MemberUnitTestReducer implements TelemetryReducer { 
+public class MemberUnitTestReducer extends AbstractContextTelemetryReducer {
   
   private static UnitTestReducer genericUnitTestReducer = new UnitTestReducer();
   
@@ -35,12 +37,14 @@ public class MemberUnitTestReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    *
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     Mode mode = Mode.TOTALCOUNT;
     boolean isCumulative = false;
     //process options
@@ -84,9 +88,10 @@ public class MemberUnitTestReducer implements TelemetryReducer {
           emails.remove(property.getValue());
         }
       }
-      for (String email : emails) {
-        streams.add(genericUnitTestReducer.getStream(dpdClient, project, interval, mode, email, 
-            isCumulative, email));
+      // Build all of the member streams from a single pass over the DPD instances.
+      for (TelemetryStream stream : genericUnitTestReducer.getStreams(context, dpdClient, 
+          project, interval, mode, emails, isCumulative)) {
+        streams.add(stream);
       }
       return streams;
     } 
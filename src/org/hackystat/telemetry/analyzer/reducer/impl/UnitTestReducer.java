@@ -1,5 +1,7 @@
 package org.hackystat.telemetry.analyzer.reducer.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
@@ -9,9 +11,13 @@ import org.hackystat.sensorbase.resource.projects.jaxb.Project;
 import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
 import org.hackystat.telemetry.analyzer.model.TelemetryStream;
 import org.hackystat.telemetry.analyzer.model.TelemetryStreamCollection;
-import org.hackystat.telemetry.analyzer.reducer.TelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.AbstractContextTelemetryReducer;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
 import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyProjectDataFetcher;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyValueStore;
 import org.hackystat.telemetry.analyzer.reducer.util.IntervalUtility;
+import org.hackystat.telemetry.analyzer.reducer.util.MemberIndex;
 import org.hackystat.telemetry.service.server.ServerProperties;
 import org.hackystat.utilities.time.interval.Interval;
 import org.hackystat.utilities.time.period.Day;
@@ -30,7 +36,18 @@ import org.hackystat.utilities.tstamp.Tstamp;
  * 
  * @author Hongbing Kou, Philip Johnson
  */
-public class UnitTestReducer implements TelemetryReducer { 
+public class UnitTestReducer extends AbstractContextTelemetryReducer {
+
+  /** Retrieves the UnitTest DPD for a single day. */
+  private static final DailyProjectDataFetcher.DailyQuery<UnitTestDailyProjectData> 
+    UNITTEST_QUERY =
+    new DailyProjectDataFetcher.DailyQuery<UnitTestDailyProjectData>("getUnitTest") {
+      public UnitTestDailyProjectData fetch(DailyProjectDataClient dpdClient, Project project, 
+          Day day) throws Exception {
+        return dpdClient.getUnitTest(project.getOwner(), project.getName(), 
+            Tstamp.makeTimestamp(day));
+      }
+    };
  
   /** Possible mode values. */
   public enum Mode { TOTALCOUNT, SUCCESSCOUNT, FAILURECOUNT }
@@ -42,12 +59,14 @@ public class UnitTestReducer implements TelemetryReducer {
    * @param dpdClient The DPD Client.
    * @param interval The interval.
    * @param options The optional parameters.
+   * @param context The reducer context shared by this evaluation.
    *
    * @return Telemetry stream collection.
    * @throws TelemetryReducerException If there is any error.
    */
   public TelemetryStreamCollection compute(Project project, DailyProjectDataClient dpdClient, 
-      Interval interval, String[] options) throws TelemetryReducerException {
+      Interval interval, String[] options, 
+      TelemetryReducerContext context) throws TelemetryReducerException {
     Mode mode = Mode.TOTALCOUNT;
     String member = null;
     boolean isCumulative = false;
@@ -85,7 +104,7 @@ public class UnitTestReducer implements TelemetryReducer {
 
     // now get the telemetry stream. 
     try {
-      TelemetryStream telemetryStream = this.getStream(dpdClient, project, interval,  
+      TelemetryStream telemetryStream = this.getStream(context, dpdClient, project, interval,  
           mode, member, isCumulative, null);
       TelemetryStreamCollection streams = new TelemetryStreamCollection(null, project, interval);
       streams.add(telemetryStream);
@@ -99,6 +118,7 @@ public class UnitTestReducer implements TelemetryReducer {
   /**
    * Gets the telemetry stream.
    * 
+   * @param context The reducer context, used to share DPD instances across reducers.
    * @param dpdClient The DailyProjectData client we will contact for the data. 
    * @param project The project.
    * @param interval The interval.
@@ -111,84 +131,122 @@ public class UnitTestReducer implements TelemetryReducer {
    * 
    * @throws Exception If there is any error.
    */
-  TelemetryStream getStream(DailyProjectDataClient dpdClient, 
+  TelemetryStream getStream(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, 
       Project project, Interval interval, Mode mode, 
       String member, boolean isCumulative, Object streamTagValue) 
         throws Exception {
-    TelemetryStream telemetryStream = new TelemetryStream(streamTagValue);
+    TelemetryStream telemetryStream = this.getStreams(context, dpdClient, project, interval, 
+        mode, Collections.singletonList(member), isCumulative).get(0);
+    telemetryStream.setTag(streamTagValue);
+    return telemetryStream;
+  }
+
+  /**
+   * Gets one telemetry stream per member, each tagged with the member's email. Each member's
+   * daily UnitTest counts are taken from the <code>DailyValueStore</code> where possible. The
+   * DPD for any other day is retrieved once, and its member data is distributed to all of the
+   * streams in a single pass.
+   * 
+   * @param context The reducer context, used to share DPD instances across reducers.
+   * @param dpdClient The DailyProjectData client we will contact for the data. 
+   * @param project The project.
+   * @param interval The interval.
+   * @param mode The mode (TOTALCOUNT, SUCCESSCOUNT, or FAILURECOUNT).
+   * @param members The member emails. An entry of "*" matches all members.
+   * @param isCumulative True for cumulative measure.
+   * 
+   * @return The telemetry streams, in the same order as the members.
+   * 
+   * @throws Exception If there is any error.
+   */
+  List<TelemetryStream> getStreams(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, Project project, Interval interval, final Mode mode, 
+      List<String> members, boolean isCumulative) throws Exception {
     List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
-    double cumulativeTestCount = 0;
+    final MemberIndex memberIndex = new MemberIndex(members);
+    List<TelemetryStream> telemetryStreams = new ArrayList<TelemetryStream>(members.size());
+    List<String> series = new ArrayList<String>(members.size());
+    for (String member : members) {
+      telemetryStreams.add(new TelemetryStream(member));
+      series.add(mode + "/" + member);
+    }
+    double[] cumulativeTestCount = new double[members.size()];
+    
+    // Obtain the totals for every period at once, rolled up from the daily counts.
+    Double[][] totals = DailyValueStore.getInstance().getTotals(context, dpdClient, project, 
+        periods, UNITTEST_QUERY, "UnitTest", series, 
+        new DailyValueStore.DayFunction<UnitTestDailyProjectData>() {
+          public Double[] getValues(UnitTestDailyProjectData data) 
+            throws TelemetryReducerException {
+            return getDayData(data, mode, memberIndex);
+          }
+        });
+    int index = 0;
     
     for (IntervalUtility.Period period : periods) {
-      Long value = this.getData(dpdClient, project, period.getStartDay(), period.getEndDay(),
-          mode, member);
-      
-      if (value != null) {
-        cumulativeTestCount += value;
-      }
-      
-      if (isCumulative) {
-        telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), 
-            cumulativeTestCount));        
-      }
-      else {
-        telemetryStream.addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), value));
+      for (int i = 0; i < members.size(); i++) {
+        Double total = totals[index][i];
+        Long value = (total == null) ? null : Long.valueOf(total.longValue());
+        if (value != null) {
+          cumulativeTestCount[i] += value;
+        }
+        
+        if (isCumulative) {
+          telemetryStreams.get(i).addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), 
+              cumulativeTestCount[i]));        
+        }
+        else {
+          telemetryStreams.get(i).addDataPoint(new TelemetryDataPoint(period.getTimePeriod(), 
+              value));
+        }
       }
+      index++;
     }
-    return telemetryStream;
+    return telemetryStreams;
   }
   
   /**
-   * Returns a UnitTest value for the specified time interval, or null if no SensorData. 
+   * Returns the UnitTest count of each member for a single DPD instance. 
    * 
-   * @param dpdClient The DailyProjectData client we will use to get this data. 
-   * @param project The project.
-   * @param startDay The start day (inclusive).
-   * @param endDay The end day (inclusive).
+   * @param data The UnitTest DPD instance for one day. 
    * @param mode The mode.
-   * @param member The member email, or "*" for all members.
+   * @param memberIndex The members whose values are required.
    * @throws TelemetryReducerException If anything goes wrong.
    *
-   * @return The UnitTest count, or null if there is no UnitTest SensorData for that time period. 
+   * @return The UnitTest counts, one per member, with null for any member who has no UnitTest 
+   * SensorData for that day. 
    */
-  Long getData(DailyProjectDataClient dpdClient, Project project, Day startDay, Day endDay, 
-      Mode mode, String member) throws TelemetryReducerException {
-    long count = 0;
-    boolean hasData = false;
-    try {
-      // For each day in the interval... 
-      for (Day day = startDay; day.compareTo(endDay) <= 0; day = day.inc(1) ) {
-        // Get the DPD...
-        UnitTestDailyProjectData data = 
-          dpdClient.getUnitTest(project.getOwner(), project.getName(), Tstamp.makeTimestamp(day));
-        // Go through the DPD per-member data...
-        for (MemberData memberData : data.getMemberData()) {
-          if ((member == null) || "*".equals(member) || 
-              (memberData.getMemberUri().endsWith(member))) {
-            hasData = true;
-            switch (mode) {
-            case TOTALCOUNT:
-              count += memberData.getFailure().longValue() + memberData.getSuccess().longValue();
-              break;
-            case SUCCESSCOUNT: 
-              count += memberData.getSuccess().longValue();
-              break;
-            case FAILURECOUNT: 
-              count += memberData.getFailure().longValue();
-              break;
-            default: 
-              throw new TelemetryReducerException("Unknown mode: " + mode);
-            }
-          }
+  Double[] getDayData(UnitTestDailyProjectData data, Mode mode, MemberIndex memberIndex) 
+      throws TelemetryReducerException {
+    long[] count = new long[memberIndex.size()];
+    boolean[] hasData = new boolean[memberIndex.size()];
+    // Go through the DPD per-member data, crediting every member it matches...
+    for (MemberData memberData : data.getMemberData()) {
+      for (int i : memberIndex.getIndexes(memberData.getMemberUri())) {
+        hasData[i] = true;
+        switch (mode) {
+        case TOTALCOUNT:
+          count[i] += memberData.getFailure().longValue() + memberData.getSuccess().longValue();
+          break;
+        case SUCCESSCOUNT: 
+          count[i] += memberData.getSuccess().longValue();
+          break;
+        case FAILURECOUNT: 
+          count[i] += memberData.getFailure().longValue();
+          break;
+        default: 
+          throw new TelemetryReducerException("Unknown mode: " + mode);
         }
       }
     }
-    catch (Exception ex) {
-      throw new TelemetryReducerException(ex);
-    }
 
-    //Return null if no data, the UnitTest data otherwise. 
-    return (hasData) ? Long.valueOf(count) : null; 
+    //Return null for members with no data, the UnitTest data otherwise. 
+    Double[] values = new Double[count.length];
+    for (int i = 0; i < count.length; i++) {
+      values[i] = (hasData[i]) ? Double.valueOf(count[i]) : null;
+    }
+    return values;
   }
 
 }
@@ -0,0 +1,344 @@
+package org.hackystat.telemetry.analyzer.reducer.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.telemetry.service.server.DaemonThreadFactory;
+import org.hackystat.telemetry.service.server.ServerProperties;
+import org.hackystat.utilities.time.period.Day;
+
+/**
+ * Provides a singleton engine that reducers use to retrieve DailyProjectData instances for
+ * a list of days concurrently.
+ * <p>
+ * Requests run on a bounded thread pool shared by all reducers. In addition, the number of
+ * requests in flight for any single DailyProjectDataClient (and thus for any single user, since
+ * the server allocates one client per user) is limited, so that one large chart cannot monopolize
+ * the pool or the DailyProjectData service. Results are always returned in the order of the
+ * days that were supplied, so reducers build exactly the same telemetry streams as they did when
+ * they retrieved one day at a time.
+ * <p>
+ * The pool size and per-user limit are taken from the ServerProperties DPD_FETCH_THREADS and
+ * DPD_FETCH_USER_LIMIT system properties when the engine is first used.
+ *
+ * @author Philip Johnson
+ */
+public class DailyProjectDataFetcher {
+
+  /**
+   * Retrieves a single DailyProjectData instance for one day. Each query is identified by the
+   * name of the DPD method it calls and any additional arguments it passes, so that the
+   * instances it retrieves can be shared through a <code>TelemetryReducerContext</code>.
+   *
+   * @param <T> The type of the retrieved DPD instance.
+   */
+  public abstract static class DailyQuery<T> {
+    /** The method name and additional arguments identifying this query. */
+    private final String key;
+
+    /**
+     * Creates a query.
+     *
+     * @param method The name of the DailyProjectDataClient method called by this query.
+     * @param args Any additional arguments passed to the method (may contain nulls).
+     */
+    public DailyQuery(String method, String... args) {
+      StringBuffer buff = new StringBuffer(method);
+      for (String arg : args) {
+        buff.append('/').append(arg);
+      }
+      this.key = buff.toString();
+    }
+
+    /**
+     * Returns the key identifying the DPD instances retrieved by this query for the given
+     * project.
+     *
+     * @param project The project.
+     * @return The key.
+     */
+    public String getKey(Project project) {
+      return this.key + '/' + project.getOwner() + '/' + project.getName();
+    }
+
+    /**
+     * Returns the key identifying the DPD instance retrieved by this query for the given
+     * project and day.
+     *
+     * @param project The project.
+     * @param day The day.
+     * @return The key.
+     */
+    public String getKey(Project project, Day day) {
+      return getKey(project) + '/' + day;
+    }
+
+    /**
+     * Returns true if the retrieved instance contains data. Used by <code>fetchLatest</code>
+     * to decide whether to keep looking at earlier days. The default returns true for any
+     * non-null instance.
+     *
+     * @param value The retrieved instance.
+     * @return True if the instance contains data.
+     */
+    public boolean hasData(T value) {
+      return value != null;
+    }
+
+    /**
+     * Retrieves the DPD instance for the given project and day.
+     *
+     * @param dpdClient The DailyProjectData client to use.
+     * @param project The project.
+     * @param day The day.
+     * @return The DPD instance for this day.
+     * @throws Exception If problems occur retrieving the instance.
+     */
+    public abstract T fetch(DailyProjectDataClient dpdClient, Project project, Day day)
+      throws Exception;
+  }
+
+  /** The singleton. */
+  private static DailyProjectDataFetcher theInstance = new DailyProjectDataFetcher();
+
+  /** The pool of threads shared by all reducers. */
+  private final ExecutorService executor;
+  /** The maximum number of requests in flight per DailyProjectDataClient. */
+  private final int userLimit;
+  /** Maps each DailyProjectDataClient to the semaphore limiting its concurrent requests. */
+  private final Map<DailyProjectDataClient, Semaphore> permits =
+    Collections.synchronizedMap(new WeakHashMap<DailyProjectDataClient, Semaphore>());
+
+  /**
+   * Gets the singleton instance of this class.
+   *
+   * @return An instance of this class.
+   */
+  public static DailyProjectDataFetcher getInstance() {
+    return theInstance;
+  }
+
+  /**
+   * Creates the thread pool using the sizes found in the system properties.
+   */
+  private DailyProjectDataFetcher() {
+    int threads = ServerProperties.getPositiveInt(
+        ServerProperties.DPD_FETCH_THREADS, ServerProperties.DEFAULT_DPD_FETCH_THREADS);
+    this.userLimit = Math.min(threads, ServerProperties.getPositiveInt(
+        ServerProperties.DPD_FETCH_USER_LIMIT, ServerProperties.DEFAULT_DPD_FETCH_USER_LIMIT));
+    this.executor = Executors.newFixedThreadPool(threads,
+        new DaemonThreadFactory("telemetry-dpd-fetch"));
+  }
+
+  /**
+   * Retrieves the value of the query for each of the given days, and returns the values in the
+   * same order as the days. Requests are made concurrently, subject to the per-user limit.
+   * If any request fails, then the outstanding requests are cancelled and the failure of the
+   * earliest failing day is thrown. If a context is supplied, then instances already retrieved
+   * in this context are reused rather than requested again.
+   *
+   * @param <T> The type of the retrieved values.
+   * @param context The reducer context, or null if instances should not be shared.
+   * @param dpdClient The DailyProjectData client.
+   * @param project The project.
+   * @param days The days, in the order in which their values should be returned.
+   * @param query The query to run for each day.
+   * @return The list of values, one per day.
+   * @throws TelemetryReducerException If any of the requests fails.
+   */
+  public <T> List<T> fetch(final TelemetryReducerContext context, 
+      final DailyProjectDataClient dpdClient, final Project project, List<Day> days, 
+      final DailyQuery<T> query) throws TelemetryReducerException {
+    List<T> values = new ArrayList<T>(days.size());
+    // No point in handing off a single request to another thread.
+    if (days.size() == 1) {
+      try {
+        values.add(fetchDay(context, dpdClient, project, days.get(0), query));
+        return values;
+      }
+      catch (Exception e) {
+        throw new TelemetryReducerException(e);
+      }
+    }
+    final Semaphore semaphore = getSemaphore(dpdClient);
+    List<Future<T>> futures = new ArrayList<Future<T>>(days.size());
+    try {
+      for (final Day day : days) {
+        // Acquire in the calling thread, so that pool threads never block waiting on a permit.
+        semaphore.acquire();
+        try {
+          futures.add(this.executor.submit(new Callable<T>() {
+            public T call() throws Exception {
+              try {
+                return fetchDay(context, dpdClient, project, day, query);
+              }
+              finally {
+                semaphore.release();
+              }
+            }
+          }));
+        }
+        catch (RuntimeException e) {
+          semaphore.release();
+          throw e;
+        }
+      }
+      for (Future<T> future : futures) {
+        values.add(future.get());
+      }
+      return values;
+    }
+    catch (ExecutionException e) {
+      cancel(futures);
+      Throwable cause = e.getCause();
+      if (cause instanceof TelemetryReducerException) {
+        throw (TelemetryReducerException) cause;
+      }
+      throw new TelemetryReducerException(cause);
+    }
+    catch (InterruptedException e) {
+      cancel(futures);
+      Thread.currentThread().interrupt();
+      throw new TelemetryReducerException("Interrupted while retrieving DPD data.", e);
+    }
+    catch (RuntimeException e) {
+      cancel(futures);
+      throw new TelemetryReducerException(e);
+    }
+  }
+
+  /**
+   * Retrieves the instance for a single day, through the context if one is supplied.
+   *
+   * @param <T> The type of the retrieved value.
+   * @param context The reducer context, or null.
+   * @param dpdClient The DailyProjectData client.
+   * @param project The project.
+   * @param day The day.
+   * @param query The query.
+   * @return The retrieved value.
+   * @throws Exception If the query fails.
+   */
+  private static <T> T fetchDay(TelemetryReducerContext context, 
+      final DailyProjectDataClient dpdClient, final Project project, final Day day, 
+      final DailyQuery<T> query) throws Exception {
+    if (context == null) {
+      return query.fetch(dpdClient, project, day);
+    }
+    return context.getDailyProjectData(query.getKey(project, day), new Callable<T>() {
+      public T call() throws Exception {
+        return query.fetch(dpdClient, project, day);
+      }
+    });
+  }
+
+  /**
+   * Returns, for each period, the instance for the latest day in that period for which the
+   * query's hasData method returns true, or null if there is no such day. This supports the
+   * "snapshot" reducers, which work backward from the end of each period until they find data.
+   * <p>
+   * The search proceeds in waves: the first wave requests the last day of every period
+   * concurrently, the next wave requests the preceding day of every period still lacking a
+   * value, and so forth. Thus the number of requests is never more than a serial backward search,
+   * but periods are searched in parallel.
+   * <p>
+   * The outcome of each request is recorded in the <code>DataDayIndex</code>, and days that the
+   * index has recently found to be empty are skipped without making a request.
+   *
+   * @param <T> The type of the retrieved values.
+   * @param context The reducer context, or null if instances should not be shared.
+   * @param dpdClient The DailyProjectData client.
+   * @param project The project.
+   * @param periods The periods.
+   * @param query The query.
+   * @return The list of values, one per period.
+   * @throws TelemetryReducerException If any of the requests fails.
+   */
+  public <T> List<T> fetchLatest(TelemetryReducerContext context, 
+      DailyProjectDataClient dpdClient, Project project, List<IntervalUtility.Period> periods, 
+      DailyQuery<T> query) throws TelemetryReducerException {
+    DataDayIndex dayIndex = DataDayIndex.getInstance();
+    String indexKey = query.getKey(project);
+    List<T> values = new ArrayList<T>(periods.size());
+    // The next day to examine in each period, or null once the period has been resolved.
+    List<Day> cursors = new ArrayList<Day>(periods.size());
+    for (IntervalUtility.Period period : periods) {
+      values.add(null);
+      cursors.add(period.getEndDay());
+    }
+    while (true) {
+      List<Integer> wavePeriods = new ArrayList<Integer>(periods.size());
+      List<Day> waveDays = new ArrayList<Day>(periods.size());
+      for (int index = 0; index < periods.size(); index++) {
+        if (cursors.get(index) != null) {
+          Day day = dayIndex.getCandidateDay(indexKey, periods.get(index).getStartDay(), 
+              cursors.get(index));
+          cursors.set(index, day);
+          if (day != null) {
+            wavePeriods.add(index);
+            waveDays.add(day);
+          }
+        }
+      }
+      if (waveDays.isEmpty()) {
+        break;
+      }
+      List<T> waveValues = fetch(context, dpdClient, project, waveDays, query);
+      for (int i = 0; i < wavePeriods.size(); i++) {
+        int index = wavePeriods.get(i);
+        boolean hasData = query.hasData(waveValues.get(i));
+        dayIndex.record(project, indexKey, waveDays.get(i), hasData);
+        if (hasData) {
+          values.set(index, waveValues.get(i));
+          cursors.set(index, null);
+        }
+        else {
+          cursors.set(index, waveDays.get(i).inc(-1));
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Returns the semaphore associated with this client, creating it if necessary.
+   *
+   * @param dpdClient The DailyProjectData client.
+   * @return Its semaphore.
+   */
+  private Semaphore getSemaphore(DailyProjectDataClient dpdClient) {
+    synchronized (this.permits) {
+      Semaphore semaphore = this.permits.get(dpdClient);
+      if (semaphore == null) {
+        semaphore = new Semaphore(this.userLimit);
+        this.permits.put(dpdClient, semaphore);
+      }
+      return semaphore;
+    }
+  }
+
+  /**
+   * Cancels any of the futures that have not yet completed.
+   *
+   * @param <T> The type of the futures.
+   * @param futures The futures.
+   */
+  private static <T> void cancel(List<Future<T>> futures) {
+    for (Future<T> future : futures) {
+      future.cancel(true);
+    }
+  }
+}
@@ -0,0 +1,859 @@
+package org.hackystat.telemetry.analyzer.reducer.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.telemetry.service.server.ServerProperties;
+import org.hackystat.utilities.logger.HackystatLogger;
+import org.hackystat.utilities.time.period.Day;
+
+/**
+ * Provides a durable store of the per-day values computed by the additive reducers (DevTime,
+ * Build, Commit, Churn, and UnitTest, along with their Member variants), and of the per-period
+ * values computed by the snapshot reducers. The DPD for a past day rarely changes, so once a
+ * reducer has computed a value for a day there is usually no need to request that DPD instance
+ * again, even after the server is restarted.
+ * <p>
+ * Values are kept in series. A series is identified by the reducer name, its parameters, the
+ * member, and the DPD query and project; each series holds at most one value per day or
+ * period, where a null value records that there was no data. Sensor data may still arrive
+ * after its day, from offline sensors or resent batches, so the store is only trusted for
+ * data that has had time to settle:
+ * <ul>
+ * <li> Only days and periods ending more than the settle days before today are stored.
+ * <li> A stored value is recomputed from the DPD once it is older than its maximum life, and
+ * a stored null, which late data is most likely to contradict, once it is older than the
+ * shorter no data life.
+ * <li> <code>removeProject</code> and <code>removeUser</code> discard the values of a project,
+ * or of every project of an owner, when a client clears its caches.
+ * </ul>
+ * <p>
+ * Since these reducers are additive, the value of a week or month is simply the total of its
+ * days. <code>getTotals</code> rolls the day values up into these totals each time, rather
+ * than storing them, so that a total never outlives the days it was computed from.
+ * <p>
+ * The snapshot reducers (Coverage, Complexity, Coupling, CodeIssue, and FileMetric) take the
+ * value of a period from the latest day in it with data. <code>getLatestValues</code> stores
+ * the value of every period ending before the settle days, under the same lives and removal
+ * as the day values, so that when a chart's interval slides forward only the periods not seen
+ * before require a DPD request. Together these mean that refreshing a chart
+ * over the last N days costs requests for the days added since the last refresh, plus the
+ * days still settling, rather than for all N days. The cumulative variants of the additive
+ * reducers carry their running totals forward over the period totals returned here, and need
+ * no DPD requests of their own for the earlier periods.
+ * <p>
+ * Each project's series are kept in one append-only file, in a directory per owner under the
+ * directory given by the ServerProperties REDUCER_STORE_DIR_KEY system property, and are read
+ * into memory the first time the project is used. The values of at most MAX_PROJECTS projects
+ * are kept in memory; those of the least recently used project are discarded first, and read
+ * again from its file when it is next used. Expired values are dropped when the file is
+ * read, and the file is rewritten with only its current values once most of its lines are
+ * obsolete, so that it does not grow without bound. The store is only enabled when the
+ * REDUCER_STORE_ENABLED system property is "true"; otherwise nothing is saved and every value
+ * is computed from the DPD. The settle days and lives are taken from the
+ * REDUCER_STORE_SETTLE_DAYS, REDUCER_STORE_MAX_LIFE, and REDUCER_STORE_NO_DATA_LIFE system
+ * properties.
+ * <p>
+ * Instances are thread-safe. Each project is locked separately, and files are written outside
+ * the lock on the project's values, so reducers working on other projects, or reading values
+ * already in memory, never wait for a file to be written.
+ *
+ * @author Philip Johnson
+ */
+public class DailyValueStore {
+
+  /**
+   * Computes the values of one or more series from the DPD instance for a single day.
+   *
+   * @param <T> The type of the DPD instance.
+   */
+  public interface DayFunction<T> {
+    /**
+     * Returns the value of each series for the given day.
+     *
+     * @param dpdData The DPD instance for the day.
+     * @return The values, one per series, with null for a series with no data on this day.
+     * @throws TelemetryReducerException If the values cannot be computed.
+     */
+    Double[] getValues(T dpdData) throws TelemetryReducerException;
+  }
+
+  /** The number of milliseconds in a day. */
+  private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+  /** The number of obsolete lines a file may hold, beyond its values, before it is rewritten. */
+  private static final int COMPACT_SLACK = 1000;
+
+  /** The maximum number of projects whose values are kept in memory. */
+  private static final int MAX_PROJECTS = 1000;
+
+  /** The character encoding of the store files. */
+  private static final String ENCODING = "UTF-8";
+
+  /** The singleton. */
+  private static DailyValueStore theInstance = new DailyValueStore(
+      "true".equalsIgnoreCase(System.getProperty(ServerProperties.REDUCER_STORE_ENABLED))
+      ? new File(System.getProperty(ServerProperties.REDUCER_STORE_DIR_KEY,
+          System.getProperty("user.home") + "/.hackystat/telemetry/reducerstore"))
+      : null,
+      ServerProperties.getPositiveInt(ServerProperties.REDUCER_STORE_SETTLE_DAYS,
+          ServerProperties.DEFAULT_REDUCER_STORE_SETTLE_DAYS),
+      ServerProperties.getPositiveInt(ServerProperties.REDUCER_STORE_MAX_LIFE,
+          ServerProperties.DEFAULT_REDUCER_STORE_MAX_LIFE),
+      ServerProperties.getPositiveInt(ServerProperties.REDUCER_STORE_NO_DATA_LIFE,
+          ServerProperties.DEFAULT_REDUCER_STORE_NO_DATA_LIFE));
+
+  /** Marks a stored value recording that there was no data for the day. */
+  private static final String NO_DATA = "null";
+
+  /** The directory holding the store files, or null if the store is disabled. */
+  private final File dir;
+  /** The number of days before today whose values are not yet stored. */
+  private final int settleDays;
+  /** The milliseconds after which a stored value is recomputed. */
+  private final long maxLife;
+  /** The milliseconds after which a stored null is recomputed. */
+  private final long noDataLife;
+  /**
+   * Maps the path of each project file to the project's values, in order of use. An evicted
+   * project is marked as removed, so that only the store that replaces it writes its file.
+   */
+  private final Map<String, ProjectStore> projects =
+    new LinkedHashMap<String, ProjectStore>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      protected boolean removeEldestEntry(Map.Entry<String, ProjectStore> eldest) {
+        if (size() > MAX_PROJECTS) {
+          DailyValueStore.remove(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+  /** The logger for problems reading or writing the store. */
+  private final Logger logger = HackystatLogger.getLogger("org.hackystat.telemetry");
+
+  /**
+   * Gets the singleton instance of this class.
+   *
+   * @return An instance of this class.
+   */
+  public static DailyValueStore getInstance() {
+    return theInstance;
+  }
+
+  /**
+   * Creates a store that keeps its files in the given directory.
+   *
+   * @param dir The directory, or null to create a disabled store.
+   * @param settleDays The number of days before today whose values are not yet stored.
+   * @param maxLife The days after which a stored value is recomputed.
+   * @param noDataLife The days after which a stored null is recomputed.
+   */
+  DailyValueStore(File dir, int settleDays, int maxLife, int noDataLife) {
+    this.dir = dir;
+    this.settleDays = settleDays;
+    this.maxLife = maxLife * DAY_MILLIS;
+    this.noDataLife = noDataLife * DAY_MILLIS;
+  }
+
+  /**
+   * Returns the value of each series for each of the given days. Values for days already in
+   * the store are returned directly. The DPD instances for the remaining days are retrieved
+   * through the fetcher, passed to the function, and the resulting values are stored.
+   *
+   * @param <T> The type of the DPD instances.
+   * @param context The reducer context, used to share DPD instances across reducers.
+   * @param dpdClient The DailyProjectData client.
+   * @param project The project.
+   * @param days The days.
+   * @param query The query that retrieves the DPD instance for a day.
+   * @param reducerName The name of the reducer computing the values.
+   * @param series For each series, the reducer parameters and member that identify it.
+   * @param function Computes the value of each series from a DPD instance.
+   * @return The values, indexed first by day and then by series.
+   * @throws TelemetryReducerException If the DPD instances cannot be retrieved or the
+   * function fails.
+   */
+  public <T> Double[][] getValues(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, Project project, List<Day> days,
+      DailyProjectDataFetcher.DailyQuery<T> query, String reducerName, List<String> series,
+      DayFunction<T> function) throws TelemetryReducerException {
+    String[] seriesKeys = getSeriesKeys(project, query, reducerName, series);
+    Double[][] values = new Double[days.size()][];
+    List<Integer> missing = new ArrayList<Integer>();
+    for (int i = 0; i < days.size(); i++) {
+      if (isStored(days.get(i))) {
+        values[i] = get(project, seriesKeys, getDayKey(days.get(i)));
+      }
+      if (values[i] == null) {
+        missing.add(i);
+      }
+    }
+    if (!missing.isEmpty()) {
+      List<Day> missingDays = new ArrayList<Day>(missing.size());
+      for (Integer index : missing) {
+        missingDays.add(days.get(index));
+      }
+      List<T> dailyData = DailyProjectDataFetcher.getInstance().fetch(context, dpdClient,
+          project, missingDays, query);
+      for (int i = 0; i < missing.size(); i++) {
+        Double[] dayValues = function.getValues(dailyData.get(i));
+        values[missing.get(i)] = dayValues;
+        if (isStored(missingDays.get(i))) {
+          put(project, seriesKeys, getDayKey(missingDays.get(i)), dayValues);
+        }
+      }
+    }
+    return values;
+  }
+
+
+  /**
+   * Returns the total of each series for each of the given periods, where the total of a
+   * series is null if it has no data on any day of the period. The totals are rolled up from
+   * the values of the days of the periods, obtained as described in <code>getValues</code>.
+   *
+   * @param <T> The type of the DPD instances.
+   * @param context The reducer context, used to share DPD instances across reducers.
+   * @param dpdClient The DailyProjectData client.
+   * @param project The project.
+   * @param periods The periods.
+   * @param query The query that retrieves the DPD instance for a day.
+   * @param reducerName The name of the reducer computing the values.
+   * @param series For each series, the reducer parameters and member that identify it.
+   * @param function Computes the value of each series from a DPD instance.
+   * @return The totals, indexed first by period and then by series.
+   * @throws TelemetryReducerException If the DPD instances cannot be retrieved or the
+   * function fails.
+   */
+  public <T> Double[][] getTotals(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, Project project, List<IntervalUtility.Period> periods,
+      DailyProjectDataFetcher.DailyQuery<T> query, String reducerName, List<String> series,
+      DayFunction<T> function) throws TelemetryReducerException {
+    Double[][] dayValues = getValues(context, dpdClient, project,
+        IntervalUtility.getDays(periods), query, reducerName, series, function);
+    Double[][] totals = new Double[periods.size()][series.size()];
+    int index = 0;
+    for (int i = 0; i < periods.size(); i++) {
+      int numDays = periods.get(i).getNumOfDays();
+      for (int j = 0; j < series.size(); j++) {
+        totals[i][j] = sum(dayValues, index, numDays, j);
+      }
+      index += numDays;
+    }
+    return totals;
+  }
+
+  /**
+   * Returns the value of each series for each of the given periods, taken from the latest day
+   * in the period whose DPD instance has data, as determined by the query's hasData method. The
+   * values of a period without such a day are all null. Unexpired values of settled periods
+   * already in the store are returned directly. The latest DPD instances of the remaining
+   * periods are found through the fetcher's <code>fetchLatest</code>, passed to the function,
+   * and the resulting values of any settled periods among them are stored.
+   *
+   * @param <T> The type of the DPD instances.
+   * @param context The reducer context, used to share DPD instances across reducers.
+   * @param dpdClient The DailyProjectData client.
+   * @param project The project.
+   * @param periods The periods.
+   * @param query The query that retrieves the DPD instance for a day.
+   * @param reducerName The name of the reducer computing the values.
+   * @param series For each series, the reducer parameters that identify it.
+   * @param function Computes the value of each series from a DPD instance with data.
+   * @return The values, indexed first by period and then by series.
+   * @throws TelemetryReducerException If the DPD instances cannot be retrieved or the
+   * function fails.
+   */
+  public <T> Double[][] getLatestValues(TelemetryReducerContext context,
+      DailyProjectDataClient dpdClient, Project project, List<IntervalUtility.Period> periods,
+      DailyProjectDataFetcher.DailyQuery<T> query, String reducerName, List<String> series,
+      DayFunction<T> function) throws TelemetryReducerException {
+    String[] seriesKeys = getSeriesKeys(project, query, reducerName, series);
+    Double[][] values = new Double[periods.size()][];
+    List<Integer> missing = new ArrayList<Integer>();
+    List<IntervalUtility.Period> missingPeriods = new ArrayList<IntervalUtility.Period>();
+    for (int i = 0; i < periods.size(); i++) {
+      IntervalUtility.Period period = periods.get(i);
+      if (isStored(period.getEndDay())) {
+        values[i] = get(project, seriesKeys, getPeriodKey(period));
+      }
+      if (values[i] == null) {
+        missing.add(i);
+        missingPeriods.add(period);
+      }
+    }
+    if (!missing.isEmpty()) {
+      List<T> latestData = DailyProjectDataFetcher.getInstance().fetchLatest(context,
+          dpdClient, project, missingPeriods, query);
+      for (int i = 0; i < missing.size(); i++) {
+        T data = latestData.get(i);
+        Double[] periodValues = (data == null)
+            ? new Double[seriesKeys.length] : function.getValues(data);
+        values[missing.get(i)] = periodValues;
+        IntervalUtility.Period period = missingPeriods.get(i);
+        if (isStored(period.getEndDay())) {
+          put(project, seriesKeys, getPeriodKey(period), periodValues);
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Discards the stored values of a project, so that they are recomputed from the DPD.
+   *
+   * @param owner The project owner.
+   * @param projectName The project name.
+   */
+  public void removeProject(String owner, String projectName) {
+    if (this.dir == null) {
+      return;
+    }
+    File file = getFile(owner, projectName);
+    synchronized (this.projects) {
+      remove(this.projects.remove(file.getPath()));
+      delete(file);
+    }
+  }
+
+  /**
+   * Discards the stored values of every project owned by a user, so that they are recomputed
+   * from the DPD.
+   *
+   * @param owner The project owner.
+   */
+  public void removeUser(String owner) {
+    if (this.dir == null) {
+      return;
+    }
+    File ownerDir = getOwnerDir(owner);
+    synchronized (this.projects) {
+      Iterator<ProjectStore> iterator = this.projects.values().iterator();
+      while (iterator.hasNext()) {
+        ProjectStore store = iterator.next();
+        if (store.owner.equals(owner)) {
+          iterator.remove();
+          remove(store);
+        }
+      }
+      File[] files = ownerDir.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          delete(file);
+        }
+      }
+      delete(ownerDir);
+    }
+  }
+
+  /**
+   * Returns the total of the non-null values of one series over a range of days, or null if
+   * every value in the range is null.
+   *
+   * @param values The values, indexed first by day and then by series.
+   * @param fromDay The index of the first day in the range.
+   * @param numDays The number of days in the range.
+   * @param series The index of the series.
+   * @return The total, or null if there is no data in the range.
+   */
+  public static Double sum(Double[][] values, int fromDay, int numDays, int series) {
+    double total = 0;
+    boolean hasData = false;
+    for (int i = fromDay; i < fromDay + numDays; i++) {
+      Double value = values[i][series];
+      if (value != null) {
+        hasData = true;
+        total += value;
+      }
+    }
+    return (hasData) ? Double.valueOf(total) : null;
+  }
+
+  /**
+   * Returns the keys of the given series.
+   *
+   * @param project The project.
+   * @param query The query that retrieves the DPD instance for a day.
+   * @param reducerName The name of the reducer computing the values.
+   * @param series For each series, the reducer parameters and member that identify it.
+   * @return The series keys.
+   */
+  private static String[] getSeriesKeys(Project project,
+      DailyProjectDataFetcher.DailyQuery<?> query, String reducerName, List<String> series) {
+    String queryKey = query.getKey(project);
+    String[] seriesKeys = new String[series.size()];
+    for (int i = 0; i < seriesKeys.length; i++) {
+      seriesKeys[i] = reducerName + '/' + series.get(i) + '/' + queryKey;
+    }
+    return seriesKeys;
+  }
+
+  /**
+   * Returns the stored values of every series for the given day or period key, or null if any
+   * of them is not in the store or has expired. Expired values are discarded.
+   *
+   * @param project The project.
+   * @param seriesKeys The series keys.
+   * @param dayString The day or period key.
+   * @return The values, or null if the day or period is not completely stored.
+   */
+  private Double[] get(Project project, String[] seriesKeys, String dayString) {
+    ProjectStore store = getProjectStore(project);
+    long now = System.currentTimeMillis();
+    synchronized (store) {
+      Map<String, Map<String, StoredValue>> projectSeries = load(store);
+      Double[] dayValues = new Double[seriesKeys.length];
+      for (int i = 0; i < seriesKeys.length; i++) {
+        Map<String, StoredValue> seriesValues = projectSeries.get(seriesKeys[i]);
+        StoredValue storedValue = (seriesValues == null) ? null : seriesValues.get(dayString);
+        if (storedValue == null) {
+          return null;
+        }
+        if (isExpired(storedValue, now)) {
+          seriesValues.remove(dayString);
+          store.valueCount--;
+          return null;
+        }
+        dayValues[i] = storedValue.value;
+      }
+      return dayValues;
+    }
+  }
+
+  /**
+   * Stores the values of every series for the given day or period key, and then appends them
+   * to the project's file, or rewrites the file if most of its lines are obsolete.
+   *
+   * @param project The project.
+   * @param seriesKeys The series keys.
+   * @param dayString The day or period key.
+   * @param dayValues The values, one per series.
+   */
+  private void put(Project project, String[] seriesKeys, String dayString, Double[] dayValues) {
+    ProjectStore store = getProjectStore(project);
+    long now = System.currentTimeMillis();
+    StringBuffer lines = new StringBuffer();
+    boolean compact;
+    synchronized (store) {
+      Map<String, Map<String, StoredValue>> projectSeries = load(store);
+      for (int i = 0; i < seriesKeys.length; i++) {
+        Map<String, StoredValue> seriesValues = projectSeries.get(seriesKeys[i]);
+        if (seriesValues == null) {
+          seriesValues = new HashMap<String, StoredValue>();
+          projectSeries.put(seriesKeys[i], seriesValues);
+        }
+        if (!seriesValues.containsKey(dayString) && isStorable(seriesKeys[i])) {
+          StoredValue storedValue = new StoredValue(dayValues[i], now);
+          seriesValues.put(dayString, storedValue);
+          store.valueCount++;
+          store.lineCount++;
+          appendLine(lines, seriesKeys[i], dayString, storedValue);
+        }
+      }
+      compact = store.lineCount > 2 * store.valueCount + COMPACT_SLACK;
+    }
+    if (compact) {
+      rewrite(store);
+    }
+    else {
+      append(store, lines.toString());
+    }
+  }
+
+  /**
+   * Returns true if values for the given day are kept in this store.
+   *
+   * @param day The day.
+   * @return True if the store is enabled and the day is before the settle days.
+   */
+  private boolean isStored(Day day) {
+    return (this.dir != null) && (day.compareTo(Day.getInstance().inc(-this.settleDays)) < 0);
+  }
+
+  /**
+   * Returns true if a stored value must be recomputed.
+   *
+   * @param storedValue The stored value.
+   * @param now The current time.
+   * @return True if the value is older than its life.
+   */
+  private boolean isExpired(StoredValue storedValue, long now) {
+    long life = (storedValue.value == null) ? this.noDataLife : this.maxLife;
+    return now - storedValue.time >= life;
+  }
+
+  /**
+   * Returns the key under which a period's latest values are stored.
+   *
+   * @param period The period.
+   * @return The key, such as "2007-0-1..2007-0-31".
+   */
+  private static String getPeriodKey(IntervalUtility.Period period) {
+    return getDayKey(period.getStartDay()) + ".." + getDayKey(period.getEndDay());
+  }
+
+  /**
+   * Returns the key under which a day's values are stored. Unlike Day.toString, the key does
+   * not depend on the default locale.
+   *
+   * @param day The day.
+   * @return The key, such as "2007-0-31" (the month is zero-based, as in Calendar).
+   */
+  private static String getDayKey(Day day) {
+    return day.getYear() + "-" + day.getMonth() + "-" + day.getDay();
+  }
+
+  /**
+   * Returns true if the series key can be written to a store file.
+   *
+   * @param seriesKey The series key.
+   * @return True if the key contains no tabs or line breaks.
+   */
+  private static boolean isStorable(String seriesKey) {
+    return (seriesKey.indexOf('\t') < 0) && (seriesKey.indexOf('\n') < 0)
+      && (seriesKey.indexOf('\r') < 0);
+  }
+
+  /**
+   * Appends the line that records a stored value.
+   *
+   * @param lines The lines.
+   * @param seriesKey The series key.
+   * @param dayString The day or period key.
+   * @param storedValue The stored value.
+   */
+  private static void appendLine(StringBuffer lines, String seriesKey, String dayString,
+      StoredValue storedValue) {
+    lines.append(seriesKey).append('\t').append(dayString).append('\t')
+      .append((storedValue.value == null) ? NO_DATA : storedValue.value.toString())
+      .append('\t').append(storedValue.time).append('\n');
+  }
+
+  /**
+   * Returns the values of the given project, creating an empty store for the project the
+   * first time. The project's file is read when the values are first used.
+   *
+   * @param project The project.
+   * @return The project's values.
+   */
+  private ProjectStore getProjectStore(Project project) {
+    File file = getFile(project.getOwner(), project.getName());
+    synchronized (this.projects) {
+      ProjectStore store = this.projects.get(file.getPath());
+      if (store == null) {
+        store = new ProjectStore(project.getOwner(), file);
+        this.projects.put(file.getPath(), store);
+      }
+      return store;
+    }
+  }
+
+  /**
+   * Returns the series of the given project, reading them from its file the first time.
+   * Must be called while holding the lock on the project store.
+   *
+   * @param store The project store.
+   * @return The series, mapping each series key to its values by day.
+   */
+  private Map<String, Map<String, StoredValue>> load(ProjectStore store) {
+    if (store.series == null) {
+      store.series = read(store);
+    }
+    return store.series;
+  }
+
+  /**
+   * Returns the directory holding the files of a project owner.
+   *
+   * @param owner The project owner.
+   * @return The directory.
+   */
+  private File getOwnerDir(String owner) {
+    return new File(this.dir, toFileName(owner));
+  }
+
+  /**
+   * Returns the file holding the given project's series.
+   *
+   * @param owner The project owner.
+   * @param projectName The project name.
+   * @return The file.
+   */
+  private File getFile(String owner, String projectName) {
+    return new File(getOwnerDir(owner), toFileName(projectName) + ".store");
+  }
+
+  /**
+   * Returns a file name for the given name, made of its letters, digits, dots and dashes.
+   *
+   * @param name The name.
+   * @return The file name.
+   */
+  private static String toFileName(String name) {
+    StringBuffer fileName = new StringBuffer(name.length() + 16);
+    for (char c : name.toCharArray()) {
+      fileName.append((Character.isLetterOrDigit(c) || (c == '.') || (c == '-')) ? c : '_');
+    }
+    // The hash keeps different names that map to the same characters apart.
+    fileName.append('-').append(Integer.toHexString(name.hashCode()));
+    return fileName.toString();
+  }
+
+  /**
+   * Reads the series in the given project's file, dropping expired values. Lines that cannot
+   * be parsed are ignored.
+   *
+   * @param store The project store, whose line and value counts are set.
+   * @return The series, which is empty if the file does not exist or cannot be read.
+   */
+  private Map<String, Map<String, StoredValue>> read(ProjectStore store) {
+    Map<String, Map<String, StoredValue>> projectSeries =
+      new HashMap<String, Map<String, StoredValue>>();
+    if (!store.file.exists()) {
+      return projectSeries;
+    }
+    long now = System.currentTimeMillis();
+    int lineCount = 0;
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(store.file),
+          ENCODING));
+      String line = reader.readLine();
+      while (line != null) {
+        lineCount++;
+        String[] fields = line.split("\t");
+        if (fields.length == 4) {
+          try {
+            StoredValue storedValue = new StoredValue(
+                NO_DATA.equals(fields[2]) ? null : Double.valueOf(fields[2]),
+                Long.parseLong(fields[3]));
+            Map<String, StoredValue> seriesValues = projectSeries.get(fields[0]);
+            if (seriesValues == null) {
+              seriesValues = new HashMap<String, StoredValue>();
+              projectSeries.put(fields[0], seriesValues);
+            }
+            // A later line for the same day replaces an earlier, expired one.
+            if (isExpired(storedValue, now)) {
+              seriesValues.remove(fields[1]);
+            }
+            else {
+              seriesValues.put(fields[1], storedValue);
+            }
+          }
+          catch (NumberFormatException e) {
+            this.logger.fine("Ignoring bad reducer store entry: " + line);
+          }
+        }
+        line = reader.readLine();
+      }
+    }
+    catch (IOException e) {
+      this.logger.log(Level.WARNING, "Could not read reducer store " + store.file, e);
+    }
+    finally {
+      close(reader);
+    }
+    int valueCount = 0;
+    for (Map<String, StoredValue> seriesValues : projectSeries.values()) {
+      valueCount += seriesValues.size();
+    }
+    store.lineCount = lineCount;
+    store.valueCount = valueCount;
+    return projectSeries;
+  }
+
+  /**
+   * Appends the lines to the given project's file, creating its directory if necessary.
+   * Nothing is written once the project's values have been removed. Failures are logged,
+   * since the values can always be recomputed.
+   *
+   * @param store The project store.
+   * @param lines The lines to append.
+   */
+  private void append(ProjectStore store, String lines) {
+    if (lines.length() == 0) {
+      return;
+    }
+    synchronized (store.fileLock) {
+      if (!store.removed) {
+        write(store.file, lines, true);
+      }
+    }
+  }
+
+  /**
+   * Rewrites the given project's file with only its current values, dropping any that have
+   * expired. Nothing is written once the project's values have been removed.
+   *
+   * @param store The project store.
+   */
+  private void rewrite(ProjectStore store) {
+    synchronized (store.fileLock) {
+      if (store.removed) {
+        return;
+      }
+      long now = System.currentTimeMillis();
+      StringBuffer lines = new StringBuffer();
+      synchronized (store) {
+        int valueCount = 0;
+        for (Map.Entry<String, Map<String, StoredValue>> series : store.series.entrySet()) {
+          Iterator<Map.Entry<String, StoredValue>> iterator =
+            series.getValue().entrySet().iterator();
+          while (iterator.hasNext()) {
+            Map.Entry<String, StoredValue> entry = iterator.next();
+            if (isExpired(entry.getValue(), now)) {
+              iterator.remove();
+            }
+            else {
+              appendLine(lines, series.getKey(), entry.getKey(), entry.getValue());
+              valueCount++;
+            }
+          }
+        }
+        store.valueCount = valueCount;
+        store.lineCount = valueCount;
+      }
+      write(store.file, lines.toString(), false);
+    }
+  }
+
+  /**
+   * Marks the values of a project as removed, so that they are no longer written.
+   *
+   * @param store The project store, or null.
+   */
+  private static void remove(ProjectStore store) {
+    if (store != null) {
+      synchronized (store.fileLock) {
+        store.removed = true;
+      }
+    }
+  }
+
+  /**
+   * Writes the lines to a file, creating its directory if necessary. Failures are logged,
+   * since the values can always be recomputed.
+   *
+   * @param file The file.
+   * @param lines The lines.
+   * @param append True to append the lines to the file, false to replace its contents.
+   */
+  private void write(File file, String lines, boolean append) {
+    Writer writer = null;
+    try {
+      File parent = file.getParentFile();
+      if (!parent.exists() && !parent.mkdirs()) {
+        throw new IOException("Could not create " + parent);
+      }
+      writer = new OutputStreamWriter(new FileOutputStream(file, append), ENCODING);
+      writer.write(lines);
+    }
+    catch (IOException e) {
+      this.logger.log(Level.WARNING, "Could not write reducer store " + file, e);
+    }
+    finally {
+      close(writer);
+    }
+  }
+
+  /**
+   * Deletes a file or empty directory, logging a failure.
+   *
+   * @param file The file or directory.
+   */
+  private void delete(File file) {
+    if (file.exists() && !file.delete()) {
+      this.logger.warning("Could not delete reducer store " + file);
+    }
+  }
+
+  /**
+   * Closes the stream, ignoring any error.
+   *
+   * @param stream The stream, or null.
+   */
+  private static void close(Closeable stream) {
+    if (stream != null) {
+      try {
+        stream.close();
+      }
+      catch (IOException e) { // NOPMD
+        // Nothing more can be done.
+      }
+    }
+  }
+
+  /**
+   * A stored value, with the time at which it was computed.
+   */
+  private static class StoredValue {
+    /** The value, or null if there was no data. */
+    private final Double value;
+    /** The time at which the value was computed, in milliseconds. */
+    private final long time;
+
+    /**
+     * Creates a stored value.
+     *
+     * @param value The value, or null if there was no data.
+     * @param time The time at which the value was computed.
+     */
+    StoredValue(Double value, long time) {
+      this.value = value;
+      this.time = time;
+    }
+  }
+
+  /**
+   * The values of one project. The series and counts are guarded by the lock on this object,
+   * and the file and removed flag by the file lock, which is never acquired while holding the
+   * lock on this object.
+   */
+  private static class ProjectStore {
+    /** The project owner. */
+    private final String owner;
+    /** The file holding the project's values. */
+    private final File file;
+    /** Serializes the writes to the file. */
+    private final Object fileLock = new Object();
+    /** The series, or null until the file has been read. */
+    private Map<String, Map<String, StoredValue>> series;
+    /** The number of lines in the file. */
+    private int lineCount;
+    /** The number of values in the series. */
+    private int valueCount;
+    /** True once the project's values have been removed, after which nothing is written. */
+    private boolean removed;
+
+    /**
+     * Creates the values of a project, which are read from its file when first used.
+     *
+     * @param owner The project owner.
+     * @param file The file.
+     */
+    ProjectStore(String owner, File file) {
+      this.owner = owner;
+      this.file = file;
+    }
+  }
+}
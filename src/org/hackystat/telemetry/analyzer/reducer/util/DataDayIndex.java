@@ -0,0 +1,222 @@
+package org.hackystat.telemetry.analyzer.reducer.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.telemetry.service.server.ServerProperties;
+import org.hackystat.utilities.time.period.Day;
+
+/**
+ * Remembers, for each DPD query and project, which past days were found to be empty. The
+ * snapshot reducers (Coverage, Complexity, Coupling, CodeIssue, and FileMetric) search backward
+ * from the end of each period for the most recent day with data. On sparse projects most of
+ * those requests return nothing, and the same empty days are probed again by every chart that
+ * covers them. This index lets <code>DailyProjectDataFetcher</code> skip days already known to
+ * be empty and go straight to the most recent day with data.
+ * <p>
+ * The index is filled in as a side effect of the requests made by <code>fetchLatest</code>.
+ * Sensor data may still arrive after its day, from offline sensors or resent batches, so only
+ * days ending more than the settle days given by the REDUCER_STORE_SETTLE_DAYS system property
+ * before today are recorded, as in <code>DailyValueStore</code>. Late data may still arrive
+ * for an earlier day, so an empty day is only trusted for the no data life given by the
+ * REDUCER_STORE_NO_DATA_LIFE system property, after which it is requested again, and
+ * <code>removeProject</code> and <code>removeUser</code> forget the days of a project, or of
+ * every project of an owner, when a client clears its caches. Both the number of query/project
+ * entries and the number of days kept for each are bounded; the least recently used entries,
+ * and the earliest recorded days, are discarded first.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @author Philip Johnson
+ */
+public class DataDayIndex {
+
+  /** The maximum number of query/project entries retained. */
+  private static final int MAX_ENTRIES = 1000;
+
+  /** The maximum number of empty days retained for each query/project entry. */
+  private static final int MAX_DAYS = 366;
+
+  /** The number of milliseconds in a day. */
+  private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+  /** The singleton. */
+  private static DataDayIndex theInstance = new DataDayIndex(
+      ServerProperties.getPositiveInt(ServerProperties.REDUCER_STORE_SETTLE_DAYS,
+          ServerProperties.DEFAULT_REDUCER_STORE_SETTLE_DAYS),
+      ServerProperties.getPositiveInt(ServerProperties.REDUCER_STORE_NO_DATA_LIFE,
+          ServerProperties.DEFAULT_REDUCER_STORE_NO_DATA_LIFE) * DAY_MILLIS);
+
+  /** The number of days before today that are not yet recorded. */
+  private final int settleDays;
+  /** The milliseconds for which an empty day is trusted. */
+  private final long noDataLife;
+
+  /** Maps each query/project key to its empty days. */
+  private final Map<String, EmptyDays> index =
+    new LinkedHashMap<String, EmptyDays>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      protected boolean removeEldestEntry(Map.Entry<String, EmptyDays> eldest) {
+        return size() > MAX_ENTRIES;
+      }
+    };
+
+  /**
+   * Gets the singleton instance of this class.
+   *
+   * @return An instance of this class.
+   */
+  public static DataDayIndex getInstance() {
+    return theInstance;
+  }
+
+  /**
+   * Creates an empty index.
+   *
+   * @param settleDays The number of days before today that are not yet recorded.
+   * @param noDataLife The milliseconds for which an empty day is trusted.
+   */
+  DataDayIndex(int settleDays, long noDataLife) {
+    this.settleDays = settleDays;
+    this.noDataLife = noDataLife;
+  }
+
+  /**
+   * Records whether the given day had data for the query/project key. Days within the settle
+   * days before today, and days on or after today, are ignored.
+   *
+   * @param project The project.
+   * @param key The query/project key.
+   * @param day The day.
+   * @param hasData True if the day had data.
+   */
+  public void record(Project project, String key, Day day, boolean hasData) {
+    if (day.compareTo(Day.getInstance().inc(-this.settleDays)) >= 0) {
+      return;
+    }
+    synchronized (this.index) {
+      EmptyDays entry = this.index.get(key);
+      if (hasData) {
+        if (entry != null) {
+          entry.emptyDays.remove(day);
+        }
+        return;
+      }
+      if (entry == null) {
+        entry = new EmptyDays(project.getOwner(), project.getName());
+        this.index.put(key, entry);
+      }
+      entry.emptyDays.put(day, Long.valueOf(System.currentTimeMillis()));
+    }
+  }
+
+  /**
+   * Returns the latest day, working backward from endDay to startDay, that is not known to be
+   * empty for the query/project key. This is either the most recent day with data, or the
+   * first day whose contents are not yet known. Returns null if every day in the range is known
+   * to be empty.
+   *
+   * @param key The query/project key.
+   * @param startDay The earliest day to consider.
+   * @param endDay The day from which to start working backward.
+   * @return The day to request next, or null if there is none.
+   */
+  public Day getCandidateDay(String key, Day startDay, Day endDay) {
+    synchronized (this.index) {
+      EmptyDays entry = this.index.get(key);
+      Day day = endDay;
+      if (entry != null) {
+        long now = System.currentTimeMillis();
+        while ((day.compareTo(startDay) >= 0) && entry.isEmpty(day, now - this.noDataLife)) {
+          day = day.inc(-1);
+        }
+      }
+      return (day.compareTo(startDay) >= 0) ? day : null;
+    }
+  }
+
+  /**
+   * Forgets the empty days recorded for a project, so that they are requested again.
+   *
+   * @param owner The project owner.
+   * @param projectName The project name.
+   */
+  public void removeProject(String owner, String projectName) {
+    synchronized (this.index) {
+      Iterator<EmptyDays> iterator = this.index.values().iterator();
+      while (iterator.hasNext()) {
+        EmptyDays entry = iterator.next();
+        if (entry.owner.equals(owner) && entry.projectName.equals(projectName)) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Forgets the empty days recorded for every project owned by a user, so that they are
+   * requested again.
+   *
+   * @param owner The project owner.
+   */
+  public void removeUser(String owner) {
+    synchronized (this.index) {
+      Iterator<EmptyDays> iterator = this.index.values().iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().owner.equals(owner)) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * The empty days recorded for one query and project.
+   */
+  private static class EmptyDays {
+    /** The project owner. */
+    private final String owner;
+    /** The project name. */
+    private final String projectName;
+    /** Maps each empty day to the time it was found empty, earliest recorded first. */
+    private final Map<Day, Long> emptyDays = new LinkedHashMap<Day, Long>() {
+      private static final long serialVersionUID = 1L;
+      protected boolean removeEldestEntry(Map.Entry<Day, Long> eldest) {
+        return size() > MAX_DAYS;
+      }
+    };
+
+    /**
+     * Creates the empty days of a project, with none recorded yet.
+     *
+     * @param owner The project owner.
+     * @param projectName The project name.
+     */
+    EmptyDays(String owner, String projectName) {
+      this.owner = owner;
+      this.projectName = projectName;
+    }
+
+    /**
+     * Returns true if the day was found empty after the given time. An empty day found
+     * earlier is forgotten.
+     *
+     * @param day The day.
+     * @param since The earliest time at which an empty day is still trusted.
+     * @return True if the day is known to be empty.
+     */
+    boolean isEmpty(Day day, long since) {
+      Long time = this.emptyDays.get(day);
+      if (time == null) {
+        return false;
+      }
+      if (time.longValue() <= since) {
+        this.emptyDays.remove(day);
+        return false;
+      }
+      return true;
+    }
+  }
+}
@@ -56,7 +56,27 @@ public class IntervalUtility {
     
     return list;
   }
-  
+
+  /**
+   * Gets every day covered by the periods, in order. Reducers use this to request the data
+   * for an entire interval at once, and then use the number of days in each period to
+   * assign the results to periods.
+   *
+   * @param periods The ordered list of periods.
+   * @return The ordered list of days from the start day of the first period to the end day
+   * of the last period.
+   */
+  public static List<Day> getDays(List<IntervalUtility.Period> periods) {
+    ArrayList<Day> days = new ArrayList<Day>();
+    for (IntervalUtility.Period period : periods) {
+      for (Day day = period.getStartDay(); day.compareTo(period.getEndDay()) <= 0;
+           day = day.inc(1)) {
+        days.add(day);
+      }
+    }
+    return days;
+  }
+
   /**
    * Provides a Time period, which is either day, week or month.
    * 
@@ -0,0 +1,69 @@
+package org.hackystat.telemetry.analyzer.reducer.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the member URIs found in DailyProjectData MemberData instances to the positions of the
+ * members for which a reducer is building streams. This allows a reducer to make a single pass
+ * over each day's MemberData and distribute every value to all of the streams it belongs to.
+ * <p>
+ * A member matches a URI in the same way the reducers have always matched a single member: the
+ * member is null or "*", or the URI ends with the member's email. The matches for each URI are
+ * computed once and then remembered. Instances are not thread-safe.
+ *
+ * @author Philip Johnson
+ */
+public class MemberIndex {
+
+  /** The members, in stream order. */
+  private final List<String> members;
+  /** Maps each member URI seen so far to the positions of the members it matches. */
+  private final Map<String, int[]> indexes = new HashMap<String, int[]>();
+
+  /**
+   * Creates an index for the given members.
+   *
+   * @param members The member emails, in stream order. An entry may be null or "*" to match
+   * all members.
+   */
+  public MemberIndex(List<String> members) {
+    this.members = new ArrayList<String>(members);
+  }
+
+  /**
+   * Returns the number of members in this index.
+   *
+   * @return The number of members.
+   */
+  public int size() {
+    return this.members.size();
+  }
+
+  /**
+   * Returns the positions of the members that match the given member URI.
+   *
+   * @param memberUri The member URI from a DPD MemberData instance.
+   * @return The positions of the matching members, possibly empty.
+   */
+  public int[] getIndexes(String memberUri) {
+    int[] matches = this.indexes.get(memberUri);
+    if (matches == null) {
+      List<Integer> found = new ArrayList<Integer>();
+      for (int i = 0; i < this.members.size(); i++) {
+        String member = this.members.get(i);
+        if ((member == null) || "*".equals(member) || memberUri.endsWith(member)) {
+          found.add(i);
+        }
+      }
+      matches = new int[found.size()];
+      for (int i = 0; i < matches.length; i++) {
+        matches[i] = found.get(i);
+      }
+      this.indexes.put(memberUri, matches);
+    }
+    return matches;
+  }
+}
@@ -0,0 +1,182 @@
+package org.hackystat.telemetry.analyzer.reducer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerException;
+import org.hackystat.utilities.time.interval.WeekInterval;
+import org.hackystat.utilities.time.period.Day;
+import org.junit.Test;
+
+/**
+ * Test suite for <code>DailyProjectDataFetcher</code>. Uses queries that do not contact a
+ * DailyProjectData service.
+ *
+ * @author Philip Johnson
+ */
+public class TestDailyProjectDataFetcher {
+
+  /** Returns the day of the month, after a short delay so that requests overlap. */
+  private DailyProjectDataFetcher.DailyQuery<Integer> dayQuery =
+    new DailyProjectDataFetcher.DailyQuery<Integer>("getDay") {
+      public Integer fetch(DailyProjectDataClient dpdClient, Project project, Day day)
+      throws Exception {
+        Thread.sleep(5);
+        return day.getDay();
+      }
+    };
+
+  /**
+   * Tests that values are returned in the order of the supplied days.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testFetchOrder() throws Exception {
+    List<Day> days = new ArrayList<Day>();
+    Day firstDay = Day.getInstance(2002, 0, 1);
+    for (int i = 0; i < 20; i++) {
+      days.add(firstDay.inc(i));
+    }
+    List<Integer> values =
+      DailyProjectDataFetcher.getInstance().fetch(null, null, new Project(), days, dayQuery);
+    assertEquals("Checking size", 20, values.size());
+    for (int i = 0; i < 20; i++) {
+      assertEquals("Checking order", Integer.valueOf(i + 1), values.get(i));
+    }
+  }
+
+  /**
+   * Tests that a failing request is reported as a TelemetryReducerException.
+   */
+  @Test
+  public void testFetchFailure() {
+    List<Day> days = new ArrayList<Day>();
+    Day firstDay = Day.getInstance(2002, 0, 1);
+    for (int i = 0; i < 5; i++) {
+      days.add(firstDay.inc(i));
+    }
+    try {
+      DailyProjectDataFetcher.getInstance().fetch(null, null, new Project(), days,
+          new DailyProjectDataFetcher.DailyQuery<Integer>("getDay") {
+            public Integer fetch(DailyProjectDataClient dpdClient, Project project, Day day) {
+              if (day.getDay() == 3) {
+                throw new IllegalStateException("No data");
+              }
+              return day.getDay();
+            }
+          });
+      fail("Expected a TelemetryReducerException");
+    }
+    catch (TelemetryReducerException e) {
+      assertTrue("Checking cause", e.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  /**
+   * Tests that fetchLatest finds the last day with data in each period.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testFetchLatest() throws Exception {
+    WeekInterval interval = new WeekInterval("06-Jan-2002 to 12-Jan-2002",
+                                             "20-Jan-2002 to 26-Jan-2002");
+    List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
+    // Only days 1 through 15 have data.
+    List<Integer> values = DailyProjectDataFetcher.getInstance().fetchLatest(null, null, 
+        new Project(), periods, new DailyProjectDataFetcher.DailyQuery<Integer>("getDay") {
+          public Integer fetch(DailyProjectDataClient dpdClient, Project project, Day day) {
+            return (day.getDay() <= 15) ? Integer.valueOf(day.getDay()) : null;
+          }
+        });
+    assertEquals("Checking size", 3, values.size());
+    assertEquals("Checking first week", Integer.valueOf(12), values.get(0));
+    assertEquals("Checking second week", Integer.valueOf(15), values.get(1));
+    assertNull("Checking third week", values.get(2));
+  }
+
+  /**
+   * Tests that a context retrieves each day only once, even for different queries with the
+   * same key, and that a different key is retrieved separately.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testContext() throws Exception {
+    List<Day> days = new ArrayList<Day>();
+    Day firstDay = Day.getInstance(2002, 0, 1);
+    for (int i = 0; i < 10; i++) {
+      days.add(firstDay.inc(i));
+    }
+    final AtomicInteger count = new AtomicInteger(0);
+    TelemetryReducerContext context = new TelemetryReducerContext();
+    Project project = new Project();
+    project.setOwner("owner@hackystat.org");
+    project.setName("Default");
+    for (int i = 0; i < 2; i++) {
+      List<Integer> values = DailyProjectDataFetcher.getInstance().fetch(context, null, project,
+          days, new DailyProjectDataFetcher.DailyQuery<Integer>("getDay") {
+            public Integer fetch(DailyProjectDataClient dpdClient, Project project, Day day) {
+              count.incrementAndGet();
+              return day.getDay();
+            }
+          });
+      assertEquals("Checking values", Integer.valueOf(10), values.get(9));
+    }
+    assertEquals("Checking retrievals", 10, count.get());
+    assertEquals("Checking memo size", 10, context.getDailyProjectDataCount());
+    DailyProjectDataFetcher.getInstance().fetch(context, null, project, days,
+        new DailyProjectDataFetcher.DailyQuery<Integer>("getDay", "other") {
+          public Integer fetch(DailyProjectDataClient dpdClient, Project project, Day day) {
+            count.incrementAndGet();
+            return day.getDay();
+          }
+        });
+    assertEquals("Checking retrievals with another key", 20, count.get());
+  }
+
+  /**
+   * Tests that a second search for the latest data skips the days already found to be empty.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testFetchLatestSkipsEmptyDays() throws Exception {
+    WeekInterval interval = new WeekInterval("06-Jan-2002 to 12-Jan-2002",
+                                             "20-Jan-2002 to 26-Jan-2002");
+    List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
+    Project project = new Project();
+    project.setOwner("owner@hackystat.org");
+    project.setName("Sparse");
+    final AtomicInteger count = new AtomicInteger(0);
+    // Only days 1 through 8 have data.
+    DailyProjectDataFetcher.DailyQuery<Integer> query = 
+      new DailyProjectDataFetcher.DailyQuery<Integer>("getSparseDay") {
+        public Integer fetch(DailyProjectDataClient dpdClient, Project project, Day day) {
+          count.incrementAndGet();
+          return (day.getDay() <= 8) ? Integer.valueOf(day.getDay()) : null;
+        }
+      };
+    List<Integer> first = 
+      DailyProjectDataFetcher.getInstance().fetchLatest(null, null, project, periods, query);
+    // 5 requests for the first week, 7 each for the others.
+    assertEquals("Checking first search", 19, count.get());
+    count.set(0);
+    List<Integer> second = 
+      DailyProjectDataFetcher.getInstance().fetchLatest(null, null, project, periods, query);
+    assertEquals("Checking second search", 1, count.get());
+    assertEquals("Checking values", first, second);
+    assertEquals("Checking first week", Integer.valueOf(8), second.get(0));
+    assertNull("Checking second week", second.get(1));
+  }
+}
@@ -0,0 +1,366 @@
+package org.hackystat.telemetry.analyzer.reducer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.utilities.time.interval.WeekInterval;
+import org.hackystat.utilities.time.period.Day;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for <code>DailyValueStore</code>. Uses a query that does not contact a
+ * DailyProjectData service, and a store directory that is deleted after each test.
+ *
+ * @author Philip Johnson
+ */
+public class TestDailyValueStore {
+
+  /** The store directory. */
+  private File dir;
+  /** The number of DPD requests made by the query. */
+  private AtomicInteger count = new AtomicInteger(0);
+  /** The project. */
+  private Project project = new Project();
+
+  /** Returns the day of the month. */
+  private DailyProjectDataFetcher.DailyQuery<Integer> dayQuery =
+    new DailyProjectDataFetcher.DailyQuery<Integer>("getStoreDay") {
+      public Integer fetch(DailyProjectDataClient dpdClient, Project project, Day day) {
+        count.incrementAndGet();
+        return day.getDay();
+      }
+    };
+
+  /** The first series is the day of the month, the second has no data. */
+  private DailyValueStore.DayFunction<Integer> dayFunction =
+    new DailyValueStore.DayFunction<Integer>() {
+      public Double[] getValues(Integer dayOfMonth) {
+        return new Double[] { Double.valueOf(dayOfMonth), null };
+      }
+    };
+
+  /**
+   * Creates an empty store directory.
+   */
+  @Before
+  public void setUp() {
+    this.dir = new File(System.getProperty("java.io.tmpdir"),
+        "reducerstore-" + System.currentTimeMillis());
+    this.project.setOwner("owner@hackystat.org");
+    this.project.setName("Default");
+  }
+
+  /**
+   * Deletes the store directory.
+   */
+  @After
+  public void tearDown() {
+    delete(this.dir);
+  }
+
+  /**
+   * Deletes a file, or a directory and everything in it.
+   *
+   * @param file The file or directory.
+   */
+  private static void delete(File file) {
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File child : files) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Returns a store in the store directory that stores every day before today, and keeps
+   * values for a month.
+   *
+   * @return The store.
+   */
+  private DailyValueStore makeStore() {
+    return new DailyValueStore(this.dir, 0, 30, 30);
+  }
+
+  /**
+   * Returns the last five days, ending today.
+   *
+   * @return The days.
+   */
+  private static List<Day> makeDays() {
+    List<Day> days = new ArrayList<Day>();
+    Day today = Day.getInstance();
+    for (int i = 4; i >= 0; i--) {
+      days.add(today.inc(-i));
+    }
+    return days;
+  }
+
+  /**
+   * Returns the day of the month and no data series.
+   *
+   * @return The series.
+   */
+  private static List<String> makeSeries() {
+    List<String> series = new ArrayList<String>();
+    series.add("dayOfMonth");
+    series.add("noData");
+    return series;
+  }
+
+  /**
+   * Tests that past days are read back from the store, even by a new instance, but that
+   * today is always computed from the DPD.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testGetValues() throws Exception {
+    List<Day> days = makeDays();
+    Day today = Day.getInstance();
+    List<String> series = makeSeries();
+
+    Double[][] values = makeStore().getValues(null, null, this.project, days,
+        dayQuery, "Test", series, dayFunction);
+    assertEquals("Checking first requests", 5, count.get());
+    assertEquals("Checking first value", Double.valueOf(days.get(0).getDay()), values[0][0]);
+    assertNull("Checking no data", values[0][1]);
+
+    count.set(0);
+    values = makeStore().getValues(null, null, this.project, days, dayQuery,
+        "Test", series, dayFunction);
+    assertEquals("Checking only today is requested", 1, count.get());
+    assertEquals("Checking stored value", Double.valueOf(days.get(0).getDay()), values[0][0]);
+    assertNull("Checking stored no data", values[0][1]);
+    assertEquals("Checking today", Double.valueOf(today.getDay()), values[4][0]);
+  }
+
+  /**
+   * Tests that series whose keys are not ASCII are read back from the store.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testNonAsciiSeries() throws Exception {
+    List<Day> days = makeDays();
+    List<String> series = new ArrayList<String>();
+    series.add("d\u00e9veloppeur \u5f00\u53d1");
+    series.add("noData");
+    makeStore().getValues(null, null, this.project, days, dayQuery, "Test", series,
+        dayFunction);
+
+    count.set(0);
+    Double[][] values = makeStore().getValues(null, null, this.project, days, dayQuery,
+        "Test", series, dayFunction);
+    assertEquals("Checking only today is requested", 1, count.get());
+    assertEquals("Checking stored value", Double.valueOf(days.get(0).getDay()), values[0][0]);
+  }
+
+  /**
+   * Tests that week totals are rolled up from the day values, that the totals of completed
+   * weeks are rolled up again from the stored days without any DPD requests, and that removing
+   * the days leaves no stale totals behind.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testGetTotals() throws Exception {
+    WeekInterval interval = new WeekInterval("06-Jan-2002 to 12-Jan-2002",
+                                             "20-Jan-2002 to 26-Jan-2002");
+    List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
+    List<String> series = makeSeries();
+
+    Double[][] totals = makeStore().getTotals(null, null, this.project,
+        periods, dayQuery, "Test", series, dayFunction);
+    assertEquals("Checking first requests", 21, count.get());
+    assertEquals("Checking first week", Double.valueOf(63), totals[0][0]);
+    assertEquals("Checking last week", Double.valueOf(161), totals[2][0]);
+    assertNull("Checking no data", totals[0][1]);
+
+    count.set(0);
+    totals = makeStore().getTotals(null, null, this.project, periods,
+        dayQuery, "Test", series, dayFunction);
+    assertEquals("Checking no requests", 0, count.get());
+    assertEquals("Checking stored week", Double.valueOf(112), totals[1][0]);
+    assertNull("Checking stored no data", totals[1][1]);
+
+    DailyValueStore store = makeStore();
+    store.removeProject(this.project.getOwner(), this.project.getName());
+    count.set(0);
+    store.getTotals(null, null, this.project, periods, dayQuery, "Test", series, dayFunction);
+    assertEquals("Checking removed days are requested again", 21, count.get());
+  }
+
+  /**
+   * Tests that the value of each week is taken from its last day, and that the values of
+   * completed weeks are read back from the store without any DPD requests.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testGetLatestValues() throws Exception {
+    WeekInterval interval = new WeekInterval("06-Jan-2002 to 12-Jan-2002",
+                                             "20-Jan-2002 to 26-Jan-2002");
+    List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
+    List<String> series = makeSeries();
+
+    Double[][] values = makeStore().getLatestValues(null, null, this.project,
+        periods, dayQuery, "Latest", series, dayFunction);
+    assertEquals("Checking first requests", 3, count.get());
+    assertEquals("Checking first week", Double.valueOf(12), values[0][0]);
+    assertEquals("Checking last week", Double.valueOf(26), values[2][0]);
+    assertNull("Checking no data", values[0][1]);
+
+    count.set(0);
+    values = makeStore().getLatestValues(null, null, this.project, periods,
+        dayQuery, "Latest", series, dayFunction);
+    assertEquals("Checking no requests", 0, count.get());
+    assertEquals("Checking stored week", Double.valueOf(19), values[1][0]);
+    assertNull("Checking stored no data", values[1][1]);
+  }
+
+  /**
+   * Tests that the stored values of weeks expire, with the values recording no data expiring
+   * sooner, and are discarded when their project is removed.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testLatestValuesExpiry() throws Exception {
+    WeekInterval interval = new WeekInterval("06-Jan-2002 to 12-Jan-2002",
+                                             "20-Jan-2002 to 26-Jan-2002");
+    List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
+    List<String> series = makeSeries();
+    for (int i = 0; i < 2; i++) {
+      new DailyValueStore(this.dir, 0, 30, 0).getLatestValues(null, null, this.project,
+          periods, dayQuery, "Latest", series, dayFunction);
+    }
+    assertEquals("Checking weeks with no data are requested again", 2 * 3, count.get());
+
+    DailyValueStore store = makeStore();
+    store.getLatestValues(null, null, this.project, periods, dayQuery, "Latest", series,
+        dayFunction);
+    count.set(0);
+    new DailyValueStore(this.dir, 0, 0, 0).getLatestValues(null, null, this.project, periods,
+        dayQuery, "Latest", series, dayFunction);
+    assertEquals("Checking expired weeks are requested again", 3, count.get());
+
+    store.removeProject(this.project.getOwner(), this.project.getName());
+    count.set(0);
+    store.getLatestValues(null, null, this.project, periods, dayQuery, "Latest", series,
+        dayFunction);
+    assertEquals("Checking removed weeks are requested again", 3, count.get());
+  }
+
+  /**
+   * Tests that a disabled store never saves anything.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testDisabled() throws Exception {
+    List<Day> days = new ArrayList<Day>();
+    days.add(Day.getInstance().inc(-1));
+    List<String> series = makeSeries();
+    for (int i = 0; i < 2; i++) {
+      new DailyValueStore(null, 0, 30, 30).getValues(null, null, this.project, days, dayQuery,
+          "Test", series, dayFunction);
+    }
+    assertEquals("Checking requests", 2, count.get());
+  }
+
+  /**
+   * Tests that the days within the settle days are always computed from the DPD.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testSettleDays() throws Exception {
+    List<Day> days = makeDays();
+    List<String> series = makeSeries();
+    for (int i = 0; i < 2; i++) {
+      new DailyValueStore(this.dir, 2, 30, 30).getValues(null, null, this.project, days,
+          dayQuery, "Test", series, dayFunction);
+    }
+    assertEquals("Checking settling days are requested again", 5 + 3, count.get());
+  }
+
+  /**
+   * Tests that expired values are computed from the DPD again, with stored nulls expiring
+   * sooner than other values.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testExpiry() throws Exception {
+    List<Day> days = makeDays();
+    List<String> series = makeSeries();
+    DailyValueStore store = new DailyValueStore(this.dir, 0, 30, 0);
+    store.getValues(null, null, this.project, days, dayQuery, "Test", series, dayFunction);
+    count.set(0);
+    store.getValues(null, null, this.project, days, dayQuery, "Test", series, dayFunction);
+    assertEquals("Checking expired nulls are requested again", 5, count.get());
+
+    List<String> dayOfMonth = series.subList(0, 1);
+    count.set(0);
+    new DailyValueStore(this.dir, 0, 30, 0).getValues(null, null, this.project, days, dayQuery,
+        "Test", dayOfMonth, dayFunction);
+    assertEquals("Checking values are kept", 1, count.get());
+    count.set(0);
+    new DailyValueStore(this.dir, 0, 0, 0).getValues(null, null, this.project, days, dayQuery,
+        "Test", dayOfMonth, dayFunction);
+    assertEquals("Checking expired values are requested again", 5, count.get());
+  }
+
+  /**
+   * Tests that removing a project, or every project of its owner, discards its stored values
+   * but not those of other owners.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testRemove() throws Exception {
+    List<Day> days = makeDays();
+    List<String> series = makeSeries();
+    Project other = new Project();
+    other.setOwner("other@hackystat.org");
+    other.setName("Default");
+    DailyValueStore store = makeStore();
+    store.getValues(null, null, this.project, days, dayQuery, "Test", series, dayFunction);
+    store.getValues(null, null, other, days, dayQuery, "Test", series, dayFunction);
+
+    store.removeProject(this.project.getOwner(), this.project.getName());
+    count.set(0);
+    store.getValues(null, null, this.project, days, dayQuery, "Test", series, dayFunction);
+    assertEquals("Checking removed project is requested again", 5, count.get());
+
+    store.removeUser(this.project.getOwner());
+    count.set(0);
+    makeStore().getValues(null, null, this.project, days, dayQuery, "Test", series,
+        dayFunction);
+    assertEquals("Checking removed user is requested again", 5, count.get());
+    count.set(0);
+    makeStore().getValues(null, null, other, days, dayQuery, "Test", series, dayFunction);
+    assertEquals("Checking other owner is kept", 1, count.get());
+  }
+
+  /**
+   * Tests the sum of a series over a range of days.
+   */
+  @Test
+  public void testSum() {
+    Double[][] values = { { 1.0 }, { null }, { 2.0 }, { null } };
+    assertEquals("Checking sum", Double.valueOf(3.0), DailyValueStore.sum(values, 0, 3, 0));
+    assertNull("Checking no data", DailyValueStore.sum(values, 3, 1, 0));
+  }
+}
@@ -0,0 +1,109 @@
+package org.hackystat.telemetry.analyzer.reducer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.utilities.time.period.Day;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for <code>DataDayIndex</code>.
+ *
+ * @author Philip Johnson
+ */
+public class TestDataDayIndex {
+
+  /** The project. */
+  private Project project = new Project();
+  /** The key of the project. */
+  private String key;
+  /** The first day of the range searched. */
+  private Day startDay = Day.getInstance().inc(-10);
+  /** The last day of the range searched. */
+  private Day endDay = Day.getInstance().inc(-1);
+
+  /**
+   * Sets up the project.
+   */
+  @Before
+  public void setUp() {
+    this.project.setOwner("owner@hackystat.org");
+    this.project.setName("Sparse");
+    this.key = "getDay/" + this.project.getOwner() + "/" + this.project.getName();
+  }
+
+  /**
+   * Records every day of the range as empty.
+   *
+   * @param index The index.
+   */
+  private void recordEmpty(DataDayIndex index) {
+    for (Day day = this.startDay; day.compareTo(this.endDay) <= 0; day = day.inc(1)) {
+      index.record(this.project, this.key, day, false);
+    }
+  }
+
+  /**
+   * Tests that empty days are skipped, and that a day found to have data is not.
+   */
+  @Test
+  public void testCandidateDay() {
+    DataDayIndex index = new DataDayIndex(0, 60000);
+    assertEquals("Checking unknown day", this.endDay,
+        index.getCandidateDay(this.key, this.startDay, this.endDay));
+    recordEmpty(index);
+    assertNull("Checking empty range",
+        index.getCandidateDay(this.key, this.startDay, this.endDay));
+    Day dataDay = this.endDay.inc(-3);
+    index.record(this.project, this.key, dataDay, true);
+    assertEquals("Checking day with data", dataDay,
+        index.getCandidateDay(this.key, this.startDay, this.endDay));
+  }
+
+  /**
+   * Tests that empty days are requested again once they expire.
+   */
+  @Test
+  public void testExpiry() {
+    DataDayIndex index = new DataDayIndex(0, 0);
+    recordEmpty(index);
+    assertEquals("Checking expired day", this.endDay,
+        index.getCandidateDay(this.key, this.startDay, this.endDay));
+  }
+
+  /**
+   * Tests that days within the settle days before today are not recorded as empty.
+   */
+  @Test
+  public void testSettleDays() {
+    DataDayIndex index = new DataDayIndex(3, 60000);
+    recordEmpty(index);
+    Day settledDay = Day.getInstance().inc(-4);
+    assertEquals("Checking unsettled days", this.endDay,
+        index.getCandidateDay(this.key, this.startDay, this.endDay));
+    assertNull("Checking settled days",
+        index.getCandidateDay(this.key, this.startDay, settledDay));
+  }
+
+  /**
+   * Tests that removing a project, or every project of its owner, forgets its empty days.
+   */
+  @Test
+  public void testRemove() {
+    DataDayIndex index = new DataDayIndex(0, 60000);
+    recordEmpty(index);
+    index.removeProject(this.project.getOwner(), "Other");
+    assertNull("Checking other project removed",
+        index.getCandidateDay(this.key, this.startDay, this.endDay));
+    index.removeProject(this.project.getOwner(), this.project.getName());
+    assertEquals("Checking project removed", this.endDay,
+        index.getCandidateDay(this.key, this.startDay, this.endDay));
+
+    recordEmpty(index);
+    index.removeUser(this.project.getOwner());
+    assertEquals("Checking user removed", this.endDay,
+        index.getCandidateDay(this.key, this.startDay, this.endDay));
+  }
+}
@@ -0,0 +1,44 @@
+package org.hackystat.telemetry.analyzer.reducer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test suite for <code>MemberIndex</code>.
+ *
+ * @author Philip Johnson
+ */
+public class TestMemberIndex {
+
+  /** A URI prefix like the ones found in DPD MemberData. */
+  private String users = "http://localhost:9876/sensorbase/users/";
+
+  /**
+   * Tests that each URI maps to every member it matches, including the wildcard.
+   */
+  @Test
+  public void testGetIndexes() {
+    List<String> members = new ArrayList<String>();
+    members.add("joe@hackystat.org");
+    members.add("*");
+    members.add("jane@hackystat.org");
+    MemberIndex index = new MemberIndex(members);
+    assertEquals("Checking size", 3, index.size());
+
+    int[] joe = index.getIndexes(users + "joe@hackystat.org");
+    assertEquals("Checking joe matches", 2, joe.length);
+    assertEquals("Checking joe first", 0, joe[0]);
+    assertEquals("Checking joe second", 1, joe[1]);
+
+    int[] bob = index.getIndexes(users + "bob@hackystat.org");
+    assertEquals("Checking bob matches", 1, bob.length);
+    assertEquals("Checking bob wildcard", 1, bob[0]);
+
+    assertSame("Checking cache", joe, index.getIndexes(users + "joe@hackystat.org"));
+  }
+}
@@ -0,0 +1,538 @@
+package org.hackystat.telemetry.service.client;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.hackystat.telemetry.service.resource.chart.jaxb.Parameter;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartData;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryPoint;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryStream;
+import org.hackystat.telemetry.service.resource.chart.jaxb.YAxis;
+
+/**
+ * Decodes the JSON and binary representations of chart data written by ChartDataWriter into
+ * the same TelemetryChartData instance that the XML representation unmarshals to. Values are
+ * given the same string form as in the XML representation: the JSON representation keeps the
+ * text of each number, and integer values of the binary representation are written without a
+ * fractional part.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @author Philip Johnson
+ */
+class ChartDataDecoder {
+
+  /** Parses the times of the data points. */
+  private final DatatypeFactory datatypeFactory;
+
+  /**
+   * Creates a new decoder.
+   *
+   * @throws DatatypeConfigurationException If no DatatypeFactory is available.
+   */
+  ChartDataDecoder() throws DatatypeConfigurationException {
+    this.datatypeFactory = DatatypeFactory.newInstance();
+  }
+
+  /**
+   * Decodes the JSON representation of a chart.
+   *
+   * @param reader The JSON text.
+   * @return The chart.
+   * @throws IOException If the text is not a valid chart representation.
+   */
+  TelemetryChartData decodeJson(Reader reader) throws IOException {
+    Object root = new JsonParser(reader).parseDocument();
+    Map<String, Object> chartMap = asObject(root);
+    TelemetryChartData chart = new TelemetryChartData();
+    chart.setURI((String) chartMap.get("URI"));
+    for (Object parameterObject : asArray(chartMap.get("Parameter"))) {
+      Map<String, Object> parameterMap = asObject(parameterObject);
+      Parameter parameter = new Parameter();
+      parameter.setName((String) parameterMap.get("Name"));
+      parameter.setValue((String) parameterMap.get("Value"));
+      chart.getParameter().add(parameter);
+    }
+    XMLGregorianCalendar[] axis = parseTimes(asArray(chartMap.get("Time")));
+    for (Object streamObject : asArray(chartMap.get("TelemetryStream"))) {
+      Map<String, Object> streamMap = asObject(streamObject);
+      TelemetryStream stream = new TelemetryStream();
+      stream.setName((String) streamMap.get("Name"));
+      Map<String, Object> yAxisMap = asObject(streamMap.get("YAxis"));
+      YAxis yAxis = new YAxis();
+      yAxis.setName((String) yAxisMap.get("Name"));
+      yAxis.setUnits((String) yAxisMap.get("Units"));
+      yAxis.setNumberType((String) yAxisMap.get("NumberType"));
+      if (yAxisMap.get("LowerBound") != null) {
+        yAxis.setLowerBound(new BigInteger(((JsonNumber) yAxisMap.get("LowerBound")).text));
+      }
+      if (yAxisMap.get("UpperBound") != null) {
+        yAxis.setUpperBound(new BigInteger(((JsonNumber) yAxisMap.get("UpperBound")).text));
+      }
+      stream.setYAxis(yAxis);
+      XMLGregorianCalendar[] times = streamMap.containsKey("Time")
+          ? parseTimes(asArray(streamMap.get("Time"))) : axis;
+      List<Object> values = asArray(streamMap.get("Value"));
+      if (values.size() != times.length) {
+        throw new IOException("Stream " + stream.getName() + " has " + values.size()
+            + " values for " + times.length + " times");
+      }
+      for (int i = 0; i < times.length; i++) {
+        Object value = values.get(i);
+        String text = (value instanceof JsonNumber) ? ((JsonNumber) value).text : (String) value;
+        stream.getTelemetryPoint().add(makePoint(times[i], text));
+      }
+      chart.getTelemetryStream().add(stream);
+    }
+    return chart;
+  }
+
+  /**
+   * Decodes the binary representation of a chart, whose layout is described by
+   * <code>ChartDataWriter.writeBinary</code>.
+   *
+   * @param in The binary representation, which is read to its end but not closed.
+   * @return The chart.
+   * @throws IOException If the data is not a valid chart representation.
+   */
+  TelemetryChartData decodeBinary(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+    if (data.readInt() != ChartDataFormat.BINARY_MAGIC) {
+      throw new IOException("Not a binary telemetry chart");
+    }
+    int version = data.readUnsignedByte();
+    if (version != ChartDataFormat.BINARY_VERSION) {
+      throw new IOException("Unsupported binary telemetry chart version: " + version);
+    }
+    TelemetryChartData chart = new TelemetryChartData();
+    chart.setURI(data.readUTF());
+    int parameterCount = data.readInt();
+    for (int i = 0; i < parameterCount; i++) {
+      Parameter parameter = new Parameter();
+      parameter.setName(data.readUTF());
+      parameter.setValue(data.readUTF());
+      chart.getParameter().add(parameter);
+    }
+    XMLGregorianCalendar[] axis = readTimes(data);
+    int streamCount = data.readInt();
+    for (int i = 0; i < streamCount; i++) {
+      TelemetryStream stream = new TelemetryStream();
+      stream.setName(data.readUTF());
+      YAxis yAxis = new YAxis();
+      yAxis.setName(data.readUTF());
+      yAxis.setUnits(data.readUTF());
+      yAxis.setNumberType(data.readUTF());
+      int bounds = data.readUnsignedByte();
+      if ((bounds & 1) != 0) {
+        yAxis.setLowerBound(BigInteger.valueOf(data.readLong()));
+      }
+      if ((bounds & 2) != 0) {
+        yAxis.setUpperBound(BigInteger.valueOf(data.readLong()));
+      }
+      stream.setYAxis(yAxis);
+      XMLGregorianCalendar[] times = (data.readUnsignedByte() == 0) ? axis : readTimes(data);
+      byte[] present = new byte[(times.length + 7) / 8];
+      byte[] integers = new byte[present.length];
+      data.readFully(present);
+      data.readFully(integers);
+      for (int j = 0; j < times.length; j++) {
+        String value = null;
+        if ((present[j / 8] & (1 << (j % 8))) != 0) {
+          double number = data.readDouble();
+          value = ((integers[j / 8] & (1 << (j % 8))) != 0)
+              ? Long.toString((long) number) : Double.toString(number);
+        }
+        stream.getTelemetryPoint().add(makePoint(times[j], value));
+      }
+      chart.getTelemetryStream().add(stream);
+    }
+    return chart;
+  }
+
+  /**
+   * Reads a count of data points followed by their times.
+   *
+   * @param data The binary representation.
+   * @return The times.
+   * @throws IOException If the times cannot be read.
+   */
+  private XMLGregorianCalendar[] readTimes(DataInputStream data) throws IOException {
+    int count = data.readInt();
+    if (count < 0) {
+      throw new IOException("Bad data point count: " + count);
+    }
+    XMLGregorianCalendar[] times = new XMLGregorianCalendar[count];
+    for (int i = 0; i < count; i++) {
+      times[i] = parseTime(data.readUTF());
+    }
+    return times;
+  }
+
+  /**
+   * Parses a JSON array of times.
+   *
+   * @param array The array.
+   * @return The times.
+   * @throws IOException If a time cannot be parsed.
+   */
+  private XMLGregorianCalendar[] parseTimes(List<Object> array) throws IOException {
+    XMLGregorianCalendar[] times = new XMLGregorianCalendar[array.size()];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = parseTime((String) array.get(i));
+    }
+    return times;
+  }
+
+  /**
+   * Parses a time in its XML lexical form.
+   *
+   * @param time The time.
+   * @return The time.
+   * @throws IOException If the time cannot be parsed.
+   */
+  private XMLGregorianCalendar parseTime(String time) throws IOException {
+    try {
+      return this.datatypeFactory.newXMLGregorianCalendar(time);
+    }
+    catch (IllegalArgumentException e) {
+      IOException ioe = new IOException("Bad time: " + time);
+      ioe.initCause(e);
+      throw ioe;
+    }
+  }
+
+  /**
+   * Makes a data point. Each point gets its own copy of the time, since the times are shared
+   * by all of the streams of a chart and XMLGregorianCalendar is mutable.
+   *
+   * @param time The time.
+   * @param value The value, or null.
+   * @return The data point.
+   */
+  private static TelemetryPoint makePoint(XMLGregorianCalendar time, String value) {
+    TelemetryPoint point = new TelemetryPoint();
+    point.setTime((XMLGregorianCalendar) time.clone());
+    point.setValue(value);
+    return point;
+  }
+
+  /**
+   * Casts a JSON value to an object.
+   *
+   * @param value The value.
+   * @return The object.
+   * @throws IOException If the value is not an object.
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> asObject(Object value) throws IOException {
+    if (!(value instanceof Map)) {
+      throw new IOException("Expected a JSON object");
+    }
+    return (Map<String, Object>) value;
+  }
+
+  /**
+   * Casts a JSON value to an array. A missing array is treated as empty.
+   *
+   * @param value The value, or null.
+   * @return The array.
+   * @throws IOException If the value is not an array.
+   */
+  @SuppressWarnings("unchecked")
+  private static List<Object> asArray(Object value) throws IOException {
+    if (value == null) {
+      return new ArrayList<Object>();
+    }
+    if (!(value instanceof List)) {
+      throw new IOException("Expected a JSON array");
+    }
+    return (List<Object>) value;
+  }
+
+  /**
+   * A JSON number, which keeps its text so that values have the same form as in the XML
+   * representation.
+   */
+  private static class JsonNumber {
+    /** The text of the number. */
+    private final String text;
+
+    /**
+     * Creates a number.
+     *
+     * @param text The text of the number.
+     */
+    JsonNumber(String text) {
+      this.text = text;
+    }
+  }
+
+  /**
+   * A recursive descent parser for JSON text. Objects are parsed into Maps, arrays into Lists,
+   * strings into Strings, numbers into JsonNumbers, and true, false and null into Booleans and
+   * null.
+   */
+  private static class JsonParser {
+    /** The JSON text. */
+    private final Reader reader;
+    /** The next character, or -1 at the end of the text. */
+    private int next;
+
+    /**
+     * Creates a parser.
+     *
+     * @param reader The JSON text.
+     * @throws IOException If the text cannot be read.
+     */
+    JsonParser(Reader reader) throws IOException {
+      this.reader = reader;
+      this.next = reader.read();
+    }
+
+    /**
+     * Parses the text, which must hold a single value.
+     *
+     * @return The value.
+     * @throws IOException If the text is not valid JSON.
+     */
+    Object parseDocument() throws IOException {
+      Object value = parseValue();
+      skipWhitespace();
+      if (this.next != -1) {
+        throw error("Unexpected text after the JSON value");
+      }
+      return value;
+    }
+
+    /**
+     * Parses a value.
+     *
+     * @return The value.
+     * @throws IOException If the text is not valid JSON.
+     */
+    private Object parseValue() throws IOException {
+      skipWhitespace();
+      switch (this.next) {
+      case '{':
+        return parseObject();
+      case '[':
+        return parseArray();
+      case '"':
+        return parseString();
+      case 't':
+        expectWord("true");
+        return Boolean.TRUE;
+      case 'f':
+        expectWord("false");
+        return Boolean.FALSE;
+      case 'n':
+        expectWord("null");
+        return null;
+      default:
+        return parseNumber();
+      }
+    }
+
+    /**
+     * Parses an object.
+     *
+     * @return The object.
+     * @throws IOException If the text is not valid JSON.
+     */
+    private Map<String, Object> parseObject() throws IOException {
+      Map<String, Object> object = new HashMap<String, Object>();
+      advance();
+      skipWhitespace();
+      if (this.next == '}') {
+        advance();
+        return object;
+      }
+      while (true) {
+        skipWhitespace();
+        if (this.next != '"') {
+          throw error("Expected a member name");
+        }
+        String name = parseString();
+        skipWhitespace();
+        expect(':');
+        object.put(name, parseValue());
+        skipWhitespace();
+        if (this.next == '}') {
+          advance();
+          return object;
+        }
+        expect(',');
+      }
+    }
+
+    /**
+     * Parses an array.
+     *
+     * @return The array.
+     * @throws IOException If the text is not valid JSON.
+     */
+    private List<Object> parseArray() throws IOException {
+      List<Object> array = new ArrayList<Object>();
+      advance();
+      skipWhitespace();
+      if (this.next == ']') {
+        advance();
+        return array;
+      }
+      while (true) {
+        array.add(parseValue());
+        skipWhitespace();
+        if (this.next == ']') {
+          advance();
+          return array;
+        }
+        expect(',');
+      }
+    }
+
+    /**
+     * Parses a string.
+     *
+     * @return The string.
+     * @throws IOException If the text is not valid JSON.
+     */
+    private String parseString() throws IOException {
+      StringBuffer buffer = new StringBuffer();
+      advance();
+      while (this.next != '"') {
+        if (this.next == -1) {
+          throw error("Unterminated string");
+        }
+        if (this.next == '\\') {
+          advance();
+          switch (this.next) {
+          case 'b':
+            buffer.append('\b');
+            break;
+          case 'f':
+            buffer.append('\f');
+            break;
+          case 'n':
+            buffer.append('\n');
+            break;
+          case 'r':
+            buffer.append('\r');
+            break;
+          case 't':
+            buffer.append('\t');
+            break;
+          case 'u':
+            char[] hex = new char[4];
+            for (int i = 0; i < hex.length; i++) {
+              advance();
+              hex[i] = (char) this.next;
+            }
+            try {
+              buffer.append((char) Integer.parseInt(new String(hex), 16));
+            }
+            catch (NumberFormatException e) {
+              throw error("Bad unicode escape");
+            }
+            break;
+          case -1:
+            throw error("Unterminated string");
+          default:
+            buffer.append((char) this.next);
+          }
+        }
+        else {
+          buffer.append((char) this.next);
+        }
+        advance();
+      }
+      advance();
+      return buffer.toString();
+    }
+
+    /**
+     * Parses a number.
+     *
+     * @return The number.
+     * @throws IOException If the text is not valid JSON.
+     */
+    private JsonNumber parseNumber() throws IOException {
+      StringBuffer buffer = new StringBuffer();
+      while ((this.next >= '0' && this.next <= '9') || this.next == '-' || this.next == '+'
+          || this.next == '.' || this.next == 'e' || this.next == 'E') {
+        buffer.append((char) this.next);
+        advance();
+      }
+      if (buffer.length() == 0) {
+        throw error("Unexpected character");
+      }
+      return new JsonNumber(buffer.toString());
+    }
+
+    /**
+     * Consumes a literal word.
+     *
+     * @param word The word.
+     * @throws IOException If the text does not hold the word.
+     */
+    private void expectWord(String word) throws IOException {
+      for (int i = 0; i < word.length(); i++) {
+        expect(word.charAt(i));
+      }
+    }
+
+    /**
+     * Consumes a character.
+     *
+     * @param c The character.
+     * @throws IOException If the next character is not c.
+     */
+    private void expect(char c) throws IOException {
+      if (this.next != c) {
+        throw error("Expected '" + c + "'");
+      }
+      advance();
+    }
+
+    /**
+     * Skips any whitespace.
+     *
+     * @throws IOException If the text cannot be read.
+     */
+    private void skipWhitespace() throws IOException {
+      while (this.next == ' ' || this.next == '\t' || this.next == '\n' || this.next == '\r') {
+        advance();
+      }
+    }
+
+    /**
+     * Reads the next character.
+     *
+     * @throws IOException If the text cannot be read.
+     */
+    private void advance() throws IOException {
+      this.next = this.reader.read();
+    }
+
+    /**
+     * Makes an exception for invalid JSON text.
+     *
+     * @param message The problem.
+     * @return The exception.
+     */
+    private IOException error(String message) {
+      return new IOException("Bad JSON chart data: " + message);
+    }
+  }
+}
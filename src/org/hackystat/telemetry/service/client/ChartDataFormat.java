@@ -0,0 +1,37 @@
+package org.hackystat.telemetry.service.client;
+
+import org.restlet.data.MediaType;
+
+/**
+ * Defines the representations of chart data exchanged by the server's ChartDataWriter and the
+ * client's decoder, so that the client need not depend on the server classes. The layout of
+ * the binary representation is described by <code>ChartDataWriter.writeBinary</code>.
+ *
+ * @author Philip Johnson
+ */
+public final class ChartDataFormat {
+
+  /** The media type of the binary representation. */
+  public static final MediaType BINARY_MEDIA_TYPE =
+    new MediaType("application/x-hackystat-telemetry-chart", "Binary telemetry chart data");
+  /** The first four bytes of the binary representation, "HTCD". */
+  public static final int BINARY_MAGIC = 0x48544344;
+  /** The version of the binary representation. */
+  public static final int BINARY_VERSION = 1;
+
+  /** Prevents instantiation. */
+  private ChartDataFormat() {
+    // Holds constants only.
+  }
+
+  /**
+   * Returns true if chart data has a representation in the given media type.
+   *
+   * @param mediaType The media type.
+   * @return True if it is TEXT_XML, APPLICATION_JSON or BINARY_MEDIA_TYPE.
+   */
+  public static boolean isSupported(MediaType mediaType) {
+    return MediaType.TEXT_XML.equals(mediaType) || MediaType.APPLICATION_JSON.equals(mediaType)
+        || BINARY_MEDIA_TYPE.equals(mediaType);
+  }
+}
@@ -1,22 +1,42 @@
 package org.hackystat.telemetry.service.client;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
 
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartBatch;
 import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartDefinition;
 import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartIndex;
 import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartData;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartResult;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartResults;
 import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryPoint;
 import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryStream;
 import org.hackystat.utilities.logger.HackystatLogger;
 import org.restlet.Client;
 import org.restlet.data.ChallengeResponse;
 import org.restlet.data.ChallengeScheme;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.Encoding;
+import org.restlet.data.Language;
 import org.restlet.data.MediaType;
 import org.restlet.data.Method;
 import org.restlet.data.Preference;
@@ -25,7 +45,10 @@ import org.restlet.data.Reference;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
 import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.resource.InputRepresentation;
 import org.restlet.resource.Representation;
+import org.restlet.resource.StringRepresentation;
 
 /**
  * Provides a client to support access to the DailyProjectData service. 
@@ -47,6 +70,25 @@ public class TelemetryClient {
   private ChallengeScheme scheme = ChallengeScheme.HTTP_BASIC;
   /** The preferred representation type. */
   private Preference<MediaType> xmlMedia = new Preference<MediaType>(MediaType.TEXT_XML);
+  /** The preferred response encoding. */
+  private Preference<Encoding> gzipEncoding = new Preference<Encoding>(Encoding.GZIP);
+  /** The other accepted response encoding. */
+  private Preference<Encoding> deflateEncoding = new Preference<Encoding>(Encoding.DEFLATE, 0.5f);
+  /** The preferred representation type of chart data. */
+  private Preference<MediaType> chartMedia = xmlMedia;
+  /** Decodes the JSON and binary representations of chart data, created when first needed. */
+  private ChartDataDecoder chartDecoder;
+  /** The maximum number of charts kept for revalidation. */
+  private static final int MAX_TAGGED_CHARTS = 100;
+  /** The last chart retrieved from each chart URI, with its entity tag, least recent first. */
+  private Map<String, TaggedChart> taggedCharts = 
+    new LinkedHashMap<String, TaggedChart>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, TaggedChart> eldest) {
+        return size() > MAX_TAGGED_CHARTS;
+      }
+    };
   /** To facilitate debugging of problems using this system. */
   private boolean isTraceEnabled = false;
   /** The logger for telemetry client information. */
@@ -155,11 +197,30 @@ public class TelemetryClient {
    * @return The Response instance returned from the server.
    */
   private Response makeRequest(Method method, String requestString, Representation entity) {
+    return makeRequest(method, requestString, entity, xmlMedia, null);
+  }
+  
+  /**
+   * Does the housekeeping for making HTTP requests that accept the given media type. 
+   * @param method The type of Method.
+   * @param requestString A string, such as "users". No preceding slash. 
+   * @param entity The representation to be sent with the request, or null if not needed.  
+   * @param media The preferred representation type of the response.
+   * @param noneMatch The entity tag of the representation the client already has, or null.
+   * @return The Response instance returned from the server.
+   */
+  private Response makeRequest(Method method, String requestString, Representation entity,
+      Preference<MediaType> media, Tag noneMatch) {
     Reference reference = new Reference(this.telemetryHost + requestString);
     Request request = (entity == null) ? 
         new Request(method, reference) :
           new Request(method, reference, entity);
-    request.getClientInfo().getAcceptedMediaTypes().add(xmlMedia); 
+    request.getClientInfo().getAcceptedMediaTypes().add(media); 
+    request.getClientInfo().getAcceptedEncodings().add(gzipEncoding);
+    request.getClientInfo().getAcceptedEncodings().add(deflateEncoding);
+    if (noneMatch != null) {
+      request.getConditions().getNoneMatch().add(noneMatch);
+    }
     ChallengeResponse authentication = new ChallengeResponse(scheme, this.userEmail, this.password);
     request.setChallengeResponse(authentication);
     if (this.isTraceEnabled) {
@@ -178,9 +239,40 @@ public class TelemetryClient {
       Status status = response.getStatus();
       System.out.println("  => " + status.getCode() + " " + status.getDescription());
     }
+    decodeEntity(response);
     return response;
   }
   
+  /**
+   * Replaces a gzip or deflate compressed response entity with one that decompresses it as it 
+   * is read, so that callers always see the uncompressed entity.
+   * @param response The response.
+   */
+  private void decodeEntity(Response response) {
+    Representation entity = response.getEntity();
+    if (entity == null) {
+      return;
+    }
+    List<Encoding> encodings = entity.getEncodings();
+    boolean gzip = encodings.contains(Encoding.GZIP);
+    if (!gzip && !encodings.contains(Encoding.DEFLATE)) {
+      return;
+    }
+    try {
+      InputStream stream = gzip ? new GZIPInputStream(entity.getStream()) 
+          : new InflaterInputStream(entity.getStream());
+      Representation decoded = new InputRepresentation(stream, entity.getMediaType());
+      decoded.setCharacterSet(entity.getCharacterSet());
+      decoded.setTag(entity.getTag());
+      response.setEntity(decoded);
+    }
+    catch (IOException e) {
+      this.logger.warning("Could not decompress response: " + e.getMessage());
+      response.setStatus(Status.CONNECTOR_ERROR_COMMUNICATION, e.getMessage());
+      response.setEntity(null);
+    }
+  }
+  
   /**
    * Takes a String encoding of a TelemetryChart in XML format and converts it. 
    * @param xmlString The XML string representing a TelemetryChart.
@@ -192,6 +284,116 @@ public class TelemetryClient {
     return (TelemetryChartData)unmarshaller.unmarshal(new StringReader(xmlString));
   }
   
+  /**
+   * Converts the entity of a chart data response, in whichever representation the server 
+   * returned. 
+   * @param entity The response entity.
+   * @return The corresponding TelemetryChart instance. 
+   * @throws Exception If problems occur during decoding.
+   */
+  private TelemetryChartData makeChart(Representation entity) throws Exception {
+    MediaType mediaType = entity.getMediaType();
+    if (MediaType.APPLICATION_JSON.equals(mediaType, true)) {
+      BufferedReader reader = 
+        new BufferedReader(new InputStreamReader(entity.getStream(), "UTF-8"));
+      try {
+        return getChartDecoder().decodeJson(reader);
+      }
+      finally {
+        reader.close();
+      }
+    }
+    if (ChartDataFormat.BINARY_MEDIA_TYPE.equals(mediaType, true)) {
+      InputStream in = entity.getStream();
+      try {
+        return getChartDecoder().decodeBinary(in);
+      }
+      finally {
+        in.close();
+      }
+    }
+    return makeChart(entity.getText());
+  }
+  
+  /**
+   * Reads the TelemetryChartResults of a response one TelemetryChartResult at a time, as the 
+   * server sends them, without holding the whole document.
+   * @param entity The response entity.
+   * @return The results, in the order in which they were received, with the Count of the
+   * response if the server gave one.
+   * @throws Exception If problems occur during unmarshalling.
+   */
+  private TelemetryChartResults makeChartResults(Representation entity) throws Exception {
+    TelemetryChartResults results = new TelemetryChartResults();
+    Unmarshaller unmarshaller = this.chartJAXB.createUnmarshaller();
+    InputStream in = entity.getStream();
+    try {
+      XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+      while (reader.hasNext()) {
+        if (reader.isStartElement() && "TelemetryChartResult".equals(reader.getLocalName())) {
+          // Leaves the reader just after the end of the result.
+          results.getTelemetryChartResult().add(
+              unmarshaller.unmarshal(reader, TelemetryChartResult.class).getValue());
+        }
+        else if (reader.isStartElement()
+            && "TelemetryChartResults".equals(reader.getLocalName())) {
+          String count = reader.getAttributeValue(null, "Count");
+          if (count != null) {
+            results.setCount(Integer.parseInt(count.trim()));
+          }
+          reader.next();
+        }
+        else {
+          reader.next();
+        }
+      }
+      reader.close();
+    }
+    finally {
+      in.close();
+    }
+    return results;
+  }
+
+  /**
+   * Puts the results of a batch or report response back in the order of their charts, since
+   * they arrive in the order in which the server finished them.
+   * @param received The results received.
+   * @param count The number of charts requested.
+   * @param uri The URI of the request, for the error message.
+   * @return One result per chart, in the order of the charts.
+   * @throws TelemetryClientException If the result of any chart is missing.
+   */
+  private List<TelemetryChartResult> orderChartResults(TelemetryChartResults received,
+      int count, String uri) throws TelemetryClientException {
+    List<TelemetryChartResult> results = new ArrayList<TelemetryChartResult>(count);
+    for (int i = 0; i < count; i++) {
+      results.add(null);
+    }
+    for (TelemetryChartResult result : received.getTelemetryChartResult()) {
+      if ((result.getIndex() >= 0) && (result.getIndex() < count)) {
+        results.set(result.getIndex(), result);
+      }
+    }
+    if (results.contains(null)) {
+      throw new TelemetryClientException("Incomplete response: received "
+          + received.getTelemetryChartResult().size() + " of " + count + " charts: " + uri);
+    }
+    return results;
+  }
+
+  /**
+   * Returns the decoder of JSON and binary chart data, creating it if necessary.
+   * @return The decoder.
+   * @throws Exception If the decoder cannot be created.
+   */
+  private ChartDataDecoder getChartDecoder() throws Exception {
+    if (this.chartDecoder == null) {
+      this.chartDecoder = new ChartDataDecoder();
+    }
+    return this.chartDecoder;
+  }
+  
   /**
    * Takes a String encoding of a TelemetryChartIndex in XML format and converts it. 
    * @param xmlString The XML string representing a TelemetryChartIndex.
@@ -243,6 +445,23 @@ public class TelemetryClient {
     return this;
   }
   
+  /**
+   * Sets the representation in which getChart requests chart data from the server. 
+   * TEXT_XML, the default, is understood by every Telemetry service. APPLICATION_JSON and 
+   * ChartDataFormat.BINARY_MEDIA_TYPE are more compact, and are decoded into the same 
+   * TelemetryChartData instances. If the server does not offer the requested type, it 
+   * returns XML, which is decoded as usual. Charts kept for revalidation are discarded, since 
+   * their entity tags are those of the previous type.
+   * @param mediaType The media type of the chart data representation.
+   */
+  public synchronized void setChartMediaType(MediaType mediaType) {
+    if (!ChartDataFormat.isSupported(mediaType)) {
+      throw new IllegalArgumentException(mediaType + " is not a chart data representation.");
+    }
+    this.chartMedia = new Preference<MediaType>(mediaType);
+    this.taggedCharts.clear();
+  }
+  
   /**
    * Returns a TelemetryChart instance from this server, or throws a
    * TelemetryClientException if problems occur.  
@@ -266,6 +485,9 @@ public class TelemetryClient {
   /**
    * Returns a TelemetryChart instance from this server, or throws a
    * TelemetryClientException if problems occur.  
+   * The last chart retrieved from each URI is kept with its entity tag, and a later request 
+   * for the URI asks the server to send the chart only if it has changed. If it has not, the 
+   * kept instance is returned again, so callers should not modify the returned instance.
    * @param name The chart name.
    * @param user The user email.
    * @param project The project.
@@ -285,7 +507,15 @@ public class TelemetryClient {
     String uri = 
       "chart/" + name + "/" + user + "/" + project + "/" + granularity + "/" + start + "/" + end +
       ((params == null) ? "" : "?params=" + params);
-    Response response = makeRequest(Method.GET,  uri, null);
+    // Revalidate the chart last retrieved from this URI, if any.
+    TaggedChart taggedChart = this.taggedCharts.get(uri);
+    Response response = makeRequest(Method.GET,  uri, null, this.chartMedia, 
+        (taggedChart == null) ? null : taggedChart.tag);
+    if ((taggedChart != null) 
+        && Status.REDIRECTION_NOT_MODIFIED.equals(response.getStatus())) {
+      logElapsedTime(uri, startTime);
+      return taggedChart.chart;
+    }
     TelemetryChartData chart;
     if (!response.getStatus().isSuccess()) {
       String msg = response.getStatus().getDescription() + space + uri;
@@ -293,17 +523,119 @@ public class TelemetryClient {
       throw new TelemetryClientException(response.getStatus());
     }
     try {
-      String xmlData = response.getEntity().getText();
-      chart = makeChart(xmlData);
+      chart = makeChart(response.getEntity());
     }
     catch (Exception e) {
       logElapsedTime(uri, startTime, e);
       throw new TelemetryClientException(response.getStatus(), e);
     }
+    Tag tag = response.getEntity().getTag();
+    if (tag == null) {
+      this.taggedCharts.remove(uri);
+    }
+    else {
+      this.taggedCharts.put(uri, new TaggedChart(tag, chart));
+    }
     logElapsedTime(uri, startTime);
     return chart;
   }
   
+  /**
+   * Returns the charts of a batch from this server, evaluated in a single request, or throws a
+   * TelemetryClientException if the batch as a whole fails. Each TelemetryChartRequest of the 
+   * batch gives the same chart name, owner, project, granularity, start, end, and optional 
+   * params as the arguments of getChart. The server evaluates the charts concurrently and 
+   * sends each one as soon as it is ready, so a batch takes about as long as its slowest 
+   * chart instead of the sum of all of them.
+   * @param batch The charts to retrieve.
+   * @return One TelemetryChartResult per TelemetryChartRequest, in the same order. A result 
+   * holds either the TelemetryChartData of its chart or, if the chart could not be produced, 
+   * the reason in its Error. 
+   * @throws TelemetryClientException If the credentials associated with this instance
+   * are not valid, or if the underlying SensorBase service cannot be reached, or if the 
+   * response cannot be read or lacks the result of any chart.
+   */
+  public synchronized List<TelemetryChartResult> getCharts(TelemetryChartBatch batch) 
+  throws TelemetryClientException {
+    long startTime = (new Date()).getTime();
+    String uri = "charts/batch";
+    Representation entity;
+    try {
+      Marshaller marshaller = this.chartJAXB.createMarshaller();
+      StringWriter writer = new StringWriter();
+      marshaller.marshal(batch, writer);
+      entity = new StringRepresentation(writer.toString(), MediaType.TEXT_XML, Language.ALL, 
+          CharacterSet.UTF_8);
+    }
+    catch (Exception e) {
+      throw new TelemetryClientException("Bad chart batch", e);
+    }
+    Response response = makeRequest(Method.POST, uri, entity);
+    if (!response.getStatus().isSuccess()) {
+      String msg = response.getStatus().getDescription() + space + uri;
+      logElapsedTime(msg, startTime);
+      throw new TelemetryClientException(response.getStatus());
+    }
+    TelemetryChartResults received;
+    try {
+      received = makeChartResults(response.getEntity());
+    }
+    catch (Exception e) {
+      logElapsedTime(uri, startTime, e);
+      throw new TelemetryClientException(response.getStatus(), e);
+    }
+    logElapsedTime(uri, startTime);
+    return orderChartResults(received, batch.getTelemetryChartRequest().size(), uri);
+  }
+  
+  /**
+   * Returns the charts of a report from this server, or throws a TelemetryClientException if
+   * the report as a whole fails. The server evaluates the charts of the report concurrently 
+   * and sends each one as soon as it is ready, so a report takes about as long as its slowest 
+   * chart instead of the sum of all of them.
+   * @param name The report name.
+   * @param user The user email.
+   * @param project The project.
+   * @param granularity Either Day, Week, or Month.
+   * @param start The start day.
+   * @param end The end day.
+   * @param params The parameter string, or null if no params are present.
+   * @return One TelemetryChartResult per chart of the report, in the order of the report. A 
+   * result holds either the TelemetryChartData of its chart or, if the chart could not be 
+   * evaluated, the reason in its Error. 
+   * @throws TelemetryClientException If the credentials associated with this instance
+   * are not valid, or if the underlying SensorBase service cannot be reached, or if one or more
+   * of the supplied user, password, or timestamp is not valid, or if the response
+   * lacks the result of any chart.
+   */
+  public synchronized List<TelemetryChartResult> getReport(String name, String user, 
+      String project, String granularity, XMLGregorianCalendar start, XMLGregorianCalendar end,
+      String params) throws TelemetryClientException {
+    long startTime = (new Date()).getTime();
+    String uri = 
+      "report/" + name + "/" + user + "/" + project + "/" + granularity + "/" + start + "/" + 
+      end + ((params == null) ? "" : "?params=" + params);
+    Response response = makeRequest(Method.GET, uri, null);
+    if (!response.getStatus().isSuccess()) {
+      String msg = response.getStatus().getDescription() + space + uri;
+      logElapsedTime(msg, startTime);
+      throw new TelemetryClientException(response.getStatus());
+    }
+    TelemetryChartResults received;
+    try {
+      received = makeChartResults(response.getEntity());
+    }
+    catch (Exception e) {
+      logElapsedTime(uri, startTime, e);
+      throw new TelemetryClientException(response.getStatus(), e);
+    }
+    logElapsedTime(uri, startTime);
+    // Servers that predate the Count attribute are checked against the results received.
+    int count = received.isSetCount() ? received.getCount()
+        : received.getTelemetryChartResult().size();
+    return orderChartResults(received, count, uri);
+  }
+  
   /**
    * Clears the DailyProjectData cache associated with this user in the Telemetry service 
    * associated with this TelemetryClient.
@@ -478,4 +810,23 @@ public class TelemetryClient {
     logElapsedTime(uri, startTime, null);
   }
 
+  /**
+   * A chart retrieved from the server, with the entity tag of its representation.
+   */
+  private static class TaggedChart {
+    /** The entity tag. */
+    private final Tag tag;
+    /** The chart. */
+    private final TelemetryChartData chart;
+
+    /**
+     * Creates a tagged chart.
+     * @param tag The entity tag.
+     * @param chart The chart.
+     */
+    TaggedChart(Tag tag, TelemetryChartData chart) {
+      this.tag = tag;
+      this.chart = chart;
+    }
+  }
 }
@@ -3,6 +3,9 @@ package org.hackystat.telemetry.service.resource.cache;
 import java.util.Map;
 
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
+import org.hackystat.telemetry.analyzer.reducer.util.DailyValueStore;
+import org.hackystat.telemetry.analyzer.reducer.util.DataDayIndex;
+import org.hackystat.telemetry.service.resource.chart.ChartCache;
 import org.hackystat.telemetry.service.resource.telemetry.TelemetryResource;
 import org.restlet.Context;
 import org.restlet.data.Request;
@@ -19,6 +22,8 @@ import static org.hackystat.telemetry.service.server.Authenticator.AUTHENTICATOR
  * DELETE {host}/cache/{user}/{project}
  * 
  * The DELETE requests clear the caches for the user, dpdtype, or individual entry.
+ * The evaluated charts of the affected projects are purged from the chart cache as well, and
+ * their stored reducer results from the DailyValueStore and DataDayIndex.
  * The UriUser must always be the same as the authenticated user. 
  * 
  * @author Philip Johnson
@@ -90,15 +95,27 @@ public class CacheResource extends TelemetryResource {
         setStatusError("Error: DPD client not available for " + this.authUser);
         return;
       }
-      // Now clear the local DPD cache. 
+      // Now clear the local DPD cache, and the charts and reducer results computed from it. 
+      ChartCache chartCache = 
+        (ChartCache) this.telemetryServer.getContext().getAttributes().get("ChartCache");
       if (projectName == null) {
         client.clearLocalCache();
-        logRequest(String.format("Deleted all DPD cache entries for user %s", authUser));
+        int charts = chartCache.removeUser(this.authUser);
+        DailyValueStore.getInstance().removeUser(this.authUser);
+        DataDayIndex.getInstance().removeUser(this.authUser);
+        logRequest(String.format(
+            "Deleted all DPD cache entries, %d charts, and stored results for user %s", 
+            charts, authUser));
       }
       else {
         client.clearLocalCache(this.uriUser, this.projectName);
-        logRequest(String.format("Deleted some cache DPDs (project %s owned by %s) for %s", 
-            projectName, this.uriUser, this.authUser));
+        int charts = chartCache.removeProject(this.uriUser, this.projectName);
+        DailyValueStore.getInstance().removeProject(this.uriUser, this.projectName);
+        DataDayIndex.getInstance().removeProject(this.uriUser, this.projectName);
+        logRequest(String.format(
+            "Deleted some cache DPDs, %d charts, and stored results (project %s owned by %s)"
+            + " for %s", 
+            charts, projectName, this.uriUser, this.authUser));
       }
     }
     catch (Exception e) {
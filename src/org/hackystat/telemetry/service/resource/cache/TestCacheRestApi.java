@@ -1,5 +1,9 @@
 package org.hackystat.telemetry.service.resource.cache;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
 import javax.xml.datatype.XMLGregorianCalendar;
 import org.hackystat.sensorbase.client.SensorBaseClient;
 import org.hackystat.sensorbase.resource.sensordata.jaxb.Properties;
@@ -7,6 +11,8 @@ import org.hackystat.sensorbase.resource.sensordata.jaxb.Property;
 import org.hackystat.sensorbase.resource.sensordata.jaxb.SensorData;
 import org.hackystat.sensorbase.resource.sensordata.jaxb.SensorDatas;
 import org.hackystat.telemetry.service.client.TelemetryClient;
+import org.hackystat.telemetry.service.resource.chart.ChartCache;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartData;
 import org.hackystat.telemetry.service.test.TelemetryTestHelper;
 import org.hackystat.utilities.tstamp.Tstamp;
 import org.junit.Test;
@@ -69,6 +75,52 @@ public class TestCacheRestApi extends TelemetryTestHelper {
   }
   
   
+  /**
+   * Tests that clearing the cache of a project purges its evaluated charts, so that the next
+   * request for a chart is evaluated again. Caching is disabled in test installations, so a
+   * chart cache is installed on the server for the duration of this test.
+   * @throws Exception If problems occur. 
+   */
+  @Test public void testChartCacheDelete() throws Exception {
+    Map<String, Object> attributes = getTelemetryServer().getContext().getAttributes();
+    Object disabledCache = attributes.get("ChartCache");
+    ChartCache chartCache = new ChartCache(100000, 60 * 60 * 1000, 60 * 60 * 1000);
+    attributes.put("ChartCache", chartCache);
+    try {
+      String project = "Default";
+      String firstValue = getFirstBuildCount(project);
+      assertEquals("Checking chart cached", 1, chartCache.size());
+      
+      // Send a late build for the first day, which the cached chart does not include.
+      SensorDatas batchData = new SensorDatas();
+      batchData.getSensorData().add(makeData("2007-08-01T03:00:00", user));
+      SensorBaseClient client = new SensorBaseClient(getSensorBaseHostName(), user, user);
+      client.authenticate();
+      client.putSensorDataBatch(batchData);
+      assertEquals("Checking cached chart returned", firstValue, getFirstBuildCount(project));
+      
+      telemetryClient.clearServerCache(user, project);
+      assertEquals("Checking chart purged", 0, chartCache.size());
+      assertEquals("Checking chart evaluated again", "3", getFirstBuildCount(project));
+    }
+    finally {
+      attributes.put("ChartCache", disabledCache);
+    }
+  }
+  
+  /**
+   * Returns the number of builds on the first day of the Build chart of a project.
+   * @param project The project.
+   * @return The number of builds, as returned by the server.
+   * @throws Exception If problems occur.
+   */
+  private String getFirstBuildCount(String project) throws Exception {
+    TelemetryChartData chart = telemetryClient.getChart("Build", user, project, "Day", 
+        Tstamp.makeTimestamp("2007-08-01"), Tstamp.makeTimestamp("2007-08-04"), 
+        "*,*,Integration,false");
+    return chart.getTelemetryStream().get(0).getTelemetryPoint().get(0).getValue();
+  }
+  
   /**
    * Creates a sample SensorData UnitTest instance given a timestamp and a user.
    *
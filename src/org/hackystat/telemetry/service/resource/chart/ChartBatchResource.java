@@ -0,0 +1,460 @@
+package org.hackystat.telemetry.service.resource.chart;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
+import org.hackystat.sensorbase.client.SensorBaseClient;
+import org.hackystat.sensorbase.resource.projects.ProjectUtils;
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.sensorbase.resource.users.jaxb.User;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryChartDefinitionInfo;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionManager;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionManagerFactory;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionType;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryChartObject;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryChartPlan;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryDefinitionResolver;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluationException;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluationListener;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluator;
+import org.hackystat.telemetry.analyzer.language.ast.StringConstant;
+import org.hackystat.telemetry.analyzer.language.ast.Variable;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
+import org.hackystat.telemetry.service.resource.chart.jaxb.Parameter;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartBatch;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartRequest;
+import org.hackystat.telemetry.service.resource.telemetry.TelemetryResource;
+import org.hackystat.telemetry.service.server.CompressionFilter;
+import org.hackystat.utilities.time.interval.DayInterval;
+import org.hackystat.utilities.time.interval.Interval;
+import org.hackystat.utilities.time.interval.MonthInterval;
+import org.hackystat.utilities.time.interval.WeekInterval;
+import org.hackystat.utilities.tstamp.Tstamp;
+import org.restlet.Context;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.OutputRepresentation;
+import org.restlet.resource.Representation;
+import org.restlet.resource.Variant;
+
+/**
+ * Processes POST {host}/charts/batch requests, whose entity is a TelemetryChartBatch. Each
+ * of its TelemetryChartRequests names a chart, owner, project, granularity, start, end, and
+ * params, just like a GET {host}/chart/{chart}/{email}/{project}/{granularity}/{start}/{end}
+ * request. The response is a TelemetryChartResults document holding one TelemetryChartResult
+ * per requested chart, which gives the index of the request in the batch. Each result is
+ * sent as soon as its chart is ready, so results arrive in the order in which the charts
+ * finish. A chart that cannot be produced has a result holding only an Error, and does not
+ * affect the others.
+ * <p>
+ * Unlike a sequence of GET requests, the batch authenticates the user once, retrieves each
+ * User and Project from the SensorBase once, and makes one telemetry definition resolver per
+ * owner. The charts are evaluated concurrently, up to the report concurrency limit, and the
+ * charts of the same project and interval share a reducer context, so the DailyProjectData
+ * they have in common is retrieved once. Like GET requests, each chart is taken from the
+ * chart cache when possible and shared with identical concurrent requests.
+ * <p>
+ * A batch of more charts than the ServerProperties CHART_BATCH_MAX is rejected as a bad request.
+ *
+ * @author Philip Johnson
+ */
+public class ChartBatchResource extends TelemetryResource {
+
+  /** The Users of this batch, by email. */
+  private final Map<String, User> users = new HashMap<String, User>();
+  /** The Projects of this batch, by owner and name. */
+  private final Map<String, Project> projects = new HashMap<String, Project>();
+  /** The reasons that Users or Projects of this batch could not be retrieved, by key. */
+  private final Map<String, String> undefined = new HashMap<String, String>();
+  /** The telemetry definition resolvers of this batch, by owner. */
+  private final Map<String, TelemetryDefinitionResolver> resolvers =
+    new HashMap<String, TelemetryDefinitionResolver>();
+  /** The reducer contexts of this batch, by owner, project, granularity, start and end. */
+  private final Map<String, TelemetryReducerContext> contexts =
+    new HashMap<String, TelemetryReducerContext>();
+
+  /**
+   * The standard constructor.
+   *
+   * @param context The context.
+   * @param request The request object.
+   * @param response The response object.
+   */
+  public ChartBatchResource(Context context, Request request, Response response) {
+    super(context, request, response);
+  }
+
+  /**
+   * Indicate that GET is not supported.
+   *
+   * @return False.
+   */
+  @Override
+  public boolean allowGet() {
+    return false;
+  }
+
+  /**
+   * Get is not supported, but the method must be implemented.
+   *
+   * @param variant Ignored.
+   * @return Null.
+   */
+  @Override
+  public Representation represent(Variant variant) {
+    getResponse().setStatus(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED);
+    return null;
+  }
+
+  /**
+   * Indicate the POST method is supported.
+   *
+   * @return True.
+   */
+  @Override
+  public boolean allowPost() {
+    return true;
+  }
+
+  /**
+   * Responds to POST {host}/charts/batch by checking each requested chart, and returning a
+   * representation that evaluates the charts as it is written and streams each result to the
+   * client as soon as it is available.
+   *
+   * @param entity The TelemetryChartBatch.
+   */
+  @Override
+  public void acceptRepresentation(Representation entity) {
+    try {
+      // [1] Authenticate to DPD and SensorBase services; return with error if failure.
+      final DailyProjectDataClient dpdClient = this.getDailyProjectDataClient();
+      SensorBaseClient sensorBaseClient = this.getSensorBaseClient();
+      try {
+        dpdClient.authenticate();
+        sensorBaseClient.authenticate();
+      }
+      catch (Exception e) {
+        setStatusError("Cannot authenticate this user", e);
+        return;
+      }
+
+      // [2] Get the batch; return with error if it cannot be parsed.
+      TelemetryChartBatch batch;
+      try {
+        JAXBContext chartJAXB =
+          (JAXBContext) this.telemetryServer.getContext().getAttributes().get("ChartJAXB");
+        Unmarshaller unmarshaller = chartJAXB.createUnmarshaller();
+        batch = (TelemetryChartBatch) unmarshaller.unmarshal(entity.getStream());
+      }
+      catch (Exception e) {
+        setStatusError("Bad chart batch", e);
+        return;
+      }
+
+      // [2.5] Reject batches larger than the server allows.
+      int maxCharts = this.telemetryServer.getServerProperties().getChartBatchMax();
+      if (batch.getTelemetryChartRequest().size() > maxCharts) {
+        setStatusError("Chart batch of " + batch.getTelemetryChartRequest().size()
+            + " charts exceeds the maximum of " + maxCharts);
+        return;
+      }
+
+      // [3] Check each requested chart, recording the reason if it cannot be produced.
+      TelemetryDefinitionManager manager =
+        TelemetryDefinitionManagerFactory.getGlobalPersistentInstance();
+      long definitionVersion = manager.getVersion();
+      List<TelemetryChartRequest> requests = batch.getTelemetryChartRequest();
+      final List<BatchChart> charts = new ArrayList<BatchChart>(requests.size());
+      final List<BatchChart> errors = new ArrayList<BatchChart>();
+      final List<Callable<TelemetryChartObject>> evaluations =
+        new ArrayList<Callable<TelemetryChartObject>>(requests.size());
+      for (int i = 0; i < requests.size(); i++) {
+        BatchChart batchChart = new BatchChart(i);
+        try {
+          evaluations.add(prepare(batchChart, requests.get(i), manager, definitionVersion,
+              sensorBaseClient, dpdClient));
+          charts.add(batchChart);
+        }
+        catch (Exception e) {
+          batchChart.error = e.getMessage();
+          errors.add(batchChart);
+        }
+      }
+
+      // [4] Return a representation that evaluates the charts and streams their results.
+      // The results are flushed one by one, so they are not compressed.
+      logRequest("Chart batch: " + requests.size() + " charts, " + errors.size() + " errors");
+      final ChartDataWriter writer =
+        (ChartDataWriter) this.telemetryServer.getContext().getAttributes().get(
+            "ChartDataWriter");
+      Representation representation = new OutputRepresentation(MediaType.TEXT_XML) {
+        @Override
+        public void write(OutputStream out) throws IOException {
+          final ChartDataWriter.ResultWriter results = writer.startResults(out,
+              charts.size() + errors.size());
+          for (BatchChart batchChart : errors) {
+            results.writeError(batchChart.index, batchChart.error);
+          }
+          try {
+            TelemetryEvaluator.evaluateEach(evaluations,
+                new TelemetryEvaluationListener<TelemetryChartObject>() {
+                  public void evaluated(int index, TelemetryChartObject chartObject)
+                  throws IOException {
+                    BatchChart batchChart = charts.get(index);
+                    results.writeChart(batchChart.index, batchChart.uri, batchChart.parameters,
+                        chartObject);
+                  }
+                  public void failed(int index, Exception cause) throws IOException {
+                    results.writeError(charts.get(index).index,
+                        "Error processing chart: " + cause.getMessage());
+                  }
+                });
+          }
+          catch (TelemetryEvaluationException e) {
+            IOException ioException = new IOException("Chart batch interrupted");
+            ioException.initCause(e);
+            throw ioException;
+          }
+          results.end();
+        }
+      };
+      representation.setCharacterSet(CharacterSet.UTF_8);
+      getResponse().getAttributes().put(CompressionFilter.UNCOMPRESSED_KEY, Boolean.TRUE);
+      getResponse().setEntity(representation);
+    }
+    catch (Exception e) {
+      setStatusError("Error processing chart batch", e);
+    }
+  }
+
+  /**
+   * Checks a requested chart in the same way as a GET request, fills in its URI and
+   * parameters, and returns its evaluation.
+   *
+   * @param batchChart The chart of the batch.
+   * @param request The requested chart.
+   * @param manager The telemetry definition manager.
+   * @param definitionVersion The version of the telemetry definitions.
+   * @param sensorBaseClient The SensorBase client.
+   * @param dpdClient The DPD client.
+   * @return The evaluation of the chart.
+   * @throws Exception If the chart cannot be produced, with the reason as its message.
+   */
+  private Callable<TelemetryChartObject> prepare(BatchChart batchChart,
+      TelemetryChartRequest request, TelemetryDefinitionManager manager,
+      long definitionVersion, SensorBaseClient sensorBaseClient,
+      final DailyProjectDataClient dpdClient) throws Exception {
+    final String owner = request.getOwner();
+    final String projectName = request.getProject();
+    String granularity = request.getGranularity();
+    if ((request.getChart() == null) || (owner == null) || (projectName == null)
+        || (granularity == null) || (request.getStart() == null)
+        || (request.getEnd() == null)) {
+      throw new Exception("Chart, Owner, Project, Granularity, Start, and End are required");
+    }
+
+    // Get the User and Project, each retrieved once per batch whether or not it exists.
+    User user = this.users.get(owner);
+    if (user == null) {
+      checkDefined(owner);
+      try {
+        user = sensorBaseClient.getUser(owner);
+      }
+      catch (Exception e) {
+        throw undefined(owner, "Undefined user: " + owner + ": " + e.getMessage(), e);
+      }
+      this.users.put(owner, user);
+    }
+    String projectKey = owner + "/" + projectName;
+    final Project project;
+    if (this.projects.containsKey(projectKey)) {
+      project = this.projects.get(projectKey);
+    }
+    else {
+      checkDefined(projectKey);
+      try {
+        project = sensorBaseClient.getProject(owner, projectName);
+      }
+      catch (Exception e) {
+        throw undefined(projectKey, String.format("Undefined project %s for owner %s: %s",
+            projectName, owner, e.getMessage()), e);
+      }
+      this.projects.put(projectKey, project);
+    }
+
+    // Get the chart definition.
+    final TelemetryChartPlan chartPlan;
+    Variable[] variables;
+    try {
+      TelemetryChartDefinitionInfo chartDefInfo = (TelemetryChartDefinitionInfo) manager.get(
+          user, request.getChart(), true, TelemetryDefinitionType.CHART);
+      chartPlan = chartDefInfo.getChartPlan();
+      variables = chartDefInfo.getChartDefinitionObject().getVariables();
+    }
+    catch (Exception e) {
+      throw new Exception("Undefined chart " + request.getChart(), e);
+    }
+
+    // Check the start and end days w.r.t. each other, the project, and tomorrow.
+    XMLGregorianCalendar startDay = Tstamp.makeTimestamp(request.getStart().toXMLFormat());
+    XMLGregorianCalendar endDay = Tstamp.makeTimestamp(request.getEnd().toXMLFormat());
+    if (!ProjectUtils.isValidStartTime(project, startDay)) {
+      throw new Exception(startDay + " is before Project start day: " + project.getStartTime());
+    }
+    if (!ProjectUtils.isValidEndTime(project, endDay)) {
+      throw new Exception(endDay + " is after Project end day: " + project.getEndTime());
+    }
+    if (Tstamp.lessThan(endDay, startDay)) {
+      throw new Exception(startDay + " must be greater than: " + endDay);
+    }
+    XMLGregorianCalendar tomorrow = Tstamp.incrementDays(Tstamp.makeTimestamp(), 1);
+    if (Tstamp.greaterThan(endDay, tomorrow)) {
+      throw new Exception(endDay + " cannot be in the future. Change to today at the latest.");
+    }
+
+    // Create the appropriate interval based upon granularity.
+    if (!"day".equalsIgnoreCase(granularity) && !"week".equalsIgnoreCase(granularity)
+        && !"month".equalsIgnoreCase(granularity)) {
+      throw new Exception(granularity + " must be either 'day', 'week', or 'month'");
+    }
+    final Interval interval;
+    try {
+      if ("day".equalsIgnoreCase(granularity)) {
+        interval = new DayInterval(startDay, endDay);
+      }
+      else if ("week".equalsIgnoreCase(granularity)) {
+        interval = new WeekInterval(startDay, endDay);
+      }
+      else {
+        interval = new MonthInterval(startDay, endDay);
+      }
+    }
+    catch (Exception e) {
+      throw new Exception(startDay + " and " + endDay + " are illegal. Maybe out of order?", e);
+    }
+
+    // Check that supplied parameters match required parameters.
+    final StringConstant[] varValues = ChartDataResource.parseParams(request.getParams());
+    if (varValues.length != variables.length) {
+      throw new Exception("Chart needs " + variables.length + " variables; got: "
+          + varValues.length);
+    }
+    batchChart.uri = this.telemetryServer.getHostName() + "chart/" + request.getChart() + "/"
+        + owner + "/" + projectName + "/" + granularity + "/"
+        + request.getStart().toXMLFormat() + "/" + request.getEnd().toXMLFormat() + "/";
+    for (int i = 0; i < variables.length; i++) {
+      Parameter parameter = new Parameter();
+      parameter.setName(variables[i].getName());
+      parameter.setValue(varValues[i].getValue());
+      batchChart.parameters.add(parameter);
+    }
+
+    // The resolver and the reducer context are shared with the other charts of the batch.
+    final TelemetryDefinitionResolver resolver;
+    if (this.resolvers.containsKey(owner)) {
+      resolver = this.resolvers.get(owner);
+    }
+    else {
+      resolver = new TelemetryDefinitionResolver(manager, user);
+      this.resolvers.put(owner, resolver);
+    }
+    String contextKey = owner + "/" + projectName + "/" + granularity.toLowerCase() + "/"
+        + startDay.toXMLFormat() + "/" + endDay.toXMLFormat();
+    TelemetryReducerContext sharedContext = this.contexts.get(contextKey);
+    if (sharedContext == null) {
+      sharedContext = new TelemetryReducerContext();
+      this.contexts.put(contextKey, sharedContext);
+    }
+    final TelemetryReducerContext context = sharedContext;
+
+    // Get the chart from the cache, or wait for an identical request that is already
+    // evaluating it, or else evaluate it.
+    final String cacheKey = ChartCache.makeKey(definitionVersion, request.getChart(),
+        varValues, owner, projectName, granularity, startDay.toXMLFormat(),
+        endDay.toXMLFormat());
+    final ChartCache chartCache =
+      (ChartCache) this.telemetryServer.getContext().getAttributes().get("ChartCache");
+    final ChartRequestCoalescer coalescer = (ChartRequestCoalescer)
+      this.telemetryServer.getContext().getAttributes().get("ChartRequests");
+    final Callable<TelemetryChartObject> evaluation = new Callable<TelemetryChartObject>() {
+      public TelemetryChartObject call() throws Exception {
+        TelemetryChartObject chartObject = chartCache.get(cacheKey);
+        if (chartObject == null) {
+          chartObject = TelemetryEvaluator.evaluate(chartPlan, resolver, varValues, project,
+              dpdClient, interval, context);
+          chartCache.put(cacheKey, chartObject, owner, projectName, authUser,
+              !ChartDataResource.isBeforeToday(interval));
+        }
+        return chartObject;
+      }
+    };
+    return new Callable<TelemetryChartObject>() {
+      public TelemetryChartObject call() throws Exception {
+        return coalescer.get(cacheKey, evaluation);
+      }
+    };
+  }
+
+  /**
+   * Throws an exception if an earlier chart of this batch found that the given User or
+   * Project does not exist, so that it is not requested from the SensorBase again.
+   *
+   * @param key The email of the User, or the owner and name of the Project.
+   * @throws Exception If the User or Project is undefined, with the reason as its message.
+   */
+  private void checkDefined(String key) throws Exception {
+    String reason = this.undefined.get(key);
+    if (reason != null) {
+      throw new Exception(reason);
+    }
+  }
+
+  /**
+   * Records that a User or Project of this batch does not exist, and returns the exception
+   * giving the reason.
+   *
+   * @param key The email of the User, or the owner and name of the Project.
+   * @param reason The reason.
+   * @param cause The failure of the SensorBase request.
+   * @return The exception.
+   */
+  private Exception undefined(String key, String reason, Exception cause) {
+    this.undefined.put(key, reason);
+    return new Exception(reason, cause);
+  }
+
+  /**
+   * A chart of a batch, with the URI and parameters written in its result.
+   */
+  private static class BatchChart {
+    /** The index of the chart in the batch. */
+    private final int index;
+    /** The URI of the chart. */
+    private String uri;
+    /** The chart parameters, with their values. */
+    private final List<Parameter> parameters = new ArrayList<Parameter>();
+    /** The reason why the chart cannot be produced, or null. */
+    private String error;
+
+    /**
+     * Creates a chart of a batch.
+     * @param index The index of the chart in the batch.
+     */
+    BatchChart(int index) {
+      this.index = index;
+    }
+  }
+}
@@ -0,0 +1,294 @@
+package org.hackystat.telemetry.service.resource.chart;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryChartObject;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryStreamsObject;
+import org.hackystat.telemetry.analyzer.language.ast.StringConstant;
+
+/**
+ * Caches evaluated charts, so that identical requests for a chart, such as the dashboard
+ * refreshes of the members of a project, are evaluated only once. Entries are keyed by the
+ * version of the telemetry definitions, the chart name and parameter values, the project, the
+ * granularity, and the start and end days. The requesting user is not part of the key, since
+ * the chart of a project is the same for each of its members; each request is still
+ * authorized against the project before the cache is consulted.
+ * <p>
+ * The cache is bounded by the total number of data points in its charts, and the least
+ * recently used charts are discarded first. A chart whose interval ends before today only
+ * changes when its sensor data is resent, and so is kept for a long time. A chart that
+ * includes today is kept only briefly, since today's data is still arriving. Entries are also
+ * purged explicitly when a user clears their caches through the cache resource. The server
+ * creates the cache with no capacity, so that nothing is cached, when the ServerProperties
+ * CACHE_ENABLED property is not "true", as in test installations.
+ * <p>
+ * The fingerprint of each cached chart, from which the entity tags of its representations are
+ * computed, is kept with it once it has been computed, so that conditional requests for a
+ * cached chart are answered without digesting it again.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @author Philip Johnson
+ */
+public class ChartCache {
+
+  /** The maximum total weight of the cached charts. */
+  private final long capacity;
+  /** How long, in milliseconds, a chart that ends before today is kept. */
+  private final long pastTimeToLive;
+  /** How long, in milliseconds, a chart that includes today is kept. */
+  private final long todayTimeToLive;
+  /** The total weight of the cached charts. */
+  private long weight = 0;
+
+  /** The entries, in least recently used order. */
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+  /**
+   * Creates a new cache.
+   *
+   * @param capacity The maximum total number of data points in the cached charts. If zero,
+   *        nothing is cached.
+   * @param pastTimeToLive How long, in milliseconds, a chart that ends before today is kept.
+   * @param todayTimeToLive How long, in milliseconds, a chart that includes today is kept.
+   */
+  public ChartCache(long capacity, long pastTimeToLive, long todayTimeToLive) {
+    this.capacity = capacity;
+    this.pastTimeToLive = pastTimeToLive;
+    this.todayTimeToLive = todayTimeToLive;
+  }
+
+  /**
+   * Returns the cache key of a chart request.
+   *
+   * @param definitionVersion The version of the telemetry definitions.
+   * @param chart The chart name.
+   * @param values The parameter values.
+   * @param owner The project owner.
+   * @param project The project name.
+   * @param granularity The granularity, which is case-insensitive.
+   * @param start The start day.
+   * @param end The end day.
+   * @return The key.
+   */
+  public static String makeKey(long definitionVersion, String chart, StringConstant[] values,
+      String owner, String project, String granularity, String start, String end) {
+    StringBuffer key = new StringBuffer();
+    key.append(definitionVersion).append('/');
+    appendQuoted(key, chart);
+    key.append('(');
+    for (int i = 0; i < values.length; i++) {
+      key.append((i > 0) ? "," : "");
+      appendQuoted(key, values[i].getValue());
+    }
+    key.append(")/");
+    appendQuoted(key, owner);
+    key.append('/');
+    appendQuoted(key, project);
+    key.append('/').append(granularity.toLowerCase()).append('/').append(start).append('/')
+        .append(end);
+    return key.toString();
+  }
+
+  /**
+   * Appends a string to the key in double quotes, escaping any quotes and backslashes.
+   *
+   * @param key The key being built.
+   * @param value The string.
+   */
+  private static void appendQuoted(StringBuffer key, String value) {
+    key.append('"').append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+  }
+
+  /**
+   * Returns the cached chart for a key, or null if there is none or it has expired.
+   *
+   * @param key The key.
+   * @return The chart, or null.
+   */
+  public synchronized TelemetryChartObject get(String key) {
+    Entry entry = this.entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expires <= System.currentTimeMillis()) {
+      remove(key);
+      return null;
+    }
+    return entry.chart;
+  }
+
+  /**
+   * Returns the fingerprint of a chart, which is kept with the chart if it is cached under key.
+   *
+   * @param key The key.
+   * @param chart The chart.
+   * @return The fingerprint.
+   */
+  public String getFingerprint(String key, TelemetryChartObject chart) {
+    Entry entry;
+    synchronized (this) {
+      entry = this.entries.get(key);
+      if ((entry != null) && (entry.chart == chart) && (entry.fingerprint != null)) {
+        return entry.fingerprint;
+      }
+    }
+    String fingerprint = ChartTags.makeFingerprint(chart);
+    if ((entry != null) && (entry.chart == chart)) {
+      synchronized (this) {
+        entry.fingerprint = fingerprint;
+      }
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Caches a chart, discarding the least recently used charts if the cache is full. A chart
+   * that is larger than the whole cache is not cached.
+   *
+   * @param key The key.
+   * @param chart The chart.
+   * @param owner The project owner.
+   * @param project The project name.
+   * @param user The user for whom the chart was evaluated.
+   * @param includesToday True if the interval of the chart includes today.
+   */
+  public synchronized void put(String key, TelemetryChartObject chart, String owner,
+      String project, String user, boolean includesToday) {
+    long chartWeight = getWeight(chart);
+    if (chartWeight > this.capacity) {
+      return;
+    }
+    remove(key);
+    long timeToLive = includesToday ? this.todayTimeToLive : this.pastTimeToLive;
+    this.entries.put(key, new Entry(chart, chartWeight, owner, project, user,
+        System.currentTimeMillis() + timeToLive));
+    this.weight += chartWeight;
+    Iterator<Entry> iterator = this.entries.values().iterator();
+    while (this.weight > this.capacity && iterator.hasNext()) {
+      this.weight -= iterator.next().weight;
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Removes the chart for a key, if any.
+   *
+   * @param key The key.
+   */
+  private void remove(String key) {
+    Entry entry = this.entries.remove(key);
+    if (entry != null) {
+      this.weight -= entry.weight;
+    }
+  }
+
+  /**
+   * Removes the charts of a project.
+   *
+   * @param owner The project owner.
+   * @param project The project name.
+   * @return The number of charts removed.
+   */
+  public synchronized int removeProject(String owner, String project) {
+    int count = 0;
+    Iterator<Entry> iterator = this.entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry.owner.equals(owner) && entry.project.equals(project)) {
+        this.weight -= entry.weight;
+        iterator.remove();
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Removes the charts of the projects owned by a user, and the charts evaluated for the user.
+   *
+   * @param user The user.
+   * @return The number of charts removed.
+   */
+  public synchronized int removeUser(String user) {
+    int count = 0;
+    Iterator<Entry> iterator = this.entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry.owner.equals(user) || entry.user.equals(user)) {
+        this.weight -= entry.weight;
+        iterator.remove();
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of cached charts.
+   *
+   * @return The number of charts.
+   */
+  public synchronized int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Returns the weight of a chart, which is its number of data points plus one.
+   *
+   * @param chart The chart.
+   * @return The weight.
+   */
+  static long getWeight(TelemetryChartObject chart) {
+    long points = 1;
+    for (TelemetryChartObject.SubChart subChart : chart.getSubCharts()) {
+      for (TelemetryStreamsObject.Stream stream
+          : subChart.getTelemetryStreamsObject().getStreams()) {
+        points += stream.getTelemetryStream().size();
+      }
+    }
+    return points;
+  }
+
+  /**
+   * A cached chart.
+   */
+  private static class Entry {
+    /** The chart. */
+    private final TelemetryChartObject chart;
+    /** The weight of the chart. */
+    private final long weight;
+    /** The project owner. */
+    private final String owner;
+    /** The project name. */
+    private final String project;
+    /** The user for whom the chart was evaluated. */
+    private final String user;
+    /** The time at which the entry expires. */
+    private final long expires;
+    /** The fingerprint of the chart, or null if it has not been computed. */
+    private String fingerprint;
+
+    /**
+     * Creates an entry.
+     *
+     * @param chart The chart.
+     * @param weight The weight of the chart.
+     * @param owner The project owner.
+     * @param project The project name.
+     * @param user The user for whom the chart was evaluated.
+     * @param expires The time at which the entry expires.
+     */
+    Entry(TelemetryChartObject chart, long weight, String owner, String project, String user,
+        long expires) {
+      this.chart = chart;
+      this.weight = weight;
+      this.owner = owner;
+      this.project = project;
+      this.user = user;
+      this.expires = expires;
+    }
+  }
+}
@@ -1,17 +1,12 @@
 package org.hackystat.telemetry.service.resource.chart;
 
-import java.io.StringWriter;
-import java.math.BigInteger;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Marshaller;
 import javax.xml.datatype.XMLGregorianCalendar;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
 import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
 import org.hackystat.sensorbase.client.SensorBaseClient;
@@ -25,32 +20,34 @@ import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionType;
 import org.hackystat.telemetry.analyzer.evaluator.TelemetryChartObject;
 import org.hackystat.telemetry.analyzer.evaluator.TelemetryDefinitionResolver;
 import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluator;
-import org.hackystat.telemetry.analyzer.evaluator.TelemetryStreamsObject;
-import org.hackystat.telemetry.analyzer.evaluator.VariableResolver;
-import org.hackystat.telemetry.analyzer.evaluator.TelemetryChartObject.SubChart;
-import org.hackystat.telemetry.analyzer.evaluator.TelemetryStreamsObject.Stream;
 import org.hackystat.telemetry.analyzer.language.ast.StringConstant;
 import org.hackystat.telemetry.analyzer.language.ast.TelemetryChartDefinition;
 import org.hackystat.telemetry.analyzer.language.ast.Variable;
-import org.hackystat.telemetry.analyzer.model.TelemetryDataPoint;
+import org.hackystat.telemetry.analyzer.reducer.util.IntervalUtility;
+import org.hackystat.telemetry.service.client.ChartDataFormat;
 import org.hackystat.telemetry.service.resource.chart.jaxb.Parameter;
 import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartData;
 import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryPoint;
 import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryStream;
-import org.hackystat.telemetry.service.resource.chart.jaxb.YAxis;
 import org.hackystat.telemetry.service.resource.telemetry.TelemetryResource;
+import org.hackystat.telemetry.service.server.CompressionFilter;
 import org.hackystat.utilities.time.interval.DayInterval;
+import org.hackystat.utilities.time.interval.IllegalIntervalException;
 import org.hackystat.utilities.time.interval.Interval;
 import org.hackystat.utilities.time.interval.MonthInterval;
 import org.hackystat.utilities.time.interval.WeekInterval;
+import org.hackystat.utilities.time.period.Day;
 import org.hackystat.utilities.tstamp.Tstamp;
 import org.restlet.Context;
+import org.restlet.data.CharacterSet;
 import org.restlet.data.MediaType;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.resource.OutputRepresentation;
 import org.restlet.resource.Representation;
 import org.restlet.resource.Variant;
-import org.w3c.dom.Document;
 
 /**
  * Processes GET {host}/chart/{chart}/{email}/{project}/{granularity}/{start}/{end} and
@@ -74,22 +71,28 @@ public class ChartDataResource extends TelemetryResource {
    */
   public ChartDataResource(Context context, Request request, Response response) {
     super(context, request, response);
+    getVariants().add(new Variant(MediaType.APPLICATION_JSON));
+    getVariants().add(new Variant(ChartDataFormat.BINARY_MEDIA_TYPE));
   }
 
   /**
    * Returns an TelemetryChart instance representing the trend information associated with the
-   * Project data, or null if not authorized.
+   * Project data, or null if not authorized. The chart is represented as XML, JSON, or in the
+   * compact binary form of ChartDataWriter, according to the variant negotiated from the
+   * Accept header of the request. Each representation carries a strong entity tag, and a
+   * request whose If-None-Match header holds the tag is answered with 304 Not Modified.
    * 
    * @param variant The representational variant requested.
    * @return The representation.
    */
   @Override
   public Representation represent(Variant variant) {
-    if (variant.getMediaType().equals(MediaType.TEXT_XML)) {
+    final MediaType mediaType = variant.getMediaType();
+    if (ChartDataFormat.isSupported(mediaType)) {
       try {
         
         // [1] Authenticate to DPD and SensorBase services; return with error if failure.
-        DailyProjectDataClient dpdClient = this.getDailyProjectDataClient();
+        final DailyProjectDataClient dpdClient = this.getDailyProjectDataClient();
         SensorBaseClient sensorBaseClient = this.getSensorBaseClient();
         try {
           dpdClient.authenticate();
@@ -101,7 +104,7 @@ public class ChartDataResource extends TelemetryResource {
         }
         
         // [2] Get the User representation, return with error if not defined. 
-        User user;
+        final User user;
         try {
           user = sensorBaseClient.getUser(this.uriUser);
         }
@@ -111,7 +114,7 @@ public class ChartDataResource extends TelemetryResource {
         }
         
         // [3] get the Project representation; return with error if not defined.
-        Project project;
+        final Project project;
         try {
           project = sensorBaseClient.getProject(this.uriUser, this.projectName);
         }
@@ -122,11 +125,14 @@ public class ChartDataResource extends TelemetryResource {
         }
         
         // [4] Get the chart representation, return with error if chart not defined.
+        final TelemetryChartDefinitionInfo chartDefInfo;
         TelemetryChartDefinition chartDef;
+        long definitionVersion;
         try {
           TelemetryDefinitionManager manager = 
             TelemetryDefinitionManagerFactory.getGlobalPersistentInstance();
-          TelemetryChartDefinitionInfo chartDefInfo = (TelemetryChartDefinitionInfo) manager.get(
+          definitionVersion = manager.getVersion();
+          chartDefInfo = (TelemetryChartDefinitionInfo) manager.get(
               user, this.chart, true, TelemetryDefinitionType.CHART);
           chartDef = chartDefInfo.getChartDefinitionObject();
         }
@@ -177,7 +183,7 @@ public class ChartDataResource extends TelemetryResource {
         }
         
         // [6] Create the appropriate interval based upon granularity, or return error.
-        Interval interval;
+        final Interval interval;
         try {
           if ("day".equalsIgnoreCase(this.granularity)) {
             interval = new DayInterval(startDay, endDay);
@@ -201,41 +207,73 @@ public class ChartDataResource extends TelemetryResource {
         }
         
         // [7] Get the parameters.
-        StringConstant[] varValues = parseParams(this.params);
+        final StringConstant[] varValues = parseParams(this.params);
 
         // [8] Check that supplied parameters match required parameters.
-        Variable[] variables = chartDef.getVariables();
+        final Variable[] variables = chartDef.getVariables();
         if (varValues.length != variables.length) {
           String msg = "Chart needs " + variables.length + " variables; got: " + varValues.length;
           setStatusError(msg);
           return null;
         }
-        // Bind variables to values. 
-        VariableResolver variableResolver = new VariableResolver();
-        for (int i = 0; i < variables.length; i++) {
-          variableResolver.add(variables[i], varValues[i]);
-        }
-
-        // [9] Make a telemetry definition resolver and generate the TelemetryChartObject.
-        TelemetryDefinitionResolver telemetryDefinitionResolver = new TelemetryDefinitionResolver(
-            TelemetryDefinitionManagerFactory.getGlobalPersistentInstance(), user);
-        TelemetryChartObject chartObject = TelemetryEvaluator.evaluate(chartDef,
-            telemetryDefinitionResolver, variableResolver, project, dpdClient, interval);
+        // [9] Get the TelemetryChartObject, or wait for an identical request that is already
+        // evaluating it and share its result. Each request has been authorized above, so the
+        // chart is only shared with users entitled to it.
+        final String cacheKey = ChartCache.makeKey(definitionVersion, this.chart, varValues, 
+            this.uriUser, this.projectName, this.granularity, this.startDay.toXMLFormat(), 
+            this.endDay.toXMLFormat());
+        ChartRequestCoalescer coalescer = (ChartRequestCoalescer) 
+          this.telemetryServer.getContext().getAttributes().get("ChartRequests");
+        final TelemetryChartObject chartObject = coalescer.get(cacheKey, 
+            new Callable<TelemetryChartObject>() {
+              public TelemetryChartObject call() throws Exception {
+                return getChartObject(cacheKey, chartDefInfo, varValues, user, project, 
+                    dpdClient, interval);
+              }
+            });
         
-        // [10] Convert the TelemetryChartObject into it's "resource" representation.
-        TelemetryChartData chart = convertChartObjectToResource(chartObject);
-        
-        // [11] Add information about the variables and parameters to the resource.
+        // [10] Add information about the variables and parameters to the resource.
+        final List<Parameter> parameters = new ArrayList<Parameter>(variables.length);
         for (int i = 0; i < variables.length; i++) {
           Parameter parameter = new Parameter();
           parameter.setName(variables[i].getName());
           parameter.setValue(varValues[i].getValue());
-          chart.getParameter().add(parameter);
+          parameters.add(parameter);
         }
 
-        // [12] package the resulting data up in XML and return it.
+        // [11] Make a representation that streams the chart to the client. The fingerprint of
+        // a cached chart is kept with it. The tag depends on the evaluated chart, so on a cache
+        // miss it is only known after [9] has evaluated the chart in full; see ChartTags.
+        final String uri = getChartUri();
+        ChartCache chartCache = 
+          (ChartCache) this.telemetryServer.getContext().getAttributes().get("ChartCache");
+        Tag tag = ChartTags.makeTag(cacheKey, uri, mediaType, 
+            chartCache.getFingerprint(cacheKey, chartObject));
+        final ChartDataWriter writer = 
+          (ChartDataWriter) this.telemetryServer.getContext().getAttributes().get(
+              "ChartDataWriter");
+        Representation representation = new OutputRepresentation(mediaType) {
+          @Override
+          public void write(OutputStream out) throws IOException {
+            writer.write(mediaType, uri, parameters, chartObject, out);
+          }
+        };
+        representation.setTag(tag);
+        if (!ChartDataFormat.BINARY_MEDIA_TYPE.equals(mediaType)) {
+          representation.setCharacterSet(CharacterSet.UTF_8);
+        }
+        
+        // [12] Answer 304 Not Modified, without writing the chart, if the client already has
+        // the representation. The CompressionFilter sends the tag of the representation, as
+        // it would have been sent in a 200 response.
+        if (ChartTags.isNoneMatched(getRequest().getConditions().getNoneMatch(), tag)) {
+          logRequest("Not modified: " + this.chart + " " + this.uriUser + " " + this.projectName);
+          getResponse().getAttributes().put(CompressionFilter.NOT_MODIFIED_KEY, representation);
+          getResponse().setStatus(Status.REDIRECTION_NOT_MODIFIED);
+          return null;
+        }
         logRequest();
-        return this.getStringRepresentation(makeChartXml(chart));
+        return representation;
       }
       catch (Exception e) {
         setStatusError("Error processing chart", e);
@@ -247,60 +285,58 @@ public class ChartDataResource extends TelemetryResource {
   }
 
   /**
-   * Takes the TelemetryChartObject returned from the telemetry analyzer code and converts it
-   * into the resource representation. 
-   * @param chartObject The TelemetryChartObject
-   * @return A TelemetryChart resource representation. 
+   * Returns the TelemetryChartObject from the chart cache, or else makes a telemetry definition
+   * resolver, evaluates the chart, and caches it.
+   * 
+   * @param cacheKey The chart cache key.
+   * @param chartDefInfo The chart definition.
+   * @param varValues The values of the chart variables, in declared order.
+   * @param user The user whose definitions are used.
+   * @param project The project.
+   * @param dpdClient The DPD client.
+   * @param interval The interval.
+   * @return The chart.
+   * @throws Exception If the chart cannot be evaluated.
    */
-  private TelemetryChartData convertChartObjectToResource(TelemetryChartObject chartObject) {
-    // All of the JAXB instances will have variable names ending with "Resource" in order to
-    // distinguish them from their Telemetry Analyzer counterparts.  
-    TelemetryChartData chartResource = new TelemetryChartData();
-    chartResource.setURI(this.telemetryServer.getHostName() + "chart/" + this.chart +
-        "/" + this.uriUser + "/" + this.projectName + "/" + this.granularity + "/" +
-        this.start + "/" + this.end + "/");
-    //Not dealing with <Parameter> yet.
-    // for each Analyzer subchart...
-    for (SubChart subChart : chartObject.getSubCharts()) {
-      // Get the Analyzer YAxis instance. 
-      org.hackystat.telemetry.analyzer.evaluator.TelemetryChartObject.YAxis yaxis = 
-        subChart.getYAxis();
-      YAxis yAxisResource = new YAxis();
-      yAxisResource.setName("Unknown");
-      yAxisResource.setUnits(yaxis.getLabel());
-      if (yaxis.getLowerBound() != null) {
-        yAxisResource.setLowerBound(BigInteger.valueOf(yaxis.getLowerBound().longValue()));
-      }
-      if (yaxis.getUpperBound() != null) {
-        yAxisResource.setUpperBound(BigInteger.valueOf(yaxis.getUpperBound().longValue()));
-      }
-      
-      yAxisResource.setNumberType((yaxis.isIntegerAxis() ? "integer" : "double"));
+  private TelemetryChartObject getChartObject(String cacheKey, 
+      TelemetryChartDefinitionInfo chartDefInfo, StringConstant[] varValues, User user, 
+      Project project, DailyProjectDataClient dpdClient, Interval interval) throws Exception {
+    ChartCache chartCache = 
+      (ChartCache) this.telemetryServer.getContext().getAttributes().get("ChartCache");
+    TelemetryChartObject chartObject = chartCache.get(cacheKey);
+    if (chartObject == null) {
+      TelemetryDefinitionResolver telemetryDefinitionResolver = 
+        new TelemetryDefinitionResolver(
+            TelemetryDefinitionManagerFactory.getGlobalPersistentInstance(), user);
+      // The variables are bound to the values by position.
+      chartObject = TelemetryEvaluator.evaluate(chartDefInfo.getChartPlan(),
+          telemetryDefinitionResolver, varValues, project, dpdClient, interval);
+      chartCache.put(cacheKey, chartObject, this.uriUser, this.projectName, this.authUser, 
+          !isBeforeToday(interval));
+    }
+    return chartObject;
+  }
 
-      // Get the StreamsObject inside the SubChart.
-      TelemetryStreamsObject streams = subChart.getTelemetryStreamsObject();
-      // Get each Stream inside the StreamsObject...
-      for (Stream streamObject : streams.getStreams()) {
-        // Create a TelemetryStream Resource to associate with the Analyzer streamObject
-        TelemetryStream telemetryStreamResource = new TelemetryStream();
-        telemetryStreamResource.setYAxis(yAxisResource);
-        chartResource.getTelemetryStream().add(telemetryStreamResource);
-        telemetryStreamResource.setName(streamObject.getName());
-        // Now get the Analyzer TelemetryStream 'model' instance associated with the streamObject.
-        org.hackystat.telemetry.analyzer.model.TelemetryStream stream 
-        = streamObject.getTelemetryStream();
-        // Now iterate through the Analyzer TelemetryDataPoint instances. 
-        for (TelemetryDataPoint dataPoint : stream.getDataPoints()) {
-          // Create a resource DataPoint.
-          TelemetryPoint pointResource = new TelemetryPoint();
-          pointResource.setTime(Tstamp.makeTimestamp(dataPoint.getPeriod().getFirstDay()));
-          String val = (dataPoint.getValue() == null) ? null : dataPoint.getValue().toString();
-          pointResource.setValue(val);
-          telemetryStreamResource.getTelemetryPoint().add(pointResource);
-        }
-      }
-    }      
-    return chartResource;
+  /**
+   * Returns true if the last period of the interval ends before today.
+   * @param interval The interval.
+   * @return True if the interval ends before today.
+   * @throws IllegalIntervalException If the interval is not recognized.
+   */
+  static boolean isBeforeToday(Interval interval) throws IllegalIntervalException {
+    List<IntervalUtility.Period> periods = IntervalUtility.getPeriods(interval);
+    Day lastDay = periods.get(periods.size() - 1).getEndDay();
+    return lastDay.compareTo(Day.getInstance()) < 0;
+  }
+
+  /**
+   * Returns the URI of the requested chart, without its parameters.
+   * @return The URI.
+   */
+  private String getChartUri() {
+    return this.telemetryServer.getHostName() + "chart/" + this.chart +
+        "/" + this.uriUser + "/" + this.projectName + "/" + this.granularity + "/" +
+        this.start + "/" + this.end + "/";
   }
 
   /**
@@ -336,31 +372,6 @@ public class ChartDataResource extends TelemetryResource {
     return chart;
   }
 
-  /**
-   * Returns the passed TelemetryChart instance as a String encoding of its XML representation.
-   * 
-   * @param data The SensorData instance.
-   * @return The XML String representation.
-   * @throws Exception If problems occur during translation.
-   */
-  private String makeChartXml(TelemetryChartData data) throws Exception {
-    JAXBContext chartJAXB = (JAXBContext) this.telemetryServer.getContext().getAttributes().get(
-        "ChartJAXB");
-    Marshaller marshaller = chartJAXB.createMarshaller();
-    DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-    dbf.setNamespaceAware(true);
-    DocumentBuilder documentBuilder = dbf.newDocumentBuilder();
-    Document doc = documentBuilder.newDocument();
-    marshaller.marshal(data, doc);
-    DOMSource domSource = new DOMSource(doc);
-    StringWriter writer = new StringWriter();
-    StreamResult result = new StreamResult(writer);
-    TransformerFactory tf = TransformerFactory.newInstance();
-    Transformer transformer = tf.newTransformer();
-    transformer.transform(domSource, result);
-    return writer.toString();
-  }
-  
   /**
    * Parses the params parameter and returns the comma-separated values as an array of 
    * StringConstant. 
@@ -374,7 +385,7 @@ public class ChartDataResource extends TelemetryResource {
    * @param input A comma-separated strings.
    * @return An array of StringConstant.
    */
-  private StringConstant[] parseParams(String input) {
+  static StringConstant[] parseParams(String input) {
     String singleQuote = "'";
     String doubleQuote = "\"";
     if (input == null || input.length() == 0) {
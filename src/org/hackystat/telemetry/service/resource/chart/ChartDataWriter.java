@@ -0,0 +1,702 @@
+package org.hackystat.telemetry.service.resource.chart;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryChartObject;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryStreamsObject;
+import org.hackystat.telemetry.service.client.ChartDataFormat;
+import org.hackystat.telemetry.service.resource.chart.jaxb.Parameter;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryPoint;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryStream;
+import org.hackystat.telemetry.service.resource.chart.jaxb.YAxis;
+import org.hackystat.utilities.tstamp.Tstamp;
+import org.restlet.data.MediaType;
+
+/**
+ * Writes the representation of an evaluated chart directly to an output stream, in one of
+ * three forms chosen by media type:
+ * <ul>
+ * <li> TEXT_XML: The TelemetryChartData XML. The root element is written with a StAX stream
+ *      writer, and each Parameter and TelemetryStream is converted to its JAXB resource
+ *      instance and marshalled as a fragment immediately afterward. Thus only one stream's
+ *      resource instances exist at a time, no DOM tree or intermediate string is built, and the
+ *      client starts receiving data as soon as the first stream has been converted.
+ * <li> APPLICATION_JSON: A JSON object with the same content. The times of the data points are
+ *      given once for the whole chart in "Time", and each stream holds only its "Value" array.
+ * <li> ChartDataFormat.BINARY_MEDIA_TYPE: A compact columnar form, described in
+ *      <code>writeBinary</code>.
+ * </ul>
+ * All of the streams of a chart are evaluated over the same interval, so the JSON and binary
+ * forms give the times once, taken from the first stream. A stream whose periods differ from
+ * the first is written with its own times.
+ * <p>
+ * Several charts, such as those of a batch request, are written in XML as a sequence of
+ * results with <code>startResults</code>, each result being flushed as soon as it is written.
+ * <p>
+ * JAXB marshallers are not thread-safe, so each XML write borrows one from a pool and returns
+ * it afterward. The StAX output factory is created once and shared.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @author Philip Johnson
+ */
+public class ChartDataWriter {
+
+  /** The maximum number of idle marshallers kept in the pool. */
+  private static final int MAX_POOLED_MARSHALLERS = 16;
+
+  /** The shared factory for StAX stream writers, which is thread-safe once configured. */
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  /** The JAXB context for the chart resources. */
+  private final JAXBContext chartJAXB;
+  /** The idle marshallers. */
+  private final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<Marshaller>();
+  /** The number of idle marshallers. */
+  private final AtomicInteger idleCount = new AtomicInteger(0);
+
+  /**
+   * Creates a writer that marshals with the given context.
+   *
+   * @param chartJAXB The JAXB context for the chart resources.
+   */
+  public ChartDataWriter(JAXBContext chartJAXB) {
+    this.chartJAXB = chartJAXB;
+  }
+
+  /**
+   * Writes the representation of a chart in the given media type.
+   *
+   * @param mediaType The media type, which must be supported by ChartDataFormat.
+   * @param uri The URI of the chart.
+   * @param parameters The chart parameters, with their values.
+   * @param chartObject The evaluated chart.
+   * @param out The output stream, which is flushed but not closed.
+   * @throws IOException If the representation cannot be written.
+   */
+  public void write(MediaType mediaType, String uri, List<Parameter> parameters, 
+      TelemetryChartObject chartObject, OutputStream out) throws IOException {
+    if (MediaType.APPLICATION_JSON.equals(mediaType)) {
+      writeJson(uri, parameters, chartObject, out);
+    }
+    else if (ChartDataFormat.BINARY_MEDIA_TYPE.equals(mediaType)) {
+      writeBinary(uri, parameters, chartObject, out);
+    }
+    else {
+      writeXml(uri, parameters, chartObject, out);
+    }
+  }
+
+  /**
+   * Writes the XML representation of a chart, encoded in UTF-8.
+   *
+   * @param uri The URI of the chart.
+   * @param parameters The chart parameters, with their values.
+   * @param chartObject The evaluated chart.
+   * @param out The output stream, which is flushed but not closed.
+   * @throws IOException If the representation cannot be written.
+   */
+  public void writeXml(String uri, List<Parameter> parameters, TelemetryChartObject chartObject,
+      OutputStream out) throws IOException {
+    Marshaller marshaller = null;
+    try {
+      marshaller = acquireMarshaller();
+      XMLStreamWriter xml = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+      xml.writeStartDocument("UTF-8", "1.0");
+      writeXmlChart(xml, marshaller, uri, parameters, chartObject);
+      xml.writeEndDocument();
+      xml.flush();
+      xml.close();
+      out.flush();
+    }
+    catch (JAXBException e) {
+      throw makeIOException(e);
+    }
+    catch (XMLStreamException e) {
+      throw makeIOException(e);
+    }
+    finally {
+      releaseMarshaller(marshaller);
+    }
+  }
+
+  /**
+   * Writes the TelemetryChartData element of a chart.
+   *
+   * @param xml The StAX stream writer.
+   * @param marshaller A marshaller that writes fragments.
+   * @param uri The URI of the chart.
+   * @param parameters The chart parameters, with their values.
+   * @param chartObject The evaluated chart.
+   * @throws IOException If a data point cannot be represented.
+   * @throws JAXBException If a fragment cannot be marshalled.
+   * @throws XMLStreamException If the element cannot be written.
+   */
+  private static void writeXmlChart(XMLStreamWriter xml, Marshaller marshaller, String uri, 
+      List<Parameter> parameters, TelemetryChartObject chartObject) 
+  throws IOException, JAXBException, XMLStreamException {
+    xml.writeStartElement("TelemetryChartData");
+    xml.writeAttribute("URI", uri);
+    for (Parameter parameter : parameters) {
+      marshaller.marshal(parameter, xml);
+    }
+    for (TelemetryChartObject.SubChart subChart : chartObject.getSubCharts()) {
+      YAxis yAxisResource = makeYAxis(subChart.getYAxis());
+      for (TelemetryStreamsObject.Stream streamObject
+          : subChart.getTelemetryStreamsObject().getStreams()) {
+        marshaller.marshal(makeStream(streamObject, yAxisResource), xml);
+      }
+    }
+    xml.writeEndElement();
+  }
+
+  /**
+   * Starts the XML representation of a sequence of chart results, encoded in UTF-8, such as
+   * the response to a batch request. The results are written one at a time, as the charts
+   * become available, by the returned writer. The Count attribute of the root element gives
+   * the number of results to come, so that the client can tell when some are missing.
+   *
+   * @param out The output stream, which is flushed after each result but not closed.
+   * @param count The number of results that will be written.
+   * @return The writer of the results.
+   * @throws IOException If the representation cannot be started.
+   */
+  public ResultWriter startResults(OutputStream out, int count) throws IOException {
+    try {
+      XMLStreamWriter xml = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+      xml.writeStartDocument("UTF-8", "1.0");
+      xml.writeStartElement("TelemetryChartResults");
+      xml.writeAttribute("Count", String.valueOf(count));
+      return new ResultWriter(xml, out);
+    }
+    catch (XMLStreamException e) {
+      throw makeIOException(e);
+    }
+  }
+
+  /**
+   * Writes the JSON representation of a chart, encoded in UTF-8. For example:
+   * <pre>
+   * {"URI":"http://localhost:9876/telemetry/chart/DevTime/...",
+   *  "Parameter":[{"Name":"member","Value":"*"}],
+   *  "Time":["2007-08-01-10:00","2007-08-02-10:00"],
+   *  "TelemetryStream":[{"Name":"DevTime",
+   *    "YAxis":{"Name":"Unknown","Units":"Hours","NumberType":"double"},
+   *    "Value":[0.16,null]}]}
+   * </pre>
+   * A value that is not a finite number is written as a string, and a stream whose periods
+   * differ from the chart's has its own "Time" array.
+   *
+   * @param uri The URI of the chart.
+   * @param parameters The chart parameters, with their values.
+   * @param chartObject The evaluated chart.
+   * @param out The output stream, which is flushed but not closed.
+   * @throws IOException If the representation cannot be written.
+   */
+  public void writeJson(String uri, List<Parameter> parameters, TelemetryChartObject chartObject,
+      OutputStream out) throws IOException {
+    Writer json = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+    org.hackystat.telemetry.analyzer.model.TelemetryStream axis = getAxis(chartObject);
+    json.write("{\"URI\":");
+    writeJsonString(json, uri);
+    json.write(",\"Parameter\":[");
+    for (int i = 0; i < parameters.size(); i++) {
+      json.write((i > 0) ? ",{\"Name\":" : "{\"Name\":");
+      writeJsonString(json, parameters.get(i).getName());
+      json.write(",\"Value\":");
+      writeJsonString(json, parameters.get(i).getValue());
+      json.write('}');
+    }
+    json.write("],\"Time\":");
+    writeJsonTimes(json, axis);
+    json.write(",\"TelemetryStream\":[");
+    boolean first = true;
+    for (TelemetryChartObject.SubChart subChart : chartObject.getSubCharts()) {
+      YAxis yAxisResource = makeYAxis(subChart.getYAxis());
+      for (TelemetryStreamsObject.Stream streamObject
+          : subChart.getTelemetryStreamsObject().getStreams()) {
+        org.hackystat.telemetry.analyzer.model.TelemetryStream stream =
+          streamObject.getTelemetryStream();
+        json.write(first ? "{\"Name\":" : ",{\"Name\":");
+        first = false;
+        writeJsonString(json, streamObject.getName());
+        json.write(",\"YAxis\":{\"Name\":");
+        writeJsonString(json, yAxisResource.getName());
+        json.write(",\"Units\":");
+        writeJsonString(json, yAxisResource.getUnits());
+        json.write(",\"NumberType\":");
+        writeJsonString(json, yAxisResource.getNumberType());
+        if (yAxisResource.getLowerBound() != null) {
+          json.write(",\"LowerBound\":" + yAxisResource.getLowerBound());
+        }
+        if (yAxisResource.getUpperBound() != null) {
+          json.write(",\"UpperBound\":" + yAxisResource.getUpperBound());
+        }
+        json.write('}');
+        if (!hasSamePeriods(stream, axis)) {
+          json.write(",\"Time\":");
+          writeJsonTimes(json, stream);
+        }
+        json.write(",\"Value\":[");
+        for (int i = 0; i < stream.size(); i++) {
+          if (i > 0) {
+            json.write(',');
+          }
+          Number value = stream.getValue(i);
+          if (value == null) {
+            json.write("null");
+          }
+          else if (Double.isNaN(value.doubleValue()) || Double.isInfinite(value.doubleValue())) {
+            writeJsonString(json, value.toString());
+          }
+          else {
+            json.write(value.toString());
+          }
+        }
+        json.write("]}");
+      }
+    }
+    json.write("]}");
+    json.flush();
+  }
+
+  /**
+   * Writes the times of a stream's data points as a JSON array of strings.
+   *
+   * @param json The JSON writer.
+   * @param stream The stream, or null for an empty array.
+   * @throws IOException If the times cannot be written.
+   */
+  private static void writeJsonTimes(Writer json, 
+      org.hackystat.telemetry.analyzer.model.TelemetryStream stream) throws IOException {
+    json.write('[');
+    for (int i = 0; (stream != null) && (i < stream.size()); i++) {
+      if (i > 0) {
+        json.write(',');
+      }
+      writeJsonString(json, getTime(stream, i));
+    }
+    json.write(']');
+  }
+
+  /**
+   * Writes a string as a JSON string literal, or null.
+   *
+   * @param json The JSON writer.
+   * @param value The string, or null.
+   * @throws IOException If the string cannot be written.
+   */
+  private static void writeJsonString(Writer json, String value) throws IOException {
+    if (value == null) {
+      json.write("null");
+      return;
+    }
+    json.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.write('\\');
+        json.write(c);
+      }
+      else if (c < 0x20) {
+        String hex = Integer.toHexString(c);
+        json.write("\\u0000", 0, 6 - hex.length());
+        json.write(hex);
+      }
+      else {
+        json.write(c);
+      }
+    }
+    json.write('"');
+  }
+
+  /**
+   * Writes the binary representation of a chart. All integers are big-endian, as written by
+   * <code>DataOutputStream</code>, and all strings are in its modified UTF-8 form:
+   * <pre>
+   * int magic ("HTCD"), byte version
+   * UTF uri
+   * int parameterCount, then for each parameter: UTF name, UTF value
+   * times: int count, then count UTF times (the period axis of the chart)
+   * int streamCount, then for each stream:
+   *   UTF name
+   *   UTF yAxisName, UTF units, UTF numberType
+   *   byte bounds (bit 0: lower bound follows, bit 1: upper bound follows), long bounds
+   *   byte ownTimes, then the stream's own times if it is 1
+   *   presence bitmap: one bit per data point, set if the point has a value
+   *   integer bitmap: one bit per data point, set if its value is an integer
+   *   double value for each point that has one
+   * </pre>
+   * Bitmaps hold (count + 7) / 8 bytes, with the first data point in the lowest bit of the
+   * first byte. Integer values are exact up to 2^53.
+   *
+   * @param uri The URI of the chart.
+   * @param parameters The chart parameters, with their values.
+   * @param chartObject The evaluated chart.
+   * @param out The output stream, which is flushed but not closed.
+   * @throws IOException If the representation cannot be written.
+   */
+  public void writeBinary(String uri, List<Parameter> parameters, 
+      TelemetryChartObject chartObject, OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    org.hackystat.telemetry.analyzer.model.TelemetryStream axis = getAxis(chartObject);
+    data.writeInt(ChartDataFormat.BINARY_MAGIC);
+    data.writeByte(ChartDataFormat.BINARY_VERSION);
+    data.writeUTF(uri);
+    data.writeInt(parameters.size());
+    for (Parameter parameter : parameters) {
+      data.writeUTF(parameter.getName());
+      data.writeUTF(parameter.getValue());
+    }
+    writeBinaryTimes(data, axis);
+    int streamCount = 0;
+    for (TelemetryChartObject.SubChart subChart : chartObject.getSubCharts()) {
+      streamCount += subChart.getTelemetryStreamsObject().getStreams().size();
+    }
+    data.writeInt(streamCount);
+    for (TelemetryChartObject.SubChart subChart : chartObject.getSubCharts()) {
+      YAxis yAxisResource = makeYAxis(subChart.getYAxis());
+      for (TelemetryStreamsObject.Stream streamObject
+          : subChart.getTelemetryStreamsObject().getStreams()) {
+        org.hackystat.telemetry.analyzer.model.TelemetryStream stream =
+          streamObject.getTelemetryStream();
+        data.writeUTF(streamObject.getName());
+        data.writeUTF(yAxisResource.getName());
+        data.writeUTF(yAxisResource.getUnits());
+        data.writeUTF(yAxisResource.getNumberType());
+        BigInteger lowerBound = yAxisResource.getLowerBound();
+        BigInteger upperBound = yAxisResource.getUpperBound();
+        data.writeByte(((lowerBound == null) ? 0 : 1) | ((upperBound == null) ? 0 : 2));
+        if (lowerBound != null) {
+          data.writeLong(lowerBound.longValue());
+        }
+        if (upperBound != null) {
+          data.writeLong(upperBound.longValue());
+        }
+        if (hasSamePeriods(stream, axis)) {
+          data.writeByte(0);
+        }
+        else {
+          data.writeByte(1);
+          writeBinaryTimes(data, stream);
+        }
+        int size = stream.size();
+        byte[] present = new byte[(size + 7) / 8];
+        byte[] integers = new byte[(size + 7) / 8];
+        for (int i = 0; i < size; i++) {
+          if (stream.hasValue(i)) {
+            present[i / 8] |= 1 << (i % 8);
+            if (stream.isIntegerValue(i)) {
+              integers[i / 8] |= 1 << (i % 8);
+            }
+          }
+        }
+        data.write(present);
+        data.write(integers);
+        for (int i = 0; i < size; i++) {
+          if (stream.hasValue(i)) {
+            data.writeDouble(stream.getDoubleValue(i));
+          }
+        }
+      }
+    }
+    data.flush();
+  }
+
+  /**
+   * Writes the number of data points of a stream, followed by their times.
+   *
+   * @param data The binary output.
+   * @param stream The stream, or null if there are no data points.
+   * @throws IOException If the times cannot be written.
+   */
+  private static void writeBinaryTimes(DataOutputStream data, 
+      org.hackystat.telemetry.analyzer.model.TelemetryStream stream) throws IOException {
+    int size = (stream == null) ? 0 : stream.size();
+    data.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      data.writeUTF(getTime(stream, i));
+    }
+  }
+
+  /**
+   * Returns the stream whose periods are the time axis of the chart, which is its first stream.
+   *
+   * @param chartObject The chart.
+   * @return The first stream, or null if the chart has no streams.
+   */
+  private static org.hackystat.telemetry.analyzer.model.TelemetryStream getAxis(
+      TelemetryChartObject chartObject) {
+    for (TelemetryChartObject.SubChart subChart : chartObject.getSubCharts()) {
+      for (TelemetryStreamsObject.Stream streamObject
+          : subChart.getTelemetryStreamsObject().getStreams()) {
+        return streamObject.getTelemetryStream();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if the stream has the same periods as the time axis of the chart.
+   *
+   * @param stream The stream.
+   * @param axis The stream whose periods are the time axis.
+   * @return True if the periods are the same.
+   */
+  private static boolean hasSamePeriods(
+      org.hackystat.telemetry.analyzer.model.TelemetryStream stream,
+      org.hackystat.telemetry.analyzer.model.TelemetryStream axis) {
+    if (stream == axis) {
+      return true;
+    }
+    if (stream.size() != axis.size()) {
+      return false;
+    }
+    for (int i = 0; i < stream.size(); i++) {
+      if (stream.getPeriod(i).compareTo(axis.getPeriod(i)) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the time of a data point in the xs:date lexical form used by the XML
+   * representation, such as "2007-08-01-10:00".
+   *
+   * @param stream The stream.
+   * @param index The index of the data point.
+   * @return The time.
+   * @throws IOException If the time cannot be represented.
+   */
+  private static String getTime(org.hackystat.telemetry.analyzer.model.TelemetryStream stream,
+      int index) throws IOException {
+    try {
+      XMLGregorianCalendar time = Tstamp.makeTimestamp(stream.getPeriod(index).getFirstDay());
+      time.setTime(DatatypeConstants.FIELD_UNDEFINED, DatatypeConstants.FIELD_UNDEFINED,
+          DatatypeConstants.FIELD_UNDEFINED, DatatypeConstants.FIELD_UNDEFINED);
+      return time.toXMLFormat();
+    }
+    catch (Exception e) {
+      throw makeIOException(e);
+    }
+  }
+
+  /**
+   * Converts the y-axis of an Analyzer sub-chart into its resource representation.
+   *
+   * @param yaxis The Analyzer y-axis.
+   * @return The YAxis resource.
+   */
+  static YAxis makeYAxis(TelemetryChartObject.YAxis yaxis) {
+    YAxis yAxisResource = new YAxis();
+    yAxisResource.setName("Unknown");
+    yAxisResource.setUnits(yaxis.getLabel());
+    if (yaxis.getLowerBound() != null) {
+      yAxisResource.setLowerBound(BigInteger.valueOf(yaxis.getLowerBound().longValue()));
+    }
+    if (yaxis.getUpperBound() != null) {
+      yAxisResource.setUpperBound(BigInteger.valueOf(yaxis.getUpperBound().longValue()));
+    }
+    yAxisResource.setNumberType((yaxis.isIntegerAxis() ? "integer" : "double"));
+    return yAxisResource;
+  }
+
+  /**
+   * Converts an Analyzer stream into its resource representation.
+   *
+   * @param streamObject The Analyzer stream.
+   * @param yAxisResource The YAxis resource of the stream's sub-chart.
+   * @return The TelemetryStream resource.
+   * @throws IOException If the time of a data point cannot be represented.
+   */
+  static TelemetryStream makeStream(TelemetryStreamsObject.Stream streamObject,
+      YAxis yAxisResource) throws IOException {
+    TelemetryStream telemetryStreamResource = new TelemetryStream();
+    telemetryStreamResource.setYAxis(yAxisResource);
+    telemetryStreamResource.setName(streamObject.getName());
+    org.hackystat.telemetry.analyzer.model.TelemetryStream stream =
+      streamObject.getTelemetryStream();
+    List<TelemetryPoint> points = telemetryStreamResource.getTelemetryPoint();
+    try {
+      for (int i = 0; i < stream.size(); i++) {
+        TelemetryPoint pointResource = new TelemetryPoint();
+        pointResource.setTime(Tstamp.makeTimestamp(stream.getPeriod(i).getFirstDay()));
+        Number value = stream.getValue(i);
+        pointResource.setValue((value == null) ? null : value.toString());
+        points.add(pointResource);
+      }
+    }
+    catch (Exception e) {
+      throw makeIOException(e);
+    }
+    return telemetryStreamResource;
+  }
+
+  /**
+   * Returns an idle marshaller from the pool, or a new one if the pool is empty.
+   *
+   * @return A marshaller that writes fragments.
+   * @throws JAXBException If a marshaller cannot be created.
+   */
+  private Marshaller acquireMarshaller() throws JAXBException {
+    Marshaller marshaller = this.marshallers.poll();
+    if (marshaller != null) {
+      this.idleCount.decrementAndGet();
+      return marshaller;
+    }
+    marshaller = this.chartJAXB.createMarshaller();
+    marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+    return marshaller;
+  }
+
+  /**
+   * Returns a marshaller to the pool, unless the pool is full.
+   *
+   * @param marshaller The marshaller, or null.
+   */
+  private void releaseMarshaller(Marshaller marshaller) {
+    if ((marshaller != null) && (this.idleCount.incrementAndGet() <= MAX_POOLED_MARSHALLERS)) {
+      this.marshallers.offer(marshaller);
+    }
+    else if (marshaller != null) {
+      this.idleCount.decrementAndGet();
+    }
+  }
+
+  /**
+   * Wraps an exception in an IOException.
+   *
+   * @param e The exception.
+   * @return The IOException.
+   */
+  private static IOException makeIOException(Exception e) {
+    IOException ioException = new IOException("Could not write chart data: " + e.getMessage());
+    ioException.initCause(e);
+    return ioException;
+  }
+
+  /**
+   * Writes a TelemetryChartResults document one TelemetryChartResult at a time. Each result
+   * gives the index of the chart among those requested, since results are written in the
+   * order in which the charts become available. It holds either the TelemetryChartData of
+   * the chart or, in its Error attribute, the reason why the chart could not be produced.
+   * <p>
+   * Instances are not thread-safe.
+   */
+  public class ResultWriter {
+    /** The StAX stream writer. */
+    private final XMLStreamWriter xml;
+    /** The output stream. */
+    private final OutputStream out;
+
+    /**
+     * Creates a writer of results whose enclosing element has been started.
+     *
+     * @param xml The StAX stream writer.
+     * @param out The output stream.
+     */
+    private ResultWriter(XMLStreamWriter xml, OutputStream out) {
+      this.xml = xml;
+      this.out = out;
+    }
+
+    /**
+     * Writes the result of a chart, and flushes it to the client.
+     *
+     * @param index The index of the chart among those requested.
+     * @param uri The URI of the chart.
+     * @param parameters The chart parameters, with their values.
+     * @param chartObject The evaluated chart.
+     * @throws IOException If the result cannot be written.
+     */
+    public void writeChart(int index, String uri, List<Parameter> parameters, 
+        TelemetryChartObject chartObject) throws IOException {
+      Marshaller marshaller = null;
+      try {
+        marshaller = acquireMarshaller();
+        this.xml.writeStartElement("TelemetryChartResult");
+        this.xml.writeAttribute("Index", String.valueOf(index));
+        writeXmlChart(this.xml, marshaller, uri, parameters, chartObject);
+        this.xml.writeEndElement();
+        flush();
+      }
+      catch (JAXBException e) {
+        throw makeIOException(e);
+      }
+      catch (XMLStreamException e) {
+        throw makeIOException(e);
+      }
+      finally {
+        releaseMarshaller(marshaller);
+      }
+    }
+
+    /**
+     * Writes the result of a chart that could not be produced, and flushes it to the client.
+     *
+     * @param index The index of the chart among those requested.
+     * @param error The reason why the chart could not be produced.
+     * @throws IOException If the result cannot be written.
+     */
+    public void writeError(int index, String error) throws IOException {
+      try {
+        this.xml.writeEmptyElement("TelemetryChartResult");
+        this.xml.writeAttribute("Index", String.valueOf(index));
+        this.xml.writeAttribute("Error", String.valueOf(error));
+        flush();
+      }
+      catch (XMLStreamException e) {
+        throw makeIOException(e);
+      }
+    }
+
+    /**
+     * Ends the document. The output stream is flushed but not closed.
+     *
+     * @throws IOException If the document cannot be ended.
+     */
+    public void end() throws IOException {
+      try {
+        this.xml.writeEndElement();
+        this.xml.writeEndDocument();
+        this.xml.close();
+        this.out.flush();
+      }
+      catch (XMLStreamException e) {
+        throw makeIOException(e);
+      }
+    }
+
+    /**
+     * Sends everything written so far to the client.
+     *
+     * @throws XMLStreamException If the StAX stream writer cannot be flushed.
+     * @throws IOException If the output stream cannot be flushed.
+     */
+    private void flush() throws XMLStreamException, IOException {
+      this.xml.flush();
+      this.out.flush();
+    }
+  }
+}
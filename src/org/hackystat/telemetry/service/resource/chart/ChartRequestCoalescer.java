@@ -0,0 +1,83 @@
+package org.hackystat.telemetry.service.resource.chart;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryChartObject;
+
+/**
+ * Coalesces identical chart requests that arrive while one of them is still being evaluated,
+ * such as the dashboards opened by the members of a project at the start of the day. The first
+ * request for a key evaluates the chart, and any identical request arriving before it completes
+ * waits for it and shares the evaluated chart rather than evaluating it again. Each request
+ * then streams its own representation of the shared chart. Keys are forgotten as soon as their
+ * evaluation completes, so later requests are served by the <code>ChartCache</code> instead.
+ * <p>
+ * Requests are only coalesced after they have been authorized against the project, so a
+ * representation is only shared with users who are entitled to it.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @author Philip Johnson
+ */
+public class ChartRequestCoalescer {
+
+  /** Maps request keys to the task evaluating them. */
+  private final ConcurrentMap<String, FutureTask<TelemetryChartObject>> inFlight =
+    new ConcurrentHashMap<String, FutureTask<TelemetryChartObject>>();
+
+  /**
+   * Returns the chart for key, calling evaluator to obtain it unless an identical request is
+   * already in flight, in which case its chart is returned once it completes. If the evaluator
+   * fails, the failure is thrown to all of the requests waiting on it.
+   *
+   * @param key The chart cache key, which identifies the chart, its parameters, the project
+   *        and the interval.
+   * @param evaluator Evaluates the chart.
+   * @return The chart, which must be treated as read-only.
+   * @throws Exception If the evaluator throws an exception.
+   */
+  public TelemetryChartObject get(String key, Callable<TelemetryChartObject> evaluator) 
+      throws Exception {
+    FutureTask<TelemetryChartObject> task = this.inFlight.get(key);
+    if (task == null) {
+      FutureTask<TelemetryChartObject> newTask = 
+        new FutureTask<TelemetryChartObject>(evaluator);
+      task = this.inFlight.putIfAbsent(key, newTask);
+      if (task == null) {
+        task = newTask;
+        try {
+          task.run();
+        }
+        finally {
+          this.inFlight.remove(key, task);
+        }
+      }
+    }
+    try {
+      return task.get();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the number of requests currently being evaluated.
+   *
+   * @return The number of requests in flight.
+   */
+  public int size() {
+    return this.inFlight.size();
+  }
+}
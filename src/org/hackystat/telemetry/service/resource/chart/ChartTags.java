@@ -0,0 +1,193 @@
+package org.hackystat.telemetry.service.resource.chart;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryChartObject;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryStreamsObject;
+import org.hackystat.telemetry.analyzer.model.TelemetryStream;
+import org.hackystat.utilities.time.period.Day;
+import org.hackystat.utilities.time.period.TimePeriod;
+import org.restlet.data.MediaType;
+import org.restlet.data.Tag;
+
+/**
+ * Computes the entity tags of chart data representations. The tag of a representation is a
+ * digest of the chart cache key, which identifies the telemetry definitions version, the chart,
+ * its parameter values, the project and the interval; of the chart URI and media type; and of
+ * the fingerprint of the evaluated chart. The fingerprint is a digest of the streams of the
+ * chart, whose values are all derived from the DailyProjectData of the project, so the tag
+ * changes whenever any data point, stream name or axis changes.
+ * <p>
+ * The tags computed here identify the uncompressed representation. The CompressionFilter
+ * appends "-gzip" or "-deflate" to the tag of a compressed representation, and removes the
+ * suffix from the tags of If-None-Match conditions before they are compared here. Only with
+ * that suffix are the tags strong validators: two representations sent with the same tag,
+ * suffix included, are byte-for-byte identical. A 304 Not Modified response carries the same
+ * tag, suffix included, as the 200 response it stands for.
+ * <p>
+ * Since the tag depends on the evaluated chart, it is only known once the chart has been
+ * evaluated. A conditional request for a chart in the chart cache is answered without any
+ * evaluation, but on a cache miss the chart is evaluated in full before the tag can be
+ * compared, so a 304 Not Modified response then saves only the transfer of the chart, not
+ * the DailyProjectData requests and reducer work behind it.
+ *
+ * @author Philip Johnson
+ */
+final class ChartTags {
+
+  /** The hexadecimal digits. */
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /** Not instantiable. */
+  private ChartTags() {
+    // Static methods only.
+  }
+
+  /**
+   * Returns the fingerprint of an evaluated chart.
+   *
+   * @param chart The chart.
+   * @return The fingerprint, as 32 hexadecimal digits.
+   */
+  static String makeFingerprint(TelemetryChartObject chart) {
+    MessageDigest digest = newDigest();
+    byte[] buffer = new byte[8];
+    for (TelemetryChartObject.SubChart subChart : chart.getSubCharts()) {
+      TelemetryChartObject.YAxis yAxis = subChart.getYAxis();
+      update(digest, String.valueOf(yAxis.getLabel()));
+      update(digest, yAxis.isIntegerAxis() ? "integer" : "double");
+      update(digest, String.valueOf(yAxis.getLowerBound()));
+      update(digest, String.valueOf(yAxis.getUpperBound()));
+      for (TelemetryStreamsObject.Stream streamObject
+          : subChart.getTelemetryStreamsObject().getStreams()) {
+        update(digest, String.valueOf(streamObject.getName()));
+        TelemetryStream stream = streamObject.getTelemetryStream();
+        update(digest, buffer, stream.size());
+        for (int i = 0; i < stream.size(); i++) {
+          TimePeriod period = stream.getPeriod(i);
+          update(digest, buffer, toLong(period.getFirstDay()));
+          update(digest, buffer, toLong(period.getLastDay()));
+          if (stream.hasValue(i)) {
+            digest.update((byte) (stream.isIntegerValue(i) ? 2 : 1));
+            update(digest, buffer, Double.doubleToLongBits(stream.getDoubleValue(i)));
+          }
+          else {
+            digest.update((byte) 0);
+          }
+        }
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Returns the entity tag of a chart data representation.
+   *
+   * @param cacheKey The chart cache key.
+   * @param uri The chart URI written in the representation.
+   * @param mediaType The media type of the representation.
+   * @param fingerprint The fingerprint of the evaluated chart.
+   * @return The strong entity tag.
+   */
+  static Tag makeTag(String cacheKey, String uri, MediaType mediaType, String fingerprint) {
+    MessageDigest digest = newDigest();
+    update(digest, cacheKey);
+    update(digest, uri);
+    update(digest, mediaType.getName());
+    update(digest, fingerprint);
+    return new Tag(toHex(digest.digest()), false);
+  }
+
+  /**
+   * Returns true if a tag is among the tags of an If-None-Match condition. GET requests use the
+   * weak comparison, so weak tags match as well.
+   *
+   * @param noneMatch The tags of the If-None-Match condition, possibly null.
+   * @param tag The tag of the representation.
+   * @return True if the representation has not been modified.
+   */
+  static boolean isNoneMatched(List<Tag> noneMatch, Tag tag) {
+    if (noneMatch == null) {
+      return false;
+    }
+    for (Tag candidate : noneMatch) {
+      if ("*".equals(candidate.getName()) || tag.getName().equals(candidate.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns a new MD5 digest.
+   *
+   * @return The digest.
+   */
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Updates a digest with a string and its length, so that adjacent strings cannot run together.
+   *
+   * @param digest The digest.
+   * @param value The string.
+   */
+  private static void update(MessageDigest digest, String value) {
+    try {
+      byte[] bytes = value.getBytes("UTF-8");
+      update(digest, new byte[8], bytes.length);
+      digest.update(bytes);
+    }
+    catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException("UTF-8 is not available: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Updates a digest with a long.
+   *
+   * @param digest The digest.
+   * @param buffer A scratch buffer of eight bytes.
+   * @param value The long.
+   */
+  private static void update(MessageDigest digest, byte[] buffer, long value) {
+    for (int i = 0; i < 8; i++) {
+      buffer[i] = (byte) (value >>> (56 - 8 * i));
+    }
+    digest.update(buffer);
+  }
+
+  /**
+   * Returns a long that identifies a day.
+   *
+   * @param day The day.
+   * @return The day as a long.
+   */
+  private static long toLong(Day day) {
+    return day.getYear() * 10000L + day.getMonth() * 100L + day.getDay();
+  }
+
+  /**
+   * Returns the hexadecimal form of a digest.
+   *
+   * @param bytes The digest.
+   * @return The hexadecimal digits.
+   */
+  private static String toHex(byte[] bytes) {
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      hex[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+      hex[2 * i + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String(hex);
+  }
+}
@@ -0,0 +1,300 @@
+package org.hackystat.telemetry.service.resource.chart;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.hackystat.dailyprojectdata.client.DailyProjectDataClient;
+import org.hackystat.sensorbase.client.SensorBaseClient;
+import org.hackystat.sensorbase.resource.projects.ProjectUtils;
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.sensorbase.resource.users.jaxb.User;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionManager;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionManagerFactory;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionType;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryReportDefinitionInfo;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryChartObject;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryDefinitionResolver;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluationException;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluationListener;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluator;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryReportPlan;
+import org.hackystat.telemetry.analyzer.language.ast.Constant;
+import org.hackystat.telemetry.analyzer.language.ast.StringConstant;
+import org.hackystat.telemetry.analyzer.language.ast.Variable;
+import org.hackystat.telemetry.analyzer.reducer.TelemetryReducerContext;
+import org.hackystat.telemetry.service.resource.chart.jaxb.Parameter;
+import org.hackystat.telemetry.service.resource.telemetry.TelemetryResource;
+import org.hackystat.telemetry.service.server.CompressionFilter;
+import org.hackystat.utilities.time.interval.DayInterval;
+import org.hackystat.utilities.time.interval.Interval;
+import org.hackystat.utilities.time.interval.MonthInterval;
+import org.hackystat.utilities.time.interval.WeekInterval;
+import org.hackystat.utilities.tstamp.Tstamp;
+import org.restlet.Context;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.resource.OutputRepresentation;
+import org.restlet.resource.Representation;
+import org.restlet.resource.Variant;
+
+/**
+ * Processes GET {host}/report/{report}/{email}/{project}/{granularity}/{start}/{end} and
+ * GET {host}/report/{report}/{email}/{project}/{granularity}/{start}/{end}?params={params}
+ * requests. Requires the authenticated user to be {email} or else the Admin user for the
+ * sensorbase connected to this service.
+ * <p>
+ * The response is a TelemetryChartResults document holding one TelemetryChartResult per chart
+ * of the report, which gives the position of the chart in the report. The charts are evaluated
+ * concurrently, up to the report concurrency limit, sharing the DailyProjectData they have in
+ * common, and each result is sent as soon as its chart is ready, so results arrive in the
+ * order in which the charts finish. A chart that cannot be evaluated has a result holding only
+ * an Error, and does not affect the others.
+ *
+ * @author Philip Johnson
+ */
+public class ReportDataResource extends TelemetryResource {
+
+  /** To be retrieved from the URL as the 'report' template parameter. */
+  private String report;
+
+  /**
+   * The standard constructor.
+   *
+   * @param context The context.
+   * @param request The request object.
+   * @param response The response object.
+   */
+  public ReportDataResource(Context context, Request request, Response response) {
+    super(context, request, response);
+    this.report = (String) request.getAttributes().get("report");
+  }
+
+  /**
+   * Returns a representation that evaluates the charts of the report as it is written and
+   * streams each of them to the client as soon as it is available, or null if the report
+   * cannot be evaluated.
+   *
+   * @param variant The representational variant requested.
+   * @return The representation.
+   */
+  @Override
+  public Representation represent(Variant variant) {
+    if (variant.getMediaType().equals(MediaType.TEXT_XML)) {
+      try {
+
+        // [1] Authenticate to DPD and SensorBase services; return with error if failure.
+        final DailyProjectDataClient dpdClient = this.getDailyProjectDataClient();
+        SensorBaseClient sensorBaseClient = this.getSensorBaseClient();
+        try {
+          dpdClient.authenticate();
+          sensorBaseClient.authenticate();
+        }
+        catch (Exception e) {
+          setStatusError("Cannot authenticate this user", e);
+          return null;
+        }
+
+        // [2] Get the User representation, return with error if not defined.
+        User user;
+        try {
+          user = sensorBaseClient.getUser(this.uriUser);
+        }
+        catch (Exception e) {
+          setStatusError("Undefined user: " + this.uriUser, e);
+          return null;
+        }
+
+        // [3] get the Project representation; return with error if not defined.
+        final Project project;
+        try {
+          project = sensorBaseClient.getProject(this.uriUser, this.projectName);
+        }
+        catch (Exception e) {
+          setStatusError(String.format("Undefined project %s for owner %s",
+              this.projectName, uriUser), e);
+          return null;
+        }
+
+        // [4] Get the report representation, return with error if report not defined.
+        final TelemetryReportPlan reportPlan;
+        final TelemetryDefinitionResolver resolver;
+        try {
+          TelemetryDefinitionManager manager =
+            TelemetryDefinitionManagerFactory.getGlobalPersistentInstance();
+          TelemetryReportDefinitionInfo reportDefInfo = (TelemetryReportDefinitionInfo)
+            manager.get(user, this.report, true, TelemetryDefinitionType.REPORT);
+          reportPlan = reportDefInfo.getReportPlan();
+          resolver = new TelemetryDefinitionResolver(manager, user);
+        }
+        catch (Exception e) {
+          setStatusError("Undefined report " + this.report, e);
+          return null;
+        }
+
+        // [5] Get the start and end days, return with error if cannot be parsed.
+        XMLGregorianCalendar startDay;
+        XMLGregorianCalendar endDay;
+        try {
+          startDay = Tstamp.makeTimestamp(this.start);
+        }
+        catch (Exception e) {
+          setStatusError("Bad start day: " + this.start, e);
+          return null;
+        }
+        try {
+          endDay = Tstamp.makeTimestamp(this.end);
+        }
+        catch (Exception e) {
+          setStatusError("Bad end day: " + this.end, e);
+          return null;
+        }
+
+        // [5.5] Make sure start and end days are OK w.r.t. project times.
+        if (!ProjectUtils.isValidStartTime(project, startDay)) {
+          String msg = startDay + " is before Project start day: " + project.getStartTime();
+          setStatusError(msg);
+          return null;
+        }
+        if (!ProjectUtils.isValidEndTime(project, endDay)) {
+          String msg = endDay + " is after Project end day: " + project.getEndTime();
+          setStatusError(msg);
+          return null;
+        }
+        if (Tstamp.lessThan(endDay, startDay)) {
+          String msg = startDay + " must be greater than: " + endDay;
+          setStatusError(msg);
+          return null;
+        }
+
+        // [5.6] Telemetry end date cannot be after tomorrow.
+        XMLGregorianCalendar tomorrow = Tstamp.incrementDays(Tstamp.makeTimestamp(), 1);
+        if (Tstamp.greaterThan(endDay, tomorrow)) {
+          String msg = endDay + " cannot be in the future. Change to today at the latest.";
+          setStatusError(msg);
+          return null;
+        }
+
+        // [6] Create the appropriate interval based upon granularity, or return error.
+        final Interval interval;
+        try {
+          if ("day".equalsIgnoreCase(this.granularity)) {
+            interval = new DayInterval(startDay, endDay);
+          }
+          else if ("week".equalsIgnoreCase(this.granularity)) {
+            interval = new WeekInterval(startDay, endDay);
+          }
+          else if ("month".equalsIgnoreCase(this.granularity)) {
+            interval = new MonthInterval(startDay, endDay);
+          }
+          else {
+            String msg = this.granularity + " must be either 'day', 'week', or 'month'";
+            setStatusError(msg);
+            return null;
+          }
+        }
+        catch (Exception e) {
+          String msg = this.start + " and " + this.end + " are illegal. Maybe out of order?";
+          setStatusError(msg, e);
+          return null;
+        }
+
+        // [7] Get the parameters.
+        final StringConstant[] varValues = ChartDataResource.parseParams(this.params);
+
+        // [8] Check that supplied parameters match required parameters.
+        Variable[] variables = reportPlan.getDefinition().getVariables();
+        if (varValues.length != variables.length) {
+          String msg = "Report needs " + variables.length + " variables; got: "
+            + varValues.length;
+          setStatusError(msg);
+          return null;
+        }
+
+        // [9] Get the URI and the parameter values of each chart of the report.
+        final String[] uris = new String[reportPlan.getChartCount()];
+        final Constant[][] chartValues = new Constant[reportPlan.getChartCount()][];
+        for (int i = 0; i < uris.length; i++) {
+          uris[i] = this.telemetryServer.getHostName() + "chart/" + reportPlan.getChartName(i)
+            + "/" + this.uriUser + "/" + this.projectName + "/" + this.granularity + "/"
+            + this.start + "/" + this.end + "/";
+          try {
+            chartValues[i] = reportPlan.getChartValues(i, varValues);
+          }
+          catch (TelemetryEvaluationException e) {
+            setStatusError("Error processing report " + this.report, e);
+            return null;
+          }
+        }
+
+        // [10] Return a representation that evaluates the charts and streams each of them.
+        // The charts are flushed one by one, so they are not compressed.
+        logRequest();
+        final ChartDataWriter writer =
+          (ChartDataWriter) this.telemetryServer.getContext().getAttributes().get(
+              "ChartDataWriter");
+        Representation representation = new OutputRepresentation(MediaType.TEXT_XML) {
+          @Override
+          public void write(OutputStream out) throws IOException {
+            final ChartDataWriter.ResultWriter results = writer.startResults(out, uris.length);
+            try {
+              TelemetryEvaluator.evaluate(reportPlan, resolver, varValues, project, dpdClient,
+                  interval, new TelemetryReducerContext(),
+                  new TelemetryEvaluationListener<TelemetryChartObject>() {
+                    public void evaluated(int index, TelemetryChartObject chartObject)
+                    throws IOException {
+                      results.writeChart(index, uris[index],
+                          makeParameters(chartObject, chartValues[index]), chartObject);
+                    }
+                    public void failed(int index, Exception cause) throws IOException {
+                      results.writeError(index, "Error processing chart: " + cause.getMessage());
+                    }
+                  });
+            }
+            catch (TelemetryEvaluationException e) {
+              IOException ioException = new IOException("Report interrupted");
+              ioException.initCause(e);
+              throw ioException;
+            }
+            results.end();
+          }
+        };
+        representation.setCharacterSet(CharacterSet.UTF_8);
+        getResponse().getAttributes().put(CompressionFilter.UNCOMPRESSED_KEY, Boolean.TRUE);
+        return representation;
+      }
+      catch (Exception e) {
+        setStatusError("Error processing report", e);
+        return null;
+      }
+    }
+    // Shouldn't ever get here.
+    return null;
+  }
+
+  /**
+   * Returns the parameters of a chart of the report, naming each variable of the chart with
+   * the value the report passes to it.
+   *
+   * @param chartObject The evaluated chart.
+   * @param values The value of each variable of the chart, in declared order.
+   * @return The parameters.
+   */
+  private static List<Parameter> makeParameters(TelemetryChartObject chartObject,
+      Constant[] values) {
+    Variable[] variables = chartObject.getTelemetryChartDefinition().getVariables();
+    List<Parameter> parameters = new ArrayList<Parameter>(variables.length);
+    for (int i = 0; i < variables.length; i++) {
+      Parameter parameter = new Parameter();
+      parameter.setName(variables[i].getName());
+      parameter.setValue(values[i].getValueString());
+      parameters.add(parameter);
+    }
+    return parameters;
+  }
+}
@@ -0,0 +1,176 @@
+package org.hackystat.telemetry.service.resource.chart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.hackystat.sensorbase.resource.projects.jaxb.Project;
+import org.hackystat.sensorbase.resource.users.jaxb.User;
+import org.hackystat.telemetry.analyzer.configuration.ShareScope;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryChartDefinitionInfo;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryChartYAxisDefinitionInfo;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionManager;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionManagerFactory;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryStreamsDefinitionInfo;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryChartObject;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryDefinitionResolver;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluator;
+import org.hackystat.telemetry.analyzer.language.ast.Constant;
+import org.hackystat.telemetry.analyzer.language.ast.StringConstant;
+import org.hackystat.utilities.time.interval.DayInterval;
+import org.hackystat.utilities.time.period.Day;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for <code>ChartCache</code>.
+ *
+ * @author Philip Johnson
+ */
+public class TestChartCache {
+
+  /** The project owner. */
+  private static final String OWNER = "TestChartCache@hackystat.org";
+  /** A member of the project who is not its owner. */
+  private static final String MEMBER = "TestChartCacheMember@hackystat.org";
+
+  /** Resolves the line chart evaluated by these tests. */
+  private TelemetryDefinitionResolver resolver;
+
+  /**
+   * Defines a chart of a single straight line, which needs no DPD data.
+   *
+   * @throws Exception If the definitions cannot be added.
+   */
+  @Before
+  public void setUp() throws Exception {
+    User user = new User();
+    user.setEmail(OWNER);
+    ShareScope scope = ShareScope.getPrivateShareScope();
+    TelemetryDefinitionManager manager =
+      TelemetryDefinitionManagerFactory.createNonPersistentInstance(false);
+    manager.add(new TelemetryStreamsDefinitionInfo(
+        "streams LineStream() = {\"Line\", StraightLine(\"1\", \"0\")};", user, scope));
+    manager.add(new TelemetryChartYAxisDefinitionInfo(
+        "y-axis LineAxis() = {\"Value\", \"integer\"};", user, scope));
+    manager.add(new TelemetryChartDefinitionInfo(
+        "chart LineChart() = {\"Line\", (LineStream(), LineAxis())};", user, scope));
+    this.resolver = new TelemetryDefinitionResolver(manager, user);
+  }
+
+  /**
+   * Evaluates the line chart over the given number of days, giving a chart whose weight is
+   * one more than the number of days.
+   *
+   * @param days The number of days.
+   * @return The chart.
+   * @throws Exception If the chart cannot be evaluated.
+   */
+  private TelemetryChartObject makeChart(int days) throws Exception {
+    Day startDay = Day.getInstance("01-Jan-2007");
+    return TelemetryEvaluator.evaluate(this.resolver.resolveChartPlan("LineChart"),
+        this.resolver, new Constant[0], new Project(), null,
+        new DayInterval(startDay, startDay.inc(days - 1)));
+  }
+
+  /**
+   * Tests that the least recently used charts are discarded once the total number of data
+   * points exceeds the capacity, and that a chart larger than the whole cache is not cached.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testEviction() throws Exception {
+    ChartCache cache = new ChartCache(10, 60000, 60000);
+    TelemetryChartObject first = makeChart(3);
+    TelemetryChartObject second = makeChart(3);
+    TelemetryChartObject third = makeChart(3);
+    assertEquals("Checking weight", 4, ChartCache.getWeight(first));
+    cache.put("first", first, OWNER, "Default", OWNER, false);
+    cache.put("second", second, OWNER, "Default", OWNER, false);
+    assertSame("Checking first used", first, cache.get("first"));
+    cache.put("third", third, OWNER, "Default", OWNER, false);
+    assertEquals("Checking size", 2, cache.size());
+    assertNull("Checking least recently used discarded", cache.get("second"));
+    assertSame("Checking first kept", first, cache.get("first"));
+    assertSame("Checking third kept", third, cache.get("third"));
+
+    cache.put("large", makeChart(10), OWNER, "Default", OWNER, false);
+    assertNull("Checking large chart not cached", cache.get("large"));
+    assertEquals("Checking others kept", 2, cache.size());
+  }
+
+  /**
+   * Tests that a chart including today expires after the today life, while a chart ending
+   * before today is kept for the past life.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testExpiry() throws Exception {
+    ChartCache cache = new ChartCache(100, 60000, 0);
+    TelemetryChartObject past = makeChart(2);
+    cache.put("past", past, OWNER, "Default", OWNER, false);
+    cache.put("today", makeChart(2), OWNER, "Default", OWNER, true);
+    assertSame("Checking past chart kept", past, cache.get("past"));
+    assertNull("Checking today chart expired", cache.get("today"));
+    assertEquals("Checking expired chart removed", 1, cache.size());
+  }
+
+  /**
+   * Tests that removing a project discards only its charts, and that removing a user
+   * discards the charts of the projects they own and the charts evaluated for them.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testRemove() throws Exception {
+    ChartCache cache = new ChartCache(100, 60000, 60000);
+    cache.put("default", makeChart(2), OWNER, "Default", OWNER, false);
+    cache.put("other", makeChart(2), OWNER, "Other", OWNER, false);
+    cache.put("member", makeChart(2), MEMBER, "Shared", OWNER, false);
+    cache.put("unrelated", makeChart(2), MEMBER, "Shared", MEMBER, false);
+    assertEquals("Checking project removed", 1, cache.removeProject(OWNER, "Default"));
+    assertNull("Checking project chart removed", cache.get("default"));
+    assertEquals("Checking user removed", 2, cache.removeUser(OWNER));
+    assertEquals("Checking unrelated chart kept", 1, cache.size());
+    assertNotNull("Checking unrelated chart", cache.get("unrelated"));
+
+    cache.put("full", makeChart(90), MEMBER, "Shared", MEMBER, false);
+    assertEquals("Checking removed weight released", 2, cache.size());
+  }
+
+  /**
+   * Tests that keys built from different parameter values differ, even when the values
+   * contain the characters used to separate and quote them.
+   */
+  @Test
+  public void testMakeKey() {
+    String commaKey = makeKey(new String[] {"a,b"});
+    assertFalse("Checking comma", commaKey.equals(makeKey(new String[] {"a", "b"})));
+    String quoteKey = makeKey(new String[] {"a\",\"b"});
+    assertFalse("Checking quote", quoteKey.equals(makeKey(new String[] {"a", "b"})));
+    assertFalse("Checking backslash", makeKey(new String[] {"a\\", "b"}).equals(
+        makeKey(new String[] {"a\\\",\"b"})));
+    assertEquals("Checking granularity",
+        ChartCache.makeKey(1, "Chart", new StringConstant[0], OWNER, "Default", "DAY", "s", "e"),
+        ChartCache.makeKey(1, "Chart", new StringConstant[0], OWNER, "Default", "Day", "s", "e"));
+  }
+
+  /**
+   * Returns the key of a chart request with the given parameter values.
+   *
+   * @param values The parameter values.
+   * @return The key.
+   */
+  private String makeKey(String[] values) {
+    StringConstant[] constants = new StringConstant[values.length];
+    for (int i = 0; i < values.length; i++) {
+      constants[i] = new StringConstant(values[i]);
+    }
+    return ChartCache.makeKey(1, "Chart", constants, OWNER, "Default", "Day", "2007-01-01",
+        "2007-01-02");
+  }
+}
@@ -0,0 +1,120 @@
+package org.hackystat.telemetry.service.resource.chart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryChartObject;
+import org.hackystat.telemetry.analyzer.evaluator.TelemetryEvaluationException;
+import org.junit.Test;
+
+/**
+ * Test suite for <code>ChartRequestCoalescer</code>.
+ *
+ * @author Philip Johnson
+ */
+public class TestChartRequestCoalescer {
+
+  /** The number of concurrent requests. */
+  private static final int REQUESTS = 8;
+
+  /** The number of times the chart has been evaluated. */
+  private AtomicInteger evaluations = new AtomicInteger(0);
+  /** Released to let the evaluation complete. */
+  private CountDownLatch release = new CountDownLatch(1);
+  /** The failure thrown by the evaluation, or null if it succeeds. */
+  private Exception failure;
+
+  /** Evaluates the chart once released, failing if a failure is set. */
+  private Callable<TelemetryChartObject> evaluator = new Callable<TelemetryChartObject>() {
+    public TelemetryChartObject call() throws Exception {
+      evaluations.incrementAndGet();
+      release.await();
+      if (failure != null) {
+        throw failure;
+      }
+      return null;
+    }
+  };
+
+  /**
+   * Tests that identical concurrent requests are evaluated once, and that the key is
+   * forgotten once the evaluation completes.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testSingleEvaluation() throws Exception {
+    ChartRequestCoalescer coalescer = new ChartRequestCoalescer();
+    Object[] results = request(coalescer);
+    assertEquals("Checking one evaluation", 1, this.evaluations.get());
+    for (int i = 0; i < REQUESTS; i++) {
+      assertNull("Checking shared result " + i, results[i]);
+    }
+    assertEquals("Checking key forgotten", 0, coalescer.size());
+  }
+
+  /**
+   * Tests that a failing evaluation throws its exception to every waiting request, and that
+   * the next request evaluates the chart again.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testFailure() throws Exception {
+    ChartRequestCoalescer coalescer = new ChartRequestCoalescer();
+    this.failure = new TelemetryEvaluationException("failed");
+    Object[] results = request(coalescer);
+    assertEquals("Checking one evaluation", 1, this.evaluations.get());
+    for (int i = 0; i < REQUESTS; i++) {
+      assertSame("Checking failure " + i, this.failure, results[i]);
+    }
+    assertEquals("Checking key forgotten", 0, coalescer.size());
+
+    this.failure = null;
+    assertNull("Checking retry", coalescer.get("key", this.evaluator));
+    assertEquals("Checking evaluated again", 2, this.evaluations.get());
+  }
+
+  /**
+   * Makes identical concurrent requests, releasing the evaluation only once every request is
+   * waiting for it.
+   *
+   * @param coalescer The coalescer.
+   * @return The chart, or the exception thrown, for each request.
+   * @throws Exception If the requests are interrupted.
+   */
+  private Object[] request(final ChartRequestCoalescer coalescer) throws Exception {
+    final Object[] results = new Object[REQUESTS];
+    Thread[] threads = new Thread[REQUESTS];
+    for (int i = 0; i < REQUESTS; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        public void run() {
+          try {
+            results[index] = coalescer.get("key", evaluator);
+          }
+          catch (Exception e) {
+            results[index] = e;
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      while (thread.getState() != Thread.State.WAITING) {
+        Thread.sleep(1);
+      }
+    }
+    assertEquals("Checking one key in flight", 1, coalescer.size());
+    this.release.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return results;
+  }
+}
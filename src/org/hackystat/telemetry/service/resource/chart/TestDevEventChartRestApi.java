@@ -1,7 +1,11 @@
 package org.hackystat.telemetry.service.resource.chart;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.List;
 import javax.xml.datatype.XMLGregorianCalendar;
@@ -10,15 +14,28 @@ import org.hackystat.sensorbase.resource.sensordata.jaxb.Properties;
 import org.hackystat.sensorbase.resource.sensordata.jaxb.Property;
 import org.hackystat.sensorbase.resource.sensordata.jaxb.SensorData;
 import org.hackystat.sensorbase.resource.sensordata.jaxb.SensorDatas;
+import org.hackystat.sensorbase.resource.users.jaxb.User;
+import org.hackystat.telemetry.analyzer.configuration.ShareScope;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionManager;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionManagerFactory;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionType;
+import org.hackystat.telemetry.analyzer.configuration.TelemetryReportDefinitionInfo;
+import org.hackystat.telemetry.service.client.ChartDataFormat;
 import org.hackystat.telemetry.service.client.TelemetryClient;
+import org.hackystat.telemetry.service.client.TelemetryClientException;
 import org.hackystat.telemetry.service.resource.chart.jaxb.Parameter;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartBatch;
 import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartData;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartRequest;
+import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryChartResult;
 import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryPoint;
 import org.hackystat.telemetry.service.resource.chart.jaxb.TelemetryStream;
+import org.hackystat.telemetry.service.server.ServerProperties;
 import org.hackystat.telemetry.service.test.TelemetryTestHelper;
 import org.hackystat.utilities.tstamp.Tstamp;
 import org.junit.Test;
 import org.junit.Before;
+import org.restlet.data.MediaType;
 
 /**
  * Tests the DevTime part of the Telemetry REST API. 
@@ -98,8 +115,194 @@ public class TestDevEventChartRestApi extends TelemetryTestHelper {
     List<TelemetryStream> streams = chart.getTelemetryStream();
     assertEquals("Checking only 1 stream returned", 1, streams.size());
   }
-  
-  
+
+  /**
+   * Tests that the JSON and binary representations of the DevTime chart decode to the same
+   * chart as the XML representation.
+   * @throws Exception If problems occur.
+   */
+  @Test public void testChartMediaTypes() throws Exception {
+    String chartName = "DevTime";
+    String params = user + ",false";
+    XMLGregorianCalendar start = Tstamp.makeTimestamp("2007-08-01");
+    XMLGregorianCalendar end = Tstamp.makeTimestamp("2007-08-03");
+    TelemetryChartData xmlChart =
+      telemetryClient.getChart(chartName, user, "Default", "Day", start, end, params);
+    MediaType[] mediaTypes = {MediaType.APPLICATION_JSON, ChartDataFormat.BINARY_MEDIA_TYPE};
+    for (MediaType mediaType : mediaTypes) {
+      telemetryClient.setChartMediaType(mediaType);
+      TelemetryChartData chart =
+        telemetryClient.getChart(chartName, user, "Default", "Day", start, end, params);
+      assertEquals("Checking URI " + mediaType, xmlChart.getURI(), chart.getURI());
+      assertEquals("Checking param count " + mediaType, xmlChart.getParameter().size(),
+          chart.getParameter().size());
+      assertEquals("Checking second param val " + mediaType, "false",
+          chart.getParameter().get(1).getValue());
+      TelemetryStream xmlStream = xmlChart.getTelemetryStream().get(0);
+      TelemetryStream stream = chart.getTelemetryStream().get(0);
+      assertEquals("Checking stream name " + mediaType, xmlStream.getName(), stream.getName());
+      assertEquals("Checking units " + mediaType, xmlStream.getYAxis().getUnits(),
+          stream.getYAxis().getUnits());
+      List<TelemetryPoint> xmlPoints = xmlStream.getTelemetryPoint();
+      List<TelemetryPoint> points = stream.getTelemetryPoint();
+      assertEquals("Checking for 3 points " + mediaType, 3, points.size());
+      for (int i = 0; i < points.size(); i++) {
+        assertEquals("Checking time " + i + " " + mediaType, xmlPoints.get(i).getTime(),
+            points.get(i).getTime());
+        assertEquals("Checking value " + i + " " + mediaType, xmlPoints.get(i).getValue(),
+            points.get(i).getValue());
+      }
+    }
+    telemetryClient.setChartMediaType(MediaType.TEXT_XML);
+  }
+
+  /**
+   * Tests that a chart that has not changed is revalidated rather than sent again, and that a
+   * chart with different parameters is sent.
+   * @throws Exception If problems occur.
+   */
+  @Test public void testChartRevalidation() throws Exception {
+    String chartName = "DevTime";
+    XMLGregorianCalendar start = Tstamp.makeTimestamp("2007-08-01");
+    XMLGregorianCalendar end = Tstamp.makeTimestamp("2007-08-03");
+    TelemetryChartData chart = telemetryClient.getChart(chartName, user, "Default", "Day", 
+        start, end, user + ",false");
+    TelemetryChartData revalidated = telemetryClient.getChart(chartName, user, "Default", 
+        "Day", start, end, user + ",false");
+    assertSame("Checking unchanged chart is not sent again", chart, revalidated);
+    TelemetryChartData cumulative = telemetryClient.getChart(chartName, user, "Default", 
+        "Day", start, end, user + ",true");
+    assertNotSame("Checking other chart is sent", chart, cumulative);
+    assertEquals("Checking other chart param", "true", 
+        cumulative.getParameter().get(1).getValue());
+  }
+
+  /**
+   * Tests that a batch returns each chart as a separate GET request would, in the order
+   * requested, and that an undefined chart does not prevent the others from being returned.
+   * @throws Exception If problems occur.
+   */
+  @Test public void testChartBatch() throws Exception {
+    XMLGregorianCalendar start = Tstamp.makeTimestamp("2007-08-01");
+    XMLGregorianCalendar end = Tstamp.makeTimestamp("2007-08-03");
+    TelemetryChartBatch batch = new TelemetryChartBatch();
+    batch.getTelemetryChartRequest().add(makeRequest("DevTime", start, end, user + ",false"));
+    batch.getTelemetryChartRequest().add(makeRequest("UndefinedChart", start, end, null));
+    batch.getTelemetryChartRequest().add(makeRequest("MemberDevTime", start, end, "false"));
+    List<TelemetryChartResult> results = telemetryClient.getCharts(batch);
+    assertEquals("Checking result count", 3, results.size());
+    TelemetryChartData chart = telemetryClient.getChart("DevTime", user, "Default", "Day", 
+        start, end, user + ",false");
+    TelemetryChartData batchChart = results.get(0).getTelemetryChartData();
+    assertEquals("Checking URI", chart.getURI(), batchChart.getURI());
+    List<TelemetryPoint> points = chart.getTelemetryStream().get(0).getTelemetryPoint();
+    List<TelemetryPoint> batchPoints = 
+      batchChart.getTelemetryStream().get(0).getTelemetryPoint();
+    assertEquals("Checking for 3 points", 3, batchPoints.size());
+    for (int i = 0; i < points.size(); i++) {
+      assertEquals("Checking value " + i, points.get(i).getValue(), 
+          batchPoints.get(i).getValue());
+    }
+    assertTrue("Checking undefined chart error", results.get(1).isSetError());
+    assertFalse("Checking undefined chart data", results.get(1).isSetTelemetryChartData());
+    assertEquals("Checking member chart streams", 1, 
+        results.get(2).getTelemetryChartData().getTelemetryStream().size());
+  }
+
+  /**
+   * Tests that a batch of more charts than the server allows is rejected as a whole.
+   * @throws Exception If problems occur.
+   */
+  @Test public void testChartBatchMax() throws Exception {
+    XMLGregorianCalendar start = Tstamp.makeTimestamp("2007-08-01");
+    XMLGregorianCalendar end = Tstamp.makeTimestamp("2007-08-03");
+    TelemetryChartBatch batch = new TelemetryChartBatch();
+    for (int i = 0; i <= ServerProperties.DEFAULT_CHART_BATCH_MAX; i++) {
+      batch.getTelemetryChartRequest().add(makeRequest("DevTime", start, end, user + ",false"));
+    }
+    try {
+      telemetryClient.getCharts(batch);
+      fail("Oversized batch should be rejected.");
+    }
+    catch (TelemetryClientException e) { //NOPMD
+      // expected.
+    }
+  }
+
+  /**
+   * Tests that a report returns each of its charts as a separate GET request would, in the 
+   * order of the report, with the parameters the report passes to each chart. The report is
+   * a private definition of the test user, since no report is built in.
+   * @throws Exception If problems occur.
+   */
+  @Test public void testReport() throws Exception {
+    User owner = new User();
+    owner.setEmail(user);
+    TelemetryDefinitionManager manager = 
+      TelemetryDefinitionManagerFactory.getGlobalPersistentInstance();
+    manager.add(new TelemetryReportDefinitionInfo(
+        "report TestDevTimeReport(member, cumulative) = {\"Dev Time report\", "
+        + "DevTime(member, cumulative), MemberDevTime(cumulative)};", 
+        owner, ShareScope.getPrivateShareScope()));
+    try {
+      checkReport();
+    }
+    finally {
+      manager.remove(owner, "TestDevTimeReport", TelemetryDefinitionType.REPORT);
+    }
+  }
+
+  /**
+   * Checks the charts of the TestDevTimeReport against those of separate GET requests.
+   * @throws Exception If problems occur.
+   */
+  private void checkReport() throws Exception {
+    XMLGregorianCalendar start = Tstamp.makeTimestamp("2007-08-01");
+    XMLGregorianCalendar end = Tstamp.makeTimestamp("2007-08-03");
+    List<TelemetryChartResult> results = telemetryClient.getReport("TestDevTimeReport", user, 
+        "Default", "Day", start, end, user + ",false");
+    assertEquals("Checking result count", 2, results.size());
+    TelemetryChartData chart = telemetryClient.getChart("DevTime", user, "Default", "Day", 
+        start, end, user + ",false");
+    TelemetryChartData reportChart = results.get(0).getTelemetryChartData();
+    assertEquals("Checking URI", chart.getURI(), reportChart.getURI());
+    assertEquals("Checking first param val", user, reportChart.getParameter().get(0).getValue());
+    List<TelemetryPoint> points = chart.getTelemetryStream().get(0).getTelemetryPoint();
+    List<TelemetryPoint> reportPoints = 
+      reportChart.getTelemetryStream().get(0).getTelemetryPoint();
+    assertEquals("Checking for 3 points", 3, reportPoints.size());
+    for (int i = 0; i < points.size(); i++) {
+      assertEquals("Checking value " + i, points.get(i).getValue(), 
+          reportPoints.get(i).getValue());
+    }
+    TelemetryChartData memberChart = results.get(1).getTelemetryChartData();
+    assertEquals("Checking member chart param", "cumulative", 
+        memberChart.getParameter().get(0).getName());
+    assertEquals("Checking member chart streams", 1, memberChart.getTelemetryStream().size());
+  }
+
+  /**
+   * Creates a request for a chart of the Default project of the test user.
+   * @param chartName The chart name.
+   * @param start The start day.
+   * @param end The end day.
+   * @param params The parameter string, or null if no params are present.
+   * @return The request.
+   */
+  private TelemetryChartRequest makeRequest(String chartName, XMLGregorianCalendar start, 
+      XMLGregorianCalendar end, String params) {
+    TelemetryChartRequest request = new TelemetryChartRequest();
+    request.setChart(chartName);
+    request.setOwner(user);
+    request.setProject("Default");
+    request.setGranularity("Day");
+    request.setStart(start);
+    request.setEnd(end);
+    request.setParams(params);
+    return request;
+  }
+
+
   /**
    * Creates a sample SensorData instance given a timestamp and a user. 
    * @param tstampString The timestamp as a string
@@ -123,6 +123,38 @@ public class ObjectFactory {
         return new TelemetryStream();
     }
 
+    /**
+     * Create an instance of {@link TelemetryChartRequest }
+     * 
+     */
+    public TelemetryChartRequest createTelemetryChartRequest() {
+        return new TelemetryChartRequest();
+    }
+
+    /**
+     * Create an instance of {@link TelemetryChartBatch }
+     * 
+     */
+    public TelemetryChartBatch createTelemetryChartBatch() {
+        return new TelemetryChartBatch();
+    }
+
+    /**
+     * Create an instance of {@link TelemetryChartResult }
+     * 
+     */
+    public TelemetryChartResult createTelemetryChartResult() {
+        return new TelemetryChartResult();
+    }
+
+    /**
+     * Create an instance of {@link TelemetryChartResults }
+     * 
+     */
+    public TelemetryChartResults createTelemetryChartResults() {
+        return new TelemetryChartResults();
+    }
+
     /**
      * Create an instance of {@link JAXBElement }{@code <}{@link String }{@code >}}
      * 
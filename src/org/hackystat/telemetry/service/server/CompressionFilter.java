@@ -0,0 +1,315 @@
+package org.hackystat.telemetry.service.server;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.restlet.Context;
+import org.restlet.Filter;
+import org.restlet.data.Dimension;
+import org.restlet.data.Encoding;
+import org.restlet.data.Preference;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.resource.OutputRepresentation;
+import org.restlet.resource.Representation;
+
+/**
+ * Compresses response entities with gzip or deflate when the client accepts either encoding.
+ * Chart data is highly repetitive and typically shrinks by an order of magnitude. Entities are
+ * compressed as they are written, so a streamed chart is never held in memory in either form.
+ * <p>
+ * Entities whose size is known and below the threshold are sent as is, since compressing them
+ * saves little. Streamed entities, such as chart data, have no known size and are always
+ * compressed.
+ * <p>
+ * The entity tag of a compressed entity is the tag of the original entity followed by "-gzip"
+ * or "-deflate", so that the validators of the two encodings differ. The suffixes are removed
+ * from the tags of If-None-Match conditions before the request is handled, so resources
+ * compare them against the tags of their own, uncompressed, representations.
+ * <p>
+ * A 304 Not Modified response has no entity, but must carry the tag that a 200 response
+ * would have carried. A resource answering 304 therefore sets the NOT_MODIFIED_KEY response
+ * attribute to the representation it would otherwise have sent, and the filter sends the tag
+ * of that representation, with the suffix of the encoding it would have been compressed with,
+ * without its content.
+ * <p>
+ * The compressing streams of this Java version cannot flush the data compressed so far
+ * without finishing the stream, so a resource that sends its entity piece by piece, as each
+ * piece becomes available, sets the UNCOMPRESSED_KEY response attribute to leave the entity 
+ * uncompressed. Otherwise the client would receive nothing until a full buffer is compressed.
+ *
+ * @author Philip Johnson
+ */
+public class CompressionFilter extends Filter {
+
+  /** The response attribute which, when Boolean.TRUE, leaves the entity uncompressed. */
+  public static final String UNCOMPRESSED_KEY = "compression.filter.uncompressed";
+
+  /**
+   * The response attribute holding, for a 304 Not Modified response, the representation that
+   * a 200 response would have sent.
+   */
+  public static final String NOT_MODIFIED_KEY = "compression.filter.not.modified";
+
+  /** The size of the buffer of the compressing streams. */
+  private static final int BUFFER_SIZE = 8192;
+
+  /** The minimum size of an entity of known size that is compressed, or -1 to disable. */
+  private final long threshold;
+
+  /**
+   * Creates a new compression filter.
+   * @param context The context.
+   * @param threshold The minimum size, in bytes, of an entity of known size that is compressed.
+   * If negative, no entities are compressed.
+   */
+  public CompressionFilter(Context context, long threshold) {
+    super(context);
+    this.threshold = threshold;
+  }
+
+  /**
+   * Removes the encoding suffixes from the tags of the If-None-Match condition.
+   * @param request The request.
+   * @param response The response.
+   * @return CONTINUE.
+   */
+  @Override
+  protected int beforeHandle(Request request, Response response) {
+    List<Tag> noneMatch = request.getConditions().getNoneMatch();
+    if ((noneMatch != null) && !noneMatch.isEmpty()) {
+      List<Tag> decoded = new ArrayList<Tag>(noneMatch.size());
+      for (Tag tag : noneMatch) {
+        decoded.add(removeSuffix(tag, Encoding.GZIP, Encoding.DEFLATE));
+      }
+      request.getConditions().setNoneMatch(decoded);
+    }
+    return CONTINUE;
+  }
+
+  /**
+   * Replaces the response entity with a compressed one, if the client accepts gzip or deflate
+   * and the entity is worth compressing. For a 304 Not Modified response, sets the tag of the
+   * representation given by the NOT_MODIFIED_KEY attribute instead.
+   * @param request The request.
+   * @param response The response.
+   */
+  @Override
+  protected void afterHandle(Request request, Response response) {
+    response.getDimensions().add(Dimension.ENCODING);
+    if (Status.REDIRECTION_NOT_MODIFIED.equals(response.getStatus())) {
+      Representation notModified = (Representation) response.getAttributes().get(
+          NOT_MODIFIED_KEY);
+      if (notModified != null) {
+        response.setEntity(new NotModifiedRepresentation(notModified, 
+            getEncoding(request, response, notModified)));
+      }
+      return;
+    }
+    Representation entity = response.getEntity();
+    Encoding encoding = getEncoding(request, response, entity);
+    if (encoding != null) {
+      response.setEntity(new CompressedRepresentation(entity, encoding));
+    }
+  }
+
+  /**
+   * Returns the encoding with which an entity is compressed, or null if the entity is sent as
+   * is.
+   * @param request The request.
+   * @param response The response.
+   * @param entity The entity, or null.
+   * @return GZIP, DEFLATE, or null.
+   */
+  private Encoding getEncoding(Request request, Response response, Representation entity) {
+    if ((this.threshold < 0) || (entity == null) || !entity.isAvailable()
+        || Boolean.TRUE.equals(response.getAttributes().get(UNCOMPRESSED_KEY))) {
+      return null;
+    }
+    for (Encoding encoding : entity.getEncodings()) {
+      if (!Encoding.IDENTITY.equals(encoding)) {
+        return null;
+      }
+    }
+    long size = entity.getSize();
+    if ((size != Representation.UNKNOWN_SIZE) && (size < this.threshold)) {
+      return null;
+    }
+    return getEncoding(request.getClientInfo().getAcceptedEncodings());
+  }
+
+  /**
+   * Returns the encoding to use for a response, preferring gzip, or null if the client accepts
+   * neither gzip nor deflate.
+   * @param accepted The encodings accepted by the client.
+   * @return GZIP, DEFLATE, or null.
+   */
+  private static Encoding getEncoding(List<Preference<Encoding>> accepted) {
+    float gzip = 0;
+    float deflate = 0;
+    float all = 0;
+    for (Preference<Encoding> preference : accepted) {
+      if (Encoding.GZIP.equals(preference.getMetadata())) {
+        gzip = preference.getQuality();
+      }
+      else if (Encoding.DEFLATE.equals(preference.getMetadata())) {
+        deflate = preference.getQuality();
+      }
+      else if (Encoding.ALL.equals(preference.getMetadata())) {
+        all = preference.getQuality();
+      }
+    }
+    if ((gzip > 0) && (gzip >= deflate)) {
+      return Encoding.GZIP;
+    }
+    if (deflate > 0) {
+      return Encoding.DEFLATE;
+    }
+    return (all > 0) ? Encoding.GZIP : null;
+  }
+
+  /**
+   * Returns the tag of an entity with the given encoding.
+   * @param tag The tag of the uncompressed entity, or null.
+   * @param encoding The encoding.
+   * @return The tag of the compressed entity, or null.
+   */
+  private static Tag addSuffix(Tag tag, Encoding encoding) {
+    return (tag == null) ? null : new Tag(tag.getName() + "-" + encoding.getName(), tag.isWeak());
+  }
+
+  /**
+   * Returns the tag of the uncompressed entity, given the tag of a compressed one.
+   * @param tag The tag, which may or may not have an encoding suffix.
+   * @param encodings The encodings whose suffixes are removed.
+   * @return The tag without its encoding suffix.
+   */
+  private static Tag removeSuffix(Tag tag, Encoding... encodings) {
+    for (Encoding encoding : encodings) {
+      String suffix = "-" + encoding.getName();
+      if (tag.getName().endsWith(suffix)) {
+        String name = tag.getName();
+        return new Tag(name.substring(0, name.length() - suffix.length()), tag.isWeak());
+      }
+    }
+    return tag;
+  }
+
+  /**
+   * The entity headers of a 304 Not Modified response: the tag, media type and encoding of the
+   * representation that a 200 response would have sent, without its content.
+   */
+  private static class NotModifiedRepresentation extends OutputRepresentation {
+
+    /**
+     * Creates the entity headers of a representation that is not sent.
+     * @param notModified The representation a 200 response would have sent.
+     * @param encoding The encoding it would have been compressed with, or null.
+     */
+    NotModifiedRepresentation(Representation notModified, Encoding encoding) {
+      super(notModified.getMediaType());
+      setCharacterSet(notModified.getCharacterSet());
+      setExpirationDate(notModified.getExpirationDate());
+      setModificationDate(notModified.getModificationDate());
+      if (encoding == null) {
+        setTag(notModified.getTag());
+      }
+      else {
+        setTag(addSuffix(notModified.getTag(), encoding));
+        getEncodings().add(encoding);
+      }
+      setAvailable(false);
+    }
+
+    /**
+     * Writes nothing, since a 304 response has no content.
+     * @param out The output stream.
+     */
+    @Override
+    public void write(OutputStream out) {
+      // No content.
+    }
+  }
+
+  /**
+   * A representation that compresses another one as it is written.
+   */
+  private static class CompressedRepresentation extends OutputRepresentation {
+    /** The uncompressed representation. */
+    private final Representation wrapped;
+    /** GZIP or DEFLATE. */
+    private final Encoding encoding;
+
+    /**
+     * Creates a compressed representation.
+     * @param wrapped The uncompressed representation.
+     * @param encoding GZIP or DEFLATE.
+     */
+    CompressedRepresentation(Representation wrapped, Encoding encoding) {
+      super(wrapped.getMediaType());
+      this.wrapped = wrapped;
+      this.encoding = encoding;
+      setCharacterSet(wrapped.getCharacterSet());
+      setTag(addSuffix(wrapped.getTag(), encoding));
+      setExpirationDate(wrapped.getExpirationDate());
+      setModificationDate(wrapped.getModificationDate());
+      getEncodings().add(encoding);
+    }
+
+    /**
+     * Writes the compressed representation. The output stream is not closed.
+     * @param out The output stream.
+     * @throws IOException If problems occur.
+     */
+    @Override
+    public void write(OutputStream out) throws IOException {
+      // Closing the compressing stream releases its native resources, but must not close out.
+      OutputStream unclosed = new FilterOutputStream(out) {
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+          this.out.write(bytes, offset, length);
+        }
+        @Override
+        public void close() throws IOException {
+          flush();
+        }
+      };
+      Deflater deflater = null;
+      DeflaterOutputStream compressed;
+      if (Encoding.GZIP.equals(this.encoding)) {
+        compressed = new GZIPOutputStream(unclosed, BUFFER_SIZE);
+      }
+      else {
+        deflater = new Deflater();
+        compressed = new DeflaterOutputStream(unclosed, deflater, BUFFER_SIZE);
+      }
+      try {
+        this.wrapped.write(compressed);
+        compressed.finish();
+      }
+      finally {
+        compressed.close();
+        if (deflater != null) {
+          deflater.end();
+        }
+      }
+    }
+
+    /**
+     * Releases the uncompressed representation.
+     */
+    @Override
+    public void release() {
+      this.wrapped.release();
+      super.release();
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package org.hackystat.telemetry.service.server;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the daemon threads of the analyzer's thread pools, numbering them after the name of
+ * their pool so that they can be told apart in thread dumps. Daemon threads do not keep the
+ * JVM alive once the server and its tests are done.
+ *
+ * @author Philip Johnson
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+  /** The prefix of the names of the threads created. */
+  private final String prefix;
+  /** The number of threads created. */
+  private final AtomicInteger count = new AtomicInteger(0);
+
+  /**
+   * Creates a factory of threads named after the given pool.
+   *
+   * @param poolName The name of the pool, such as "telemetry-evaluator".
+   */
+  public DaemonThreadFactory(String poolName) {
+    this.prefix = poolName + "-";
+  }
+
+  /**
+   * Creates a daemon thread named after the pool and numbered in order of creation.
+   *
+   * @param runnable The task run by the thread.
+   * @return The thread.
+   */
+  public Thread newThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, this.prefix + this.count.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+}
@@ -7,14 +7,20 @@ import org.hackystat.sensorbase.client.SensorBaseClient;
 import org.hackystat.telemetry.analyzer.configuration.TelemetryDefinitionManagerFactory;
 import org.hackystat.telemetry.service.prefetch.PrefetchManager;
 import org.hackystat.telemetry.service.resource.cache.CacheResource;
+import org.hackystat.telemetry.service.resource.chart.ChartBatchResource;
+import org.hackystat.telemetry.service.resource.chart.ChartCache;
+import org.hackystat.telemetry.service.resource.chart.ChartDataWriter;
+import org.hackystat.telemetry.service.resource.chart.ChartRequestCoalescer;
 import org.hackystat.telemetry.service.resource.chart.ChartDataResource;
 import org.hackystat.telemetry.service.resource.chart.ChartDefinitionResource;
 import org.hackystat.telemetry.service.resource.chart.ChartsResource;
+import org.hackystat.telemetry.service.resource.chart.ReportDataResource;
 import org.hackystat.telemetry.service.resource.ping.PingResource;
 import org.hackystat.utilities.logger.HackystatLogger;
 import org.hackystat.utilities.logger.RestletLoggerUtil;
 import org.restlet.Application;
 import org.restlet.Component;
+import org.restlet.Filter;
 import org.restlet.Guard;
 import org.restlet.Restlet;
 import org.restlet.Router;
@@ -101,6 +107,17 @@ public class Server extends Application {
     JAXBContext chartJAXB = JAXBContext.newInstance(
         org.hackystat.telemetry.service.resource.chart.jaxb.ObjectFactory.class);
     attributes.put("ChartJAXB", chartJAXB);
+    attributes.put("ChartDataWriter", new ChartDataWriter(chartJAXB));
+    
+    // Create the cache of evaluated charts shared by all users, which holds nothing when
+    // caching is disabled.
+    attributes.put("ChartCache", new ChartCache(
+        properties.isCacheEnabled() ? properties.getChartCacheCapacity() : 0,
+        properties.getChartCachePastLife() * 60 * 1000, 
+        properties.getChartCacheTodayLife() * 60 * 1000));
+    
+    // Create the coalescer of identical chart requests in flight.
+    attributes.put("ChartRequests", new ChartRequestCoalescer());
     
     // Provide a pointer to this server in the Context so that Resources can get at this server.
     attributes.put("TelemetryServer", server);
@@ -153,12 +170,18 @@ public class Server extends Application {
     // First, create a Router that will have a Guard placed in front of it so that this Router's
     // requests will require authentication.
     Router authRouter = new Router(getContext());
+    authRouter.attach("/charts/batch", ChartBatchResource.class);
     authRouter.attach("/charts", ChartsResource.class);
     authRouter.attach("/chart/{chart}", ChartDefinitionResource.class);
     authRouter.attach("/chart/{chart}/{email}/{project}/{granularity}/{start}/{end}",
         ChartDataResource.class);
     authRouter.attach("/chart/{chart}/{email}/{project}/{granularity}/{start}/{end}?params={params}"
         , ChartDataResource.class);
+    authRouter.attach("/report/{report}/{email}/{project}/{granularity}/{start}/{end}",
+        ReportDataResource.class);
+    authRouter.attach(
+        "/report/{report}/{email}/{project}/{granularity}/{start}/{end}?params={params}",
+        ReportDataResource.class);
     authRouter.attach("/cache/", CacheResource.class);
     authRouter.attach("/cache/{email}/{project}", CacheResource.class);
     // Here's the Guard that we will place in front of authRouter.
@@ -173,7 +196,12 @@ public class Server extends Application {
     router.attach("/ping", PingResource.class);
     router.attach("/ping?user={user}&password={password}", PingResource.class);    
     router.attachDefault(guard);
-    return router;
+    
+    // Finally, compress the responses for clients that accept compressed entities.
+    Filter compression = new CompressionFilter(getContext(), 
+        this.getServerProperties().getCompressionThreshold());
+    compression.setNext(router);
+    return compression;
   }
 
 
@@ -45,12 +45,65 @@ public class ServerProperties {
   /** Where we store the properties. */
   private Properties properties;
 
-  /** Indicates whether DPDClient caching is enabled. */
+  /** Indicates whether DPDClient caching and the chart cache are enabled. */
   public static final String CACHE_ENABLED = "telemetry.cache.enabled";
   /** The maxLife in days for each instance in each DPDClient cache. */
   public static final String CACHE_MAX_LIFE = "telemetry.cache.max.life";
   /** The in-memory capacity of each DPDClient cache. */
   public static final String CACHE_CAPACITY = "telemetry.cache.capacity";
+  /** The number of threads shared by all reducers for concurrent DPD requests. */
+  public static final String DPD_FETCH_THREADS = "telemetry.dpd.fetch.threads";
+  /** The maximum number of concurrent DPD requests issued on behalf of a single user. */
+  public static final String DPD_FETCH_USER_LIMIT = "telemetry.dpd.fetch.user.limit";
+  /** Indicates whether reducers save their per-day results in the persistent store. */
+  public static final String REDUCER_STORE_ENABLED = "telemetry.reducer.store.enabled";
+  /** The directory holding the persistent store of per-day reducer results. */
+  public static final String REDUCER_STORE_DIR_KEY = "telemetry.reducer.store.dir";
+  /** The number of days before today whose reducer results or empty days are not yet stored. */
+  public static final String REDUCER_STORE_SETTLE_DAYS = "telemetry.reducer.store.settle.days";
+  /** The maxLife in days of a stored reducer result. */
+  public static final String REDUCER_STORE_MAX_LIFE = "telemetry.reducer.store.max.life";
+  /** The maxLife in days of a stored reducer result or indexed day recording no data. */
+  public static final String REDUCER_STORE_NO_DATA_LIFE = "telemetry.reducer.store.nodata.life";
+  /** The number of threads shared by all reducers that run asynchronously. */
+  public static final String REDUCER_THREADS = "telemetry.reducer.threads";
+  /** The number of threads shared by all evaluations for concurrent sub-chart evaluation. */
+  public static final String EVALUATOR_THREADS = "telemetry.evaluator.threads";
+  /** The maximum number of charts of a single report or batch evaluated concurrently. */
+  public static final String REPORT_CONCURRENCY = "telemetry.report.concurrency";
+  /** The number of threads shared by all Filter functions for ranking large collections. */
+  public static final String FILTER_THREADS = "telemetry.filter.threads";
+  /** The maximum total number of data points in the charts held by the chart cache. */
+  public static final String CHART_CACHE_CAPACITY = "telemetry.chart.cache.capacity";
+  /** The minutes a cached chart that ends before today is kept. */
+  public static final String CHART_CACHE_PAST_LIFE = "telemetry.chart.cache.past.life";
+  /** The minutes a cached chart that includes today is kept. */
+  public static final String CHART_CACHE_TODAY_LIFE = "telemetry.chart.cache.today.life";
+  /** The minimum size in bytes of a response of known size that is compressed. */
+  public static final String COMPRESSION_THRESHOLD = "telemetry.compression.threshold";
+  /** The maximum number of charts in a single batch request. */
+  public static final String CHART_BATCH_MAX = "telemetry.chart.batch.max";
+
+  /** The default number of threads shared by all reducers for concurrent DPD requests. */
+  public static final int DEFAULT_DPD_FETCH_THREADS = 16;
+  /** The default maximum number of concurrent DPD requests issued for a single user. */
+  public static final int DEFAULT_DPD_FETCH_USER_LIMIT = 4;
+  /** The default number of threads shared by all reducers that run asynchronously. */
+  public static final int DEFAULT_REDUCER_THREADS = 8;
+  /** The default number of threads shared by all evaluations. */
+  public static final int DEFAULT_EVALUATOR_THREADS = 8;
+  /** The default maximum number of charts of a single report or batch evaluated at once. */
+  public static final int DEFAULT_REPORT_CONCURRENCY = 4;
+  /** The default number of threads shared by all Filter functions. */
+  public static final int DEFAULT_FILTER_THREADS = 4;
+  /** The default maximum number of charts in a single batch request. */
+  public static final int DEFAULT_CHART_BATCH_MAX = 100;
+  /** The default number of days before today whose results or empty days are not yet stored. */
+  public static final int DEFAULT_REDUCER_STORE_SETTLE_DAYS = 7;
+  /** The default maxLife in days of a stored reducer result. */
+  public static final int DEFAULT_REDUCER_STORE_MAX_LIFE = 30;
+  /** The default maxLife in days of a stored reducer result recording that there was no data. */
+  public static final int DEFAULT_REDUCER_STORE_NO_DATA_LIFE = 1;
   
   /**
    * Creates a new ServerProperties instance. Prints an error to the console if problems occur on
@@ -95,6 +148,25 @@ public class ServerProperties {
     properties.setProperty(CACHE_ENABLED, "true");
     properties.setProperty(CACHE_MAX_LIFE, "365");
     properties.setProperty(CACHE_CAPACITY, "50000");
+    properties.setProperty(DPD_FETCH_THREADS, String.valueOf(DEFAULT_DPD_FETCH_THREADS));
+    properties.setProperty(DPD_FETCH_USER_LIMIT, String.valueOf(DEFAULT_DPD_FETCH_USER_LIMIT));
+    properties.setProperty(REDUCER_THREADS, String.valueOf(DEFAULT_REDUCER_THREADS));
+    properties.setProperty(EVALUATOR_THREADS, String.valueOf(DEFAULT_EVALUATOR_THREADS));
+    properties.setProperty(REPORT_CONCURRENCY, String.valueOf(DEFAULT_REPORT_CONCURRENCY));
+    properties.setProperty(FILTER_THREADS, String.valueOf(DEFAULT_FILTER_THREADS));
+    properties.setProperty(CHART_CACHE_CAPACITY, "1000000");
+    properties.setProperty(CHART_CACHE_PAST_LIFE, "1440");
+    properties.setProperty(CHART_CACHE_TODAY_LIFE, "5");
+    properties.setProperty(COMPRESSION_THRESHOLD, "1024");
+    properties.setProperty(CHART_BATCH_MAX, String.valueOf(DEFAULT_CHART_BATCH_MAX));
+    properties.setProperty(REDUCER_STORE_ENABLED, "true");
+    properties.setProperty(REDUCER_STORE_DIR_KEY, 
+        userHome + "/.hackystat/telemetry/reducerstore");
+    properties.setProperty(REDUCER_STORE_SETTLE_DAYS,
+        String.valueOf(DEFAULT_REDUCER_STORE_SETTLE_DAYS));
+    properties.setProperty(REDUCER_STORE_MAX_LIFE, String.valueOf(DEFAULT_REDUCER_STORE_MAX_LIFE));
+    properties.setProperty(REDUCER_STORE_NO_DATA_LIFE,
+        String.valueOf(DEFAULT_REDUCER_STORE_NO_DATA_LIFE));
     FileInputStream stream = null;
     try {
       stream = new FileInputStream(propFile);
@@ -148,6 +220,9 @@ public class ServerProperties {
         .getProperty(TEST_DAILYPROJECTDATA_FULLHOST_KEY));
     properties.setProperty(TEST_INSTALL_KEY, "true");
     properties.setProperty(CACHE_ENABLED, "false");
+    // Reducers read this from the System properties, and test data must never be persisted.
+    properties.setProperty(REDUCER_STORE_ENABLED, "false");
+    System.setProperty(REDUCER_STORE_ENABLED, "false");
     String userDir = System.getProperty("user.dir");
     properties.setProperty(DEF_DIR_KEY, userDir + "/definitions");
     properties.setProperty(PREFETCH_DIR_KEY, userDir + "/prefetch");
@@ -224,7 +299,8 @@ public class ServerProperties {
   }
   
   /**
-   * Returns true if caching is enabled in this service. 
+   * Returns true if caching is enabled in this service. This enables both the DPDClient caches
+   * and the chart cache.
    * @return True if caching enabled.
    */
   public boolean isCacheEnabled() {
@@ -266,4 +342,118 @@ public class ServerProperties {
     }
     return capacity;
   }
+  
+  /**
+   * Returns the positive integer value of the given system property, or the default value if
+   * the property is missing or illegal. The analyzer's thread pools and limits are created 
+   * when first used, independently of any ServerProperties instance, so they read their 
+   * settings from the system properties that a ServerProperties instance copies them to. 
+   * 
+   * @param key The property key, one of the public static final strings in this class.
+   * @param defaultValue The default value, one of the DEFAULT constants in this class.
+   * @return The value.
+   */
+  public static int getPositiveInt(String key, int defaultValue) {
+    try {
+      int value = Integer.parseInt(System.getProperty(key, String.valueOf(defaultValue)).trim());
+      return (value > 0) ? value : defaultValue;
+    }
+    catch (Exception e) {
+      return defaultValue;
+    }
+  }
+  
+  /**
+   * Returns the maximum total number of data points in the charts held by the chart cache.
+   * The chart cache is only used if <code>isCacheEnabled</code> is true.
+   * If the property has an illegal value, then return the default. 
+   * @return The chart cache capacity, or zero if charts are not cached.
+   */
+  public long getChartCacheCapacity() {
+    String capacityString = this.properties.getProperty(CHART_CACHE_CAPACITY);
+    long capacity = 0;
+    try {
+      capacity = Long.valueOf(capacityString);
+    }
+    catch (Exception e) {
+      System.out.println("Illegal chart cache capacity: " + capacityString 
+          + ". Using default.");
+      capacity = 1000000L;
+    }
+    return capacity;
+  }
+  
+  /**
+   * Returns the number of minutes a cached chart that ends before today is kept.
+   * If the property has an illegal value, then return the default. 
+   * @return The life of a past chart in the chart cache.
+   */
+  public long getChartCachePastLife() {
+    String lifeString = this.properties.getProperty(CHART_CACHE_PAST_LIFE);
+    long life = 0;
+    try {
+      life = Long.valueOf(lifeString);
+    }
+    catch (Exception e) {
+      System.out.println("Illegal chart cache past life: " + lifeString + ". Using default.");
+      life = 1440L;
+    }
+    return life;
+  }
+  
+  /**
+   * Returns the number of minutes a cached chart that includes today is kept.
+   * If the property has an illegal value, then return the default. 
+   * @return The life of a current chart in the chart cache.
+   */
+  public long getChartCacheTodayLife() {
+    String lifeString = this.properties.getProperty(CHART_CACHE_TODAY_LIFE);
+    long life = 0;
+    try {
+      life = Long.valueOf(lifeString);
+    }
+    catch (Exception e) {
+      System.out.println("Illegal chart cache today life: " + lifeString + ". Using default.");
+      life = 5L;
+    }
+    return life;
+  }
+
+  /**
+   * Returns the minimum size in bytes of a response of known size that is compressed for
+   * clients that accept compressed responses. Streamed responses, such as chart data, are
+   * always compressed. A negative value disables compression.
+   * If the property has an illegal value, then return the default. 
+   * @return The compression threshold.
+   */
+  public long getCompressionThreshold() {
+    String thresholdString = this.properties.getProperty(COMPRESSION_THRESHOLD);
+    long threshold = 0;
+    try {
+      threshold = Long.valueOf(thresholdString);
+    }
+    catch (Exception e) {
+      System.out.println("Illegal compression threshold: " + thresholdString + ". Using default.");
+      threshold = 1024L;
+    }
+    return threshold;
+  }
+
+  /**
+   * Returns the maximum number of charts in a single batch request. Larger batches are
+   * rejected, since all of their charts are checked and held until the response is written.
+   * If the property has an illegal value, then return the default.
+   * @return The maximum batch size.
+   */
+  public int getChartBatchMax() {
+    String maxString = this.properties.getProperty(CHART_BATCH_MAX);
+    int max = 0;
+    try {
+      max = Integer.valueOf(maxString);
+    }
+    catch (Exception e) {
+      System.out.println("Illegal chart batch maximum: " + maxString + ". Using default.");
+    }
+    return (max > 0) ? max : DEFAULT_CHART_BATCH_MAX;
+  }
 }
@@ -0,0 +1,317 @@
+package org.hackystat.telemetry.service.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.restlet.Context;
+import org.restlet.Restlet;
+import org.restlet.data.Dimension;
+import org.restlet.data.Encoding;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Preference;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.resource.OutputRepresentation;
+import org.restlet.resource.Representation;
+import org.restlet.resource.StringRepresentation;
+import org.junit.Test;
+
+/**
+ * Test suite for <code>CompressionFilter</code>.
+ *
+ * @author Philip Johnson
+ */
+public class TestCompressionFilter {
+
+  /** The threshold of the filters under test. */
+  private static final int THRESHOLD = 100;
+
+  /** A text long enough to be compressed. */
+  private static final String LONG_TEXT = makeText(1000);
+
+  /** A text too short to be compressed. */
+  private static final String SHORT_TEXT = makeText(10);
+
+  /**
+   * Returns a text of the given length.
+   *
+   * @param length The length.
+   * @return The text.
+   */
+  private static String makeText(int length) {
+    StringBuffer text = new StringBuffer(length);
+    for (int i = 0; i < length; i++) {
+      text.append((char) ('a' + (i % 26)));
+    }
+    return text.toString();
+  }
+
+  /**
+   * Tests that an entity at or above the threshold is compressed with gzip for a client that
+   * accepts gzip, and that its tag gets the "-gzip" suffix.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testGzip() throws Exception {
+    Response response = handle(new StringRepresentation(LONG_TEXT), false,
+        new Preference<Encoding>(Encoding.GZIP));
+    Representation entity = response.getEntity();
+    assertEquals("Checking encoding", Encoding.GZIP, entity.getEncodings().get(0));
+    assertEquals("Checking tag", "chart-gzip", entity.getTag().getName());
+    assertEquals("Checking text", LONG_TEXT,
+        read(new GZIPInputStream(new ByteArrayInputStream(write(entity)))));
+    assertTrue("Checking vary", response.getDimensions().contains(Dimension.ENCODING));
+  }
+
+  /**
+   * Tests that deflate is used for a client that prefers or only accepts deflate, and that
+   * gzip is used when the client accepts both equally.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testDeflate() throws Exception {
+    Response response = handle(new StringRepresentation(LONG_TEXT), false,
+        new Preference<Encoding>(Encoding.DEFLATE));
+    Representation entity = response.getEntity();
+    assertEquals("Checking encoding", Encoding.DEFLATE, entity.getEncodings().get(0));
+    assertEquals("Checking tag", "chart-deflate", entity.getTag().getName());
+    assertEquals("Checking text", LONG_TEXT,
+        read(new InflaterInputStream(new ByteArrayInputStream(write(entity)))));
+
+    response = handle(new StringRepresentation(LONG_TEXT), false,
+        new Preference<Encoding>(Encoding.GZIP, 0.5f),
+        new Preference<Encoding>(Encoding.DEFLATE, 1.0f));
+    assertEquals("Checking preferred deflate", Encoding.DEFLATE,
+        response.getEntity().getEncodings().get(0));
+    response = handle(new StringRepresentation(LONG_TEXT), false,
+        new Preference<Encoding>(Encoding.DEFLATE), new Preference<Encoding>(Encoding.GZIP));
+    assertEquals("Checking equal preference", Encoding.GZIP,
+        response.getEntity().getEncodings().get(0));
+  }
+
+  /**
+   * Tests that an entity of known size below the threshold is sent as is, while a streamed
+   * entity of unknown size is compressed however short it is.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testThreshold() throws Exception {
+    Representation small = new StringRepresentation(SHORT_TEXT);
+    assertSame("Checking small entity", small,
+        handle(small, false, new Preference<Encoding>(Encoding.GZIP)).getEntity());
+    Representation streamed = new TextRepresentation(SHORT_TEXT);
+    Representation entity =
+      handle(streamed, false, new Preference<Encoding>(Encoding.GZIP)).getEntity();
+    assertEquals("Checking streamed entity", Encoding.GZIP, entity.getEncodings().get(0));
+    assertEquals("Checking streamed text", SHORT_TEXT,
+        read(new GZIPInputStream(new ByteArrayInputStream(write(entity)))));
+  }
+
+  /**
+   * Tests that a streamed entity is sent as is when its resource sets the UNCOMPRESSED_KEY
+   * attribute, as the batch and report resources do.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testUncompressed() throws Exception {
+    Representation streamed = new TextRepresentation(LONG_TEXT);
+    Response response = handle(streamed, true, new Preference<Encoding>(Encoding.GZIP));
+    assertSame("Checking uncompressed entity", streamed, response.getEntity());
+    assertEquals("Checking tag", "chart", response.getEntity().getTag().getName());
+  }
+
+  /**
+   * Tests that nothing is compressed for a client that sends no Accept-Encoding header, or
+   * that accepts neither gzip nor deflate.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testNotAccepted() throws Exception {
+    Representation text = new StringRepresentation(LONG_TEXT);
+    Response response = handle(text, false);
+    assertSame("Checking no Accept-Encoding", text, response.getEntity());
+    assertTrue("Checking vary", response.getDimensions().contains(Dimension.ENCODING));
+    assertSame("Checking identity only", text,
+        handle(text, false, new Preference<Encoding>(Encoding.IDENTITY)).getEntity());
+  }
+
+  /**
+   * Tests that the encoding suffixes are removed from the If-None-Match tags before the
+   * request is handled, so resources see the tags of their uncompressed representations.
+   */
+  @Test
+  public void testNoneMatch() {
+    Request request = new Request(Method.GET, "http://localhost/telemetry/chart");
+    request.getConditions().getNoneMatch().add(new Tag("first-gzip"));
+    request.getConditions().getNoneMatch().add(new Tag("second-deflate", true));
+    request.getConditions().getNoneMatch().add(new Tag("third"));
+    final List<Tag> received = new ArrayList<Tag>();
+    CompressionFilter filter = new CompressionFilter(new Context(), THRESHOLD);
+    filter.setNext(new Restlet() {
+      @Override
+      public void handle(Request request, Response response) {
+        received.addAll(request.getConditions().getNoneMatch());
+      }
+    });
+    filter.handle(request, new Response(request));
+    assertEquals("Checking count", 3, received.size());
+    assertEquals("Checking gzip suffix removed", "first", received.get(0).getName());
+    assertEquals("Checking deflate suffix removed", "second", received.get(1).getName());
+    assertTrue("Checking weakness kept", received.get(1).isWeak());
+    assertEquals("Checking tag without suffix", "third", received.get(2).getName());
+  }
+
+  /**
+   * Tests that a 304 Not Modified response carries the tag that the 200 response would have
+   * carried, including the suffix of its encoding, but no content.
+   *
+   * @throws Exception If test fails.
+   */
+  @Test
+  public void testNotModified() throws Exception {
+    Response response = handle(new TextRepresentation(LONG_TEXT), false, true,
+        new Preference<Encoding>(Encoding.GZIP));
+    assertEquals("Checking status", Status.REDIRECTION_NOT_MODIFIED, response.getStatus());
+    Representation entity = response.getEntity();
+    assertEquals("Checking compressed tag", "chart-gzip", entity.getTag().getName());
+    assertFalse("Checking no content", entity.isAvailable());
+    response = handle(new TextRepresentation(LONG_TEXT), false, true);
+    assertEquals("Checking uncompressed tag", "chart",
+        response.getEntity().getTag().getName());
+  }
+
+  /**
+   * Passes a request through a compression filter to a restlet that responds with the given
+   * entity, tagged "chart".
+   *
+   * @param entity The entity.
+   * @param uncompressed True if the restlet sets the UNCOMPRESSED_KEY response attribute.
+   * @param accepted The encodings accepted by the client.
+   * @return The response.
+   */
+  private Response handle(Representation entity, boolean uncompressed,
+      Preference<?>... accepted) {
+    return handle(entity, uncompressed, false, accepted);
+  }
+
+  /**
+   * Passes a request through a compression filter to a restlet that responds with the given
+   * entity, tagged "chart", or that answers 304 Not Modified in place of the entity.
+   *
+   * @param entity The entity.
+   * @param uncompressed True if the restlet sets the UNCOMPRESSED_KEY response attribute.
+   * @param notModified True if the restlet answers 304 Not Modified.
+   * @param accepted The encodings accepted by the client.
+   * @return The response.
+   */
+  @SuppressWarnings("unchecked")
+  private Response handle(final Representation entity, final boolean uncompressed,
+      final boolean notModified, Preference<?>... accepted) {
+    Request request = new Request(Method.GET, "http://localhost/telemetry/chart");
+    for (Preference<?> preference : accepted) {
+      request.getClientInfo().getAcceptedEncodings().add((Preference<Encoding>) preference);
+    }
+    entity.setTag(new Tag("chart"));
+    CompressionFilter filter = new CompressionFilter(new Context(), THRESHOLD);
+    filter.setNext(new Restlet() {
+      @Override
+      public void handle(Request request, Response response) {
+        if (notModified) {
+          response.getAttributes().put(CompressionFilter.NOT_MODIFIED_KEY, entity);
+          response.setStatus(Status.REDIRECTION_NOT_MODIFIED);
+          return;
+        }
+        response.setEntity(entity);
+        if (uncompressed) {
+          response.getAttributes().put(CompressionFilter.UNCOMPRESSED_KEY, Boolean.TRUE);
+        }
+      }
+    });
+    Response response = new Response(request);
+    filter.handle(request, response);
+    return response;
+  }
+
+  /**
+   * Returns the bytes written by a representation.
+   *
+   * @param entity The representation.
+   * @return The bytes.
+   * @throws IOException If the representation cannot be written.
+   */
+  private byte[] write(Representation entity) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    entity.write(out);
+    return out.toByteArray();
+  }
+
+  /**
+   * Returns the UTF-8 text read from a stream.
+   *
+   * @param in The stream, which is closed.
+   * @return The text.
+   * @throws IOException If the stream cannot be read.
+   */
+  private String read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    try {
+      for (int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+        out.write(buffer, 0, count);
+      }
+    }
+    finally {
+      in.close();
+    }
+    return out.toString("UTF-8");
+  }
+
+  /**
+   * A streamed text of unknown size, like the chart data representations.
+   */
+  private static class TextRepresentation extends OutputRepresentation {
+    /** The text. */
+    private final String text;
+
+    /**
+     * Creates a streamed text.
+     *
+     * @param text The text.
+     */
+    TextRepresentation(String text) {
+      super(MediaType.TEXT_PLAIN);
+      this.text = text;
+    }
+
+    /**
+     * Writes the text.
+     *
+     * @param out The output stream.
+     * @throws IOException If problems occur.
+     */
+    @Override
+    public void write(OutputStream out) throws IOException {
+      out.write(this.text.getBytes("UTF-8"));
+    }
+  }
+}
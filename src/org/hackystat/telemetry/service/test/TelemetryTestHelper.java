@@ -49,6 +49,14 @@ public class TelemetryTestHelper {
     return TelemetryTestHelper.server.getHostName();
   }
   
+  /**
+   * Returns the Telemetry test server, so that tests can inspect its context.
+   * @return The server.
+   */
+  protected Server getTelemetryServer() {
+    return TelemetryTestHelper.server;
+  }
+  
   /**
    * Returns the sensorbase hostname that this Telemetry server communicates with.
    * @return The host name, including the context root. 